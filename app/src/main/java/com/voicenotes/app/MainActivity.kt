@@ -135,6 +135,9 @@ fun VoiceNotesApp(
     val isPlaying by viewModel.isPlaying.collectAsState()
     val isTTSSpeaking by viewModel.isTTSSpeaking.collectAsState()
     val currentTTSText by viewModel.currentTTSText.collectAsState()
+    val duplicateHints by viewModel.duplicateHints.collectAsState()
+    val relatedNotes by viewModel.relatedNotes.collectAsState()
+    val chapterSummaries by viewModel.chapterSummaries.collectAsState()
 
     var currentlyPlayingId by remember { mutableStateOf<Long?>(null) }
     var currentScreen by remember { mutableStateOf("main") }
@@ -186,6 +189,15 @@ fun VoiceNotesApp(
                 onStopRecording = {
                     viewModel.stopRecording()
                 },
+                onPauseRecording = {
+                    viewModel.pauseRecording()
+                },
+                onResumeRecording = {
+                    viewModel.resumeRecording()
+                },
+                onAppendRecording = { voiceNote ->
+                    viewModel.startRecording(appendTo = voiceNote)
+                },
                 onPlayVoiceNote = { voiceNote ->
                     currentlyPlayingId = voiceNote.id
                     viewModel.playAudio(voiceNote)
@@ -230,6 +242,18 @@ fun VoiceNotesApp(
                 },
                 onSpeakCustomText = { text ->
                     viewModel.speakText(text)
+                },
+                duplicateHints = duplicateHints,
+                onMergeDuplicate = { duplicate, original ->
+                    viewModel.mergeDuplicate(duplicate, original)
+                },
+                relatedNotes = relatedNotes,
+                onRequestRelatedNotes = { noteId ->
+                    viewModel.loadRelatedNotes(noteId)
+                },
+                chapterSummaries = chapterSummaries,
+                onExpandChapter = { note, chapterIndex ->
+                    viewModel.loadChapterSummary(note, chapterIndex)
                 }
                 )
 
@@ -4,7 +4,17 @@ import android.content.Context
 import android.content.SharedPreferences
 import android.media.MediaMetadataRetriever
 import android.util.Log
+import com.voicenotes.app.ai.nlp.Dictionaries
+import com.voicenotes.app.audio.MediaDecoderSource
+import com.voicenotes.app.audio.SpeakingPatternAnalyzer
+import com.voicenotes.app.audio.SpeechSpanStitcher
+import com.voicenotes.app.data.Chapter
+import com.voicenotes.app.data.SpeakingPatterns
+import com.voicenotes.app.data.SpeechSegment
+import com.voicenotes.app.data.SummarySource
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
 import kotlin.coroutines.resume
 import kotlin.coroutines.resumeWithException
 import java.io.File
@@ -21,18 +31,23 @@ class AIService(private val context: Context) {
         private const val KEY_GOOGLE_API_KEY = "google_api_key"
         private const val KEY_USE_REAL_AI = "use_real_ai"
         private const val KEY_USE_LOCAL_AI = "use_local_ai"
+
+        private val WHITESPACE = Regex("\\s+")
+        private val SENTENCE_END = Regex("[.!?]")
     }
 
     private val speechToTextService = SpeechToTextService(context)
     private val llmService = LLMService(context)
     private val localSTTService = LocalSTTService(context)
-    private val localNLPService = LocalNLPService(context)
+    private val localNLPService = LocalNLPService()
+    private val languageHint = LanguageHint(context)
     private val prefs: SharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
 
     /**
-     * Transcribe audio using local, cloud, or mock STT
+     * Transcribe audio using local, cloud, or mock STT. With [speechSegments] only the
+     * speech is uploaded to a cloud provider, stitched into one shorter file.
      */
-    suspend fun transcribeAudio(audioFilePath: String): String {
+    suspend fun transcribeAudio(audioFilePath: String, speechSegments: List<SpeechSegment> = emptyList()): String {
         return try {
             when {
                 isLocalAIEnabled() -> {
@@ -52,8 +67,15 @@ class AIService(private val context: Context) {
                     val apiKey = getAPIKey(sttProvider)
 
                     if (apiKey.isNotEmpty()) {
-                        when (val result = speechToTextService.transcribeAudio(audioFilePath, sttProvider, apiKey)) {
-                            is STTResult.Success -> result.transcript
+                        val language = languageHint.current
+                        val speech = stitchSpeech(audioFilePath, speechSegments)
+                        val result = try {
+                            speechToTextService.transcribeAudio(speech?.file?.absolutePath ?: audioFilePath, sttProvider, apiKey, language)
+                        } finally {
+                            speech?.file?.delete()
+                        }
+                        when (result) {
+                            is STTResult.Success -> result.transcript.also { languageHint.update(it) }
                             is STTResult.Error -> {
                                 Log.e(TAG, "Cloud STT failed: ${result.message}")
                                 // Fallback to local or mock
@@ -80,6 +102,18 @@ class AIService(private val context: Context) {
         }
     }
 
+    /**
+     * The speech of a recording in a temporary file, or null to upload it whole
+     */
+    private suspend fun stitchSpeech(audioFilePath: String, speechSegments: List<SpeechSegment>): SpeechSpanStitcher.Stitched? {
+        if (speechSegments.isEmpty()) return null
+        return withContext(Dispatchers.IO) {
+            val input = File(audioFilePath)
+            val output = File(context.cacheDir, "speech_${input.name}")
+            SpeechSpanStitcher.stitch(input, speechSegments, getAudioDuration(audioFilePath), output)
+        }
+    }
+
     private suspend fun transcribeWithLocal(audioFilePath: String): String {
         return when (val result = localSTTService.transcribeAudioFile(audioFilePath)) {
             is LocalSTTResult.Success -> result.transcript
@@ -90,12 +124,16 @@ class AIService(private val context: Context) {
     /**
      * Generate summary using local, cloud, or mock NLP
      */
-    suspend fun generateSummary(transcript: String, audioFilePath: String): AIResult {
+    suspend fun generateSummary(
+        transcript: String,
+        audioFilePath: String,
+        speechSegments: List<SpeechSegment> = emptyList()
+    ): AIResult {
         return try {
             when {
                 isLocalAIEnabled() -> {
                     // Use local NLP (no API key needed)
-                    when (val result = localNLPService.processTranscript(transcript)) {
+                    when (val result = localNLPService.processTranscript(transcript, AnalysisOptions.NOTE_SUMMARY)) {
                         is LocalNLPResult.Success -> {
                             val actionItems = result.actionItems.map { actionItemText ->
                                 ActionItem(
@@ -111,16 +149,19 @@ class AIService(private val context: Context) {
                             scheduleActionItemReminders(actionItems)
 
                             AIResult(
-                                title = generateTitle(transcript),
+                                title = MockAnalyzer.generateTitle(transcript),
                                 summary = result.summary,
                                 keyPoints = result.keywords,
                                 actionItems = actionItems,
-                                speakingPatterns = speakingPatterns
+                                speakingPatterns = speakingPatterns,
+                                chapters = LocalNLPService.toChapters(
+                                    result.chapters, transcript.length, getAudioDuration(audioFilePath), speechSegments
+                                )
                             )
                         }
                         is LocalNLPResult.Error -> {
                             Log.e(TAG, "Local NLP failed: ${result.message}")
-                            generateMockSummary(transcript, audioFilePath)
+                            generateMockSummary(transcript, audioFilePath, speechSegments)
                         }
                     }
                 }
@@ -146,51 +187,59 @@ class AIService(private val context: Context) {
                                 scheduleActionItemReminders(actionItems)
 
                                 AIResult(
-                                    title = generateTitle(transcript),
+                                    title = MockAnalyzer.generateTitle(transcript),
                                     summary = result.summary,
                                     keyPoints = result.keywords,
                                     actionItems = actionItems,
-                                    speakingPatterns = speakingPatterns
+                                    speakingPatterns = speakingPatterns,
+                                    chapters = detectChapters(transcript, audioFilePath, speechSegments),
+                                    summarySource = SummarySource.CLOUD
                                 )
                             }
                             is LLMResult.Error -> {
                                 Log.e(TAG, "Cloud LLM failed: ${result.message}")
                                 // Fallback to local or mock
                                 if (isLocalAIEnabled()) {
-                                    generateSummary(transcript, audioFilePath) // Retry with local
+                                    generateSummary(transcript, audioFilePath, speechSegments) // Retry with local
                                 } else {
-                                    generateMockSummary(transcript, audioFilePath)
+                                    generateMockSummary(transcript, audioFilePath, speechSegments)
                                 }
                             }
                         }
                     } else {
                         Log.w(TAG, "No API key configured, falling back to local NLP")
                         if (isLocalAIEnabled()) {
-                            generateSummary(transcript, audioFilePath) // Use local
+                            generateSummary(transcript, audioFilePath, speechSegments) // Use local
                         } else {
-                            generateMockSummary(transcript, audioFilePath)
+                            generateMockSummary(transcript, audioFilePath, speechSegments)
                         }
                     }
                 }
                 else -> {
                     // Use mock processing
-                    generateMockSummary(transcript, audioFilePath)
+                    generateMockSummary(transcript, audioFilePath, speechSegments)
                 }
             }
         } catch (e: Exception) {
             Log.e(TAG, "Error in generateSummary", e)
-            generateMockSummary(transcript, audioFilePath)
+            generateMockSummary(transcript, audioFilePath, speechSegments)
         }
     }
 
     /**
      * Mock summary generation (fallback)
      */
-    private fun generateMockSummary(transcript: String, audioFilePath: String): AIResult {
-        val title = generateTitle(transcript)
+    private suspend fun generateMockSummary(
+        transcript: String,
+        audioFilePath: String,
+        speechSegments: List<SpeechSegment>
+    ): AIResult {
+        val title = MockAnalyzer.generateTitle(transcript)
         val summary = generateSummaryText(transcript)
-        val keyPoints = generateKeyPoints(transcript)
-        val actionItems = extractActionItems(transcript)
+        // One dictionary scan serves every mock-path extractor
+        val matches = Dictionaries.match(transcript.lowercase())
+        val keyPoints = MockAnalyzer.generateKeyPoints(transcript, matches)
+        val actionItems = MockAnalyzer.extractActionItems(transcript, matches)
         val speakingPatterns = analyzeSpeakingPatterns(transcript, audioFilePath)
 
         // Schedule notifications for action items
@@ -201,9 +250,18 @@ class AIService(private val context: Context) {
             summary = summary,
             keyPoints = keyPoints,
             actionItems = actionItems,
-            speakingPatterns = speakingPatterns
+            speakingPatterns = speakingPatterns,
+            chapters = detectChapters(transcript, audioFilePath, speechSegments)
         )
     }
+
+    /**
+     * Topic chapters for paths whose summary did not come from local NLP
+     */
+    private fun detectChapters(transcript: String, audioFilePath: String, speechSegments: List<SpeechSegment>): List<Chapter> {
+        val segments = LocalNLPService.analyze(transcript, AnalysisOptions.CHAPTERS).chapters
+        return LocalNLPService.toChapters(segments, transcript.length, getAudioDuration(audioFilePath), speechSegments)
+    }
     
     private fun getAudioDuration(filePath: String): Long {
         return try {
@@ -228,290 +286,66 @@ class AIService(private val context: Context) {
         }
     }
     
-    private fun generateTitle(transcript: String): String {
-        // Simple title generation based on transcript length and content
-        val words = transcript.split(" ")
-        return when {
-            words.size < 10 -> "Quick Note"
-            words.size < 30 -> "Voice Memo"
-            transcript.contains("meeting", ignoreCase = true) -> "Meeting Notes"
-            transcript.contains("idea", ignoreCase = true) -> "Ideas & Thoughts"
-            transcript.contains("task", ignoreCase = true) -> "Task Notes"
-            transcript.contains("reminder", ignoreCase = true) -> "Reminders"
-            else -> "Voice Recording"
-        }
-    }
-
-    private fun generateSummaryText(transcript: String): String {
-        // Simple summary generation
-        val sentences = transcript.split(". ")
-        return if (sentences.size > 2) {
-            sentences.take(2).joinToString(". ") + "."
-        } else {
-            transcript
-        }
-    }
-
-    private fun generateKeyPoints(transcript: String): List<String> {
-        // Enhanced key points extraction using contextual analysis
-        val keyPoints = mutableListOf<String>()
-        val lowerTranscript = transcript.lowercase()
-
-        // Extract specific, meaningful keywords
-        val contextualKeywords = extractContextualKeywords(transcript)
-        val actionKeywords = extractActionKeywords(transcript)
-        val entityKeywords = extractEntityKeywords(transcript)
-
-        // Prioritize specific keywords over generic ones
-        keyPoints.addAll(contextualKeywords.take(3))
-        keyPoints.addAll(actionKeywords.take(2))
-        keyPoints.addAll(entityKeywords.take(3))
-
-        // Add content-based keywords if we have room
-        if (keyPoints.size < 5) {
-            val contentKeywords = extractContentKeywords(transcript)
-            keyPoints.addAll(contentKeywords.take(5 - keyPoints.size))
-        }
-
-        return keyPoints.distinct().take(8).ifEmpty { listOf("Voice note") }
-    }
-
-    /**
-     * Extract contextual keywords from transcript
-     */
-    private fun extractContextualKeywords(transcript: String): List<String> {
-        val keywords = mutableListOf<String>()
-        val lowerText = transcript.lowercase()
-
-        // Meeting/work related
-        when {
-            lowerText.contains("meeting") -> keywords.add("meeting")
-            lowerText.contains("conference") -> keywords.add("conference")
-            lowerText.contains("call") -> keywords.add("call")
-            lowerText.contains("project") -> keywords.add("project")
-            lowerText.contains("deadline") -> keywords.add("deadline")
-            lowerText.contains("team") -> keywords.add("team")
-        }
-
-        // Personal tasks
-        when {
-            lowerText.contains("shopping") || lowerText.contains("buy") -> keywords.add("shopping")
-            lowerText.contains("appointment") -> keywords.add("appointment")
-            lowerText.contains("doctor") -> keywords.add("doctor")
-            lowerText.contains("dentist") -> keywords.add("dentist")
-        }
-
-        // Time-related
-        when {
-            lowerText.contains("today") -> keywords.add("today")
-            lowerText.contains("tomorrow") -> keywords.add("tomorrow")
-            lowerText.contains("weekend") -> keywords.add("weekend")
-            lowerText.contains("monday") -> keywords.add("monday")
-            lowerText.contains("tuesday") -> keywords.add("tuesday")
-            lowerText.contains("wednesday") -> keywords.add("wednesday")
-            lowerText.contains("thursday") -> keywords.add("thursday")
-            lowerText.contains("friday") -> keywords.add("friday")
-        }
-
-        return keywords
-    }
-
     /**
-     * Extract action-oriented keywords
+     * Speaking patterns measured from the decoded audio, or estimated from the
+     * transcript when the file cannot be decoded
      */
-    private fun extractActionKeywords(transcript: String): List<String> {
-        val keywords = mutableListOf<String>()
-        val lowerText = transcript.lowercase()
-
-        val actionMap = mapOf(
-            "call" to listOf("call", "phone", "ring"),
-            "email" to listOf("email", "send", "message"),
-            "buy" to listOf("buy", "purchase", "get"),
-            "schedule" to listOf("schedule", "book", "arrange"),
-            "visit" to listOf("visit", "go to", "stop by"),
-            "finish" to listOf("finish", "complete", "done"),
-            "prepare" to listOf("prepare", "get ready", "set up"),
-            "review" to listOf("review", "check", "look at")
-        )
-
-        actionMap.forEach { (action, patterns) ->
-            if (patterns.any { pattern -> lowerText.contains(pattern) }) {
-                keywords.add(action)
-            }
-        }
-
-        return keywords
-    }
-
-    /**
-     * Extract entity keywords (names, places, specific items)
-     */
-    private fun extractEntityKeywords(transcript: String): List<String> {
-        val keywords = mutableListOf<String>()
-        val lowerText = transcript.lowercase()
-
-        // Common entities
-        val entities = listOf(
-            "john", "sarah", "mike", "lisa", "david", "anna", "chris", "maria",
-            "milk", "bread", "eggs", "coffee", "groceries", "medicine",
-            "bank", "store", "office", "home", "hospital", "school",
-            "morning", "afternoon", "evening", "lunch", "dinner"
-        )
-
-        entities.forEach { entity ->
-            if (lowerText.contains(entity)) {
-                keywords.add(entity)
+    private suspend fun analyzeSpeakingPatterns(transcript: String, audioFilePath: String): SpeakingPatterns {
+        val wordCount = transcript.split(WHITESPACE).count { it.isNotBlank() }
+        val file = File(audioFilePath)
+        val measured = if (!file.isFile) null else withContext(Dispatchers.Default) {
+            try {
+                SpeakingPatternAnalyzer.analyze(MediaDecoderSource(file))
+            } catch (e: Exception) {
+                Log.w(TAG, "Could not decode $audioFilePath for speaking patterns, estimating", e)
+                null
             }
         }
+        if (measured == null || measured.voicedMs == 0L) return estimateSpeakingPatterns(transcript, wordCount, audioFilePath)
 
-        return keywords
-    }
-
-    /**
-     * Extract content-based keywords
-     */
-    private fun extractContentKeywords(transcript: String): List<String> {
-        val keywords = mutableListOf<String>()
-        val words = transcript.lowercase().split("\\s+".toRegex())
-
-        // Filter meaningful words
-        val meaningfulWords = words.filter { word ->
-            word.length > 3 &&
-            !isStopWord(word) &&
-            !isCommonWord(word)
-        }
-
-        // Count frequency and return top words
-        val wordCounts = meaningfulWords.groupingBy { it }.eachCount()
-        return wordCounts.entries
-            .sortedByDescending { it.value }
-            .take(5)
-            .map { it.key }
-    }
-
-    /**
-     * Check if word is a stop word
-     */
-    private fun isStopWord(word: String): Boolean {
-        val stopWords = setOf(
-            "the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for", "of", "with",
-            "by", "from", "up", "about", "into", "through", "during", "before", "after",
-            "this", "that", "these", "those", "i", "you", "he", "she", "it", "we", "they"
-        )
-        return stopWords.contains(word)
-    }
-
-    /**
-     * Check if word is too common to be meaningful
-     */
-    private fun isCommonWord(word: String): Boolean {
-        val commonWords = setOf(
-            "said", "says", "going", "really", "think", "know", "like", "just",
-            "want", "need", "make", "take", "come", "good", "great", "nice",
-            "thing", "things", "stuff", "something", "anything", "everything"
-        )
-        return commonWords.contains(word)
-    }
-
-    private fun extractActionItems(transcript: String): List<ActionItem> {
-        val lowerTranscript = transcript.lowercase()
-        val actionItems = mutableListOf<ActionItem>()
-
-        // Look for action-oriented phrases
-        val actionPatterns = listOf(
-            "need to" to Priority.MEDIUM,
-            "have to" to Priority.HIGH,
-            "must" to Priority.HIGH,
-            "should" to Priority.MEDIUM,
-            "remember to" to Priority.MEDIUM,
-            "don't forget" to Priority.HIGH,
-            "urgent" to Priority.URGENT,
-            "asap" to Priority.URGENT,
-            "deadline" to Priority.HIGH,
-            "due" to Priority.HIGH,
-            "schedule" to Priority.MEDIUM,
-            "call" to Priority.MEDIUM,
-            "email" to Priority.MEDIUM,
-            "meeting" to Priority.MEDIUM,
-            "follow up" to Priority.MEDIUM
+        // Over voiced time only, so long pauses do not make a fast speaker look slow
+        val wordsPerMinute = (wordCount / (measured.voicedMs / 60000.0)).toInt()
+        return SpeakingPatterns(
+            wordsPerMinute = wordsPerMinute,
+            pauseCount = measured.pauseCount,
+            averagePauseLength = measured.averagePauseMs,
+            totalSpeakingTime = measured.voicedMs,
+            confidenceLevel = confidenceLevel(wordsPerMinute),
+            speechRatio = measured.speechRatio,
+            longestPause = measured.longestPauseMs,
+            pauseHistogram = measured.pauseHistogram,
+            measured = true
         )
-
-        actionPatterns.forEach { (pattern, priority) ->
-            if (lowerTranscript.contains(pattern)) {
-                // Extract context around the action phrase
-                val index = lowerTranscript.indexOf(pattern)
-                val start = maxOf(0, index - 20)
-                val end = minOf(transcript.length, index + pattern.length + 40)
-                val context = transcript.substring(start, end).trim()
-
-                // Determine category
-                val category = when {
-                    lowerTranscript.contains("work") || lowerTranscript.contains("office") -> "Work"
-                    lowerTranscript.contains("personal") || lowerTranscript.contains("family") -> "Personal"
-                    lowerTranscript.contains("health") || lowerTranscript.contains("doctor") -> "Health"
-                    lowerTranscript.contains("shopping") || lowerTranscript.contains("buy") -> "Shopping"
-                    else -> "General"
-                }
-
-                actionItems.add(
-                    ActionItem(
-                        task = context,
-                        priority = priority,
-                        category = category
-                    )
-                )
-            }
-        }
-
-        // If no specific action items found, create generic ones based on content
-        if (actionItems.isEmpty()) {
-            when {
-                lowerTranscript.contains("meeting") -> {
-                    actionItems.add(ActionItem("Follow up on meeting discussion", Priority.MEDIUM, category = "Work"))
-                }
-                lowerTranscript.contains("idea") -> {
-                    actionItems.add(ActionItem("Develop the ideas mentioned", Priority.LOW, category = "Ideas"))
-                }
-                lowerTranscript.contains("project") -> {
-                    actionItems.add(ActionItem("Continue project work", Priority.MEDIUM, category = "Work"))
-                }
-            }
-        }
-
-        return actionItems.take(3) // Limit to 3 action items
     }
 
-    private fun analyzeSpeakingPatterns(transcript: String, audioFilePath: String): SpeakingPatterns {
+    private fun estimateSpeakingPatterns(transcript: String, wordCount: Int, audioFilePath: String): SpeakingPatterns {
         val duration = getAudioDuration(audioFilePath)
-        val words = transcript.split("\\s+".toRegex()).filter { it.isNotBlank() }
-        val wordCount = words.size
 
-        // Mock analysis - in real implementation, you'd analyze the actual audio
         val durationMinutes = duration / 60000.0
         val wordsPerMinute = if (durationMinutes > 0) (wordCount / durationMinutes).toInt() else 0
 
         // Estimate pauses based on sentence structure
-        val sentences = transcript.split("[.!?]".toRegex()).filter { it.isNotBlank() }
+        val sentences = transcript.split(SENTENCE_END).filter { it.isNotBlank() }
         val pauseCount = maxOf(0, sentences.size - 1)
         val averagePauseLength = if (pauseCount > 0) (duration * 0.1) / pauseCount else 0.0
 
-        // Determine confidence level based on speaking speed and patterns
-        val confidenceLevel = when {
-            wordsPerMinute > 180 -> "High (Fast speaker)"
-            wordsPerMinute > 120 -> "Medium (Normal pace)"
-            wordsPerMinute > 80 -> "Medium (Thoughtful pace)"
-            else -> "Low (Slow/hesitant)"
-        }
-
         return SpeakingPatterns(
             wordsPerMinute = wordsPerMinute,
             pauseCount = pauseCount,
             averagePauseLength = averagePauseLength,
             totalSpeakingTime = duration,
-            confidenceLevel = confidenceLevel
+            confidenceLevel = confidenceLevel(wordsPerMinute)
         )
     }
 
+    // Determine confidence level based on speaking speed
+    private fun confidenceLevel(wordsPerMinute: Int): String = when {
+        wordsPerMinute > 180 -> "High (Fast speaker)"
+        wordsPerMinute > 120 -> "Medium (Normal pace)"
+        wordsPerMinute > 80 -> "Medium (Thoughtful pace)"
+        else -> "Low (Slow/hesitant)"
+    }
+
     private fun scheduleActionItemReminders(actionItems: List<ActionItem>) {
         // Import notification service
         actionItems.forEach { actionItem ->
@@ -626,30 +460,3 @@ class AIService(private val context: Context) {
         }
     }
 }
-
-data class AIResult(
-    val title: String,
-    val summary: String,
-    val keyPoints: List<String>,
-    val actionItems: List<ActionItem> = emptyList(),
-    val speakingPatterns: SpeakingPatterns? = null
-)
-
-data class ActionItem(
-    val task: String,
-    val priority: Priority = Priority.MEDIUM,
-    val dueDate: String? = null,
-    val category: String = "General"
-)
-
-data class SpeakingPatterns(
-    val wordsPerMinute: Int,
-    val pauseCount: Int,
-    val averagePauseLength: Double,
-    val totalSpeakingTime: Long,
-    val confidenceLevel: String
-)
-
-enum class Priority {
-    LOW, MEDIUM, HIGH, URGENT
-}
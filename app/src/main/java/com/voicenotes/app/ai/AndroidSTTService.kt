@@ -9,6 +9,7 @@ import android.speech.RecognizerIntent
 import android.speech.SpeechRecognizer
 import android.util.Log
 import androidx.activity.result.ActivityResultLauncher
+import com.voicenotes.app.ai.nlp.IncrementalTranscriptAnalyzer
 import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlin.coroutines.resume
 
@@ -18,6 +19,8 @@ class AndroidSTTService(private val context: Context) {
         private const val TAG = "AndroidSTTService"
         const val REQUEST_CODE_SPEECH = 1001
     }
+
+    private val languageHint = LanguageHint(context)
     
     /**
      * Method 1: Using Intent-based Speech Recognition (Easiest)
@@ -28,8 +31,8 @@ class AndroidSTTService(private val context: Context) {
             // Language model for free-form speech recognition
             putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
             
-            // Language preference
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE, "en-US")
+            // Language of recent notes, or the device's
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE, languageHint.current.localeTag)
             
             // Prompt text shown to user
             putExtra(RecognizerIntent.EXTRA_PROMPT, "Speak now for VoiceNotes...")
@@ -58,6 +61,7 @@ class AndroidSTTService(private val context: Context) {
                 if (!results.isNullOrEmpty()) {
                     val transcript = results[0]
                     val confidence = 0.9f // Default confidence since scores may not be available
+                    languageHint.update(transcript)
                     
                     AndroidSTTResult.Success(
                         transcript = transcript,
@@ -79,9 +83,13 @@ class AndroidSTTService(private val context: Context) {
     
     /**
      * Method 2: Using SpeechRecognizer directly (More control)
-     * This doesn't show a dialog, works in background
+     * This doesn't show a dialog, works in background.
+     * [onPartialAnalysis] receives live keywords and action items while the user speaks.
      */
-    suspend fun recognizeSpeechDirectly(language: String = "en-US"): AndroidSTTResult {
+    suspend fun recognizeSpeechDirectly(
+        language: String = languageHint.current.localeTag,
+        onPartialAnalysis: ((IncrementalTranscriptAnalyzer.Snapshot) -> Unit)? = null
+    ): AndroidSTTResult {
         return suspendCancellableCoroutine { continuation ->
             
             if (!SpeechRecognizer.isRecognitionAvailable(context)) {
@@ -90,6 +98,7 @@ class AndroidSTTService(private val context: Context) {
             }
             
             val speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context)
+            var liveAnalyzer = IncrementalTranscriptAnalyzer()
             
             val intent = Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH).apply {
                 putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
@@ -147,6 +156,7 @@ class AndroidSTTService(private val context: Context) {
                         val confidence = 0.8f // Default confidence
                         
                         Log.d(TAG, "Speech recognition successful: $transcript")
+                        languageHint.update(transcript)
                         continuation.resume(
                             AndroidSTTResult.Success(
                                 transcript = transcript,
@@ -164,7 +174,19 @@ class AndroidSTTService(private val context: Context) {
                     val matches = partialResults?.getStringArrayList(RecognizerIntent.EXTRA_RESULTS)
                     if (!matches.isNullOrEmpty()) {
                         Log.d(TAG, "Partial result: ${matches[0]}")
-                        // Can be used for real-time transcription display
+                        if (onPartialAnalysis != null) {
+                            // Partial results repeat the whole hypothesis; only analyze what is new.
+                            // Start over when the recognizer revises earlier words.
+                            val hypothesis = matches[0]
+                            val analyzed = liveAnalyzer.length
+                            if (hypothesis.length < analyzed || !hypothesis.startsWith(liveAnalyzer.text)) {
+                                liveAnalyzer = IncrementalTranscriptAnalyzer()
+                                liveAnalyzer.append(hypothesis)
+                            } else {
+                                liveAnalyzer.append(hypothesis.substring(analyzed))
+                            }
+                            onPartialAnalysis(liveAnalyzer.snapshot())
+                        }
                     }
                 }
                 
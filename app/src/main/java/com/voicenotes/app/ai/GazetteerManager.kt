@@ -0,0 +1,175 @@
+package com.voicenotes.app.ai
+
+import android.Manifest
+import android.content.Context
+import android.content.SharedPreferences
+import android.content.pm.PackageManager
+import android.database.ContentObserver
+import android.os.Handler
+import android.os.Looper
+import android.provider.ContactsContract
+import android.util.Log
+import androidx.core.content.ContextCompat
+import com.voicenotes.app.ai.nlp.Gazetteer
+import com.voicenotes.app.ai.nlp.PatternDictionary
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import java.io.File
+
+/**
+ * Builds the gazetteer the extractors use from the bundled names, the user's own
+ * list and, when allowed, the device contacts.
+ *
+ * The user's list is a file in the same format as nlp/gazetteer.txt. Whenever a
+ * source changes the gazetteer is rebuilt on a background dispatcher and installed
+ * with [Gazetteer.install]; bursts of changes (a contacts sync) cause one rebuild.
+ */
+class GazetteerManager private constructor(private val context: Context) {
+
+    private val prefs: SharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+    private val userFile = File(context.filesDir, USER_FILE_NAME)
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private var rebuildJob: Job? = null
+    private var contactsObserver: ContentObserver? = null
+
+    var includeContacts: Boolean
+        get() = prefs.getBoolean(KEY_INCLUDE_CONTACTS, false)
+        set(value) {
+            prefs.edit().putBoolean(KEY_INCLUDE_CONTACTS, value).apply()
+            watchContacts()
+            rebuild()
+        }
+
+    val hasContactsPermission: Boolean
+        get() = ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CONTACTS) ==
+            PackageManager.PERMISSION_GRANTED
+
+    /**
+     * Build the first gazetteer and start watching contacts; safe to call more than once
+     */
+    fun start() {
+        watchContacts()
+        rebuild()
+    }
+
+    fun userEntries(): String {
+        return if (userFile.exists()) userFile.readText() else DEFAULT_USER_ENTRIES
+    }
+
+    /**
+     * Replace the user's list; throws IllegalArgumentException on a malformed line
+     * without saving anything
+     */
+    fun saveUserEntries(text: String) {
+        PatternDictionary.parse(USER_FILE_NAME, text.lineSequence())
+        userFile.writeText(text)
+        rebuild()
+    }
+
+    /**
+     * Rebuild in the background, after changes have settled
+     */
+    @Synchronized
+    fun rebuild() {
+        rebuildJob?.cancel()
+        rebuildJob = scope.launch {
+            delay(REBUILD_DELAY_MS)
+            try {
+                val start = System.currentTimeMillis()
+                val gazetteer = build()
+                Gazetteer.install(gazetteer)
+                Log.d(TAG, "Gazetteer rebuilt: ${gazetteer.size} names in ${System.currentTimeMillis() - start}ms")
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to rebuild gazetteer", e)
+            }
+        }
+    }
+
+    private fun build(): Gazetteer {
+        val builder = Gazetteer.builderWithBundled()
+        if (userFile.exists()) {
+            builder.addAll(userFile.inputStream().use { PatternDictionary.load(USER_FILE_NAME, it) })
+        }
+        if (includeContacts && hasContactsPermission) {
+            addContacts(builder)
+        }
+        return builder.build()
+    }
+
+    /**
+     * Contact display names as people and their companies as organizations
+     */
+    private fun addContacts(builder: Gazetteer.Builder) {
+        val resolver = context.contentResolver
+        resolver.query(
+            ContactsContract.Contacts.CONTENT_URI,
+            arrayOf(ContactsContract.Contacts.DISPLAY_NAME_PRIMARY),
+            null, null, null
+        )?.use { cursor ->
+            while (cursor.moveToNext()) {
+                cursor.getString(0)?.let { builder.add(it, Gazetteer.Type.PERSON) }
+            }
+        }
+        resolver.query(
+            ContactsContract.Data.CONTENT_URI,
+            arrayOf(ContactsContract.CommonDataKinds.Organization.COMPANY),
+            "${ContactsContract.Data.MIMETYPE} = ?",
+            arrayOf(ContactsContract.CommonDataKinds.Organization.CONTENT_ITEM_TYPE),
+            null
+        )?.use { cursor ->
+            while (cursor.moveToNext()) {
+                cursor.getString(0)?.let { builder.add(it, Gazetteer.Type.ORGANIZATION) }
+            }
+        }
+    }
+
+    @Synchronized
+    private fun watchContacts() {
+        val wanted = includeContacts && hasContactsPermission
+        val observer = contactsObserver
+        if (wanted && observer == null) {
+            val created = object : ContentObserver(Handler(Looper.getMainLooper())) {
+                override fun onChange(selfChange: Boolean) {
+                    rebuild()
+                }
+            }
+            context.contentResolver.registerContentObserver(ContactsContract.Contacts.CONTENT_URI, true, created)
+            contactsObserver = created
+        } else if (!wanted && observer != null) {
+            context.contentResolver.unregisterContentObserver(observer)
+            contactsObserver = null
+        }
+    }
+
+    companion object {
+        private const val TAG = "GazetteerManager"
+        private const val PREFS_NAME = "gazetteer"
+        private const val KEY_INCLUDE_CONTACTS = "include_contacts"
+        private const val USER_FILE_NAME = "gazetteer.txt"
+        private const val REBUILD_DELAY_MS = 500L
+
+        private val DEFAULT_USER_ENTRIES = """
+            # One name per line under [person], [place] or [organization].
+            # "Name = spelling | spelling" adds other ways it is said.
+
+            [person]
+
+            [place]
+
+            [organization]
+        """.trimIndent()
+
+        @Volatile
+        private var INSTANCE: GazetteerManager? = null
+
+        fun getInstance(context: Context): GazetteerManager {
+            return INSTANCE ?: synchronized(this) {
+                INSTANCE ?: GazetteerManager(context.applicationContext).also { INSTANCE = it }
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.voicenotes.app.ai
+
+import android.content.Context
+import android.content.SharedPreferences
+import com.voicenotes.app.ai.nlp.Language
+import com.voicenotes.app.ai.nlp.LanguageIdentifier
+import java.util.Locale
+
+/**
+ * The language to ask speech recognizers for.
+ *
+ * Audio has to be recognized before its text can be identified, so recognizers are
+ * given the language of the last transcript that identified reliably, starting from
+ * the device locale. Kept in SharedPreferences so it survives restarts.
+ */
+class LanguageHint(context: Context) {
+
+    private val prefs: SharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+    val current: Language
+        get() = prefs.getString(KEY_LANGUAGE, null)?.let { Language.fromCode(it) }
+            ?: Language.fromLocale(Locale.getDefault())
+            ?: Language.DEFAULT
+
+    /**
+     * Remember the language of [transcript] when it is clear enough; returns it either way
+     */
+    fun update(transcript: String): Language {
+        val detection = LanguageIdentifier.detect(transcript)
+        if (!detection.isReliable) return current
+        if (detection.language != current) {
+            prefs.edit().putString(KEY_LANGUAGE, detection.language.code).apply()
+        }
+        return detection.language
+    }
+
+    companion object {
+        private const val PREFS_NAME = "language_hint"
+        private const val KEY_LANGUAGE = "language"
+    }
+}
@@ -0,0 +1,244 @@
+package com.voicenotes.app.ai
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.util.Log
+import androidx.work.*
+import com.voicenotes.app.ai.nlp.TfIdfModel
+import com.voicenotes.app.data.SummarySource
+import com.voicenotes.app.data.VoiceNote
+import com.voicenotes.app.data.VoiceNoteAnalysis
+import com.voicenotes.app.data.VoiceNoteDao
+import com.voicenotes.app.data.VoiceNoteDatabase
+import com.voicenotes.app.repository.VoiceNoteRepository
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Re-runs local NLP over every transcribed note and rewrites its summary and key points.
+ *
+ * Notes are read from [voiceNoteDao] in id-ordered pages while the previous page is
+ * analyzed, each page is split across at most [parallelism] workers on [dispatcher],
+ * and its results go to [writer], which drops notes edited in the meantime. Notes
+ * summarized by a cloud model are left alone. After every page the last note id is
+ * saved to [checkpoint], so an interrupted run resumes where it stopped; a checkpoint
+ * from an older [ANALYSIS_VERSION] is discarded and the run starts over.
+ */
+class LibraryReanalyzer(
+    private val voiceNoteDao: VoiceNoteDao,
+    private val checkpoint: Checkpoint,
+    private val writer: Writer,
+    private val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+    private val pageSize: Int = DEFAULT_PAGE_SIZE,
+    private val dispatcher: CoroutineDispatcher = Dispatchers.Default,
+    private val analyze: (VoiceNote) -> VoiceNoteAnalysis = ::analyzeLocally
+) {
+
+    companion object {
+        const val DEFAULT_PAGE_SIZE = 200
+
+        /** Bump when the local NLP output changes, so existing notes are re-analyzed */
+        const val ANALYSIS_VERSION = 4
+
+        fun analyzeLocally(note: VoiceNote): VoiceNoteAnalysis {
+            val result = LocalNLPService.analyze(
+                note.transcript.orEmpty(),
+                AnalysisOptions.SUMMARY or AnalysisOptions.KEYWORDS or AnalysisOptions.CHAPTERS
+            )
+            return VoiceNoteAnalysis(
+                id = note.id,
+                summary = result.summary,
+                keyPoints = result.keywords,
+                chapters = LocalNLPService.toChapters(
+                    result.chapters, note.transcript.orEmpty().length, note.duration, note.speechSegments
+                )
+            )
+        }
+    }
+
+    /**
+     * Where a run got to; only the last written page is ever lost on interruption
+     */
+    interface Checkpoint {
+        fun load(): Progress?
+        fun save(progress: Progress)
+        fun clear()
+    }
+
+    data class Progress(val lastNoteId: Long, val processed: Int, val version: Int = ANALYSIS_VERSION)
+
+    /**
+     * Saves one page of results, skipping notes whose transcript changed since [notes]
+     * were read or whose summary is now a cloud one; returns how many were saved
+     */
+    interface Writer {
+        suspend fun write(notes: List<VoiceNote>, analyses: List<VoiceNoteAnalysis>): Int
+    }
+
+    data class Result(val processed: Int, val failed: Int, val elapsedMs: Long) {
+        val notesPerSecond: Double get() = if (elapsedMs > 0) processed * 1000.0 / elapsedMs else 0.0
+    }
+
+    /**
+     * Run (or resume) re-analysis of the whole library.
+     * [onProgress] receives the number of notes written so far, including earlier runs.
+     */
+    suspend fun run(onProgress: suspend (processed: Int) -> Unit = {}): Result = coroutineScope {
+        val resumed = checkpoint.load()?.takeIf { it.version == ANALYSIS_VERSION }
+        var lastNoteId = resumed?.lastNoteId ?: 0L
+        var processed = resumed?.processed ?: 0
+        var processedThisRun = 0
+        val failed = AtomicInteger()
+        val start = System.nanoTime()
+
+        var page = voiceNoteDao.getTranscribedNotesAfter(lastNoteId, pageSize)
+        while (page.isNotEmpty()) {
+            // Read the next page while this one is analyzed
+            val pageEnd = page.last().id
+            val nextPage = async { voiceNoteDao.getTranscribedNotesAfter(pageEnd, pageSize) }
+
+            val local = page.filter { it.summarySource != SummarySource.CLOUD }
+            val written = writer.write(local, analyzePage(local, failed))
+
+            lastNoteId = pageEnd
+            processed += written
+            processedThisRun += written
+            checkpoint.save(Progress(lastNoteId, processed))
+            onProgress(processed)
+
+            page = nextPage.await()
+        }
+
+        checkpoint.clear()
+        Result(processedThisRun, failed.get(), (System.nanoTime() - start) / 1_000_000)
+    }
+
+    private suspend fun analyzePage(page: List<VoiceNote>, failed: AtomicInteger): List<VoiceNoteAnalysis> = coroutineScope {
+        val sliceSize = (page.size + parallelism - 1) / parallelism.coerceAtLeast(1)
+        page.chunked(sliceSize.coerceAtLeast(1)).map { slice ->
+            async(dispatcher) {
+                slice.mapNotNull { note ->
+                    try {
+                        analyze(note)
+                    } catch (e: Exception) {
+                        // Keep the old summary rather than failing the whole library
+                        failed.incrementAndGet()
+                        null
+                    }
+                }
+            }
+        }.awaitAll().flatten()
+    }
+}
+
+/**
+ * Checkpoint kept in SharedPreferences so it survives process death
+ */
+class SharedPreferencesCheckpoint(context: Context) : LibraryReanalyzer.Checkpoint {
+
+    private val prefs: SharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+    override fun load(): LibraryReanalyzer.Progress? {
+        if (!prefs.contains(KEY_LAST_NOTE_ID)) return null
+        return LibraryReanalyzer.Progress(
+            lastNoteId = prefs.getLong(KEY_LAST_NOTE_ID, 0L),
+            processed = prefs.getInt(KEY_PROCESSED, 0),
+            // Checkpoints saved before versions were recorded count as stale
+            version = prefs.getInt(KEY_VERSION, 0)
+        )
+    }
+
+    override fun save(progress: LibraryReanalyzer.Progress) {
+        prefs.edit()
+            .putLong(KEY_LAST_NOTE_ID, progress.lastNoteId)
+            .putInt(KEY_PROCESSED, progress.processed)
+            .putInt(KEY_VERSION, progress.version)
+            .apply()
+    }
+
+    override fun clear() {
+        prefs.edit().remove(KEY_LAST_NOTE_ID).remove(KEY_PROCESSED).remove(KEY_VERSION).apply()
+    }
+
+    var completedVersion: Int
+        get() = prefs.getInt(KEY_COMPLETED_VERSION, 0)
+        set(value) = prefs.edit().putInt(KEY_COMPLETED_VERSION, value).apply()
+
+    companion object {
+        private const val PREFS_NAME = "reanalysis"
+        private const val KEY_LAST_NOTE_ID = "last_note_id"
+        private const val KEY_PROCESSED = "processed"
+        private const val KEY_VERSION = "version"
+        private const val KEY_COMPLETED_VERSION = "completed_version"
+    }
+}
+
+/**
+ * Background job running [LibraryReanalyzer]; WorkManager retries it after
+ * interruption and the checkpoint makes the retry resume instead of restart.
+ */
+class ReanalysisWorker(context: Context, params: WorkerParameters) : CoroutineWorker(context, params) {
+
+    companion object {
+        private const val TAG = "ReanalysisWorker"
+        private const val WORK_NAME = "library_reanalysis"
+        const val KEY_PROCESSED = "processed"
+
+        fun enqueue(context: Context) {
+            val workRequest = OneTimeWorkRequestBuilder<ReanalysisWorker>()
+                .setConstraints(Constraints.Builder().setRequiresBatteryNotLow(true).build())
+                .build()
+
+            WorkManager.getInstance(context).enqueueUniqueWork(
+                WORK_NAME,
+                ExistingWorkPolicy.KEEP,
+                workRequest
+            )
+        }
+
+        /**
+         * Re-analyze the library once after the NLP engine changed
+         */
+        fun enqueueIfStale(context: Context) {
+            if (SharedPreferencesCheckpoint(context).completedVersion < LibraryReanalyzer.ANALYSIS_VERSION) {
+                enqueue(context)
+            }
+        }
+    }
+
+    override suspend fun doWork(): Result {
+        return try {
+            val database = VoiceNoteDatabase.getDatabase(applicationContext)
+            // The app's repository, so these writes and the UI's share one corpus lock
+            val repository = VoiceNoteRepository.getInstance(applicationContext)
+            if (!TfIdfModel.shared.isLoaded) {
+                repository.loadCorpusStatistics()
+            }
+
+            val checkpoint = SharedPreferencesCheckpoint(applicationContext)
+            val writer = object : LibraryReanalyzer.Writer {
+                override suspend fun write(notes: List<VoiceNote>, analyses: List<VoiceNoteAnalysis>): Int {
+                    return repository.updateAnalyses(notes, analyses)
+                }
+            }
+            val result = LibraryReanalyzer(database.voiceNoteDao(), checkpoint, writer).run { processed ->
+                setProgress(workDataOf(KEY_PROCESSED to processed))
+            }
+            checkpoint.completedVersion = LibraryReanalyzer.ANALYSIS_VERSION
+
+            Log.d(
+                TAG,
+                "Re-analyzed ${result.processed} notes in ${result.elapsedMs} ms " +
+                    "(%.1f notes/s, ${result.failed} failed)".format(result.notesPerSecond)
+            )
+            Result.success(workDataOf(KEY_PROCESSED to result.processed))
+        } catch (e: Exception) {
+            Log.e(TAG, "Re-analysis interrupted, will resume from checkpoint", e)
+            Result.retry()
+        }
+    }
+}
@@ -7,6 +7,7 @@ import android.speech.RecognitionListener
 import android.speech.RecognizerIntent
 import android.speech.SpeechRecognizer
 import android.util.Log
+import com.voicenotes.app.ai.nlp.LanguageIdentifier
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.suspendCancellableCoroutine
 import kotlinx.coroutines.withContext
@@ -18,6 +19,8 @@ class LocalSTTService(private val context: Context) {
     companion object {
         private const val TAG = "LocalSTTService"
     }
+
+    private val languageHint = LanguageHint(context)
     
     /**
      * Convert audio file to text using Android's built-in speech recognition
@@ -42,7 +45,7 @@ class LocalSTTService(private val context: Context) {
                     confidence = 0.85f,
                     duration = duration,
                     wordCount = transcript.split(" ").size,
-                    language = "en"
+                    language = LanguageIdentifier.identify(transcript).code
                 )
             } catch (e: Exception) {
                 Log.e(TAG, "Error transcribing audio file", e)
@@ -64,7 +67,7 @@ class LocalSTTService(private val context: Context) {
             val speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context)
             val intent = Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH).apply {
                 putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
-                putExtra(RecognizerIntent.EXTRA_LANGUAGE, "en-US")
+                putExtra(RecognizerIntent.EXTRA_LANGUAGE, languageHint.current.localeTag)
                 putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1)
                 putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true)
             }
@@ -121,7 +124,7 @@ class LocalSTTService(private val context: Context) {
                                 confidence = confidence,
                                 duration = 0L, // Real-time, no duration
                                 wordCount = transcript.split(" ").size,
-                                language = "en"
+                                language = languageHint.update(transcript).code
                             )
                         )
                     } else {
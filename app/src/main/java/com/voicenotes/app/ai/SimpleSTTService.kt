@@ -16,6 +16,8 @@ class SimpleSTTService(private val context: Context) {
         private const val TAG = "SimpleSTTService"
         const val REQUEST_CODE_SPEECH = 1001
     }
+
+    private val languageHint = LanguageHint(context)
     
     /**
      * Create a simple speech recognition intent
@@ -25,8 +27,8 @@ class SimpleSTTService(private val context: Context) {
             // Use free-form speech recognition
             putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
             
-            // Set language (can be changed to other languages)
-            putExtra(RecognizerIntent.EXTRA_LANGUAGE, "en-US")
+            // The language of recent notes, or the device's
+            putExtra(RecognizerIntent.EXTRA_LANGUAGE, languageHint.current.localeTag)
             
             // Prompt text shown to user
             putExtra(RecognizerIntent.EXTRA_PROMPT, "Speak now...")
@@ -48,6 +50,7 @@ class SimpleSTTService(private val context: Context) {
                 if (!results.isNullOrEmpty()) {
                     val transcript = results[0]
                     Log.d(TAG, "Speech recognized: $transcript")
+                    languageHint.update(transcript)
                     transcript
                 } else {
                     Log.w(TAG, "No speech results found")
@@ -2,6 +2,9 @@ package com.voicenotes.app.ai
 
 import android.content.Context
 import android.util.Log
+import com.voicenotes.app.ai.nlp.Language
+import com.voicenotes.app.audio.SttTranscoder
+import com.voicenotes.app.audio.UploadFormat
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
 import okhttp3.*
@@ -29,15 +32,17 @@ class SpeechToTextService(private val context: Context) {
         .readTimeout(120, TimeUnit.SECONDS)
         .writeTimeout(120, TimeUnit.SECONDS)
         .build()
+
+    private val transcoder = SttTranscoder(context)
     
     /**
-     * Convert audio file to text using various STT providers
+     * Convert audio file to text using various STT providers, in the spoken [language]
      */
     suspend fun transcribeAudio(
         audioFilePath: String,
         provider: STTProvider = STTProvider.OPENAI_WHISPER,
         apiKey: String,
-        language: String = "en"
+        language: Language = Language.DEFAULT
     ): STTResult {
         return withContext(Dispatchers.IO) {
             try {
@@ -60,22 +65,25 @@ class SpeechToTextService(private val context: Context) {
     private suspend fun transcribeWithWhisper(
         audioFilePath: String,
         apiKey: String,
-        language: String
+        language: Language
     ): STTResult {
         val audioFile = File(audioFilePath)
         if (!audioFile.exists()) {
             return STTResult.Error("Audio file not found")
         }
         
+        // Whisper decodes most containers, so the original still works if transcoding fails
+        val upload = prepareUpload(audioFile, STTProvider.OPENAI_WHISPER)
+        val uploadFile = upload?.file ?: audioFile
         val requestBody = MultipartBody.Builder()
             .setType(MultipartBody.FORM)
             .addFormDataPart(
                 "file",
-                audioFile.name,
-                audioFile.asRequestBody("audio/*".toMediaType())
+                uploadFile.name,
+                uploadFile.asRequestBody((upload?.format?.mimeType ?: "audio/*").toMediaType())
             )
             .addFormDataPart("model", "whisper-1")
-            .addFormDataPart("language", language)
+            .addFormDataPart("language", language.code)
             .addFormDataPart("response_format", "json")
             .build()
         
@@ -104,7 +112,7 @@ class SpeechToTextService(private val context: Context) {
     private suspend fun transcribeWithGoogle(
         audioFilePath: String,
         apiKey: String,
-        language: String
+        language: Language
     ): STTResult {
         // Note: This is a simplified implementation
         // For production, you'd want to use the Google Cloud Speech client library
@@ -114,15 +122,18 @@ class SpeechToTextService(private val context: Context) {
             return STTResult.Error("Audio file not found")
         }
         
+        val upload = prepareUpload(audioFile, STTProvider.GOOGLE_CLOUD)
+            ?: return STTResult.Error("Could not convert audio for Google STT")
+        
         // Convert audio to base64 for Google API
-        val audioBytes = audioFile.readBytes()
+        val audioBytes = upload.file.readBytes()
         val audioBase64 = android.util.Base64.encodeToString(audioBytes, android.util.Base64.NO_WRAP)
         
         val requestBody = JSONObject().apply {
             put("config", JSONObject().apply {
-                put("encoding", "WEBM_OPUS") // Adjust based on your audio format
-                put("sampleRateHertz", 16000)
-                put("languageCode", language)
+                put("encoding", if (upload.format == UploadFormat.OGG_OPUS) "OGG_OPUS" else "LINEAR16")
+                put("sampleRateHertz", UploadFormat.SAMPLE_RATE)
+                put("languageCode", language.localeTag)
                 put("enableAutomaticPunctuation", true)
                 put("enableWordTimeOffsets", true)
             })
@@ -156,18 +167,25 @@ class SpeechToTextService(private val context: Context) {
     private suspend fun transcribeWithAzure(
         audioFilePath: String,
         apiKey: String,
-        language: String
+        language: Language
     ): STTResult {
         val audioFile = File(audioFilePath)
         if (!audioFile.exists()) {
             return STTResult.Error("Audio file not found")
         }
         
+        val upload = prepareUpload(audioFile, STTProvider.AZURE)
+            ?: return STTResult.Error("Could not convert audio for Azure STT")
+        val contentType = if (upload.format == UploadFormat.OGG_OPUS) {
+            "audio/ogg; codecs=opus"
+        } else {
+            "audio/wav; codecs=audio/pcm; samplerate=${UploadFormat.SAMPLE_RATE}"
+        }
+        
         val request = Request.Builder()
-            .url("$AZURE_STT_URL?language=$language")
+            .url("$AZURE_STT_URL?language=${language.localeTag}")
             .addHeader("Ocp-Apim-Subscription-Key", apiKey)
-            .addHeader("Content-Type", "audio/wav")
-            .post(audioFile.asRequestBody("audio/wav".toMediaType()))
+            .post(upload.file.asRequestBody(contentType.toMediaType()))
             .build()
         
         return try {
@@ -183,6 +201,24 @@ class SpeechToTextService(private val context: Context) {
         }
     }
     
+    /**
+     * [audioFile] as 16 kHz mono in a format [provider] decodes natively, or null if
+     * it could not be converted
+     */
+    private fun prepareUpload(audioFile: File, provider: STTProvider): SttTranscoder.Prepared? {
+        val formats = when (provider) {
+            // Whisper has no raw PCM format worth its size, but takes MP4
+            STTProvider.OPENAI_WHISPER -> listOf(UploadFormat.OGG_OPUS, UploadFormat.M4A_AAC)
+            else -> listOf(UploadFormat.OGG_OPUS, UploadFormat.WAV_PCM)
+        }
+        return try {
+            transcoder.prepare(audioFile, formats)
+        } catch (e: Exception) {
+            Log.e(TAG, "Could not convert ${audioFile.name} for $provider", e)
+            null
+        }
+    }
+    
     /**
      * Mock transcription for testing
      */
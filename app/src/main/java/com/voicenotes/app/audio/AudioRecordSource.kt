@@ -0,0 +1,70 @@
+package com.voicenotes.app.audio
+
+import android.annotation.SuppressLint
+import android.media.AudioFormat
+import android.media.AudioRecord
+import android.media.MediaRecorder
+import java.io.IOException
+
+/**
+ * Microphone capture with AudioRecord, as 16-bit PCM in [format]
+ */
+class AudioRecordSource(
+    override val format: PcmFormat,
+    private val audioSource: Int = MediaRecorder.AudioSource.MIC
+) : PcmSource {
+
+    private var audioRecord: AudioRecord? = null
+
+    private val channelMask: Int
+        get() = if (format.channels == 2) AudioFormat.CHANNEL_IN_STEREO else AudioFormat.CHANNEL_IN_MONO
+
+    // Callers check RECORD_AUDIO before recording
+    @SuppressLint("MissingPermission")
+    override fun open() {
+        val minBufferBytes = AudioRecord.getMinBufferSize(format.sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT)
+        if (minBufferBytes <= 0) throw IOException("${format.sampleRate} Hz capture is not supported ($minBufferBytes)")
+
+        // Room for a few hundred milliseconds, so a late read does not lose audio inside AudioRecord
+        val bufferBytes = maxOf(minBufferBytes * 2, format.bytesPerSecond / 4)
+        val record = AudioRecord(audioSource, format.sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT, bufferBytes)
+        if (record.state != AudioRecord.STATE_INITIALIZED) {
+            record.release()
+            throw IOException("AudioRecord failed to initialize")
+        }
+        record.startRecording()
+        if (record.recordingState != AudioRecord.RECORDSTATE_RECORDING) {
+            record.release()
+            throw IOException("AudioRecord failed to start, the microphone may be in use")
+        }
+        audioRecord = record
+    }
+
+    override fun read(buffer: ShortArray, offset: Int, length: Int): Int {
+        val record = audioRecord ?: return CaptureEngine.END_OF_STREAM
+        // Errors are negative: ERROR_INVALID_OPERATION, ERROR_BAD_VALUE, ERROR_DEAD_OBJECT
+        return record.read(buffer, offset, length)
+    }
+
+    // Stopping AudioRecord releases the microphone, and its privacy indicator, while paused
+    override fun pause() {
+        audioRecord?.stop()
+    }
+
+    // If the microphone was taken meanwhile, the next read fails and ends the capture
+    override fun resume() {
+        audioRecord?.startRecording()
+    }
+
+    override fun close() {
+        audioRecord?.let {
+            try {
+                it.stop()
+            } catch (e: IllegalStateException) {
+                // Never started
+            }
+            it.release()
+        }
+        audioRecord = null
+    }
+}
@@ -1,26 +1,85 @@
 package com.voicenotes.app.audio
 
 import android.content.Context
-import android.media.MediaRecorder
-import android.os.Build
+import android.media.AudioFormat
+import android.media.AudioRecord
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.os.Process
 import android.util.Log
+import com.voicenotes.app.data.RecordingCheckpoint
+import com.voicenotes.app.data.SpeechSegment
+import com.voicenotes.app.data.VoiceNoteDatabase
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
 import java.io.File
 import java.io.IOException
 import java.text.SimpleDateFormat
 import java.util.*
 
+/**
+ * Records the microphone through a [CaptureEngine] in the [RecordingProfile] chosen
+ * in [RecordingSettings]: AudioRecord fills the capture ring, and the encoder, the
+ * [levelMeter], voice activity detection, the waveform sidecar and any consumers
+ * added with [addConsumer] each read from it on their own thread.
+ *
+ * A recording can be paused and resumed into the same file, and can continue an
+ * earlier one: the new audio is recorded to a segment file in the earlier
+ * recording's profile and appended to it by [SegmentRemuxer] when stopped.
+ *
+ * Crash-safe recordings are encoded as a [SegmentedRecording], checkpointed in the
+ * database as each segment is finished, and joined into one file when stopped. If
+ * the app is killed first, [recoverInterrupted] joins what was recorded at the
+ * next launch, losing no more than the segment that was being written.
+ */
 class AudioRecorder(private val context: Context) {
 
     companion object {
         private const val TAG = "AudioRecorder"
+
+        /** The crash-safe recording in progress, which is not to be recovered */
+        @Volatile
+        private var activeOutput: String? = null
     }
 
-    private var mediaRecorder: MediaRecorder? = null
+    private val settings = RecordingSettings(context)
+    private val checkpoints by lazy { VoiceNoteDatabase.getDatabase(context).recordingCheckpointDao() }
+
+    private var engine: CaptureEngine? = null
     private var outputFile: File? = null
     private var isRecording = false
     private var startTime: Long = 0
-    
-    fun startRecording(): String? {
+    private var pausedAt: Long = 0
+    private var pausedMs: Long = 0
+    private var appendTarget: File? = null
+    private var appendedToMs: Long = 0
+    private var waveformSeeded = false
+    private var segments: SegmentedRecording? = null
+    private val extraConsumers = LinkedHashMap<String, PcmConsumer>()
+    private var lastStats: CaptureEngine.Stats? = null
+
+    /** Input level while recording */
+    val levelMeter = LevelMeter()
+
+    private var voiceActivity: VoiceActivityDetector? = null
+
+    /**
+     * Also feed every later recording to [consumer], e.g. voice activity detection
+     * or a speech-to-text tap
+     */
+    fun addConsumer(name: String, consumer: PcmConsumer) {
+        extraConsumers[name] = consumer
+    }
+
+    fun removeConsumer(name: String) {
+        extraConsumers.remove(name)
+    }
+
+    /**
+     * Start recording; with [appendTo], the path of an earlier recording, the new
+     * audio is added to the end of it. Returns the path being recorded to, or null.
+     */
+    suspend fun startRecording(appendTo: String? = null): String? {
         return try {
             Log.d(TAG, "Starting recording...")
 
@@ -35,111 +94,321 @@ class AudioRecorder(private val context: Context) {
                 Log.d(TAG, "Created recordings directory: $created")
             }
 
+            val target = appendTo?.let { File(it) }
+            val targetInfo = target?.let { probe(it) ?: throw IOException("Cannot record onto ${it.name}: not in any recording profile") }
+            val profile = targetInfo?.first ?: settings.profile
             val timestamp = SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(Date())
-            outputFile = File(recordingsDir, "recording_$timestamp.m4a")
-
-            Log.d(TAG, "Output file: ${outputFile!!.absolutePath}")
-
-            mediaRecorder = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                MediaRecorder(context)
-            } else {
-                @Suppress("DEPRECATION")
-                MediaRecorder()
-            }.apply {
+            val prefix = if (target != null) "segment" else "recording"
+            val file = File(recordingsDir, "${prefix}_$timestamp.${profile.container.extension}")
+            outputFile = file
+            appendTarget = target
+            appendedToMs = targetInfo?.second ?: 0
+            val previousWaveform = target?.let {
                 try {
-                    setAudioSource(MediaRecorder.AudioSource.MIC)
-                    setOutputFormat(MediaRecorder.OutputFormat.MPEG_4)
-                    setAudioEncoder(MediaRecorder.AudioEncoder.AAC)
-                    setAudioEncodingBitRate(128000)
-                    setAudioSamplingRate(44100)
-                    setOutputFile(outputFile!!.absolutePath)
-
-                    Log.d(TAG, "MediaRecorder configured, preparing...")
-                    prepare()
-                    Log.d(TAG, "MediaRecorder prepared, starting...")
-                    start()
-                    Log.d(TAG, "Recording started successfully!")
-                } catch (e: Exception) {
-                    Log.e(TAG, "Error configuring MediaRecorder", e)
-                    throw e
+                    WaveformEnvelope.open(WaveformEnvelope.sidecarFor(it))
+                } catch (e: IOException) {
+                    null
                 }
             }
+            waveformSeeded = previousWaveform != null
+
+            segments = if (settings.crashSafe) segmentedRecording(file, profile, target) else null
+            activeOutput = segments?.let { file.absolutePath }
+
+            Log.d(TAG, "Output file: ${file.absolutePath} (${profile.name}${if (segments != null) ", crash-safe" else ""})")
+
+            val captureEngine = CaptureEngine(
+                AudioRecordSource(profile.format),
+                captureThreadSetup = { Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO) }
+            )
+            captureEngine.addConsumer("encoder", EncoderConsumer(file, profile, segments))
+            captureEngine.addConsumer("level", levelMeter)
+            captureEngine.addConsumer("vad", VoiceActivityDetector().also { voiceActivity = it })
+            captureEngine.addConsumer("waveform", WaveformEnvelope.Writer(WaveformEnvelope.sidecarFor(file), previousWaveform))
+            extraConsumers.forEach { (name, consumer) -> captureEngine.addConsumer(name, consumer) }
+            captureEngine.start()
+            engine = captureEngine
+            Log.d(TAG, "Recording started successfully!")
 
             isRecording = true
             startTime = System.currentTimeMillis()
-            outputFile!!.absolutePath
+            pausedMs = 0
+            (target ?: file).absolutePath
 
         } catch (e: Exception) {
             Log.e(TAG, "Failed to start recording", e)
             stopRecording()
+            segments = null
+            activeOutput = null
             null
         }
     }
     
-    fun stopRecording(): RecordingResult? {
-        return try {
-            if (isRecording && mediaRecorder != null) {
-                mediaRecorder?.apply {
-                    stop()
-                    release()
+    /**
+     * Stop recording and finish the file: join its segments, or add it to the recording
+     * it continues. Capture stops at once; the remuxing, which takes a while for a long
+     * recording, runs on [Dispatchers.IO]. Returns null if there is nothing to keep.
+     */
+    suspend fun stopRecording(): RecordingResult? {
+        val captureEngine = engine
+        if (!isRecording || captureEngine == null) return null
+        // Everything the file work needs, so a recording started meanwhile cannot change it
+        val file = outputFile
+        val recorded = segments
+        val target = appendTarget
+        val targetMs = appendedToMs
+        val seeded = waveformSeeded
+        val detector = voiceActivity
+        val stats = try {
+            captureEngine.stop()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to stop recording", e)
+            null
+        } finally {
+            engine = null
+            isRecording = false
+            segments = null
+            activeOutput = null
+            appendTarget = null
+            voiceActivity = null
+        }
+        if (stats == null) return null
+        lastStats = stats
+
+        stats.consumers.forEach {
+            if (it.overruns > 0) {
+                Log.w(TAG, "Consumer ${it.name} fell behind ${it.overruns} times, lost ${captureEngine.format.millisFor(it.droppedSamples)}ms")
+            }
+            it.error?.let { error -> Log.e(TAG, "Consumer ${it.name} failed", error) }
+        }
+        val encoder = stats.consumers.first { it.name == "encoder" }
+        // Finished segments of a failed recording are recovered on the next launch
+        if (encoder.error != null || file == null) return null
+
+        val duration = captureEngine.format.millisFor(stats.capturedSamples)
+        // Without a complete analysis the whole recording counts as speech
+        val vad = stats.consumers.first { it.name == "vad" }
+        val speechSegments = if (vad.error == null && vad.overruns == 0L) {
+            detector?.segments.orEmpty()
+        } else {
+            emptyList()
+        }
+
+        return withContext(Dispatchers.IO) {
+            try {
+                if (recorded != null) {
+                    val complete = recorded.completeSegments()
+                    if (complete.isNotEmpty()) {
+                        try {
+                            SegmentRemuxer.join(complete, file)
+                        } catch (e: Exception) {
+                            Log.e(TAG, "Could not join the segments of ${file.name}; left for the next launch", e)
+                            return@withContext null
+                        }
+                    }
+                    recorded.delete()
+                    deleteCheckpoint(file)
+                    if (complete.isEmpty()) return@withContext null
                 }
-                mediaRecorder = null
-                isRecording = false
-                
-                val duration = System.currentTimeMillis() - startTime
-                val fileSize = outputFile?.length() ?: 0
-                
-                outputFile?.let { file ->
-                    RecordingResult(
+
+                target?.let { appendSegment(it, file, speechSegments, targetMs, seeded) }
+                    ?: RecordingResult(
                         filePath = file.absolutePath,
                         duration = duration,
-                        fileSize = fileSize
+                        fileSize = file.length(),
+                        speechSegments = speechSegments
                     )
-                }
-            } else {
+            } catch (e: Exception) {
+                Log.e(TAG, "Failed to finish ${file.name}", e)
                 null
             }
+        }
+    }
+
+    /**
+     * A [SegmentedRecording] of [file] that checkpoints each finished segment. The
+     * checkpoint is written on the encoder's thread, before the next segment starts.
+     */
+    private fun segmentedRecording(file: File, profile: RecordingProfile, appendTo: File?): SegmentedRecording {
+        val startedAt = Date()
+        return SegmentedRecording(SegmentedRecording.directoryFor(file), profile.container.extension) { index, _, endMs ->
+            try {
+                checkpoints.upsertCheckpoint(
+                    RecordingCheckpoint(
+                        outputPath = file.absolutePath,
+                        profile = profile.name,
+                        appendTo = appendTo?.absolutePath,
+                        startedAt = startedAt,
+                        checkpointAt = Date(),
+                        segmentCount = index + 1,
+                        durationMs = endMs
+                    )
+                )
+            } catch (e: Exception) {
+                // The segments are still there; only recovering them at launch needs the row
+                Log.e(TAG, "Could not checkpoint ${file.name}", e)
+            }
+        }
+    }
+
+    private fun deleteCheckpoint(file: File) {
+        try {
+            checkpoints.deleteCheckpoint(file.absolutePath)
         } catch (e: Exception) {
-            e.printStackTrace()
-            mediaRecorder?.release()
-            mediaRecorder = null
-            isRecording = false
+            Log.e(TAG, "Could not delete the checkpoint of ${file.name}", e)
+        }
+    }
+
+    /**
+     * Recordings the app was killed during, joined from the segments they left and,
+     * when they were being added to an earlier recording, appended to it. A recording
+     * that cannot be joined is kept and tried again next time. Blocking: call once at
+     * launch, off the main thread.
+     */
+    fun recoverInterrupted(): List<Recovered> {
+        val recovered = ArrayList<Recovered>()
+        for (checkpoint in checkpoints.getAllCheckpoints()) {
+            if (checkpoint.outputPath == activeOutput) continue
+            val output = File(checkpoint.outputPath)
+            val segmented = SegmentedRecording(SegmentedRecording.directoryFor(output), output.extension)
+            try {
+                val complete = segmented.completeSegments()
+                val durationMs = when {
+                    // Joined when stopped, but the app was killed before the checkpoint went
+                    output.isFile -> probe(output)?.second ?: checkpoint.durationMs
+                    complete.isNotEmpty() -> SegmentRemuxer.join(complete, output)
+                    else -> null
+                }
+                if (durationMs != null) {
+                    Log.i(TAG, "Recovered ${durationMs}ms of ${output.name}, last checkpointed at ${checkpoint.checkpointAt}")
+                    // The speech analysis was lost with the process, so it all counts as speech
+                    val target = checkpoint.appendTo?.let { File(it) }?.takeIf { it.isFile }
+                    val appendedToMs = target?.let { probe(it)?.second }
+                    val result = target?.let { appendedToMs?.let { appendSegment(target, output, emptyList(), it, waveformSeeded = false) } }
+                        ?: RecordingResult(filePath = output.absolutePath, duration = durationMs, fileSize = output.length())
+                    recovered.add(Recovered(checkpoint.startedAt, result))
+                }
+                segmented.delete()
+                checkpoints.deleteCheckpoint(checkpoint.outputPath)
+            } catch (e: Exception) {
+                Log.e(TAG, "Could not recover ${output.name}", e)
+            }
+        }
+        return recovered
+    }
+
+    /**
+     * Add the segment just recorded to [target], which was [appendedToMs] long; null
+     * if that failed, in which case the segment is kept as a recording of its own.
+     * Blocking, and [target] is replaced only once the longer file is complete.
+     */
+    private fun appendSegment(
+        target: File,
+        segment: File,
+        speechSegments: List<SpeechSegment>,
+        appendedToMs: Long,
+        waveformSeeded: Boolean
+    ): RecordingResult? {
+        val segmentWaveform = WaveformEnvelope.sidecarFor(segment)
+        val targetWaveform = WaveformEnvelope.sidecarFor(target)
+        val appendedMs = try {
+            SegmentRemuxer.append(target, segment)
+        } catch (e: Exception) {
+            Log.e(TAG, "Could not append ${segment.name} to ${target.name}", e)
+            // The envelope also covers the earlier recording; it is rebuilt later
+            segmentWaveform.delete()
+            return null
+        }
+        segment.delete()
+        // An unseeded envelope covers only the segment; the whole one is rebuilt later
+        if (!waveformSeeded || !segmentWaveform.renameTo(targetWaveform)) {
+            segmentWaveform.delete()
+            targetWaveform.delete()
+        }
+        return RecordingResult(
+            filePath = target.absolutePath,
+            duration = appendedToMs + appendedMs,
+            fileSize = target.length(),
+            speechSegments = speechSegments.map { SpeechSegment(it.startMs + appendedToMs, it.endMs + appendedToMs) },
+            appendedAtMs = appendedToMs
+        )
+    }
+
+    /** The profile [file] was recorded in and its duration, or null if it matches none */
+    private fun probe(file: File): Pair<RecordingProfile, Long>? {
+        val extractor = MediaExtractor()
+        return try {
+            extractor.setDataSource(file.absolutePath)
+            val format = (0 until extractor.trackCount)
+                .map { extractor.getTrackFormat(it) }
+                .firstOrNull { it.getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true }
+                ?: return null
+            val profile = RecordingProfile.values().firstOrNull {
+                it.mimeType == format.getString(MediaFormat.KEY_MIME) &&
+                    it.sampleRate == format.getInteger(MediaFormat.KEY_SAMPLE_RATE) &&
+                    it.format.channels == format.getInteger(MediaFormat.KEY_CHANNEL_COUNT) &&
+                    it.container.extension.equals(file.extension, ignoreCase = true)
+            } ?: return null
+            profile to format.getLong(MediaFormat.KEY_DURATION) / 1000
+        } catch (e: Exception) {
+            Log.w(TAG, "Cannot read ${file.name}", e)
             null
+        } finally {
+            extractor.release()
         }
     }
-    
+
+    /**
+     * Stop capturing without ending the recording; the pause is left out of the file
+     */
+    fun pauseRecording() {
+        val captureEngine = engine ?: return
+        if (captureEngine.isPaused) return
+        captureEngine.pause()
+        pausedAt = System.currentTimeMillis()
+    }
+
+    fun resumeRecording() {
+        val captureEngine = engine ?: return
+        if (!captureEngine.isPaused) return
+        pausedMs += System.currentTimeMillis() - pausedAt
+        captureEngine.resume()
+    }
+
     fun isRecording(): Boolean = isRecording
-    
+
+    fun isPaused(): Boolean = engine?.isPaused == true
+
+    /** Audio recorded so far, not counting pauses */
     fun getCurrentDuration(): Long {
         return if (isRecording) {
-            System.currentTimeMillis() - startTime
+            val now = System.currentTimeMillis()
+            now - startTime - pausedMs - if (isPaused()) now - pausedAt else 0
         } else {
             0
         }
     }
 
     /**
-     * Test if recording is working by checking MediaRecorder state
+     * Counters of the running recording, or of the last one once stopped
+     */
+    fun captureStats(): CaptureEngine.Stats? = engine?.stats() ?: lastStats
+
+    /**
+     * Test if recording is possible by checking AudioRecord supports the profile's format
      */
     fun testRecording(): String {
         return try {
-            val testRecorder = if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-                MediaRecorder(context)
+            val format = settings.profile.format
+            val channelMask = if (format.channels == 2) AudioFormat.CHANNEL_IN_STEREO else AudioFormat.CHANNEL_IN_MONO
+            val minBufferBytes = AudioRecord.getMinBufferSize(
+                format.sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT
+            )
+            if (minBufferBytes > 0) {
+                "✅ Recording test passed - AudioRecord supports ${format.sampleRate} Hz capture"
             } else {
-                @Suppress("DEPRECATION")
-                MediaRecorder()
+                "❌ Recording test failed: AudioRecord returned $minBufferBytes"
             }
-
-            testRecorder.apply {
-                setAudioSource(MediaRecorder.AudioSource.MIC)
-                setOutputFormat(MediaRecorder.OutputFormat.MPEG_4)
-                setAudioEncoder(MediaRecorder.AudioEncoder.AAC)
-                setOutputFile("/dev/null") // Dummy output
-                prepare()
-                release()
-            }
-
-            "✅ Recording test passed - MediaRecorder is working"
         } catch (e: Exception) {
             "❌ Recording test failed: ${e.message}"
         }
@@ -148,6 +417,15 @@ class AudioRecorder(private val context: Context) {
     data class RecordingResult(
         val filePath: String,
         val duration: Long,
-        val fileSize: Long
+        val fileSize: Long,
+        val speechSegments: List<SpeechSegment> = emptyList(),
+        /** Where the new audio starts, when it was appended to an earlier recording */
+        val appendedAtMs: Long? = null
+    )
+
+    /** A recording put back together by [recoverInterrupted] */
+    data class Recovered(
+        val startedAt: Date,
+        val result: RecordingResult
     )
 }
@@ -0,0 +1,175 @@
+package com.voicenotes.app.audio
+
+import android.annotation.SuppressLint
+import android.media.MediaCodec
+import android.media.MediaCodecInfo
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import java.io.File
+import java.nio.ByteOrder
+
+/**
+ * Encodes captured PCM with MediaCodec and writes it with MediaMuxer, in the codec
+ * and container of a [RecordingProfile]. Codec buffers and the BufferInfo are
+ * reused, so encoding a block allocates nothing.
+ *
+ * With [segments] the output goes to a [SegmentedRecording] instead of
+ * [outputFile]: every [SegmentedRecording.segmentMs] the muxer is finished and a new
+ * one started on the next segment, while the encoder runs on. Every frame is a sync
+ * frame in the speech codecs used, so a segment can start anywhere.
+ */
+class EncoderConsumer(
+    private val outputFile: File,
+    private val profile: RecordingProfile,
+    private val segments: SegmentedRecording? = null
+) : PcmConsumer {
+
+    private var codec: MediaCodec? = null
+    private var muxer: MediaMuxer? = null
+    private var track = -1
+    private var muxerStarted = false
+    private val bufferInfo = MediaCodec.BufferInfo()
+    private var format: PcmFormat? = null
+    private var queuedSamples = 0L
+    private var outputFormat: MediaFormat? = null
+    private var segmentIndex = 0
+    private var segmentStartUs = 0L
+
+    override fun onStart(format: PcmFormat) {
+        this.format = format
+        codec = MediaCodec.createEncoderByType(profile.mimeType).apply {
+            configure(mediaFormat(profile, format), null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+            start()
+        }
+        muxer = openMuxer()
+    }
+
+    private fun openMuxer(): MediaMuxer {
+        val file = segments?.partialFile(segmentIndex) ?: outputFile
+        return MediaMuxer(file.absolutePath, muxerFormat(profile.container))
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        val codec = codec ?: return
+        var position = offset
+        val end = offset + length
+        while (position < end) {
+            val index = codec.dequeueInputBuffer(INPUT_TIMEOUT_US)
+            if (index < 0) {
+                drain(endOfStream = false)
+                continue
+            }
+            val input = codec.getInputBuffer(index) ?: continue
+            input.clear()
+            input.order(ByteOrder.nativeOrder())
+            val count = minOf(end - position, input.remaining() / PcmFormat.BYTES_PER_SAMPLE)
+            for (i in position until position + count) input.putShort(samples[i])
+            codec.queueInputBuffer(index, 0, count * PcmFormat.BYTES_PER_SAMPLE, presentationTimeUs(), 0)
+            queuedSamples += count
+            position += count
+        }
+        drain(endOfStream = false)
+    }
+
+    override fun onStop(droppedSamples: Long) {
+        val codec = codec ?: return
+        try {
+            var index = codec.dequeueInputBuffer(INPUT_TIMEOUT_US)
+            while (index < 0) {
+                drain(endOfStream = false)
+                index = codec.dequeueInputBuffer(INPUT_TIMEOUT_US)
+            }
+            codec.queueInputBuffer(index, 0, 0, presentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+            drain(endOfStream = true)
+        } finally {
+            codec.stop()
+            codec.release()
+            this.codec = null
+            closeMuxer(presentationTimeUs())
+        }
+    }
+
+    /** Finish the file being written, and with [segments] hand it over as a segment ending at [endUs] */
+    private fun closeMuxer(endUs: Long) {
+        val hadSamples = muxerStarted
+        muxer?.let {
+            if (muxerStarted) it.stop()
+            it.release()
+        }
+        muxer = null
+        muxerStarted = false
+        segments?.let {
+            if (hadSamples) it.complete(segmentIndex, endUs / 1000) else it.discard(segmentIndex)
+        }
+    }
+
+    private fun startNextSegment(startUs: Long) {
+        closeMuxer(startUs)
+        segmentIndex++
+        segmentStartUs = startUs
+        muxer = openMuxer().also {
+            track = it.addTrack(outputFormat!!)
+            it.start()
+        }
+        muxerStarted = true
+    }
+
+    private fun presentationTimeUs(): Long {
+        val format = format ?: return 0
+        return queuedSamples * 1_000_000L / format.samplesPerSecond
+    }
+
+    private fun drain(endOfStream: Boolean) {
+        val codec = codec ?: return
+        while (true) {
+            val muxer = muxer ?: return
+            val index = codec.dequeueOutputBuffer(bufferInfo, if (endOfStream) OUTPUT_TIMEOUT_US else 0)
+            when {
+                index == MediaCodec.INFO_TRY_AGAIN_LATER -> if (!endOfStream) return
+                index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED -> {
+                    outputFormat = codec.outputFormat
+                    track = muxer.addTrack(codec.outputFormat)
+                    muxer.start()
+                    muxerStarted = true
+                }
+                index >= 0 -> {
+                    val output = codec.getOutputBuffer(index)
+                    val isConfig = bufferInfo.flags and MediaCodec.BUFFER_FLAG_CODEC_CONFIG != 0
+                    if (output != null && muxerStarted && !isConfig && bufferInfo.size > 0) {
+                        val timeUs = bufferInfo.presentationTimeUs
+                        if (segments != null && timeUs - segmentStartUs >= segments.segmentMs * 1000) startNextSegment(timeUs)
+                        // Each segment starts at zero
+                        bufferInfo.presentationTimeUs = timeUs - segmentStartUs
+                        this.muxer!!.writeSampleData(track, output, bufferInfo)
+                    }
+                    codec.releaseOutputBuffer(index, false)
+                    if (bufferInfo.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) return
+                }
+            }
+        }
+    }
+
+    companion object {
+        private const val INPUT_TIMEOUT_US = 10_000L
+        private const val OUTPUT_TIMEOUT_US = 10_000L
+
+        /** Encoder configuration for [profile], capturing in [format] */
+        fun mediaFormat(profile: RecordingProfile, format: PcmFormat = profile.format): MediaFormat =
+            MediaFormat.createAudioFormat(profile.mimeType, format.sampleRate, format.channels).apply {
+                if (profile.mimeType == MediaFormat.MIMETYPE_AUDIO_AAC) {
+                    setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC)
+                }
+                setInteger(MediaFormat.KEY_BIT_RATE, profile.bitRate)
+                setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, format.bytesPerSecond / 10)
+            }
+
+        /** The MediaMuxer output format writing [container] */
+        // Profiles are only offered from their minSdk
+        @SuppressLint("InlinedApi")
+        fun muxerFormat(container: RecordingProfile.Container): Int = when (container) {
+            RecordingProfile.Container.MPEG_4 -> MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4
+            RecordingProfile.Container.THREE_GPP -> MediaMuxer.OutputFormat.MUXER_OUTPUT_3GPP
+            RecordingProfile.Container.OGG -> MediaMuxer.OutputFormat.MUXER_OUTPUT_OGG
+        }
+    }
+}
@@ -55,6 +55,23 @@ class FileProcessor(private val context: Context) {
         }
     }
     
+    /**
+     * Decode [filePath] once and write its waveform sidecar. Blocking; call off the
+     * main thread.
+     */
+    fun writeWaveform(filePath: String): Boolean {
+        val audioFile = File(filePath)
+        return try {
+            val writer = WaveformEnvelope.Writer(WaveformEnvelope.sidecarFor(audioFile))
+            MediaDecoderSource(audioFile).drainTo(writer)
+            writer.error?.let { throw it }
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "Error writing waveform for ${audioFile.name}", e)
+            false
+        }
+    }
+    
     /**
      * Get file extension from filename
      */
@@ -0,0 +1,117 @@
+package com.voicenotes.app.audio
+
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import java.io.File
+import java.io.IOException
+import java.nio.ByteOrder
+import java.nio.ShortBuffer
+
+/**
+ * Decodes the audio track of a recording (AAC, AMR, Opus, anything MediaCodec
+ * handles) to 16-bit PCM a block at a time. Samples are copied straight out of the
+ * codec's own output buffers, so memory stays the same for a minute or for hours.
+ */
+class MediaDecoderSource(private val file: File) : PcmSource {
+
+    private val extractor = MediaExtractor()
+    private var codec: MediaCodec? = null
+    private val bufferInfo = MediaCodec.BufferInfo()
+    private var inputDone = false
+
+    // The output buffer being copied out, with its read position in samples
+    private var outputIndex = -1
+    private var output: ShortBuffer? = null
+    private var outputPosition = 0
+    private var outputSamples = 0
+
+    override val format: PcmFormat
+
+    init {
+        try {
+            extractor.setDataSource(file.absolutePath)
+            val track = (0 until extractor.trackCount).firstOrNull {
+                extractor.getTrackFormat(it).getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true
+            } ?: throw IOException("No audio track in ${file.name}")
+            extractor.selectTrack(track)
+            val trackFormat = extractor.getTrackFormat(track)
+            format = PcmFormat(
+                trackFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                trackFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+            )
+            codec = MediaCodec.createDecoderByType(trackFormat.getString(MediaFormat.KEY_MIME)!!).apply {
+                configure(trackFormat, null, null, 0)
+            }
+        } catch (e: Exception) {
+            extractor.release()
+            throw e as? IOException ?: IOException("Cannot decode ${file.name}", e)
+        }
+    }
+
+    override fun open() {
+        codec?.start()
+    }
+
+    override fun read(buffer: ShortArray, offset: Int, length: Int): Int {
+        val codec = codec ?: return CaptureEngine.END_OF_STREAM
+        while (outputIndex < 0) {
+            if (bufferInfo.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0) return CaptureEngine.END_OF_STREAM
+            if (!inputDone) queueInput(codec)
+            val index = codec.dequeueOutputBuffer(bufferInfo, TIMEOUT_US)
+            if (index >= 0) {
+                if (bufferInfo.size > 0) {
+                    outputIndex = index
+                    output = codec.getOutputBuffer(index)!!.order(ByteOrder.nativeOrder()).asShortBuffer().also {
+                        it.position(bufferInfo.offset / PcmFormat.BYTES_PER_SAMPLE)
+                    }
+                    outputPosition = 0
+                    outputSamples = bufferInfo.size / PcmFormat.BYTES_PER_SAMPLE
+                } else {
+                    codec.releaseOutputBuffer(index, false)
+                }
+            }
+        }
+
+        val count = minOf(length, outputSamples - outputPosition)
+        output!!.get(buffer, offset, count)
+        outputPosition += count
+        if (outputPosition == outputSamples) {
+            codec.releaseOutputBuffer(outputIndex, false)
+            outputIndex = -1
+            output = null
+        }
+        return count
+    }
+
+    private fun queueInput(codec: MediaCodec) {
+        val index = codec.dequeueInputBuffer(TIMEOUT_US)
+        if (index < 0) return
+        val input = codec.getInputBuffer(index)!!
+        val size = extractor.readSampleData(input, 0)
+        if (size < 0) {
+            codec.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+            inputDone = true
+        } else {
+            codec.queueInputBuffer(index, 0, size, extractor.sampleTime, 0)
+            extractor.advance()
+        }
+    }
+
+    override fun close() {
+        codec?.let {
+            try {
+                it.stop()
+            } catch (e: IllegalStateException) {
+                // Never started
+            }
+            it.release()
+        }
+        codec = null
+        extractor.release()
+    }
+
+    private companion object {
+        const val TIMEOUT_US = 10_000L
+    }
+}
@@ -0,0 +1,54 @@
+package com.voicenotes.app.audio
+
+import android.content.Context
+import android.content.SharedPreferences
+import android.media.MediaCodecList
+import android.os.Build
+
+/**
+ * The [RecordingProfile] new recordings use. Until one is chosen it is the default
+ * for this device, so a later OS update that adds an encoder can still improve it.
+ * Also whether recordings are made crash-safe, as a [SegmentedRecording].
+ */
+class RecordingSettings(context: Context) {
+
+    private val prefs: SharedPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+
+    var profile: RecordingProfile
+        get() = RecordingProfile.fromName(prefs.getString(KEY_PROFILE, null))?.takeIf { isSupported(it) }
+            ?: RecordingProfile.defaultFor(::isSupported)
+        set(value) {
+            prefs.edit().putString(KEY_PROFILE, value.name).apply()
+        }
+
+    /** Record in short segments that survive the app being killed, at the cost of joining them on stop */
+    var crashSafe: Boolean
+        get() = prefs.getBoolean(KEY_CRASH_SAFE, true)
+        set(value) {
+            prefs.edit().putBoolean(KEY_CRASH_SAFE, value).apply()
+        }
+
+    /** Profiles this device can record, in display order */
+    val supportedProfiles: List<RecordingProfile>
+        get() = RecordingProfile.values().filter { isSupported(it) }
+
+    companion object {
+        private const val PREFS_NAME = "recording_preferences"
+        private const val KEY_PROFILE = "profile"
+        private const val KEY_CRASH_SAFE = "crash_safe"
+
+        private val supported = HashMap<RecordingProfile, Boolean>()
+
+        /**
+         * Whether this device has an encoder for [profile] and a muxer for its
+         * container; asked of MediaCodecList once per profile
+         */
+        fun isSupported(profile: RecordingProfile): Boolean = synchronized(supported) {
+            supported.getOrPut(profile) {
+                Build.VERSION.SDK_INT >= profile.minSdk &&
+                    MediaCodecList(MediaCodecList.REGULAR_CODECS)
+                        .findEncoderForFormat(EncoderConsumer.mediaFormat(profile)) != null
+            }
+        }
+    }
+}
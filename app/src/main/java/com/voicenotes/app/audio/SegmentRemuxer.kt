@@ -0,0 +1,157 @@
+package com.voicenotes.app.audio
+
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import android.util.Log
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * Appends a newly recorded segment to an existing recording, and joins the
+ * segments of a [SegmentedRecording] into one file, without re-encoding.
+ *
+ * MPEG-4 and 3GP files are extended by [Mp4Appender], which adds the new frames
+ * without rewriting the old ones. Anything it cannot handle, Ogg in particular, has
+ * the encoded frames of every file copied by MediaExtractor into a new file with
+ * MediaMuxer. Either way the result is written next to the original and renamed
+ * over it, so a crash mid-append leaves the original whole.
+ */
+object SegmentRemuxer {
+
+    private const val TAG = "SegmentRemuxer"
+    private const val DEFAULT_BUFFER_BYTES = 64 * 1024
+
+    /**
+     * Append the audio of [segment] to [target]; returns the appended duration in
+     * milliseconds. Throws, leaving [target] as it was, if they cannot be combined.
+     */
+    fun append(target: File, segment: File): Long {
+        val start = System.currentTimeMillis()
+        val output = File(target.path + ".partial")
+        try {
+            if (isMpeg4(target)) {
+                target.copyTo(output, overwrite = true)
+                try {
+                    val appended = Mp4Appender.append(output, segment)
+                    if (!output.renameTo(target)) throw IOException("Could not replace ${target.name}")
+                    Log.d(TAG, "Appended ${appended.durationMs}ms (${appended.samples} frames) to ${target.name} in ${System.currentTimeMillis() - start}ms")
+                    return appended.durationMs
+                } catch (e: Mp4Appender.Unsupported) {
+                    Log.w(TAG, "Cannot append to ${target.name} without remuxing: ${e.message}")
+                }
+            }
+
+            val durationsUs = concatenate(listOf(target, segment), output)
+            if (!output.renameTo(target)) throw IOException("Could not replace ${target.name}")
+            Log.d(TAG, "Remuxed ${target.name} with ${durationsUs[1] / 1000}ms appended in ${System.currentTimeMillis() - start}ms")
+            return durationsUs[1] / 1000
+        } finally {
+            output.delete()
+        }
+    }
+
+    /**
+     * Join [segments], in order, into a new file at [output]; returns its duration in
+     * milliseconds. The segments are left as they are, and [output] only appears once
+     * complete, so an interrupted join can simply be run again.
+     */
+    fun join(segments: List<File>, output: File): Long {
+        require(segments.isNotEmpty()) { "Nothing to join" }
+        val start = System.currentTimeMillis()
+        val partial = File(output.path + ".partial")
+        try {
+            var durationMs = -1L
+            if (isMpeg4(output)) {
+                segments[0].copyTo(partial, overwrite = true)
+                try {
+                    Mp4Appender.append(partial, segments.drop(1))
+                    durationMs = Mp4Appender.durationMs(partial)
+                } catch (e: Mp4Appender.Unsupported) {
+                    Log.w(TAG, "Cannot join the segments of ${output.name} in place: ${e.message}")
+                }
+            }
+            if (durationMs < 0) durationMs = concatenate(segments, partial).sum() / 1000
+            if (!partial.renameTo(output)) throw IOException("Could not write ${output.name}")
+            Log.d(TAG, "Joined ${segments.size} segments into ${output.name}, ${durationMs}ms, in ${System.currentTimeMillis() - start}ms")
+            return durationMs
+        } finally {
+            partial.delete()
+        }
+    }
+
+    private fun isMpeg4(file: File): Boolean = RecordingProfile.Container.values().any {
+        it != RecordingProfile.Container.OGG && it.extension.equals(file.extension, ignoreCase = true)
+    }
+
+    /** Copy the frames of each of [files] in turn into [output]; returns each one's duration in µs */
+    private fun concatenate(files: List<File>, output: File): List<Long> {
+        var muxer: MediaMuxer? = null
+        try {
+            // One extractor at a time: a long recording has many segments
+            val format = withAudioTrack(files[0]) { _, trackFormat -> trackFormat }
+            val mime = format.getString(MediaFormat.KEY_MIME)!!
+            muxer = MediaMuxer(output.absolutePath, EncoderConsumer.muxerFormat(RecordingProfile.Container.forMime(mime)))
+            val track = muxer.addTrack(format)
+            muxer.start()
+
+            val maxInput = if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE) else 0
+            val buffer = ByteBuffer.allocate(maxOf(maxInput, DEFAULT_BUFFER_BYTES))
+            val info = MediaCodec.BufferInfo()
+            // The next file starts one frame after the last one's last
+            val frameUs = format.getInteger(MediaFormat.KEY_SAMPLE_RATE).let { rate ->
+                RecordingProfile.values().firstOrNull { it.mimeType == mime }?.frameSamples?.let { it * 1_000_000L / rate } ?: 0L
+            }
+            var offsetUs = 0L
+            val durationsUs = ArrayList<Long>(files.size)
+            for (file in files) {
+                val endUs = withAudioTrack(file) { extractor, other ->
+                    if (other.getString(MediaFormat.KEY_MIME) != mime ||
+                        other.getInteger(MediaFormat.KEY_SAMPLE_RATE) != format.getInteger(MediaFormat.KEY_SAMPLE_RATE) ||
+                        other.getInteger(MediaFormat.KEY_CHANNEL_COUNT) != format.getInteger(MediaFormat.KEY_CHANNEL_COUNT)
+                    ) {
+                        throw IOException("${file.name} is not in the same format as ${files[0].name}")
+                    }
+                    var endUs = offsetUs
+                    while (true) {
+                        val size = extractor.readSampleData(buffer, 0)
+                        if (size < 0) break
+                        val timeUs = offsetUs + extractor.sampleTime
+                        info.set(0, size, timeUs, extractor.sampleFlags and MediaCodec.BUFFER_FLAG_KEY_FRAME)
+                        muxer.writeSampleData(track, buffer, info)
+                        endUs = timeUs
+                        extractor.advance()
+                    }
+                    endUs
+                }
+                durationsUs.add(endUs + frameUs - offsetUs)
+                offsetUs = endUs + frameUs
+            }
+            muxer.stop()
+            return durationsUs
+        } finally {
+            try {
+                muxer?.release()
+            } catch (e: IllegalStateException) {
+                // Never started
+            }
+        }
+    }
+
+    /** Run [block] with an extractor of [file] that has its audio track selected, and that track's format */
+    private fun <T> withAudioTrack(file: File, block: (MediaExtractor, MediaFormat) -> T): T {
+        val extractor = MediaExtractor()
+        try {
+            extractor.setDataSource(file.absolutePath)
+            val trackIndex = (0 until extractor.trackCount).firstOrNull {
+                extractor.getTrackFormat(it).getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true
+            } ?: throw IOException("No audio in ${file.name}")
+            extractor.selectTrack(trackIndex)
+            return block(extractor, extractor.getTrackFormat(trackIndex))
+        } finally {
+            extractor.release()
+        }
+    }
+}
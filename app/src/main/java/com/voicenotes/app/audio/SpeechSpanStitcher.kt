@@ -0,0 +1,93 @@
+package com.voicenotes.app.audio
+
+import android.media.MediaCodec
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.media.MediaMuxer
+import android.util.Log
+import com.voicenotes.app.data.SpeechSegment
+import java.io.File
+import java.nio.ByteBuffer
+
+/**
+ * Cuts a recording down to its speech: the encoded audio frames inside each segment
+ * are copied, without re-encoding, into a new file of the same container with the
+ * gaps closed up.
+ * The returned [SpeechTimeline] maps times in the new file back to the original.
+ */
+object SpeechSpanStitcher {
+
+    private const val TAG = "SpeechSpanStitcher"
+
+    /** Below this share of silence trimming is not worth a second file */
+    private const val MIN_SAVING = 0.1
+    private const val DEFAULT_BUFFER_BYTES = 64 * 1024
+
+    class Stitched(val file: File, val timeline: SpeechTimeline)
+
+    /**
+     * Write the speech of [input] to [output]; null when there is nothing worth
+     * cutting or the file cannot be remuxed, in which case [input] should be sent whole
+     */
+    fun stitch(input: File, segments: List<SpeechSegment>, totalMs: Long, output: File): Stitched? {
+        if (segments.isEmpty()) return null
+        val timeline = SpeechTimeline(segments)
+        if (timeline.keptFraction(totalMs) > 1 - MIN_SAVING) return null
+
+        val extractor = MediaExtractor()
+        var muxer: MediaMuxer? = null
+        return try {
+            extractor.setDataSource(input.absolutePath)
+            val trackIndex = (0 until extractor.trackCount).firstOrNull {
+                extractor.getTrackFormat(it).getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true
+            } ?: return null
+            val format = extractor.getTrackFormat(trackIndex)
+            extractor.selectTrack(trackIndex)
+
+            val container = RecordingProfile.Container.forMime(format.getString(MediaFormat.KEY_MIME)!!)
+            muxer = MediaMuxer(output.absolutePath, EncoderConsumer.muxerFormat(container))
+            val track = muxer.addTrack(format)
+            muxer.start()
+
+            val maxInput = if (format.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+                format.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)
+            } else {
+                DEFAULT_BUFFER_BYTES
+            }
+            val buffer = ByteBuffer.allocate(maxOf(maxInput, DEFAULT_BUFFER_BYTES))
+            val info = MediaCodec.BufferInfo()
+            var stitchedStartUs = 0L
+            for (segment in segments) {
+                val startUs = segment.startMs * 1000
+                val endUs = segment.endMs * 1000
+                extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC)
+                while (true) {
+                    val size = extractor.readSampleData(buffer, 0)
+                    if (size < 0) break
+                    val timeUs = extractor.sampleTime
+                    if (timeUs >= endUs) break
+                    if (timeUs >= startUs) {
+                        info.set(0, size, stitchedStartUs + (timeUs - startUs), extractor.sampleFlags and MediaCodec.BUFFER_FLAG_KEY_FRAME)
+                        muxer.writeSampleData(track, buffer, info)
+                    }
+                    extractor.advance()
+                }
+                stitchedStartUs += endUs - startUs
+            }
+            muxer.stop()
+            Log.d(TAG, "Kept ${timeline.stitchedMs} of ${totalMs}ms in ${segments.size} segments, ${output.length()} of ${input.length()} bytes")
+            Stitched(output, timeline)
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to cut ${input.name} to its speech", e)
+            output.delete()
+            null
+        } finally {
+            extractor.release()
+            try {
+                muxer?.release()
+            } catch (e: IllegalStateException) {
+                // Never started
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.voicenotes.app.audio
+
+import android.content.Context
+import android.media.MediaExtractor
+import android.media.MediaFormat
+import android.util.Log
+import java.io.File
+
+/**
+ * Prepares audio for a speech-to-text upload: decoded with MediaCodec, downmixed and
+ * resampled to 16 kHz mono by [PcmResampler], and written in the first
+ * [UploadFormat] the provider accepts and this device can encode. Files already in
+ * that shape are sent as they are; everything else goes through a [TranscodeCache].
+ */
+class SttTranscoder(context: Context) {
+
+    companion object {
+        private const val TAG = "SttTranscoder"
+        private const val MIME_RAW = "audio/raw"
+    }
+
+    private val cache = TranscodeCache(File(context.cacheDir, "stt"))
+
+    class Prepared(val file: File, val format: UploadFormat)
+
+    /**
+     * [source] in the first of [formats] this device can write. Blocking; throws if
+     * the source cannot be decoded or the output written.
+     */
+    fun prepare(source: File, formats: List<UploadFormat>): Prepared {
+        val format = formats.firstOrNull { isSupported(it) } ?: UploadFormat.WAV_PCM
+        if (isAlready(source, format)) return Prepared(source, format)
+
+        val start = System.currentTimeMillis()
+        val file = cache.getOrPut(source, format.name, format.extension) { output ->
+            val sink = format.profile?.let { EncoderConsumer(output, it) } ?: WavWriter(output)
+            MediaDecoderSource(source).drainTo(PcmResampler(UploadFormat.SAMPLE_RATE, sink))
+        }
+        Log.d(TAG, "${source.name} as ${format.name}: ${file.length()} of ${source.length()} bytes in ${System.currentTimeMillis() - start}ms")
+        return Prepared(file, format)
+    }
+
+    private fun isSupported(format: UploadFormat): Boolean =
+        format.profile?.let { RecordingSettings.isSupported(it) } ?: true
+
+    /** Whether [source] already has the codec, rate and channels of [format] */
+    private fun isAlready(source: File, format: UploadFormat): Boolean {
+        val extractor = MediaExtractor()
+        return try {
+            extractor.setDataSource(source.absolutePath)
+            val track = (0 until extractor.trackCount)
+                .map { extractor.getTrackFormat(it) }
+                .firstOrNull { it.getString(MediaFormat.KEY_MIME)?.startsWith("audio/") == true }
+                ?: return false
+            val mime = format.profile?.mimeType ?: MIME_RAW
+            source.extension.equals(format.extension, ignoreCase = true) &&
+                track.getString(MediaFormat.KEY_MIME) == mime &&
+                track.getInteger(MediaFormat.KEY_SAMPLE_RATE) == UploadFormat.SAMPLE_RATE &&
+                track.getInteger(MediaFormat.KEY_CHANNEL_COUNT) == 1
+        } catch (e: Exception) {
+            false
+        } finally {
+            extractor.release()
+        }
+    }
+}
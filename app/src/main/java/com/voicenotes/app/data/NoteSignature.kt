@@ -0,0 +1,24 @@
+package com.voicenotes.app.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * MinHash signature of a note's transcript, for near-duplicate detection; empty
+ * when the transcript has no words to compare
+ */
+@Entity(tableName = "note_signatures")
+data class NoteSignature(
+    @PrimaryKey
+    val noteId: Long,
+    val signature: ByteArray
+) {
+    // Compare signature contents, not array identity
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is NoteSignature) return false
+        return noteId == other.noteId && signature.contentEquals(other.signature)
+    }
+
+    override fun hashCode(): Int = 31 * noteId.hashCode() + signature.contentHashCode()
+}
@@ -0,0 +1,28 @@
+package com.voicenotes.app.data
+
+import androidx.room.*
+
+@Dao
+interface NoteSignatureDao {
+
+    @Query("SELECT * FROM note_signatures")
+    suspend fun getAllSignatures(): List<NoteSignature>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertSignature(signature: NoteSignature)
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertSignatures(signatures: List<NoteSignature>)
+
+    @Query("DELETE FROM note_signatures WHERE noteId = :noteId")
+    suspend fun deleteSignature(noteId: Long)
+
+    /**
+     * Transcribed notes recorded before signatures existed
+     */
+    @Query(
+        "SELECT * FROM voice_notes WHERE transcript IS NOT NULL AND TRIM(transcript) != '' " +
+            "AND id NOT IN (SELECT noteId FROM note_signatures)"
+    )
+    suspend fun getNotesWithoutSignature(): List<VoiceNote>
+}
@@ -0,0 +1,15 @@
+package com.voicenotes.app.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Content-word counts of a note's transcript, encoded as "term count term count ...",
+ * from which the related-notes index is rebuilt at startup
+ */
+@Entity(tableName = "note_term_vectors")
+data class NoteTermVector(
+    @PrimaryKey
+    val noteId: Long,
+    val terms: String
+)
@@ -0,0 +1,28 @@
+package com.voicenotes.app.data
+
+import androidx.room.*
+
+@Dao
+interface NoteTermVectorDao {
+
+    @Query("SELECT * FROM note_term_vectors")
+    suspend fun getAllTermVectors(): List<NoteTermVector>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertTermVector(vector: NoteTermVector)
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    suspend fun upsertTermVectors(vectors: List<NoteTermVector>)
+
+    @Query("DELETE FROM note_term_vectors WHERE noteId = :noteId")
+    suspend fun deleteTermVector(noteId: Long)
+
+    /**
+     * Transcribed notes recorded before term vectors existed
+     */
+    @Query(
+        "SELECT * FROM voice_notes WHERE transcript IS NOT NULL AND TRIM(transcript) != '' " +
+            "AND id NOT IN (SELECT noteId FROM note_term_vectors)"
+    )
+    suspend fun getNotesWithoutTermVector(): List<VoiceNote>
+}
@@ -0,0 +1,26 @@
+package com.voicenotes.app.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+import java.util.Date
+
+/**
+ * Progress of a recording in progress, updated as each segment of its
+ * [com.voicenotes.app.audio.SegmentedRecording] is finished and deleted once the
+ * recording is saved. A row left behind at launch is a recording the process died
+ * during, to be recovered from its segments.
+ */
+@Entity(tableName = "recording_checkpoints")
+data class RecordingCheckpoint(
+    /** Where the recording is written once its segments are joined */
+    @PrimaryKey
+    val outputPath: String,
+    val profile: String,
+    /** The earlier recording this one is being added to, if any */
+    val appendTo: String? = null,
+    val startedAt: Date,
+    val checkpointAt: Date,
+    val segmentCount: Int,
+    /** Audio in the finished segments */
+    val durationMs: Long
+)
@@ -0,0 +1,20 @@
+package com.voicenotes.app.data
+
+import androidx.room.*
+
+/**
+ * Blocking, unlike the other DAOs: checkpoints are written from the recording's own
+ * threads, and read once at launch before anything else touches them.
+ */
+@Dao
+interface RecordingCheckpointDao {
+
+    @Query("SELECT * FROM recording_checkpoints ORDER BY startedAt")
+    fun getAllCheckpoints(): List<RecordingCheckpoint>
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    fun upsertCheckpoint(checkpoint: RecordingCheckpoint)
+
+    @Query("DELETE FROM recording_checkpoints WHERE outputPath = :outputPath")
+    fun deleteCheckpoint(outputPath: String)
+}
@@ -0,0 +1,14 @@
+package com.voicenotes.app.data
+
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Number of transcribed notes that contain a term, for TF-IDF keyword ranking
+ */
+@Entity(tableName = "term_stats")
+data class TermStat(
+    @PrimaryKey
+    val term: String,
+    val documentFrequency: Int
+)
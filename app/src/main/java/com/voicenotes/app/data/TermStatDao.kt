@@ -0,0 +1,53 @@
+package com.voicenotes.app.data
+
+import androidx.room.*
+
+@Dao
+abstract class TermStatDao {
+
+    @Query("SELECT * FROM term_stats")
+    abstract suspend fun getAllTermStats(): List<TermStat>
+
+    @Query("SELECT COUNT(*) FROM term_stats")
+    abstract suspend fun getTermStatsCount(): Int
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    abstract suspend fun insertIgnore(stats: List<TermStat>)
+
+    @Query("UPDATE term_stats SET documentFrequency = documentFrequency + :delta WHERE term IN (:terms)")
+    abstract suspend fun adjust(terms: List<String>, delta: Int)
+
+    @Query("DELETE FROM term_stats WHERE documentFrequency <= 0")
+    abstract suspend fun deleteUnused()
+
+    @Query("DELETE FROM term_stats")
+    abstract suspend fun deleteAll()
+
+    /**
+     * Apply one note change in a single transaction: [added] terms gain a note,
+     * [removed] terms lose one. Only the changed rows are touched.
+     */
+    @Transaction
+    open suspend fun applyDelta(added: Collection<String>, removed: Collection<String>) {
+        added.chunked(MAX_BIND_ARGS).forEach { chunk ->
+            insertIgnore(chunk.map { TermStat(it, 0) })
+            adjust(chunk, 1)
+        }
+        removed.chunked(MAX_BIND_ARGS).forEach { chunk -> adjust(chunk, -1) }
+        if (removed.isNotEmpty()) deleteUnused()
+    }
+
+    /**
+     * Replace all statistics, used once to bootstrap from existing notes
+     */
+    @Transaction
+    open suspend fun replaceAll(stats: List<TermStat>) {
+        deleteAll()
+        stats.chunked(MAX_BIND_ARGS).forEach { insertIgnore(it) }
+    }
+
+    companion object {
+        // Stay below SQLite's default limit of 999 bound parameters per statement
+        private const val MAX_BIND_ARGS = 500
+    }
+}
@@ -1,5 +1,6 @@
 package com.voicenotes.app.data
 
+import androidx.room.ColumnInfo
 import androidx.room.Entity
 import androidx.room.PrimaryKey
 import java.util.Date
@@ -16,5 +17,13 @@ data class VoiceNote(
     val transcript: String? = null,
     val summary: String? = null,
     val keyPoints: List<String> = emptyList(),
-    val isProcessing: Boolean = false
+    val isProcessing: Boolean = false,
+    @ColumnInfo(defaultValue = "[]")
+    val chapters: List<Chapter> = emptyList(),
+    /** Speech found in the recording; empty when it was never analyzed, e.g. imported files */
+    @ColumnInfo(defaultValue = "[]")
+    val speechSegments: List<SpeechSegment> = emptyList(),
+    val speakingPatterns: SpeakingPatterns? = null,
+    /** Null for notes summarized before the source was recorded, treated as local */
+    val summarySource: SummarySource? = null
 )
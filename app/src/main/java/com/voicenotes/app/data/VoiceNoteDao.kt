@@ -26,4 +26,25 @@ interface VoiceNoteDao {
     
     @Query("SELECT COUNT(*) FROM voice_notes")
     suspend fun getVoiceNotesCount(): Int
+
+    @Query("SELECT COUNT(*) FROM voice_notes WHERE transcript IS NOT NULL AND TRIM(transcript) != ''")
+    suspend fun getTranscribedNotesCount(): Int
+
+    @Query("SELECT transcript FROM voice_notes WHERE transcript IS NOT NULL AND TRIM(transcript) != ''")
+    suspend fun getAllTranscripts(): List<String>
+
+    /**
+     * One page of transcribed notes in id order, for keyset paging through the library
+     */
+    @Query("SELECT * FROM voice_notes WHERE id > :afterId AND transcript IS NOT NULL AND TRIM(transcript) != '' ORDER BY id LIMIT :limit")
+    suspend fun getTranscribedNotesAfter(afterId: Long, limit: Int): List<VoiceNote>
+
+    @Query("SELECT * FROM voice_notes WHERE id IN (:ids)")
+    suspend fun getVoiceNotesByIds(ids: List<Long>): List<VoiceNote>
+
+    /**
+     * Write summaries and key points for several notes in one transaction
+     */
+    @Update(entity = VoiceNote::class)
+    suspend fun updateAnalyses(analyses: List<VoiceNoteAnalysis>)
 }
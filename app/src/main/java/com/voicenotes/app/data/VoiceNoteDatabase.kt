@@ -4,19 +4,91 @@ import androidx.room.Database
 import androidx.room.Room
 import androidx.room.RoomDatabase
 import androidx.room.TypeConverters
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 import android.content.Context
 
 @Database(
-    entities = [VoiceNote::class],
-    version = 1,
+    entities = [VoiceNote::class, TermStat::class, NoteSignature::class, NoteTermVector::class, RecordingCheckpoint::class],
+    version = 9,
     exportSchema = false
 )
 @TypeConverters(Converters::class)
 abstract class VoiceNoteDatabase : RoomDatabase() {
     
     abstract fun voiceNoteDao(): VoiceNoteDao
+
+    abstract fun termStatDao(): TermStatDao
+
+    abstract fun noteSignatureDao(): NoteSignatureDao
+
+    abstract fun noteTermVectorDao(): NoteTermVectorDao
+
+    abstract fun recordingCheckpointDao(): RecordingCheckpointDao
     
     companion object {
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `term_stats` " +
+                        "(`term` TEXT NOT NULL, `documentFrequency` INTEGER NOT NULL, PRIMARY KEY(`term`))"
+                )
+            }
+        }
+
+        val MIGRATION_2_3 = object : Migration(2, 3) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `note_signatures` " +
+                        "(`noteId` INTEGER NOT NULL, `signature` BLOB NOT NULL, PRIMARY KEY(`noteId`))"
+                )
+            }
+        }
+
+        val MIGRATION_3_4 = object : Migration(3, 4) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `note_term_vectors` " +
+                        "(`noteId` INTEGER NOT NULL, `terms` TEXT NOT NULL, PRIMARY KEY(`noteId`))"
+                )
+            }
+        }
+
+        val MIGRATION_4_5 = object : Migration(4, 5) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `voice_notes` ADD COLUMN `chapters` TEXT NOT NULL DEFAULT '[]'")
+            }
+        }
+
+        val MIGRATION_5_6 = object : Migration(5, 6) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `voice_notes` ADD COLUMN `speechSegments` TEXT NOT NULL DEFAULT '[]'")
+            }
+        }
+
+        val MIGRATION_6_7 = object : Migration(6, 7) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `voice_notes` ADD COLUMN `speakingPatterns` TEXT")
+            }
+        }
+
+        val MIGRATION_7_8 = object : Migration(7, 8) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL(
+                    "CREATE TABLE IF NOT EXISTS `recording_checkpoints` " +
+                        "(`outputPath` TEXT NOT NULL, `profile` TEXT NOT NULL, `appendTo` TEXT, " +
+                        "`startedAt` INTEGER NOT NULL, `checkpointAt` INTEGER NOT NULL, " +
+                        "`segmentCount` INTEGER NOT NULL, `durationMs` INTEGER NOT NULL, PRIMARY KEY(`outputPath`))"
+                )
+            }
+        }
+
+        val MIGRATION_8_9 = object : Migration(8, 9) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE `voice_notes` ADD COLUMN `summarySource` TEXT")
+            }
+        }
+
         @Volatile
         private var INSTANCE: VoiceNoteDatabase? = null
         
@@ -26,7 +98,9 @@ abstract class VoiceNoteDatabase : RoomDatabase() {
                     context.applicationContext,
                     VoiceNoteDatabase::class.java,
                     "voice_note_database"
-                ).build()
+                )
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8, MIGRATION_8_9)
+                    .build()
                 INSTANCE = instance
                 instance
             }
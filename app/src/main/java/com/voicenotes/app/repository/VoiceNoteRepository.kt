@@ -1,24 +1,349 @@
 package com.voicenotes.app.repository
 
+import android.content.Context
+import androidx.room.withTransaction
+import com.voicenotes.app.ai.nlp.AnalyzedDocument
+import com.voicenotes.app.ai.nlp.MinHash
+import com.voicenotes.app.ai.nlp.NearDuplicateIndex
+import com.voicenotes.app.ai.nlp.RelatedNotesIndex
+import com.voicenotes.app.ai.nlp.SemanticIndex
+import com.voicenotes.app.ai.nlp.TextEmbedder
+import com.voicenotes.app.ai.nlp.TfIdfModel
+import com.voicenotes.app.ai.nlp.TokenDictionary
+import com.voicenotes.app.data.NoteSignature
+import com.voicenotes.app.data.NoteSignatureDao
+import com.voicenotes.app.data.NoteTermVector
+import com.voicenotes.app.data.NoteTermVectorDao
+import com.voicenotes.app.data.TermStat
+import com.voicenotes.app.data.SummarySource
 import com.voicenotes.app.data.VoiceNote
-import com.voicenotes.app.data.VoiceNoteDao
+import com.voicenotes.app.data.VoiceNoteAnalysis
+import com.voicenotes.app.data.VoiceNoteDatabase
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 
 class VoiceNoteRepository(
-    private val voiceNoteDao: VoiceNoteDao
+    private val database: VoiceNoteDatabase,
+    private val semanticIndex: SemanticIndex,
+    private val tfIdfModel: TfIdfModel = TfIdfModel.shared,
+    private val duplicateIndex: NearDuplicateIndex = NearDuplicateIndex.shared,
+    private val relatedIndex: RelatedNotesIndex = RelatedNotesIndex.shared
 ) {
+
+    private val voiceNoteDao = database.voiceNoteDao()
+    private val termStatDao = database.termStatDao()
+    private val noteSignatureDao: NoteSignatureDao = database.noteSignatureDao()
+    private val noteTermVectorDao: NoteTermVectorDao = database.noteTermVectorDao()
+
+    // Serializes note writes with their term statistics so document frequencies stay exact
+    private val corpusLock = Mutex()
+
+    // Bumped whenever the duplicate or related-notes index changes, so derived results can be recomputed
+    private val _noteIndexVersion = MutableStateFlow(0)
+    val noteIndexVersion: StateFlow<Int> = _noteIndexVersion.asStateFlow()
     
     fun getAllVoiceNotes(): Flow<List<VoiceNote>> = voiceNoteDao.getAllVoiceNotes()
     
     suspend fun getVoiceNoteById(id: Long): VoiceNote? = voiceNoteDao.getVoiceNoteById(id)
     
-    suspend fun insertVoiceNote(voiceNote: VoiceNote): Long = voiceNoteDao.insertVoiceNote(voiceNote)
+    suspend fun insertVoiceNote(voiceNote: VoiceNote): Long = corpusLock.withLock {
+        val change = TranscriptChange(null, voiceNote.transcript)
+        val id = database.withTransaction {
+            voiceNoteDao.insertVoiceNote(voiceNote).also { storeIndexes(it, change) }
+        }
+        applyIndexes(id, change)
+        id
+    }
     
-    suspend fun updateVoiceNote(voiceNote: VoiceNote) = voiceNoteDao.updateVoiceNote(voiceNote)
+    suspend fun updateVoiceNote(voiceNote: VoiceNote) = corpusLock.withLock {
+        val previousTranscript = voiceNoteDao.getVoiceNoteById(voiceNote.id)?.transcript
+        val change = TranscriptChange(previousTranscript, voiceNote.transcript)
+        database.withTransaction {
+            voiceNoteDao.updateVoiceNote(voiceNote)
+            storeIndexes(voiceNote.id, change)
+        }
+        applyIndexes(voiceNote.id, change)
+    }
     
-    suspend fun deleteVoiceNote(voiceNote: VoiceNote) = voiceNoteDao.deleteVoiceNote(voiceNote)
+    suspend fun deleteVoiceNote(voiceNote: VoiceNote) = deleteNote(voiceNote.id) {
+        voiceNoteDao.deleteVoiceNote(voiceNote)
+    }
     
-    suspend fun deleteVoiceNoteById(id: Long) = voiceNoteDao.deleteVoiceNoteById(id)
+    suspend fun deleteVoiceNoteById(id: Long) = deleteNote(id) {
+        voiceNoteDao.deleteVoiceNoteById(id)
+    }
+
+    private suspend fun deleteNote(id: Long, delete: suspend () -> Unit) = corpusLock.withLock {
+        val previousTranscript = voiceNoteDao.getVoiceNoteById(id)?.transcript
+        val change = TranscriptChange(previousTranscript, null)
+        database.withTransaction {
+            delete()
+            storeIndexes(id, change)
+        }
+        applyIndexes(id, change)
+    }
     
     suspend fun getVoiceNotesCount(): Int = voiceNoteDao.getVoiceNotesCount()
+
+    /**
+     * Save re-analyzed summaries, key points and chapters, skipping notes whose
+     * transcript changed since [analyzed] was read or whose summary came from a cloud
+     * model. Holds the corpus lock, so it cannot interleave with a note write.
+     * Returns how many were saved.
+     */
+    suspend fun updateAnalyses(analyzed: List<VoiceNote>, analyses: List<VoiceNoteAnalysis>): Int = corpusLock.withLock {
+        if (analyses.isEmpty()) return@withLock 0
+        val analyzedTranscripts = analyzed.associate { it.id to it.transcript }
+        val current = voiceNoteDao.getVoiceNotesByIds(analyses.map { it.id }).associateBy { it.id }
+        val unchanged = analyses.filter { analysis ->
+            val note = current[analysis.id]
+            note != null && note.transcript == analyzedTranscripts[analysis.id] &&
+                note.summarySource != SummarySource.CLOUD
+        }
+        if (unchanged.isNotEmpty()) voiceNoteDao.updateAnalyses(unchanged)
+        unchanged.size
+    }
+
+    /**
+     * Load library term statistics into the in-memory TF-IDF model.
+     * Statistics are built from existing transcripts only the first time,
+     * after that every note change updates them incrementally.
+     */
+    suspend fun loadCorpusStatistics() = corpusLock.withLock {
+        val documentCount = voiceNoteDao.getTranscribedNotesCount()
+        if (documentCount > 0 && termStatDao.getTermStatsCount() == 0) {
+            val frequencies = HashMap<String, Int>()
+            voiceNoteDao.getAllTranscripts().forEach { transcript ->
+                TfIdfModel.termsOf(transcript).forEach { term ->
+                    frequencies[term] = (frequencies[term] ?: 0) + 1
+                }
+            }
+            termStatDao.replaceAll(frequencies.map { (term, frequency) -> TermStat(term, frequency) })
+        }
+        val stats = termStatDao.getAllTermStats()
+        tfIdfModel.load(documentCount, stats.associate { it.term to it.documentFrequency })
+    }
+
+    /**
+     * Load stored MinHash signatures into the duplicate index, computing and saving
+     * them once for notes transcribed before signatures existed. A transcript with no
+     * words to compare is saved with an empty signature, so it is not redone on every
+     * launch.
+     */
+    suspend fun loadDuplicateIndex() = corpusLock.withLock {
+        val missing = noteSignatureDao.getNotesWithoutSignature().map { note ->
+            NoteSignature(note.id, signatureBytes(MinHash.signature(note.transcript.orEmpty())))
+        }
+        if (missing.isNotEmpty()) noteSignatureDao.upsertSignatures(missing)
+
+        duplicateIndex.clear()
+        noteSignatureDao.getAllSignatures().forEach { stored ->
+            if (stored.signature.isNotEmpty()) duplicateIndex.add(stored.noteId, MinHash.fromBytes(stored.signature))
+        }
+        _noteIndexVersion.value++
+    }
+
+    /**
+     * Load stored term vectors into the related-notes index, computing them once
+     * for notes transcribed before term vectors existed. Run after
+     * [loadCorpusStatistics] so weights use the library's idf.
+     */
+    suspend fun loadRelatedNotesIndex() = corpusLock.withLock {
+        val missing = noteTermVectorDao.getNotesWithoutTermVector().map { note ->
+            NoteTermVector(note.id, RelatedNotesIndex.encode(RelatedNotesIndex.termCounts(note.transcript)))
+        }
+        if (missing.isNotEmpty()) noteTermVectorDao.upsertTermVectors(missing)
+
+        val corpus = tfIdfModel.snapshot()
+        relatedIndex.clear()
+        noteTermVectorDao.getAllTermVectors().forEach { stored ->
+            relatedIndex.add(stored.noteId, RelatedNotesIndex.decode(stored.terms), corpus)
+        }
+        _noteIndexVersion.value++
+    }
+
+    /**
+     * Up to [k] other notes on the same topics, most similar first
+     */
+    fun relatedNotes(noteId: Long, k: Int): List<RelatedNotesIndex.Match> = relatedIndex.relatedNotes(noteId, k)
+
+    /**
+     * Bring the semantic index in line with the database: embed transcribed notes it
+     * has not seen, including all of them after the embedder changed, and drop notes
+     * deleted while it was closed
+     */
+    suspend fun loadSemanticIndex() = corpusLock.withLock {
+        val stale = semanticIndex.noteIds().toHashSet()
+        var afterId = 0L
+        while (true) {
+            val page = voiceNoteDao.getTranscribedNotesAfter(afterId, SEMANTIC_INDEX_PAGE_SIZE)
+            if (page.isEmpty()) break
+            page.forEach { stale.remove(it.id) }
+            val missing = page.filter { !semanticIndex.contains(it.id) }
+            if (missing.isNotEmpty()) {
+                semanticIndex.addAll(missing.associate { it.id to it.transcript.orEmpty() })
+            }
+            afterId = page.last().id
+        }
+        stale.forEach { semanticIndex.remove(it) }
+        semanticIndex.trainIfNeeded()
+    }
+
+    /**
+     * Switch semantic search to another embedder, e.g. a learned model once it is
+     * available, and re-embed the library with it
+     */
+    suspend fun useEmbedder(embedder: TextEmbedder) {
+        corpusLock.withLock { semanticIndex.useEmbedder(embedder) }
+        loadSemanticIndex()
+    }
+
+    /**
+     * Up to [k] notes closest in meaning to [query], best first. Embeds the query and
+     * scans part of the index, so call it off the main thread.
+     */
+    fun semanticSearch(query: String, k: Int): List<SemanticIndex.Match> {
+        if (query.isBlank()) return emptyList()
+        return semanticIndex.search(query, k)
+    }
+
+    /**
+     * Other notes whose transcripts are near-duplicates of this one, most similar first
+     */
+    fun findPossibleDuplicates(noteId: Long): List<NearDuplicateIndex.Match> = duplicateIndex.findDuplicates(noteId)
+
+    /**
+     * Fold [duplicate] into [original]: key points are combined, the longer transcript
+     * and any audio are kept, and the duplicate note is deleted, in one transaction so
+     * the library never holds both the merged transcript and the duplicate.
+     * Returns the audio file the merged note no longer references, if any.
+     */
+    suspend fun mergeVoiceNotes(original: VoiceNote, duplicate: VoiceNote): String? {
+        val keepDuplicateAudio = original.filePath.isBlank() && duplicate.filePath.isNotBlank()
+        val duplicateTranscript = duplicate.transcript.orEmpty()
+        val merged = original.copy(
+            transcript = if (duplicateTranscript.length > original.transcript.orEmpty().length) {
+                duplicateTranscript
+            } else {
+                original.transcript
+            },
+            keyPoints = (original.keyPoints + duplicate.keyPoints).distinct(),
+            filePath = if (keepDuplicateAudio) duplicate.filePath else original.filePath,
+            duration = if (keepDuplicateAudio) duplicate.duration else original.duration,
+            fileSize = if (keepDuplicateAudio) duplicate.fileSize else original.fileSize
+        )
+        corpusLock.withLock {
+            val mergedChange = TranscriptChange(voiceNoteDao.getVoiceNoteById(merged.id)?.transcript, merged.transcript)
+            val duplicateChange = TranscriptChange(voiceNoteDao.getVoiceNoteById(duplicate.id)?.transcript, null)
+            database.withTransaction {
+                voiceNoteDao.deleteVoiceNote(duplicate)
+                storeIndexes(duplicate.id, duplicateChange)
+                voiceNoteDao.updateVoiceNote(merged)
+                storeIndexes(merged.id, mergedChange)
+            }
+            // Duplicate first, so the merged note is weighted against the library without it
+            applyIndexes(duplicate.id, duplicateChange)
+            applyIndexes(merged.id, mergedChange)
+        }
+        return if (keepDuplicateAudio || duplicate.filePath == original.filePath) null else duplicate.filePath
+    }
+
+    /**
+     * What a note's new transcript changes in the term statistics and note indexes,
+     * worked out before the write so the stored part can share its transaction.
+     * The new transcript is analyzed once, in the library's dictionary, and that
+     * document feeds the TF-IDF terms, MinHash signature, term vector and embedding.
+     */
+    private class TranscriptChange(previousTranscript: String?, transcript: String?) {
+        val changed = previousTranscript != transcript
+        val document = if (changed && !transcript.isNullOrBlank()) {
+            AnalyzedDocument.analyze(transcript, TokenDictionary.shared)
+        } else {
+            null
+        }
+        val addedTerms: List<String>
+        val removedTerms: List<String>
+        val documentDelta: Int
+        val signature = document?.let { MinHash.signature(it) }
+        val termCounts = document?.let { RelatedNotesIndex.termCounts(it) }
+
+        init {
+            val previousTerms = if (changed) TfIdfModel.termsOf(previousTranscript) else emptySet()
+            val terms = document?.let { TfIdfModel.termsOf(it) } ?: emptySet()
+            addedTerms = terms.filterNot { it in previousTerms }
+            removedTerms = previousTerms.filterNot { it in terms }
+            documentDelta = if (!changed) 0 else {
+                (if (document == null) 0 else 1) - (if (previousTranscript.isNullOrBlank()) 0 else 1)
+            }
+        }
+
+        val changesCorpus: Boolean get() = addedTerms.isNotEmpty() || removedTerms.isNotEmpty() || documentDelta != 0
+    }
+
+    /**
+     * Store the note's term statistics, MinHash signature and term vector; called in
+     * the transaction that writes the note, so they can never disagree with it
+     */
+    private suspend fun storeIndexes(noteId: Long, change: TranscriptChange) {
+        if (!change.changed) return
+        if (change.changesCorpus) termStatDao.applyDelta(change.addedTerms, change.removedTerms)
+        if (change.document != null) {
+            noteSignatureDao.upsertSignature(NoteSignature(noteId, signatureBytes(change.signature)))
+        } else {
+            noteSignatureDao.deleteSignature(noteId)
+        }
+        val termCounts = change.termCounts
+        if (termCounts != null) {
+            // Saved even when empty, like the load path, so it is not recomputed at launch
+            noteTermVectorDao.upsertTermVector(NoteTermVector(noteId, RelatedNotesIndex.encode(termCounts)))
+        } else {
+            noteTermVectorDao.deleteTermVector(noteId)
+        }
+    }
+
+    /**
+     * Bring the in-memory model and indexes in line once the note is committed. The
+     * TF-IDF model is updated first so the note's own terms count toward its idf.
+     */
+    private fun applyIndexes(noteId: Long, change: TranscriptChange) {
+        if (!change.changed) return
+        if (change.changesCorpus) tfIdfModel.applyDelta(change.addedTerms, change.removedTerms, change.documentDelta)
+        val signature = change.signature
+        if (signature != null) duplicateIndex.add(noteId, signature) else duplicateIndex.remove(noteId)
+        val termCounts = change.termCounts
+        if (termCounts != null) {
+            relatedIndex.add(noteId, termCounts, tfIdfModel.snapshot())
+        } else {
+            relatedIndex.remove(noteId)
+        }
+        val document = change.document
+        if (document != null) semanticIndex.add(noteId, document) else semanticIndex.remove(noteId)
+        _noteIndexVersion.value++
+    }
+
+    companion object {
+        private const val SEMANTIC_INDEX_PAGE_SIZE = 200
+
+        @Volatile
+        private var INSTANCE: VoiceNoteRepository? = null
+
+        /**
+         * The app-wide repository. The UI and background workers share it, so every
+         * note write serializes on the same corpus lock.
+         */
+        fun getInstance(context: Context): VoiceNoteRepository {
+            return INSTANCE ?: synchronized(this) {
+                INSTANCE ?: VoiceNoteRepository(
+                    VoiceNoteDatabase.getDatabase(context),
+                    SemanticIndex.getInstance(context.applicationContext.filesDir)
+                ).also { INSTANCE = it }
+            }
+        }
+
+        private fun signatureBytes(signature: IntArray?): ByteArray = signature?.let { MinHash.toBytes(it) } ?: ByteArray(0)
+    }
 }
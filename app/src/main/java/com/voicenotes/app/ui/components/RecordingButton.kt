@@ -7,6 +7,8 @@ import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.shape.CircleShape
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Mic
+import androidx.compose.material.icons.filled.Pause
+import androidx.compose.material.icons.filled.PlayArrow
 import androidx.compose.material.icons.filled.Stop
 import androidx.compose.material3.*
 import androidx.compose.runtime.*
@@ -17,12 +19,19 @@ import androidx.compose.ui.draw.scale
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.unit.dp
 
+/**
+ * Start/stop button; while recording, a smaller button beside it pauses and resumes
+ * when [onPauseRecording] and [onResumeRecording] are given
+ */
 @Composable
 fun RecordingButton(
     isRecording: Boolean,
     onStartRecording: () -> Unit,
     onStopRecording: () -> Unit,
-    modifier: Modifier = Modifier
+    modifier: Modifier = Modifier,
+    isPaused: Boolean = false,
+    onPauseRecording: (() -> Unit)? = null,
+    onResumeRecording: (() -> Unit)? = null
 ) {
     val infiniteTransition = rememberInfiniteTransition(label = "recording_animation")
     val scale by infiniteTransition.animateFloat(
@@ -35,31 +44,49 @@ fun RecordingButton(
         label = "scale_animation"
     )
     
-    Box(
-        modifier = modifier
-            .size(80.dp)
-            .clip(CircleShape)
-            .background(
-                if (isRecording) MaterialTheme.colorScheme.error
-                else MaterialTheme.colorScheme.primary
-            )
-            .clickable {
-                if (isRecording) {
-                    onStopRecording()
-                } else {
-                    onStartRecording()
+    Row(
+        modifier = modifier,
+        verticalAlignment = Alignment.CenterVertically,
+        horizontalArrangement = Arrangement.spacedBy(16.dp)
+    ) {
+        Box(
+            modifier = Modifier
+                .size(80.dp)
+                .clip(CircleShape)
+                .background(
+                    if (isRecording) MaterialTheme.colorScheme.error
+                    else MaterialTheme.colorScheme.primary
+                )
+                .clickable {
+                    if (isRecording) {
+                        onStopRecording()
+                    } else {
+                        onStartRecording()
+                    }
                 }
+                .then(
+                    if (isRecording && !isPaused) Modifier.scale(scale) else Modifier
+                ),
+            contentAlignment = Alignment.Center
+        ) {
+            Icon(
+                imageVector = if (isRecording) Icons.Default.Stop else Icons.Default.Mic,
+                contentDescription = if (isRecording) "Stop Recording" else "Start Recording",
+                tint = Color.White,
+                modifier = Modifier.size(32.dp)
+            )
+        }
+
+        if (isRecording && onPauseRecording != null && onResumeRecording != null) {
+            FilledTonalIconButton(
+                onClick = if (isPaused) onResumeRecording else onPauseRecording,
+                modifier = Modifier.size(48.dp)
+            ) {
+                Icon(
+                    imageVector = if (isPaused) Icons.Default.PlayArrow else Icons.Default.Pause,
+                    contentDescription = if (isPaused) "Resume Recording" else "Pause Recording"
+                )
             }
-            .then(
-                if (isRecording) Modifier.scale(scale) else Modifier
-            ),
-        contentAlignment = Alignment.Center
-    ) {
-        Icon(
-            imageVector = if (isRecording) Icons.Default.Stop else Icons.Default.Mic,
-            contentDescription = if (isRecording) "Stop Recording" else "Start Recording",
-            tint = Color.White,
-            modifier = Modifier.size(32.dp)
-        )
+        }
     }
 }
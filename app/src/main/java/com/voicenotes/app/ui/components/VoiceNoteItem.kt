@@ -1,9 +1,17 @@
 package com.voicenotes.app.ui.components
 
+import androidx.compose.foundation.clickable
+import androidx.compose.foundation.horizontalScroll
 import androidx.compose.foundation.layout.*
+import androidx.compose.foundation.rememberScrollState
 import androidx.compose.foundation.shape.RoundedCornerShape
 import androidx.compose.material.icons.Icons
+import androidx.compose.material.icons.filled.ContentCopy
 import androidx.compose.material.icons.filled.Delete
+import androidx.compose.material.icons.filled.ExpandLess
+import androidx.compose.material.icons.filled.ExpandMore
+import androidx.compose.material.icons.filled.Link
+import androidx.compose.material.icons.filled.Mic
 import androidx.compose.material.icons.filled.Pause
 import androidx.compose.material.icons.filled.PlayArrow
 import androidx.compose.material.icons.filled.RecordVoiceOver
@@ -28,8 +36,15 @@ fun VoiceNoteItem(
     onPlayClick: () -> Unit,
     onPauseClick: () -> Unit,
     onDeleteClick: () -> Unit,
+    onAppendRecordingClick: (() -> Unit)? = null,
     onReadTranscriptClick: () -> Unit = {},
     onReadSummaryClick: () -> Unit = {},
+    duplicateOf: VoiceNote? = null,
+    onMergeDuplicateClick: () -> Unit = {},
+    relatedNotes: List<VoiceNote> = emptyList(),
+    onRelatedNoteClick: (VoiceNote) -> Unit = {},
+    chapterSummaries: Map<Int, String> = emptyMap(),
+    onChapterExpand: (Int) -> Unit = {},
     modifier: Modifier = Modifier
 ) {
     Card(
@@ -72,6 +87,16 @@ fun VoiceNoteItem(
             }
             
             Spacer(modifier = Modifier.height(8.dp))
+
+            if (voiceNote.filePath.isNotBlank()) {
+                Waveform(
+                    audioFilePath = voiceNote.filePath,
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .height(32.dp)
+                )
+                Spacer(modifier = Modifier.height(8.dp))
+            }
             
             // Summary
             if (!voiceNote.summary.isNullOrBlank()) {
@@ -101,6 +126,126 @@ fun VoiceNoteItem(
                 Spacer(modifier = Modifier.height(8.dp))
             }
             
+            // Chapters of long notes; each is summarized when first expanded
+            if (voiceNote.chapters.size > 1) {
+                var expandedChapter by remember(voiceNote.id) { mutableStateOf(-1) }
+                Text(
+                    text = "Chapters:",
+                    style = MaterialTheme.typography.labelMedium,
+                    fontWeight = FontWeight.Bold
+                )
+                voiceNote.chapters.forEachIndexed { index, chapter ->
+                    val isExpanded = expandedChapter == index
+                    Row(
+                        modifier = Modifier
+                            .fillMaxWidth()
+                            .clickable {
+                                expandedChapter = if (isExpanded) -1 else index
+                                if (!isExpanded) onChapterExpand(index)
+                            }
+                            .padding(start = 8.dp, top = 2.dp, bottom = 2.dp),
+                        verticalAlignment = Alignment.CenterVertically
+                    ) {
+                        if (chapter.endMs > 0) {
+                            Text(
+                                text = formatDuration(chapter.startMs),
+                                style = MaterialTheme.typography.bodySmall,
+                                color = MaterialTheme.colorScheme.primary
+                            )
+                            Spacer(modifier = Modifier.width(8.dp))
+                        }
+                        Text(
+                            text = chapter.title,
+                            style = MaterialTheme.typography.bodySmall,
+                            maxLines = 1,
+                            overflow = TextOverflow.Ellipsis,
+                            modifier = Modifier.weight(1f)
+                        )
+                        Icon(
+                            imageVector = if (isExpanded) Icons.Default.ExpandLess else Icons.Default.ExpandMore,
+                            contentDescription = if (isExpanded) "Collapse chapter" else "Expand chapter",
+                            modifier = Modifier.size(16.dp)
+                        )
+                    }
+                    if (isExpanded) {
+                        Text(
+                            text = chapterSummaries[index] ?: "Summarizing...",
+                            style = MaterialTheme.typography.bodySmall,
+                            color = MaterialTheme.colorScheme.onSurfaceVariant,
+                            modifier = Modifier.padding(start = 16.dp, bottom = 4.dp)
+                        )
+                    }
+                }
+                Spacer(modifier = Modifier.height(8.dp))
+            }
+            
+            // Related notes
+            if (relatedNotes.isNotEmpty()) {
+                Row(
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .horizontalScroll(rememberScrollState()),
+                    horizontalArrangement = Arrangement.spacedBy(8.dp),
+                    verticalAlignment = Alignment.CenterVertically
+                ) {
+                    Icon(
+                        imageVector = Icons.Default.Link,
+                        contentDescription = "Related notes",
+                        modifier = Modifier.size(16.dp),
+                        tint = MaterialTheme.colorScheme.onSurfaceVariant
+                    )
+                    relatedNotes.forEach { related ->
+                        AssistChip(
+                            onClick = { onRelatedNoteClick(related) },
+                            label = {
+                                Text(
+                                    text = related.title,
+                                    fontSize = 12.sp,
+                                    maxLines = 1,
+                                    overflow = TextOverflow.Ellipsis,
+                                    modifier = Modifier.widthIn(max = 160.dp)
+                                )
+                            }
+                        )
+                    }
+                }
+                Spacer(modifier = Modifier.height(8.dp))
+            }
+            
+            // Possible duplicate hint
+            if (duplicateOf != null) {
+                Surface(
+                    color = MaterialTheme.colorScheme.secondaryContainer,
+                    shape = RoundedCornerShape(8.dp),
+                    modifier = Modifier.fillMaxWidth()
+                ) {
+                    Row(
+                        modifier = Modifier.padding(start = 8.dp),
+                        verticalAlignment = Alignment.CenterVertically
+                    ) {
+                        Icon(
+                            imageVector = Icons.Default.ContentCopy,
+                            contentDescription = "Possible duplicate",
+                            modifier = Modifier.size(16.dp),
+                            tint = MaterialTheme.colorScheme.onSecondaryContainer
+                        )
+                        Spacer(modifier = Modifier.width(8.dp))
+                        Text(
+                            text = "Possible duplicate of \"${duplicateOf.title}\"",
+                            style = MaterialTheme.typography.bodySmall,
+                            color = MaterialTheme.colorScheme.onSecondaryContainer,
+                            maxLines = 1,
+                            overflow = TextOverflow.Ellipsis,
+                            modifier = Modifier.weight(1f)
+                        )
+                        TextButton(onClick = onMergeDuplicateClick) {
+                            Text("Merge", fontSize = 12.sp)
+                        }
+                    }
+                }
+                Spacer(modifier = Modifier.height(8.dp))
+            }
+            
             // Controls
             Row(
                 modifier = Modifier.fillMaxWidth(),
@@ -123,6 +268,16 @@ fun VoiceNoteItem(
 
                 Spacer(modifier = Modifier.width(8.dp))
 
+                // Record more onto the end of this note
+                if (onAppendRecordingClick != null && !voiceNote.isProcessing) {
+                    IconButton(onClick = onAppendRecordingClick) {
+                        Icon(
+                            imageVector = Icons.Default.Mic,
+                            contentDescription = "Add to Recording"
+                        )
+                    }
+                }
+
                 // Duration
                 Text(
                     text = formatDuration(voiceNote.duration),
@@ -0,0 +1,102 @@
+package com.voicenotes.app.ui.components
+
+import androidx.compose.foundation.layout.Spacer
+import androidx.compose.material3.MaterialTheme
+import androidx.compose.runtime.Composable
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.produceState
+import androidx.compose.ui.Modifier
+import androidx.compose.ui.draw.drawWithCache
+import androidx.compose.ui.geometry.Offset
+import androidx.compose.ui.graphics.Color
+import androidx.compose.ui.graphics.StrokeCap
+import androidx.compose.ui.unit.dp
+import com.voicenotes.app.audio.WaveformEnvelope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.File
+
+/**
+ * Waveform of a recording from its envelope sidecar, one bar per column that fits.
+ * [fromMs]..[toMs] picks the visible stretch for a zoomed view; by default the
+ * whole recording. Peaks are read from the mapped sidecar only when the size or
+ * range changes, so scrolling a list of these redraws cached bars. Draws nothing
+ * until the recording has a sidecar.
+ */
+@Composable
+fun Waveform(
+    audioFilePath: String,
+    modifier: Modifier = Modifier,
+    fromMs: Long = 0,
+    toMs: Long = -1,
+    color: Color = MaterialTheme.colorScheme.primary
+) {
+    val envelope by produceState(WaveformCache.peek(audioFilePath), audioFilePath) {
+        value = withContext(Dispatchers.IO) { WaveformCache.get(audioFilePath) }
+    }
+    val current = envelope ?: return
+
+    Spacer(
+        modifier.drawWithCache {
+            val barWidth = BAR_WIDTH.toPx()
+            val step = barWidth + BAR_GAP.toPx()
+            val columns = (size.width / step).toInt()
+            val mins = FloatArray(columns)
+            val maxs = FloatArray(columns)
+            val end = if (toMs < 0) current.durationMs else toMs
+            current.fill(fromMs, end, columns, mins, maxs)
+            val middle = size.height / 2
+
+            onDrawBehind {
+                for (column in 0 until columns) {
+                    val x = column * step + barWidth / 2
+                    // Silence still shows as a dot, so the bar row keeps its shape
+                    val top = middle - maxOf(maxs[column] * middle, barWidth / 2)
+                    val bottom = middle - minOf(mins[column] * middle, -barWidth / 2)
+                    drawLine(color, Offset(x, top), Offset(x, bottom), strokeWidth = barWidth, cap = StrokeCap.Round)
+                }
+            }
+        }
+    )
+}
+
+private val BAR_WIDTH = 2.dp
+private val BAR_GAP = 1.dp
+
+/**
+ * Opened envelopes of the notes seen most recently, so a note scrolled back into
+ * view does not map its sidecar again
+ */
+private object WaveformCache {
+
+    private const val MAX_ENTRIES = 64
+
+    private class Entry(val modified: Long, val envelope: WaveformEnvelope)
+
+    private val entries = object : LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>?): Boolean {
+            return size > MAX_ENTRIES
+        }
+    }
+
+    /** Whatever is cached, without touching the disk; safe on the main thread */
+    @Synchronized
+    fun peek(audioFilePath: String): WaveformEnvelope? = entries[audioFilePath]?.envelope
+
+    /** The current envelope, mapping it again if the sidecar was rewritten */
+    fun get(audioFilePath: String): WaveformEnvelope? {
+        val sidecar = WaveformEnvelope.sidecarFor(File(audioFilePath))
+        if (!sidecar.isFile) return null
+        val modified = sidecar.lastModified()
+        synchronized(this) {
+            entries[audioFilePath]?.let { if (it.modified == modified) return it.envelope }
+        }
+        val envelope = try {
+            WaveformEnvelope.open(sidecar)
+        } catch (e: Exception) {
+            return null
+        }
+        synchronized(this) { entries[audioFilePath] = Entry(modified, envelope) }
+        return envelope
+    }
+}
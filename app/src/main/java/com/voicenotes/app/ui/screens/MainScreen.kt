@@ -3,6 +3,7 @@ package com.voicenotes.app.ui.screens
 import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Analytics
 import androidx.compose.material.icons.filled.Settings
@@ -28,6 +29,7 @@ import com.voicenotes.app.ui.components.VoiceNoteItem
 import com.voicenotes.app.ui.components.TTSQuickActions
 import com.voicenotes.app.ui.components.TTSStatusIndicator
 import com.voicenotes.app.viewmodel.VoiceNotesUiState
+import kotlinx.coroutines.launch
 
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
@@ -40,6 +42,9 @@ fun MainScreen(
     currentTTSText: String = "",
     onStartRecording: () -> Unit,
     onStopRecording: () -> Unit,
+    onPauseRecording: () -> Unit = {},
+    onResumeRecording: () -> Unit = {},
+    onAppendRecording: (VoiceNote) -> Unit = {},
     onPlayVoiceNote: (VoiceNote) -> Unit,
     onPauseAudio: () -> Unit,
     onDeleteVoiceNote: (VoiceNote) -> Unit,
@@ -54,8 +59,18 @@ fun MainScreen(
     onStopTTS: () -> Unit = {},
     onOpenTTSSettings: () -> Unit = {},
     onSpeakCustomText: (String) -> Unit = {},
+    duplicateHints: Map<Long, VoiceNote> = emptyMap(),
+    onMergeDuplicate: (duplicate: VoiceNote, original: VoiceNote) -> Unit = { _, _ -> },
+    relatedNotes: Map<Long, List<Long>> = emptyMap(),
+    onRequestRelatedNotes: (noteId: Long) -> Unit = {},
+    chapterSummaries: Map<Long, Map<Int, String>> = emptyMap(),
+    onExpandChapter: (note: VoiceNote, chapterIndex: Int) -> Unit = { _, _ -> },
     modifier: Modifier = Modifier
 ) {
+    val listState = rememberLazyListState()
+    val coroutineScope = rememberCoroutineScope()
+    val notesById = remember(voiceNotes) { voiceNotes.associateBy { it.id } }
+
     Column(
         modifier = modifier.fillMaxSize()
     ) {
@@ -107,6 +122,7 @@ fun MainScreen(
         
         // Main content - Everything scrollable
         LazyColumn(
+            state = listState,
             modifier = Modifier
                 .fillMaxSize()
                 .padding(16.dp),
@@ -123,6 +139,37 @@ fun MainScreen(
                 }
             }
 
+            // Controls of a recording in progress, e.g. one continuing a note
+            if (uiState.isRecording) {
+                item {
+                    Card(modifier = Modifier.fillMaxWidth()) {
+                        Row(
+                            modifier = Modifier.padding(16.dp),
+                            verticalAlignment = Alignment.CenterVertically,
+                            horizontalArrangement = Arrangement.spacedBy(16.dp)
+                        ) {
+                            RecordingButton(
+                                isRecording = true,
+                                onStartRecording = {},
+                                onStopRecording = onStopRecording,
+                                isPaused = uiState.isRecordingPaused,
+                                onPauseRecording = onPauseRecording,
+                                onResumeRecording = onResumeRecording
+                            )
+                            val appendingTo = uiState.appendingToNoteId?.let { notesById[it] }
+                            Text(
+                                text = when {
+                                    uiState.isRecordingPaused -> "Paused"
+                                    appendingTo != null -> "Adding to \"${appendingTo.title}\""
+                                    else -> "Recording"
+                                },
+                                style = MaterialTheme.typography.titleMedium
+                            )
+                        }
+                    }
+                }
+            }
+
             // Speech Recognition section
             item {
                 SimpleSpeechCard()
@@ -179,15 +226,35 @@ fun MainScreen(
                 }
             } else {
                 // Voice notes items
+                // Items above the first note: status indicator, recording controls, two cards and the header
+                val firstNoteIndex = (if (isTTSSpeaking) 1 else 0) + (if (uiState.isRecording) 1 else 0) + 3
                 items(voiceNotes) { voiceNote ->
+                    val related = relatedNotes[voiceNote.id]
+                    LaunchedEffect(voiceNote.id, related == null) {
+                        if (related == null) onRequestRelatedNotes(voiceNote.id)
+                    }
                     VoiceNoteItem(
                         voiceNote = voiceNote,
                         isPlaying = isPlaying && currentlyPlayingId == voiceNote.id,
                         onPlayClick = { onPlayVoiceNote(voiceNote) },
                         onPauseClick = onPauseAudio,
                         onDeleteClick = { onDeleteVoiceNote(voiceNote) },
+                        onAppendRecordingClick = if (uiState.isRecording) null else ({ onAppendRecording(voiceNote) }),
                         onReadTranscriptClick = { onReadTranscript(voiceNote) },
-                        onReadSummaryClick = { onReadSummary(voiceNote) }
+                        onReadSummaryClick = { onReadSummary(voiceNote) },
+                        duplicateOf = duplicateHints[voiceNote.id],
+                        onMergeDuplicateClick = {
+                            duplicateHints[voiceNote.id]?.let { original -> onMergeDuplicate(voiceNote, original) }
+                        },
+                        relatedNotes = related.orEmpty().mapNotNull { notesById[it] },
+                        onRelatedNoteClick = { target ->
+                            val index = voiceNotes.indexOfFirst { it.id == target.id }
+                            if (index >= 0) {
+                                coroutineScope.launch { listState.animateScrollToItem(firstNoteIndex + index) }
+                            }
+                        },
+                        chapterSummaries = chapterSummaries[voiceNote.id].orEmpty(),
+                        onChapterExpand = { chapterIndex -> onExpandChapter(voiceNote, chapterIndex) }
                     )
                 }
 
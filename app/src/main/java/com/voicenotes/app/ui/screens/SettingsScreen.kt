@@ -1,5 +1,8 @@
 package com.voicenotes.app.ui.screens
 
+import android.Manifest
+import androidx.activity.compose.rememberLauncherForActivityResult
+import androidx.activity.result.contract.ActivityResultContracts
 import androidx.compose.foundation.clickable
 import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.lazy.LazyColumn
@@ -12,8 +15,11 @@ import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.vector.ImageVector
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.text.font.FontFamily
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.unit.dp
+import com.voicenotes.app.ai.GazetteerManager
+import com.voicenotes.app.audio.RecordingSettings
 import com.voicenotes.app.naming.NamingManager
 import com.voicenotes.app.notifications.NotificationService
 import com.voicenotes.app.security.SecurityManager
@@ -26,9 +32,14 @@ fun SettingsScreen(
     val context = LocalContext.current
     val securityManager = remember { SecurityManager(context) }
     val namingManager = remember { NamingManager(context) }
+    val gazetteerManager = remember { GazetteerManager.getInstance(context) }
+    val recordingSettings = remember { RecordingSettings(context) }
+    var recordingProfile by remember { mutableStateOf(recordingSettings.profile) }
     
     var showSecurityDialog by remember { mutableStateOf(false) }
     var showNamingDialog by remember { mutableStateOf(false) }
+    var showGazetteerDialog by remember { mutableStateOf(false) }
+    var showRecordingProfileDialog by remember { mutableStateOf(false) }
     var showNotificationDialog by remember { mutableStateOf(false) }
     
     Scaffold(
@@ -59,6 +70,15 @@ fun SettingsScreen(
                 )
             }
             
+            item {
+                SettingsCard(
+                    icon = Icons.Default.GraphicEq,
+                    title = "Recording Quality",
+                    subtitle = "${recordingProfile.label} · ${formatBytesPerMinute(recordingProfile.bytesPerMinute)}",
+                    onClick = { showRecordingProfileDialog = true }
+                )
+            }
+            
             item {
                 SettingsCard(
                     icon = Icons.Default.DriveFileRenameOutline,
@@ -68,6 +88,15 @@ fun SettingsScreen(
                 )
             }
             
+            item {
+                SettingsCard(
+                    icon = Icons.Default.Contacts,
+                    title = "Names & Places",
+                    subtitle = "People, places and organizations to recognize in notes",
+                    onClick = { showGazetteerDialog = true }
+                )
+            }
+            
             item {
                 SettingsCard(
                     icon = Icons.Default.Analytics,
@@ -188,6 +217,23 @@ fun SettingsScreen(
         )
     }
     
+    if (showRecordingProfileDialog) {
+        RecordingProfileDialog(
+            recordingSettings = recordingSettings,
+            onDismiss = {
+                recordingProfile = recordingSettings.profile
+                showRecordingProfileDialog = false
+            }
+        )
+    }
+    
+    if (showGazetteerDialog) {
+        GazetteerSettingsDialog(
+            gazetteerManager = gazetteerManager,
+            onDismiss = { showGazetteerDialog = false }
+        )
+    }
+    
     if (showNotificationDialog) {
         NotificationSettingsDialog(
             onDismiss = { showNotificationDialog = false }
@@ -398,6 +444,171 @@ fun NamingSettingsDialog(
     )
 }
 
+@Composable
+fun RecordingProfileDialog(
+    recordingSettings: RecordingSettings,
+    onDismiss: () -> Unit
+) {
+    val profiles = remember { recordingSettings.supportedProfiles }
+    var selectedProfile by remember { mutableStateOf(recordingSettings.profile) }
+    var crashSafe by remember { mutableStateOf(recordingSettings.crashSafe) }
+
+    AlertDialog(
+        onDismissRequest = onDismiss,
+        title = { Text("Recording Quality") },
+        text = {
+            Column {
+                Text(
+                    text = "Applies to new recordings. Speech profiles are plenty for transcription.",
+                    style = MaterialTheme.typography.bodySmall
+                )
+                Spacer(modifier = Modifier.height(16.dp))
+
+                profiles.forEach { profile ->
+                    Row(
+                        modifier = Modifier
+                            .fillMaxWidth()
+                            .clickable { selectedProfile = profile },
+                        verticalAlignment = Alignment.CenterVertically
+                    ) {
+                        RadioButton(
+                            selected = selectedProfile == profile,
+                            onClick = { selectedProfile = profile }
+                        )
+                        Column {
+                            Text(profile.label)
+                            Text(
+                                text = "${profile.description} · ${formatBytesPerMinute(profile.bytesPerMinute)}",
+                                style = MaterialTheme.typography.bodySmall,
+                                color = MaterialTheme.colorScheme.onSurfaceVariant
+                            )
+                        }
+                    }
+                }
+
+                Spacer(modifier = Modifier.height(16.dp))
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.SpaceBetween,
+                    verticalAlignment = Alignment.CenterVertically
+                ) {
+                    Column(modifier = Modifier.weight(1f)) {
+                        Text("Crash-safe recording")
+                        Text(
+                            text = "If the app is closed while recording, keep all but the last few seconds",
+                            style = MaterialTheme.typography.bodySmall,
+                            color = MaterialTheme.colorScheme.onSurfaceVariant
+                        )
+                    }
+                    Switch(
+                        checked = crashSafe,
+                        onCheckedChange = { crashSafe = it }
+                    )
+                }
+            }
+        },
+        confirmButton = {
+            TextButton(
+                onClick = {
+                    recordingSettings.profile = selectedProfile
+                    recordingSettings.crashSafe = crashSafe
+                    onDismiss()
+                }
+            ) {
+                Text("Save")
+            }
+        },
+        dismissButton = {
+            TextButton(onClick = onDismiss) {
+                Text("Cancel")
+            }
+        }
+    )
+}
+
+private fun formatBytesPerMinute(bytes: Long): String = "≈ ${(bytes + 512) / 1024} KB/min"
+
+@Composable
+fun GazetteerSettingsDialog(
+    gazetteerManager: GazetteerManager,
+    onDismiss: () -> Unit
+) {
+    var entries by remember { mutableStateOf(gazetteerManager.userEntries()) }
+    var includeContacts by remember { mutableStateOf(gazetteerManager.includeContacts) }
+    var errorMessage by remember { mutableStateOf<String?>(null) }
+
+    val contactsPermissionLauncher = rememberLauncherForActivityResult(
+        ActivityResultContracts.RequestPermission()
+    ) { granted ->
+        includeContacts = granted
+    }
+
+    AlertDialog(
+        onDismissRequest = onDismiss,
+        title = { Text("Names & Places") },
+        text = {
+            Column {
+                Text(
+                    text = "Add people, places and organizations under [person], [place] or [organization], one per line.",
+                    style = MaterialTheme.typography.bodySmall
+                )
+                Spacer(modifier = Modifier.height(8.dp))
+                OutlinedTextField(
+                    value = entries,
+                    onValueChange = {
+                        entries = it
+                        errorMessage = null
+                    },
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .height(220.dp),
+                    textStyle = MaterialTheme.typography.bodySmall.copy(fontFamily = FontFamily.Monospace),
+                    isError = errorMessage != null,
+                    supportingText = errorMessage?.let { { Text(it) } }
+                )
+                Spacer(modifier = Modifier.height(16.dp))
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.SpaceBetween,
+                    verticalAlignment = Alignment.CenterVertically
+                ) {
+                    Text("Include contacts")
+                    Switch(
+                        checked = includeContacts,
+                        onCheckedChange = {
+                            if (it && !gazetteerManager.hasContactsPermission) {
+                                contactsPermissionLauncher.launch(Manifest.permission.READ_CONTACTS)
+                            } else {
+                                includeContacts = it
+                            }
+                        }
+                    )
+                }
+            }
+        },
+        confirmButton = {
+            TextButton(
+                onClick = {
+                    try {
+                        gazetteerManager.saveUserEntries(entries)
+                        gazetteerManager.includeContacts = includeContacts
+                        onDismiss()
+                    } catch (e: IllegalArgumentException) {
+                        errorMessage = e.message
+                    }
+                }
+            ) {
+                Text("Save")
+            }
+        },
+        dismissButton = {
+            TextButton(onClick = onDismiss) {
+                Text("Cancel")
+            }
+        }
+    )
+}
+
 @Composable
 fun NotificationSettingsDialog(
     onDismiss: () -> Unit
@@ -5,10 +5,17 @@ import androidx.lifecycle.AndroidViewModel
 import androidx.lifecycle.viewModelScope
 import com.voicenotes.app.ai.AIService
 import com.voicenotes.app.ai.AIResult
+import com.voicenotes.app.ai.LocalNLPService
+import com.voicenotes.app.ai.ReanalysisWorker
+import com.voicenotes.app.ai.AnalysisOptions
+import com.voicenotes.app.ai.GazetteerManager
+import com.voicenotes.app.ai.nlp.EditableTranscriptAnalyzer
 import com.voicenotes.app.audio.AudioPlayer
 import com.voicenotes.app.audio.AudioRecorder
+import com.voicenotes.app.audio.WaveformEnvelope
+import com.voicenotes.app.data.SpeechSegment
+import com.voicenotes.app.data.SummarySource
 import com.voicenotes.app.data.VoiceNote
-import com.voicenotes.app.data.VoiceNoteDatabase
 import com.voicenotes.app.repository.VoiceNoteRepository
 import com.voicenotes.app.naming.NamingManager
 import com.voicenotes.app.audio.FileProcessor
@@ -42,8 +49,7 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
     private val enhancedTTSService: EnhancedTTSService
     
     init {
-        val database = VoiceNoteDatabase.getDatabase(application)
-        repository = VoiceNoteRepository(database.voiceNoteDao())
+        repository = VoiceNoteRepository.getInstance(application)
         audioRecorder = AudioRecorder(application)
         audioPlayer = AudioPlayer()
         aiService = AIService(application)
@@ -56,6 +62,25 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
         viewModelScope.launch {
             enhancedTTSService.initialize()
         }
+
+        // Load library term statistics for TF-IDF keyword ranking, note signatures
+        // for duplicate hints, term vectors for related notes and embeddings for search
+        viewModelScope.launch(Dispatchers.IO) {
+            try {
+                repository.loadCorpusStatistics()
+                repository.loadDuplicateIndex()
+                repository.loadRelatedNotesIndex()
+                repository.loadSemanticIndex()
+            } catch (e: Exception) {
+                Log.e("VoiceNotesViewModel", "Failed to load library indexes", e)
+            }
+        }
+
+        // Names of people, places and organizations for entity extraction
+        GazetteerManager.getInstance(application).start()
+
+        // Refresh summaries of existing notes once after the NLP engine changed
+        ReanalysisWorker.enqueueIfStale(application)
     }
     
     // UI State
@@ -70,6 +95,61 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
             initialValue = emptyList()
         )
     
+    // Possible duplicates: newer note id -> the older note it repeats
+    val duplicateHints: StateFlow<Map<Long, VoiceNote>> = voiceNotes
+        .combine(repository.noteIndexVersion) { notes, _ -> findDuplicateHints(notes) }
+        .flowOn(Dispatchers.Default)
+        .stateIn(
+            scope = viewModelScope,
+            started = SharingStarted.WhileSubscribed(5000),
+            initialValue = emptyMap()
+        )
+
+    // Related note ids per note, filled in as notes come on screen
+    private val _relatedNotes = MutableStateFlow<Map<Long, List<Long>>>(emptyMap())
+    val relatedNotes: StateFlow<Map<Long, List<Long>>> = _relatedNotes.asStateFlow()
+
+    // Chapter summaries per note and chapter index, computed when a chapter is expanded
+    private val _chapterSummaries = MutableStateFlow<Map<Long, Map<Int, String>>>(emptyMap())
+    val chapterSummaries: StateFlow<Map<Long, Map<Int, String>>> = _chapterSummaries.asStateFlow()
+
+    // Analyzers of recently edited transcripts, so repeated corrections only re-read what changed
+    private val transcriptAnalyzers = object : LinkedHashMap<Long, EditableTranscriptAnalyzer>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, EditableTranscriptAnalyzer>): Boolean {
+            return size > EDITED_TRANSCRIPTS_KEPT
+        }
+    }
+
+    init {
+        // Recordings cut short by the app being killed, then waveform sidecars for
+        // those and for notes recorded or imported before sidecars existed. Started
+        // here, once the UI state recovery reports to exists
+        viewModelScope.launch(Dispatchers.IO) {
+            try {
+                recoverInterruptedRecordings()
+            } catch (e: Exception) {
+                Log.e("VoiceNotesViewModel", "Failed to recover recordings", e)
+            }
+            try {
+                repository.getAllVoiceNotes().first()
+                    .filter { it.filePath.isNotBlank() }
+                    .map { java.io.File(it.filePath) }
+                    .filter { it.isFile && !WaveformEnvelope.sidecarFor(it).exists() }
+                    .forEach { fileProcessor.writeWaveform(it.path) }
+            } catch (e: Exception) {
+                Log.e("VoiceNotesViewModel", "Failed to write waveforms", e)
+            }
+        }
+
+        // Any transcript change can reorder related notes or move chapters, so drop cached results
+        viewModelScope.launch {
+            repository.noteIndexVersion.collect {
+                _relatedNotes.value = emptyMap()
+                _chapterSummaries.value = emptyMap()
+            }
+        }
+    }
+    
     // Audio player state
     val isPlaying = audioPlayer.isPlaying
     val currentPosition = audioPlayer.currentPosition
@@ -79,7 +159,10 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
     val isTTSSpeaking = enhancedTTSService.isSpeaking
     val currentTTSText = enhancedTTSService.currentText
     
-    fun startRecording() {
+    /**
+     * Start a new recording, or with [appendTo] continue that note's recording
+     */
+    fun startRecording(appendTo: VoiceNote? = null) {
         viewModelScope.launch {
             try {
                 // Check permissions first
@@ -90,14 +173,20 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
                     return@launch
                 }
 
-                val filePath = audioRecorder.startRecording()
+                val filePath = audioRecorder.startRecording(appendTo?.filePath)
                 if (filePath != null) {
                     _uiState.value = _uiState.value.copy(
                         isRecording = true,
+                        isRecordingPaused = false,
+                        appendingToNoteId = appendTo?.id,
                         recordingFilePath = filePath,
                         errorMessage = null
                     )
                     android.util.Log.d("VoiceNotesViewModel", "Recording started: $filePath")
+                } else if (appendTo != null) {
+                    _uiState.value = _uiState.value.copy(
+                        errorMessage = "Cannot add to \"${appendTo.title}\": its audio is not in a recording format"
+                    )
                 } else {
                     _uiState.value = _uiState.value.copy(
                         errorMessage = "Failed to start recording. Please check microphone permissions."
@@ -137,55 +226,141 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
         }
     }
     
+    fun pauseRecording() {
+        audioRecorder.pauseRecording()
+        _uiState.value = _uiState.value.copy(isRecordingPaused = audioRecorder.isPaused())
+    }
+
+    fun resumeRecording() {
+        audioRecorder.resumeRecording()
+        _uiState.value = _uiState.value.copy(isRecordingPaused = audioRecorder.isPaused())
+    }
+
     fun stopRecording() {
-        val result = audioRecorder.stopRecording()
-        if (result != null) {
-            _uiState.value = _uiState.value.copy(
-                isRecording = false,
-                recordingFilePath = null,
-                isProcessing = true
-            )
-            
+        val appendingToNoteId = _uiState.value.appendingToNoteId
+        // Processing from here on: finishing the file of a long recording takes a while
+        _uiState.value = _uiState.value.copy(
+            isRecording = false,
+            isRecordingPaused = false,
+            appendingToNoteId = null,
+            recordingFilePath = null,
+            isProcessing = true
+        )
+
+        viewModelScope.launch {
+            val result = audioRecorder.stopRecording()
+            if (result == null) {
+                _uiState.value = _uiState.value.copy(
+                    isProcessing = false,
+                    errorMessage = "Failed to stop recording"
+                )
+                return@launch
+            }
+
+            if (appendingToNoteId != null && result.appendedAtMs != null) {
+                updateAppendedNote(appendingToNoteId, result)
+                return@launch
+            }
+
             // Save to database and process with AI
-            viewModelScope.launch {
-                try {
-                    // Create initial voice note
-                    val voiceNote = VoiceNote(
+            try {
+                // Create initial voice note
+                val voiceNote = VoiceNote(
+                    title = "Processing...",
+                    filePath = result.filePath,
+                    duration = result.duration,
+                    fileSize = result.fileSize,
+                    createdAt = Date(),
+                    isProcessing = true,
+                    speechSegments = result.speechSegments
+                )
+
+                val noteId = repository.insertVoiceNote(voiceNote)
+
+                // Process with AI
+                processVoiceNoteWithAI(noteId, result.filePath, result.speechSegments)
+
+            } catch (e: Exception) {
+                _uiState.value = _uiState.value.copy(
+                    isProcessing = false,
+                    errorMessage = "Failed to save recording: ${e.message}"
+                )
+            }
+        }
+    }
+
+    /**
+     * Save and process the recordings [AudioRecorder.recoverInterrupted] put back
+     * together, unless a note already has one
+     */
+    private suspend fun recoverInterruptedRecordings() {
+        val recovered = audioRecorder.recoverInterrupted()
+        if (recovered.isEmpty()) return
+        val notes = repository.getAllVoiceNotes().first()
+        for ((startedAt, result) in recovered) {
+            val existing = notes.firstOrNull { it.filePath == result.filePath }
+            if (result.appendedAtMs != null) {
+                existing?.let { viewModelScope.launch { updateAppendedNote(it.id, result) } }
+            } else if (existing == null) {
+                val noteId = repository.insertVoiceNote(
+                    VoiceNote(
                         title = "Processing...",
                         filePath = result.filePath,
                         duration = result.duration,
                         fileSize = result.fileSize,
-                        createdAt = Date(),
+                        createdAt = startedAt,
                         isProcessing = true
                     )
-                    
-                    val noteId = repository.insertVoiceNote(voiceNote)
-                    
-                    // Process with AI
-                    processVoiceNoteWithAI(noteId, result.filePath)
-                    
-                } catch (e: Exception) {
-                    _uiState.value = _uiState.value.copy(
-                        isProcessing = false,
-                        errorMessage = "Failed to save recording: ${e.message}"
-                    )
-                }
+                )
+                viewModelScope.launch { processVoiceNoteWithAI(noteId, result.filePath) }
             }
-        } else {
+        }
+        _uiState.value = _uiState.value.copy(
+            errorMessage = "Recovered ${recovered.size} recording(s) interrupted when the app closed"
+        )
+    }
+
+    /**
+     * Store a note's longer recording and analyze it again, keeping its title
+     */
+    private suspend fun updateAppendedNote(noteId: Long, result: AudioRecorder.RecordingResult) {
+        try {
+            val note = repository.getVoiceNoteById(noteId) ?: return
+            // Empty segments mean the whole recording counts as speech; keep it that way
+            val speechSegments = if (note.speechSegments.isEmpty() || result.speechSegments.isEmpty()) {
+                emptyList()
+            } else {
+                note.speechSegments + result.speechSegments
+            }
+            repository.updateVoiceNote(
+                note.copy(
+                    duration = result.duration,
+                    fileSize = result.fileSize,
+                    speechSegments = speechSegments,
+                    isProcessing = true
+                )
+            )
+            processVoiceNoteWithAI(noteId, result.filePath, speechSegments, retitle = false)
+        } catch (e: Exception) {
             _uiState.value = _uiState.value.copy(
-                isRecording = false,
-                errorMessage = "Failed to stop recording"
+                isProcessing = false,
+                errorMessage = "Failed to save recording: ${e.message}"
             )
         }
     }
     
-    private suspend fun processVoiceNoteWithAI(noteId: Long, filePath: String) {
+    private suspend fun processVoiceNoteWithAI(
+        noteId: Long,
+        filePath: String,
+        speechSegments: List<SpeechSegment> = emptyList(),
+        retitle: Boolean = true
+    ) {
         try {
-            // Transcribe audio
-            val transcript = aiService.transcribeAudio(filePath)
+            // Transcribe audio, sending only its speech
+            val transcript = aiService.transcribeAudio(filePath, speechSegments)
             
             // Generate AI summary with action items and speaking patterns
-            val aiResult = aiService.generateSummary(transcript, filePath)
+            val aiResult = aiService.generateSummary(transcript, filePath, speechSegments)
 
             // Generate custom name based on content
             val voiceNote = repository.getVoiceNoteById(noteId)
@@ -199,10 +374,13 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
             // Update voice note with AI results and custom name
             voiceNote?.let { note ->
                 val updatedNote = note.copy(
-                    title = customTitle,
+                    title = if (retitle) customTitle else note.title,
                     transcript = transcript,
                     summary = aiResult.summary,
                     keyPoints = aiResult.keyPoints,
+                    chapters = aiResult.chapters,
+                    speakingPatterns = aiResult.speakingPatterns,
+                    summarySource = aiResult.summarySource,
                     isProcessing = false
                 )
                 repository.updateVoiceNote(updatedNote)
@@ -215,7 +393,7 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
             val voiceNote = repository.getVoiceNoteById(noteId)
             voiceNote?.let { note ->
                 val updatedNote = note.copy(
-                    title = "Recording ${Date()}",
+                    title = if (retitle) "Recording ${Date()}" else note.title,
                     isProcessing = false
                 )
                 repository.updateVoiceNote(updatedNote)
@@ -228,6 +406,13 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
         }
     }
     
+    /**
+     * Re-run analysis over every note in the background, e.g. after dictionaries changed
+     */
+    fun reanalyzeLibrary() {
+        ReanalysisWorker.enqueue(getApplication())
+    }
+    
     fun playAudio(voiceNote: VoiceNote) {
         audioPlayer.playAudio(voiceNote.filePath) {
             // On completion
@@ -249,11 +434,12 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
     fun deleteVoiceNote(voiceNote: VoiceNote) {
         viewModelScope.launch {
             try {
-                // Delete file
+                // Delete file and its waveform
                 val file = java.io.File(voiceNote.filePath)
                 if (file.exists()) {
                     file.delete()
                 }
+                WaveformEnvelope.sidecarFor(file).delete()
                 
                 // Delete from database
                 repository.deleteVoiceNote(voiceNote)
@@ -266,6 +452,108 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
         }
     }
     
+    /**
+     * Merge a note flagged as a possible duplicate into the note it repeats
+     */
+    fun mergeDuplicate(duplicate: VoiceNote, original: VoiceNote) {
+        viewModelScope.launch {
+            try {
+                val orphanedAudio = repository.mergeVoiceNotes(original, duplicate)
+                orphanedAudio?.let { path ->
+                    val file = java.io.File(path)
+                    if (file.exists()) {
+                        file.delete()
+                    }
+                    WaveformEnvelope.sidecarFor(file).delete()
+                }
+            } catch (e: Exception) {
+                _uiState.value = _uiState.value.copy(
+                    errorMessage = "Failed to merge recordings: ${e.message}"
+                )
+            }
+        }
+    }
+
+    /**
+     * Replace a note's transcript, e.g. after a manual correction. Key points come from
+     * the sentences that changed; the summary and chapters depend on the whole text and
+     * are recomputed after the note is saved.
+     */
+    fun updateTranscript(note: VoiceNote, transcript: String) {
+        viewModelScope.launch(Dispatchers.Default) {
+            try {
+                val snapshot = synchronized(transcriptAnalyzers) {
+                    val analyzer = transcriptAnalyzers.getOrPut(note.id) {
+                        EditableTranscriptAnalyzer(note.transcript.orEmpty())
+                    }
+                    analyzer.update(transcript)
+                    analyzer.snapshot()
+                }
+                repository.updateVoiceNote(note.copy(transcript = transcript, keyPoints = snapshot.keywords))
+
+                val result = LocalNLPService.analyze(transcript, AnalysisOptions.SUMMARY or AnalysisOptions.CHAPTERS)
+                val current = repository.getVoiceNoteById(note.id) ?: return@launch
+                if (current.transcript != transcript) return@launch
+                repository.updateVoiceNote(
+                    current.copy(
+                        summary = result.summary,
+                        chapters = LocalNLPService.toChapters(
+                            result.chapters, transcript.length, current.duration, current.speechSegments
+                        ),
+                        summarySource = SummarySource.LOCAL
+                    )
+                )
+            } catch (e: Exception) {
+                _uiState.value = _uiState.value.copy(
+                    errorMessage = "Failed to update transcript: ${e.message}"
+                )
+            }
+        }
+    }
+
+    /**
+     * Look up notes related to [noteId] unless they are already known
+     */
+    fun loadRelatedNotes(noteId: Long) {
+        if (_relatedNotes.value.containsKey(noteId)) return
+        val version = repository.noteIndexVersion.value
+        viewModelScope.launch(Dispatchers.Default) {
+            val related = repository.relatedNotes(noteId, RELATED_NOTES_LIMIT).map { it.noteId }
+            // Results computed against an older index would never be invalidated
+            if (repository.noteIndexVersion.value == version) {
+                _relatedNotes.update { it + (noteId to related) }
+            }
+        }
+    }
+
+    /**
+     * Summarize one chapter of [note] unless it is already summarized
+     */
+    fun loadChapterSummary(note: VoiceNote, chapterIndex: Int) {
+        if (_chapterSummaries.value[note.id]?.containsKey(chapterIndex) == true) return
+        val chapter = note.chapters.getOrNull(chapterIndex) ?: return
+        val transcript = note.transcript ?: return
+        viewModelScope.launch(Dispatchers.Default) {
+            val summary = LocalNLPService.summarizeChapter(transcript, chapter)
+            _chapterSummaries.update { summaries ->
+                summaries + (note.id to (summaries[note.id].orEmpty() + (chapterIndex to summary)))
+            }
+        }
+    }
+
+    private fun findDuplicateHints(notes: List<VoiceNote>): Map<Long, VoiceNote> {
+        val notesById = notes.associateBy { it.id }
+        val hints = HashMap<Long, VoiceNote>()
+        for (note in notes) {
+            // Flag the newer copy and point it at the older one
+            val original = repository.findPossibleDuplicates(note.id)
+                .mapNotNull { notesById[it.noteId] }
+                .firstOrNull { it.createdAt < note.createdAt || (it.createdAt == note.createdAt && it.id < note.id) }
+            if (original != null) hints[note.id] = original
+        }
+        return hints
+    }
+    
     fun clearError() {
         _uiState.value = _uiState.value.copy(errorMessage = null)
     }
@@ -311,7 +599,9 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
                         transcript = transcript,
                         summary = oneLinerSummary,
                         keyPoints = keywords,
-                        isProcessing = false
+                        isProcessing = false,
+                        chapters = aiResult.chapters,
+                        summarySource = aiResult.summarySource
                     )
 
                     // Save to database
@@ -403,7 +693,9 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
                 transcript = transcript,
                 summary = oneLinerSummary,
                 keyPoints = keywords,
-                isProcessing = false
+                isProcessing = false,
+                chapters = aiResult.chapters,
+                summarySource = aiResult.summarySource
             )
 
             repository.insertVoiceNote(voiceNote)
@@ -467,6 +759,9 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
 
                 val noteId = repository.insertVoiceNote(voiceNote)
 
+                // Waveform once now, so the list never decodes the file
+                launch(Dispatchers.IO) { fileProcessor.writeWaveform(localFilePath) }
+
                 // Process with AI
                 processVoiceNoteWithAI(noteId, localFilePath)
 
@@ -650,10 +945,18 @@ class VoiceNotesViewModel(application: Application) : AndroidViewModel(applicati
         audioPlayer.stopAudio()
         enhancedTTSService.shutdown()
     }
+
+    companion object {
+        private const val RELATED_NOTES_LIMIT = 3
+        private const val EDITED_TRANSCRIPTS_KEPT = 4
+    }
 }
 
 data class VoiceNotesUiState(
     val isRecording: Boolean = false,
+    val isRecordingPaused: Boolean = false,
+    /** The note being recorded onto, if the recording continues one */
+    val appendingToNoteId: Long? = null,
     val isProcessing: Boolean = false,
     val recordingFilePath: String? = null,
     val errorMessage: String? = null,
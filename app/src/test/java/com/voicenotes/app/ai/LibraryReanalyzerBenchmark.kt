@@ -0,0 +1,43 @@
+package com.voicenotes.app.ai
+
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Assume.assumeTrue
+import org.junit.Test
+
+/**
+ * Re-analysis throughput over a 10,000-note in-memory library, in notes per second.
+ * A measurement rather than a check, so it is skipped unless asked for:
+ *
+ * ./gradlew :app:testDebugUnitTest --tests "*LibraryReanalyzerBenchmark*" -Pbenchmark -i
+ *
+ * The fake DAO answers pages at once, so this is analysis and the page pipeline
+ * without Room. Rates only compare between runs on the same machine.
+ */
+class LibraryReanalyzerBenchmark {
+
+    private val notes by lazy { ReanalysisLibrary.generate(10_000) }
+
+    private fun reanalyze(parallelism: Int): LibraryReanalyzer.Result = runBlocking {
+        val dao = FakeVoiceNoteDao(notes)
+        LibraryReanalyzer(dao, MemoryCheckpoint(), dao, parallelism = parallelism).run()
+    }
+
+    @Test
+    fun reanalyze_10kNotes() {
+        assumeTrue(System.getProperty("benchmark").toBoolean())
+
+        // Warm up the analyzers first, so the rate is not mostly JIT compilation
+        reanalyze(Runtime.getRuntime().availableProcessors())
+
+        for (parallelism in listOf(1, Runtime.getRuntime().availableProcessors()).distinct()) {
+            val result = reanalyze(parallelism)
+            assertEquals(notes.size, result.processed)
+            assertEquals(0, result.failed)
+            println(
+                "LibraryReanalyzer: ${result.processed} notes in ${result.elapsedMs} ms on $parallelism " +
+                    "thread(s), %.1f notes/s".format(result.notesPerSecond)
+            )
+        }
+    }
+}
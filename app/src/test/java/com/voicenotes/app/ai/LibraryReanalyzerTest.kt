@@ -0,0 +1,95 @@
+package com.voicenotes.app.ai
+
+import com.voicenotes.app.data.SummarySource
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Library re-analysis over an in-memory library: parallel pages, resuming from a
+ * checkpoint after an interrupted run, and the notes it must leave alone
+ */
+class LibraryReanalyzerTest {
+
+    @Test
+    fun reanalyze_sameResultsAtAnyParallelism() = runBlocking {
+        val serial = FakeVoiceNoteDao(ReanalysisLibrary.generate(1_000))
+        val parallel = FakeVoiceNoteDao(ReanalysisLibrary.generate(1_000))
+
+        val serialResult = LibraryReanalyzer(serial, MemoryCheckpoint(), serial, parallelism = 1, pageSize = 100).run()
+        val parallelResult = LibraryReanalyzer(parallel, MemoryCheckpoint(), parallel, parallelism = 4, pageSize = 100).run()
+
+        assertEquals(1_000, serialResult.processed)
+        assertEquals(1_000, parallelResult.processed)
+        assertEquals(0, parallelResult.failed)
+        assertTrue(parallel.notes.values.all { !it.summary.isNullOrEmpty() && it.keyPoints.isNotEmpty() })
+        assertEquals(serial.notes, parallel.notes)
+    }
+
+    @Test
+    fun reanalyze_resumesFromCheckpoint() = runBlocking {
+        val dao = FakeVoiceNoteDao(ReanalysisLibrary.generate(1_000), failAfterWrites = 2)
+        val checkpoint = MemoryCheckpoint()
+        val reanalyzer = LibraryReanalyzer(dao, checkpoint, dao, pageSize = 100)
+
+        try {
+            reanalyzer.run()
+            fail("Expected the simulated interruption")
+        } catch (e: IllegalStateException) {
+            assertEquals(LibraryReanalyzer.Progress(lastNoteId = 200, processed = 200), checkpoint.progress)
+        }
+
+        dao.failAfterWrites = Int.MAX_VALUE
+        val result = reanalyzer.run()
+        assertEquals(800, result.processed)
+        assertNull(checkpoint.progress)
+        assertTrue(dao.notes.values.all { !it.summary.isNullOrEmpty() })
+    }
+
+    @Test
+    fun reanalyze_discardsCheckpointFromOlderVersion() = runBlocking {
+        val dao = FakeVoiceNoteDao(ReanalysisLibrary.generate(300))
+        val checkpoint = MemoryCheckpoint()
+        checkpoint.progress = LibraryReanalyzer.Progress(
+            lastNoteId = 200,
+            processed = 200,
+            version = LibraryReanalyzer.ANALYSIS_VERSION - 1
+        )
+
+        val result = LibraryReanalyzer(dao, checkpoint, dao, pageSize = 100).run()
+
+        assertEquals(300, result.processed)
+        assertTrue(dao.notes.values.all { !it.summary.isNullOrEmpty() })
+    }
+
+    @Test
+    fun reanalyze_keepsCloudSummaries() = runBlocking {
+        val notes = ReanalysisLibrary.generate(50).map {
+            if (it.id % 2 == 0L) it.copy(summary = "From the cloud", summarySource = SummarySource.CLOUD) else it
+        }
+        val dao = FakeVoiceNoteDao(notes)
+
+        val result = LibraryReanalyzer(dao, MemoryCheckpoint(), dao).run()
+
+        assertEquals(25, result.processed)
+        dao.notes.values.filter { it.id % 2 == 0L }.forEach {
+            assertEquals("From the cloud", it.summary)
+            assertEquals(SummarySource.CLOUD, it.summarySource)
+        }
+        assertTrue(dao.notes.values.filter { it.id % 2 == 1L }.all { it.summarySource == SummarySource.LOCAL })
+    }
+
+    @Test
+    fun reanalyze_skipsNotesEditedDuringAnalysis() = runBlocking {
+        val dao = FakeVoiceNoteDao(ReanalysisLibrary.generate(20))
+        dao.beforeWrite = {
+            val note = dao.notes.getValue(7)
+            dao.notes[7] = note.copy(transcript = "Edited while the page was analyzed", summary = "Edited summary")
+        }
+
+        val result = LibraryReanalyzer(dao, MemoryCheckpoint(), dao).run()
+
+        assertEquals(19, result.processed)
+        assertEquals("Edited summary", dao.notes.getValue(7).summary)
+    }
+}
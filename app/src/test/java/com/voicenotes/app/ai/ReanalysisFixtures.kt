@@ -0,0 +1,127 @@
+package com.voicenotes.app.ai
+
+import com.voicenotes.app.data.SummarySource
+import com.voicenotes.app.data.VoiceNote
+import com.voicenotes.app.data.VoiceNoteAnalysis
+import com.voicenotes.app.data.VoiceNoteDao
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flowOf
+import java.util.Date
+import java.util.Random
+
+/**
+ * A library as re-analysis meets it: dictated notes from thirty seconds to five
+ * minutes long, each about one or two subjects, so every note gets its own summary
+ * and key points rather than the same ones
+ */
+internal object ReanalysisLibrary {
+
+    private val people = listOf("John", "Sarah", "Priya", "Mr Okafor", "Dr Lee", "the landlord", "the team", "my sister")
+    private val subjects = listOf(
+        "budget review", "kitchen renovation", "quarterly report", "school trip", "client proposal",
+        "dentist appointment", "car insurance", "product launch", "garden fence", "tax return",
+        "wedding playlist", "server migration", "hiring plan", "book club", "marathon training"
+    )
+    private val whens = listOf("tomorrow", "on Friday", "next week", "before Monday", "this afternoon", "after lunch")
+    private val templates = listOf(
+        "Remind me to call {p} about the {s} {w}",
+        "We talked through the {s} and agreed to revisit it {w}",
+        "Action item: send {p} the notes on the {s}",
+        "The {s} went better than expected, although the numbers still need checking",
+        "Don't forget to book time for the {s} {w}",
+        "So the main thing about the {s} is that nobody owns it yet",
+        "{p} will look into the {s} and get back to me {w}",
+        "I'm worried the {s} will slip again unless {p} signs off {w}"
+    )
+
+    // Dictation runs at about 150 words a minute
+    private const val MS_PER_WORD = 400L
+
+    fun generate(size: Int, seed: Long = 3): List<VoiceNote> {
+        val random = Random(seed)
+        return List(size) { index ->
+            val topics = List(1 + random.nextInt(2)) { subjects[random.nextInt(subjects.size)] }
+            val targetWords = 75 + random.nextInt(675)
+            val transcript = StringBuilder()
+            var words = 0
+            while (words < targetWords) {
+                val sentence = templates[random.nextInt(templates.size)]
+                    .replace("{p}", people[random.nextInt(people.size)])
+                    .replace("{s}", topics[random.nextInt(topics.size)])
+                    .replace("{w}", whens[random.nextInt(whens.size)])
+                    .replaceFirstChar { it.uppercase() }
+                transcript.append(sentence).append(". ")
+                words += sentence.count { it == ' ' } + 1
+            }
+            VoiceNote(
+                id = index + 1L,
+                title = "Recording ${index + 1}",
+                filePath = "",
+                duration = words * MS_PER_WORD,
+                fileSize = 0,
+                createdAt = Date(0),
+                transcript = transcript.toString()
+            )
+        }
+    }
+}
+
+/**
+ * In-memory DAO and writer; [failAfterWrites] simulates the process dying mid-run
+ * and [beforeWrite] an edit landing while a page is analyzed
+ */
+internal class FakeVoiceNoteDao(
+    notes: List<VoiceNote>,
+    var failAfterWrites: Int = Int.MAX_VALUE
+) : VoiceNoteDao, LibraryReanalyzer.Writer {
+    val notes = notes.associateBy { it.id }.toSortedMap()
+    var writes = 0
+    var beforeWrite: () -> Unit = {}
+
+    override fun getAllVoiceNotes(): Flow<List<VoiceNote>> = flowOf(notes.values.toList())
+    override suspend fun getVoiceNoteById(id: Long): VoiceNote? = notes[id]
+    override suspend fun insertVoiceNote(voiceNote: VoiceNote): Long = throw UnsupportedOperationException()
+    override suspend fun updateVoiceNote(voiceNote: VoiceNote) { notes[voiceNote.id] = voiceNote }
+    override suspend fun deleteVoiceNote(voiceNote: VoiceNote) { notes.remove(voiceNote.id) }
+    override suspend fun deleteVoiceNoteById(id: Long) { notes.remove(id) }
+    override suspend fun getVoiceNotesCount(): Int = notes.size
+    override suspend fun getTranscribedNotesCount(): Int = notes.values.count { !it.transcript.isNullOrBlank() }
+    override suspend fun getAllTranscripts(): List<String> = notes.values.mapNotNull { it.transcript }
+
+    override suspend fun getVoiceNotesByIds(ids: List<Long>): List<VoiceNote> = ids.mapNotNull { notes[it] }
+
+    override suspend fun getTranscribedNotesAfter(afterId: Long, limit: Int): List<VoiceNote> {
+        return notes.tailMap(afterId + 1).values.filter { !it.transcript.isNullOrBlank() }.take(limit)
+    }
+
+    override suspend fun updateAnalyses(analyses: List<VoiceNoteAnalysis>) {
+        for (analysis in analyses) {
+            val note = notes.getValue(analysis.id)
+            notes[analysis.id] = note.copy(
+                summary = analysis.summary,
+                keyPoints = analysis.keyPoints,
+                summarySource = analysis.summarySource
+            )
+        }
+    }
+
+    // Same checks as VoiceNoteRepository.updateAnalyses
+    override suspend fun write(notes: List<VoiceNote>, analyses: List<VoiceNoteAnalysis>): Int {
+        if (writes++ >= failAfterWrites) throw IllegalStateException("Interrupted")
+        beforeWrite()
+        val analyzed = notes.associate { it.id to it.transcript }
+        val unchanged = analyses.filter { analysis ->
+            val note = this.notes[analysis.id]
+            note != null && note.transcript == analyzed[analysis.id] && note.summarySource != SummarySource.CLOUD
+        }
+        updateAnalyses(unchanged)
+        return unchanged.size
+    }
+}
+
+internal class MemoryCheckpoint : LibraryReanalyzer.Checkpoint {
+    var progress: LibraryReanalyzer.Progress? = null
+    override fun load() = progress
+    override fun save(progress: LibraryReanalyzer.Progress) { this.progress = progress }
+    override fun clear() { progress = null }
+}
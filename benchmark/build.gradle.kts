@@ -0,0 +1,30 @@
+plugins {
+    alias(libs.plugins.kotlin.jvm)
+    alias(libs.plugins.jmh)
+}
+
+dependencies {
+    implementation(project(":core"))
+}
+
+kotlin {
+    jvmToolchain(17)
+}
+
+// ./gradlew -p benchmark jmh [-Pjmh.includes=LocalNLP] [-Pjmh.results=path.json] [-Pjmh.profilers=gc]
+// Results are JMH JSON; keep one file per commit and compare them to spot regressions.
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    resultFormat.set("JSON")
+    resultsFile.set(
+        (findProperty("jmh.results") as String?)?.let { file(it) }
+            ?: layout.buildDirectory.file("results/jmh/results.json").get().asFile
+    )
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+    (findProperty("jmh.profilers") as String?)?.let { profilers.set(it.split(',')) }
+}
@@ -0,0 +1,31 @@
+// A standalone build, so the benchmarks run on a plain JVM host without the Android SDK:
+//   gradle -p benchmark jmh
+pluginManagement {
+    repositories {
+        mavenCentral()
+        gradlePluginPortal()
+    }
+}
+dependencyResolutionManagement {
+    repositoriesMode.set(RepositoriesMode.FAIL_ON_PROJECT_REPOS)
+    repositories {
+        google {
+            content {
+                includeGroupByRegex("androidx.*")
+            }
+        }
+        mavenCentral()
+    }
+    // The app's catalog, so Kotlin and library versions always match the app build
+    versionCatalogs {
+        create("libs") {
+            from(files("../gradle/libs.versions.toml"))
+        }
+    }
+}
+
+rootProject.name = "VoiceNotesBenchmark"
+
+// The app's pure-JVM module, built here without the Android parts of the main build
+include(":core")
+project(":core").projectDir = file("../core")
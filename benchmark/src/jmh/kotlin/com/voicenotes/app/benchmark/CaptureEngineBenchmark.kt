@@ -0,0 +1,38 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.CaptureEngine
+import com.voicenotes.app.audio.LevelMeter
+import com.voicenotes.app.audio.PcmFormat
+import com.voicenotes.app.audio.PcmStreamSource
+import org.openjdk.jmh.annotations.*
+import java.io.ByteArrayInputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * CaptureEngine fan-out of ten seconds of audio, read as fast as the source allows,
+ * to [consumers] level meters on their own threads
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class CaptureEngineBenchmark {
+
+    @Param("1", "4")
+    var consumers = 0
+
+    private val format = PcmFormat(16_000)
+    private lateinit var pcm: ByteArray
+
+    @Setup
+    fun setUp() {
+        pcm = SyntheticPcm.bytes(SyntheticPcm.speech(10))
+    }
+
+    @Benchmark
+    fun capture(): Long {
+        val engine = CaptureEngine(PcmStreamSource.raw(ByteArrayInputStream(pcm), format))
+        repeat(consumers) { engine.addConsumer("level$it", LevelMeter()) }
+        engine.start()
+        return engine.awaitCompletion().capturedSamples
+    }
+}
@@ -0,0 +1,47 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.data.Chapter
+import com.voicenotes.app.data.Converters
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Room type converters for the JSON columns, at key point and chapter counts from a
+ * short memo up to a long recording.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class ConvertersBenchmark {
+
+    @Param("8", "64", "512")
+    var items = 0
+
+    private val converters = Converters()
+    private lateinit var strings: List<String>
+    private lateinit var stringsJson: String
+    private lateinit var chapters: List<Chapter>
+    private lateinit var chaptersJson: String
+
+    @Setup
+    fun setUp() {
+        strings = List(items) { "key point number $it about the project" }
+        stringsJson = converters.fromStringList(strings)
+        chapters = List(items) {
+            Chapter("Chapter $it: budget and timeline", it * 1_000, it * 1_000 + 999, it * 60_000L, it * 60_000L + 59_999)
+        }
+        chaptersJson = converters.fromChapterList(chapters)
+    }
+
+    @Benchmark
+    fun fromStringList(): String = converters.fromStringList(strings)
+
+    @Benchmark
+    fun toStringList(): List<String> = converters.toStringList(stringsJson)
+
+    @Benchmark
+    fun fromChapterList(): String = converters.fromChapterList(chapters)
+
+    @Benchmark
+    fun toChapterList(): List<Chapter> = converters.toChapterList(chaptersJson)
+}
@@ -0,0 +1,58 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.nlp.Gazetteer
+import org.openjdk.jmh.annotations.*
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Gazetteer lookup over a 10,000-word transcript against name lists of [entries],
+ * lowercasing included. Each token costs one hash probe whatever the list size, so
+ * the time should stay flat from a hundred names to a hundred thousand.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class GazetteerBenchmark {
+
+    @Param("100", "10000", "100000")
+    var entries = 0
+
+    private lateinit var gazetteer: Gazetteer
+    private lateinit var text: String
+
+    @Setup
+    fun setUp() {
+        val random = Random(41)
+        val builder = Gazetteer.Builder()
+        val names = LinkedHashSet<String>()
+        val types = Gazetteer.Type.values()
+        while (names.size < entries) {
+            val name = name(random)
+            if (names.add(name)) builder.add(name, types[random.nextInt(types.size)])
+        }
+        gazetteer = builder.build()
+
+        // 1,000 sentences of nine common words and a known name
+        val list = names.toList()
+        val transcript = StringBuilder()
+        repeat(1_000) {
+            repeat(9) { transcript.append(filler[random.nextInt(filler.size)]).append(' ') }
+            transcript.append(list[random.nextInt(list.size)]).append(". ")
+        }
+        text = transcript.toString()
+    }
+
+    @Benchmark
+    fun find(): List<Gazetteer.Match> = gazetteer.find(text)
+
+    private companion object {
+        val syllables = listOf("ka", "lo", "mir", "ta", "ven", "so", "ri", "bel", "an", "dor", "qui", "zel")
+        val filler = listOf("we", "talked", "about", "the", "budget", "and", "then", "met", "with", "at", "office", "later")
+
+        fun name(random: Random): String = List(1 + random.nextInt(3)) {
+            List(2 + random.nextInt(2)) { syllables[random.nextInt(syllables.size)] }
+                .joinToString("").replaceFirstChar { it.uppercase() }
+        }.joinToString(" ")
+    }
+}
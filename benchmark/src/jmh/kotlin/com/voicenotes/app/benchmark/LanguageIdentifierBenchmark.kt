@@ -0,0 +1,54 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.nlp.Language
+import com.voicenotes.app.ai.nlp.LanguageIdentifier
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Language identification of a transcript [chars] long, rotating through seven
+ * languages. Only the first SAMPLE_CHARS characters are read, so the hour-long case
+ * should cost what the 300-character one does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class LanguageIdentifierBenchmark {
+
+    @Param("60", "300", "50000")
+    var chars = 0
+
+    private lateinit var texts: List<String>
+    private var next = 0
+
+    @Setup
+    fun setUp() {
+        texts = notes.map { note ->
+            val text = StringBuilder()
+            while (text.length < chars) text.append(note).append(' ')
+            text.substring(0, chars)
+        }
+    }
+
+    @Benchmark
+    fun identify(): Language = LanguageIdentifier.identify(texts[next++ % texts.size])
+
+    private companion object {
+        val notes = listOf(
+            "Remind me to call the plumber tomorrow morning about the leak under the kitchen sink, " +
+                "and pick up bread and milk on the way home from the office.",
+            "Mañana tengo que llamar al fontanero por la fuga debajo del fregadero, y comprar pan " +
+                "y leche al volver de la oficina.",
+            "Demain je dois appeler le plombier pour la fuite sous l'évier de la cuisine, et acheter " +
+                "du pain et du lait en rentrant du bureau.",
+            "Morgen muss ich den Klempner wegen des Lecks unter der Spüle anrufen und auf dem " +
+                "Heimweg vom Büro Brot und Milch kaufen.",
+            "Domani devo chiamare l'idraulico per la perdita sotto il lavello della cucina, e " +
+                "comprare pane e latte tornando dall'ufficio.",
+            "Amanhã preciso ligar para o encanador por causa do vazamento embaixo da pia da cozinha " +
+                "e comprar pão e leite na volta do escritório.",
+            "Morgen moet ik de loodgieter bellen over het lek onder het aanrecht, en op weg naar huis " +
+                "van kantoor brood en melk kopen."
+        )
+    }
+}
@@ -0,0 +1,47 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.LocalNLPService
+import com.voicenotes.app.ai.nlp.AnalyzedDocument
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * LocalNLPService extractors. Each result field is memoized, so every invocation
+ * analyzes the transcript afresh; [analyzeDocument] is that shared cost on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class LocalNLPBenchmark {
+
+    @Param("100", "1000", "10000", "100000")
+    var words = 0
+
+    private lateinit var transcript: String
+
+    @Setup
+    fun setUp() {
+        transcript = SyntheticTranscripts.generate(words)
+    }
+
+    @Benchmark
+    fun analyzeDocument(): AnalyzedDocument = AnalyzedDocument.analyze(transcript)
+
+    @Benchmark
+    fun keywords(): List<String> = LocalNLPService.analyze(transcript).keywords
+
+    @Benchmark
+    fun actionItems(): List<String> = LocalNLPService.analyze(transcript).actionItems
+
+    @Benchmark
+    fun entities(): Map<String, List<String>> = LocalNLPService.analyze(transcript).entities
+
+    @Benchmark
+    fun sentiment(): String = LocalNLPService.analyze(transcript).sentiment
+
+    @Benchmark
+    fun summary(): String = LocalNLPService.analyze(transcript).summary
+
+    @Benchmark
+    fun chapters(): Int = LocalNLPService.analyze(transcript).chapters.size
+}
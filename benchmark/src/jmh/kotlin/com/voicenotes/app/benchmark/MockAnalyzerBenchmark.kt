@@ -0,0 +1,39 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.ActionItem
+import com.voicenotes.app.ai.MockAnalyzer
+import com.voicenotes.app.ai.nlp.Dictionaries
+import com.voicenotes.app.ai.nlp.DictionaryMatches
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * The AIService mock path: one dictionary scan shared by key point and action item
+ * extraction, as in AIService.generateMockSummary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class MockAnalyzerBenchmark {
+
+    @Param("100", "1000", "10000", "100000")
+    var words = 0
+
+    private lateinit var transcript: String
+    private lateinit var matches: DictionaryMatches
+
+    @Setup
+    fun setUp() {
+        transcript = SyntheticTranscripts.generate(words)
+        matches = Dictionaries.match(transcript.lowercase())
+    }
+
+    @Benchmark
+    fun dictionaryScan(): DictionaryMatches = Dictionaries.match(transcript.lowercase())
+
+    @Benchmark
+    fun keyPoints(): List<String> = MockAnalyzer.generateKeyPoints(transcript, matches)
+
+    @Benchmark
+    fun actionItems(): List<ActionItem> = MockAnalyzer.extractActionItems(transcript, matches)
+}
@@ -0,0 +1,49 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.Mp4Appender
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.nio.file.Files
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Appending a one-minute segment in place to a recording of [recordingMinutes]. The
+ * cost should follow the segment, not the recording; each call starts again from an
+ * untouched copy, made outside the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class Mp4AppenderBenchmark {
+
+    @Param("1", "30", "120")
+    var recordingMinutes = 0
+
+    private lateinit var directory: File
+    private lateinit var original: File
+    private lateinit var segment: File
+    private lateinit var target: File
+
+    @Setup
+    fun setUp() {
+        val random = Random(49)
+        directory = Files.createTempDirectory("benchmark").toFile()
+        original = SyntheticMp4.write(File(directory, "original.m4a"), SyntheticMp4.frames(recordingMinutes.toDouble(), random))
+        segment = SyntheticMp4.write(File(directory, "segment.m4a"), SyntheticMp4.frames(1.0, random))
+        target = File(directory, "target.m4a")
+    }
+
+    @Setup(Level.Invocation)
+    fun resetTarget() {
+        original.copyTo(target, overwrite = true)
+    }
+
+    @TearDown
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Benchmark
+    fun appendMinute(): Long = Mp4Appender.append(target, segment).bytesWritten
+}
@@ -0,0 +1,35 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.naming.DateTimeSettings
+import com.voicenotes.app.naming.RecordingNamer
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * RecordingNamer.generate, behind NamingManager.generateRecordingName, for each naming pattern
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class NamingBenchmark {
+
+    @Param("100", "1000", "10000", "100000")
+    var words = 0
+
+    @Param(RecordingNamer.PATTERN_SMART, RecordingNamer.PATTERN_DATE_TIME, RecordingNamer.PATTERN_CUSTOM)
+    var pattern = ""
+
+    private lateinit var transcript: String
+
+    @Setup
+    fun setUp() {
+        transcript = SyntheticTranscripts.generate(words)
+    }
+
+    @Benchmark
+    fun generateRecordingName(): String {
+        return RecordingNamer.generate(
+            pattern, DateTimeSettings.DEFAULT, transcript, duration = words * 400L, recordingNumber = 7
+        )
+    }
+}
@@ -0,0 +1,49 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.nlp.MinHash
+import com.voicenotes.app.ai.nlp.NearDuplicateIndex
+import org.openjdk.jmh.annotations.*
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * LSH candidate lookup over a library of [notes] MinHash signatures: a re-recorded
+ * copy of a library note, which has a match, and a new note, which has none. The cost
+ * should follow the candidates in the query's buckets, not the library size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class NearDuplicateIndexBenchmark {
+
+    @Param("5000", "50000")
+    var notes = 0
+
+    private val index = NearDuplicateIndex()
+    private lateinit var reRecorded: List<IntArray>
+    private lateinit var unrelated: List<IntArray>
+    private var query = 0
+
+    @Setup
+    fun setUp() {
+        val random = Random(35)
+        val samples = ArrayList<String>()
+        for (id in 1..notes) {
+            val note = SyntheticNotes.note(random)
+            index.add(id.toLong(), MinHash.signature(note)!!)
+            if (id % (notes / QUERIES) == 0) samples.add(note)
+        }
+        reRecorded = samples.map { MinHash.signature(SyntheticNotes.reRecorded(random, it))!! }
+        unrelated = List(QUERIES) { MinHash.signature(SyntheticNotes.note(random))!! }
+    }
+
+    @Benchmark
+    fun findReRecorded(): Int = index.findDuplicates(reRecorded[query++ % reRecorded.size]).size
+
+    @Benchmark
+    fun findUnrelated(): Int = index.findDuplicates(unrelated[query++ % unrelated.size]).size
+
+    private companion object {
+        const val QUERIES = 100
+    }
+}
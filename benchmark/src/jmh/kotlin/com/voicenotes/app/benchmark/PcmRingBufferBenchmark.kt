@@ -0,0 +1,30 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.PcmRingBuffer
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * One 20 ms block written to the capture ring and read back by a single reader.
+ * With -Pjmh.profilers=gc this should allocate nothing per block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class PcmRingBufferBenchmark {
+
+    private val block = ShortArray(320)
+    private val ring = PcmRingBuffer(8_192)
+    private val reader = ring.newReader()
+
+    @Setup
+    fun setUp() {
+        SyntheticPcm.speech(1).copyInto(block, endIndex = block.size)
+    }
+
+    @Benchmark
+    fun writeAndReadBlock(): Int {
+        ring.write(block, 0, block.size)
+        return reader.read(block, 0, block.size)
+    }
+}
@@ -0,0 +1,56 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.LevelMeter
+import com.voicenotes.app.audio.PcmFormat
+import com.voicenotes.app.audio.VoiceActivityDetector
+import com.voicenotes.app.audio.WaveformEnvelope
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * The capture-side analysis every recording runs (level meter, voice activity
+ * detection and the waveform sidecar) over one recorded minute, at the speech
+ * profiles' rate and at the hi-fi rate
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class RecordingProfileBenchmark {
+
+    @Param("16000", "44100")
+    var sampleRate = 0
+
+    private lateinit var format: PcmFormat
+    private lateinit var minute: ShortArray
+    private lateinit var file: File
+
+    @Setup
+    fun setUp() {
+        format = PcmFormat(sampleRate)
+        minute = SyntheticPcm.speech(60, sampleRate)
+        file = File.createTempFile("benchmark", ".wave")
+    }
+
+    @TearDown
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Benchmark
+    fun captureAnalysisPerMinute(): Float {
+        val level = LevelMeter()
+        val consumers = listOf(level, VoiceActivityDetector(), WaveformEnvelope.Writer(file))
+        val block = format.samplesFor(100)
+        consumers.forEach { it.onStart(format) }
+        var offset = 0
+        while (offset < minute.size) {
+            val count = minOf(block, minute.size - offset)
+            consumers.forEach { it.onPcm(minute, offset, count) }
+            offset += count
+        }
+        val peak = level.peak
+        consumers.forEach { it.onStop(0) }
+        return peak
+    }
+}
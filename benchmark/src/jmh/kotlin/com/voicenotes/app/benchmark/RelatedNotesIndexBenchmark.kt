@@ -0,0 +1,41 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.nlp.RelatedNotesIndex
+import com.voicenotes.app.ai.nlp.TfIdfModel
+import com.voicenotes.app.ai.nlp.TokenDictionary
+import org.openjdk.jmh.annotations.*
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Top-5 related notes for a note in a library of [notes], with idf from that library,
+ * the lookup the note screen makes each time it opens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class RelatedNotesIndexBenchmark {
+
+    @Param("1000", "10000")
+    var notes = 0
+
+    private val index = RelatedNotesIndex()
+    private var query = 0L
+
+    @Setup
+    fun setUp() {
+        val random = Random(36)
+        val dictionary = TokenDictionary()
+        val terms = List(notes) { RelatedNotesIndex.termCounts(SyntheticNotes.note(random), dictionary) }
+
+        val documentFrequencies = HashMap<String, Int>()
+        terms.forEach { counts -> counts.termIds.forEach { documentFrequencies.merge(dictionary.term(it), 1, Int::plus) } }
+        val model = TfIdfModel(dictionary)
+        model.load(notes, documentFrequencies)
+        val corpus = model.snapshot()
+        terms.forEachIndexed { i, counts -> index.add(i + 1L, counts, corpus) }
+    }
+
+    @Benchmark
+    fun relatedNotes(): List<RelatedNotesIndex.Match> = index.relatedNotes(query++ % notes + 1, 5)
+}
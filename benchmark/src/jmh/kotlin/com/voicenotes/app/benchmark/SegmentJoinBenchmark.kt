@@ -0,0 +1,45 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.Mp4Appender
+import com.voicenotes.app.audio.SegmentedRecording
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.nio.file.Files
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+/**
+ * Joining an hour of [SegmentedRecording] segments into one recording: the first
+ * segment copied, the rest appended in one pass with the sample tables rewritten once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class SegmentJoinBenchmark {
+
+    private lateinit var directory: File
+    private lateinit var segments: List<File>
+    private lateinit var output: File
+
+    @Setup
+    fun setUp() {
+        val random = Random(49)
+        directory = Files.createTempDirectory("benchmark").toFile()
+        val frames = SyntheticMp4.frames(SegmentedRecording.SEGMENT_MS / 60_000.0, random)
+        segments = List((60 * 60_000 / SegmentedRecording.SEGMENT_MS).toInt()) {
+            SyntheticMp4.write(File(directory, "%06d.m4a".format(it)), frames)
+        }
+        output = File(directory, "recording.m4a")
+    }
+
+    @TearDown
+    fun tearDown() {
+        directory.deleteRecursively()
+    }
+
+    @Benchmark
+    fun joinHour(): Long {
+        segments[0].copyTo(output, overwrite = true)
+        return Mp4Appender.append(output, segments.drop(1)).bytesWritten
+    }
+}
@@ -0,0 +1,58 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.nlp.SemanticIndex
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.util.Random
+import java.util.concurrent.Executor
+import java.util.concurrent.TimeUnit
+
+/**
+ * Top-10 semantic search over [notes] embedded notes: the clustered (IVF) search the
+ * app runs against the exact scan it replaces. SemanticIndexTest holds the recall
+ * of the first against the second at the same sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class SemanticIndexBenchmark {
+
+    @Param("10000", "100000")
+    var notes = 0
+
+    private lateinit var file: File
+    private lateinit var index: SemanticIndex
+    private lateinit var queries: List<FloatArray>
+    private var query = 0
+
+    @Setup
+    fun setUp() {
+        file = File.createTempFile("semantic", ".bin").apply { delete() }
+        // Cluster on this thread, so every query below runs against a trained index
+        index = SemanticIndex(file, trainer = Executor { it.run() })
+
+        val random = Random(37)
+        // In batches, so the transcripts of the whole library are never in memory at once
+        for (first in 0 until notes step BATCH) {
+            index.addAll((first until minOf(notes, first + BATCH)).associate { it + 1L to SyntheticNotes.note(random) })
+        }
+        queries = List(100) { index.embed(SyntheticNotes.note(random).take(200)) }
+    }
+
+    @TearDown
+    fun tearDown() {
+        index.close()
+        file.delete()
+        File(file.path + ".centroids").delete()
+    }
+
+    @Benchmark
+    fun ivfSearch(): List<SemanticIndex.Match> = index.searchVector(queries[query++ % queries.size], 10)
+
+    @Benchmark
+    fun exactScan(): List<SemanticIndex.Match> = index.exactSearch(queries[query++ % queries.size], 10)
+
+    private companion object {
+        const val BATCH = 10_000
+    }
+}
@@ -0,0 +1,33 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.PcmFormat
+import com.voicenotes.app.audio.PcmStreamSource
+import com.voicenotes.app.audio.SpeakingPatternAnalyzer
+import org.openjdk.jmh.annotations.*
+import java.io.ByteArrayInputStream
+import java.util.concurrent.TimeUnit
+
+/**
+ * Pause and voiced-time analysis streamed over [minutes] of dictation. With
+ * -Pjmh.profilers=gc the bytes per op should not grow with the recording.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class SpeakingPatternAnalyzerBenchmark {
+
+    @Param("1", "10")
+    var minutes = 0
+
+    private val format = PcmFormat(16_000)
+    private lateinit var pcm: ByteArray
+
+    @Setup
+    fun setUp() {
+        pcm = SyntheticPcm.bytes(SyntheticPcm.speech(minutes * 60))
+    }
+
+    @Benchmark
+    fun analyze(): Int =
+        SpeakingPatternAnalyzer.analyze(PcmStreamSource.raw(ByteArrayInputStream(pcm), format)).pauseCount
+}
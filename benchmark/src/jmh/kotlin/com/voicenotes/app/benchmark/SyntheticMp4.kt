@@ -0,0 +1,85 @@
+package com.voicenotes.app.benchmark
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.util.Random
+
+/**
+ * MPEG-4 audio laid out the way MediaMuxer writes it (ftyp, mdat, then moov) around
+ * random 32 kbps AAC-sized frames at 16 kHz
+ */
+object SyntheticMp4 {
+
+    const val SAMPLE_RATE = 16_000
+    const val FRAME_SAMPLES = 1024
+    private const val CHUNK = 10
+
+    /** Frames for [minutes] of audio, about 250 bytes each */
+    fun frames(minutes: Double, random: Random): List<ByteArray> =
+        List((minutes * 60 * SAMPLE_RATE / FRAME_SAMPLES).toInt()) {
+            ByteArray(150 + random.nextInt(200)).also { random.nextBytes(it) }
+        }
+
+    fun write(file: File, frames: List<ByteArray>): File {
+        val ftyp = box("ftyp", "M4A ".toByteArray(), int(0), "isomM4A ".toByteArray())
+        val data = ByteArrayOutputStream().apply { frames.forEach { write(it) } }.toByteArray()
+        val moov = moov(frames, ftyp.size + 8L)
+        file.outputStream().use { out ->
+            out.write(ftyp)
+            out.write(box("mdat", data))
+            out.write(moov)
+        }
+        return file
+    }
+
+    private fun moov(frames: List<ByteArray>, dataStart: Long): ByteArray {
+        val mediaDuration = frames.size * FRAME_SAMPLES
+        val movieDuration = (mediaDuration.toLong() * 1000 / SAMPLE_RATE).toInt()
+        val mvhd = box("mvhd", int(0), int(0), int(0), int(1000), int(movieDuration), int(0x10000), short(0x100), ByteArray(10), ByteArray(36), ByteArray(24), int(2))
+        val tkhd = box("tkhd", int(7), int(0), int(0), int(1), int(0), int(movieDuration), ByteArray(8), short(0), short(0), short(0x100), short(0), ByteArray(36), int(0), int(0))
+        val elst = box("elst", int(0), int(1), int(movieDuration), int(0), int(0x10000))
+        val mdhd = box("mdhd", int(0), int(0), int(0), int(SAMPLE_RATE), int(mediaDuration), short(0x55c4), short(0))
+        val hdlr = box("hdlr", int(0), int(0), "soun".toByteArray(), ByteArray(12), byteArrayOf(0))
+
+        val decoderConfig = byteArrayOf(0x40, 0x15, 0, 0x03, 0) + int(36_000) + int(32_000)
+        val esDescriptor = short(0) + byteArrayOf(0) +
+            descriptor(0x04, decoderConfig + descriptor(0x05, byteArrayOf(0x14, 0x08))) + descriptor(0x06, byteArrayOf(0x02))
+        val esds = box("esds", int(0), descriptor(0x03, esDescriptor))
+        val mp4a = box("mp4a", ByteArray(6), short(1), ByteArray(8), short(1), short(16), short(0), short(0), int(SAMPLE_RATE shl 16), esds)
+        val stsd = box("stsd", int(0), int(1), mp4a)
+
+        val stts = box("stts", int(0), int(1), int(frames.size), int(FRAME_SAMPLES))
+        val chunks = (frames.size + CHUNK - 1) / CHUNK
+        val stscRows = mutableListOf(intArrayOf(1, CHUNK, 1))
+        if (frames.size % CHUNK != 0) stscRows.add(intArrayOf(chunks, frames.size % CHUNK, 1))
+        val stsc = box("stsc", int(0), int(stscRows.size), *stscRows.flatMap { row -> row.map { int(it) } }.toTypedArray())
+        val stsz = box("stsz", int(0), int(0), int(frames.size), *frames.map { int(it.size) }.toTypedArray())
+        var offset = dataStart
+        val chunkOffsets = (0 until chunks).map { chunk ->
+            int(offset.toInt()).also { frames.subList(chunk * CHUNK, minOf(frames.size, (chunk + 1) * CHUNK)).forEach { offset += it.size } }
+        }
+        val stco = box("stco", int(0), int(chunks), *chunkOffsets.toTypedArray())
+
+        val stbl = box("stbl", stsd, stts, stsc, stsz, stco)
+        val minf = box("minf", box("smhd", int(0), int(0)), stbl)
+        val trak = box("trak", tkhd, box("edts", elst), box("mdia", mdhd, hdlr, minf))
+        return box("moov", mvhd, trak)
+    }
+
+    private fun box(type: String, vararg parts: ByteArray): ByteArray {
+        val out = ByteArrayOutputStream()
+        DataOutputStream(out).apply {
+            writeInt(8 + parts.sumOf { it.size })
+            write(type.toByteArray(Charsets.US_ASCII))
+            parts.forEach { write(it) }
+        }
+        return out.toByteArray()
+    }
+
+    private fun descriptor(tag: Int, body: ByteArray) = byteArrayOf(tag.toByte(), body.size.toByte()) + body
+
+    private fun int(value: Int) = byteArrayOf((value ushr 24).toByte(), (value ushr 16).toByte(), (value ushr 8).toByte(), value.toByte())
+
+    private fun short(value: Int) = byteArrayOf((value ushr 8).toByte(), value.toByte())
+}
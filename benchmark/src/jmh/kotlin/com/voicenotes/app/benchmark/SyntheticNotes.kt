@@ -0,0 +1,42 @@
+package com.voicenotes.app.benchmark
+
+import java.util.Random
+
+/**
+ * A deterministic note library for the cross-note indexes: each note is about one of
+ * [TOPICS] topics, padded with Zipf-ish everyday words, so some notes are related,
+ * most are not, and every note shares its common words with the rest
+ */
+object SyntheticNotes {
+
+    const val TOPICS = 400
+
+    private val generalWords = List(3_000) { "common$it" }
+    private val topicWords = List(TOPICS) { topic -> List(25) { "topic${topic}term$it" } }
+
+    /** One note of 80 to 200 words about [topic] */
+    fun note(random: Random, topic: Int = random.nextInt(TOPICS)): String {
+        val text = StringBuilder()
+        repeat(80 + random.nextInt(120)) {
+            val word = if (random.nextInt(10) < 3) {
+                topicWords[topic][random.nextInt(topicWords[topic].size)]
+            } else {
+                generalWords[(Math.pow(random.nextDouble(), 3.0) * generalWords.size).toInt()]
+            }
+            text.append(word).append(if (random.nextInt(12) == 0) ". " else " ")
+        }
+        return text.toString()
+    }
+
+    /**
+     * [note] spoken again: about one word in twenty dropped or replaced
+     */
+    fun reRecorded(random: Random, note: String): String =
+        note.split(' ').filter { it.isNotEmpty() }.mapNotNull { word ->
+            when (random.nextInt(40)) {
+                0 -> null
+                1 -> generalWords[random.nextInt(generalWords.size)]
+                else -> word
+            }
+        }.joinToString(" ")
+}
@@ -0,0 +1,47 @@
+package com.voicenotes.app.benchmark
+
+import java.util.Random
+import kotlin.math.PI
+import kotlin.math.sin
+
+/**
+ * Deterministic 16-bit mono audio that the capture pipeline treats like dictation:
+ * 0.8 s of voiced speech (a 150 Hz buzz with harmonics, swelling once per syllable)
+ * then 1.2 s of quiet room noise, repeated.
+ */
+object SyntheticPcm {
+
+    private const val SPEECH_MS = 800
+    private const val CYCLE_MS = 2_000
+
+    /**
+     * [seconds] of audio at [sampleRate]; the same [seed] always gives the same samples
+     */
+    fun speech(seconds: Int, sampleRate: Int = 16_000, seed: Long = 42L): ShortArray {
+        val random = Random(seed)
+        return ShortArray(seconds * sampleRate) { i ->
+            val ms = i * 1000L / sampleRate % CYCLE_MS
+            val noise = random.nextGaussian() * 30
+            val value = if (ms < SPEECH_MS) {
+                val t = i.toDouble() / sampleRate
+                var buzz = 0.0
+                for (harmonic in 1..8) buzz += sin(2 * PI * 150 * harmonic * t) / harmonic
+                val syllable = sin(PI * ms / 200.0)
+                noise + 3_000 * buzz * syllable * syllable
+            } else {
+                noise
+            }
+            value.toInt().coerceIn(-32768, 32767).toShort()
+        }
+    }
+
+    /** [samples] as little-endian PCM bytes, the way a raw stream carries them */
+    fun bytes(samples: ShortArray): ByteArray {
+        val bytes = ByteArray(samples.size * 2)
+        for (i in samples.indices) {
+            bytes[2 * i] = samples[i].toInt().toByte()
+            bytes[2 * i + 1] = (samples[i].toInt() shr 8).toByte()
+        }
+        return bytes
+    }
+}
@@ -0,0 +1,54 @@
+package com.voicenotes.app.benchmark
+
+import java.util.Random
+
+/**
+ * Deterministic transcripts that read like dictated notes: action items, meetings,
+ * names and places, opinions and free-form filler, so every extractor has work to do.
+ */
+object SyntheticTranscripts {
+
+    private val people = listOf("Sarah", "John", "the client", "my manager", "Dr Patel", "the design team", "Priya")
+    private val places = listOf("London", "New York", "the office", "Berlin", "the warehouse", "San Francisco")
+    private val tasks = listOf(
+        "the quarterly report", "the budget draft", "a dentist appointment", "the flight tickets",
+        "the invoice", "the presentation slides", "the insurance forms", "the project plan"
+    )
+    private val verbs = listOf("call", "email", "review", "send", "prepare", "book", "schedule", "follow up on")
+    private val moods = listOf("great", "frustrating", "productive", "worrying", "excellent", "difficult", "fine")
+    private val filler = listOf(
+        "so", "basically", "we", "talked", "about", "the", "roadmap", "and", "timeline", "for", "launch",
+        "customers", "feedback", "pricing", "features", "support", "team", "hiring", "design", "research",
+        "quality", "testing", "marketing", "budget", "numbers", "growth", "week", "month", "idea", "problem"
+    )
+
+    private fun sentence(random: Random): String {
+        val person = people[random.nextInt(people.size)]
+        val task = tasks[random.nextInt(tasks.size)]
+        val verb = verbs[random.nextInt(verbs.size)]
+        return when (random.nextInt(6)) {
+            0 -> "I need to $verb $task before Friday."
+            1 -> "Remember to $verb $person about $task."
+            2 -> "The meeting with $person in ${places[random.nextInt(places.size)]} was ${moods[random.nextInt(moods.size)]}."
+            3 -> "We should $verb $task next week, it is important."
+            else -> List(8 + random.nextInt(12)) { filler[random.nextInt(filler.size)] }
+                .joinToString(" ").replaceFirstChar { it.uppercase() } + "."
+        }
+    }
+
+    /**
+     * A transcript of about [words] words; the same [seed] always gives the same text
+     */
+    fun generate(words: Int, seed: Long = 42L): String {
+        val random = Random(seed)
+        val text = StringBuilder(words * 7)
+        var count = 0
+        while (count < words) {
+            val sentence = sentence(random)
+            if (text.isNotEmpty()) text.append(' ')
+            text.append(sentence)
+            count += sentence.count { it == ' ' } + 1
+        }
+        return text.toString()
+    }
+}
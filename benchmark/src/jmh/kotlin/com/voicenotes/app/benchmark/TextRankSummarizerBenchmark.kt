@@ -0,0 +1,39 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.ai.nlp.AnalyzedDocument
+import com.voicenotes.app.ai.nlp.SummaryLength
+import com.voicenotes.app.ai.nlp.TextRankSummarizer
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * TextRank called directly, not through LocalNLPService, which outlines transcripts
+ * this long as chapters instead. 9,000 words is an hour of dictation at 150 words a
+ * minute; the target there is well under 50 ms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class TextRankSummarizerBenchmark {
+
+    @Param("1000", "9000")
+    var words = 0
+
+    private lateinit var transcript: String
+    private lateinit var document: AnalyzedDocument
+
+    @Setup
+    fun setUp() {
+        transcript = SyntheticTranscripts.generate(words)
+        document = AnalyzedDocument.analyze(transcript)
+    }
+
+    /** Ranking and picking sentences from an already analyzed transcript */
+    @Benchmark
+    fun summarize(): String = TextRankSummarizer.shared.summarize(document, SummaryLength.Sentences(5))
+
+    /** The same, plus the tokenizing and sentence splitting it needs */
+    @Benchmark
+    fun analyzeAndSummarize(): String =
+        TextRankSummarizer.shared.summarize(AnalyzedDocument.analyze(transcript), SummaryLength.Sentences(5))
+}
@@ -0,0 +1,41 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.PcmFormat
+import com.voicenotes.app.audio.VoiceActivityDetector
+import org.openjdk.jmh.annotations.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Voice activity detection over [seconds] of dictation, fed in 20 ms blocks the way
+ * the capture engine delivers them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class VoiceActivityDetectorBenchmark {
+
+    @Param("60", "600")
+    var seconds = 0
+
+    private val format = PcmFormat(16_000)
+    private lateinit var samples: ShortArray
+
+    @Setup
+    fun setUp() {
+        samples = SyntheticPcm.speech(seconds)
+    }
+
+    @Benchmark
+    fun detect(): Int {
+        val detector = VoiceActivityDetector()
+        detector.onStart(format)
+        var offset = 0
+        while (offset < samples.size) {
+            val length = minOf(320, samples.size - offset)
+            detector.onPcm(samples, offset, length)
+            offset += length
+        }
+        detector.onStop(0)
+        return detector.segments.size
+    }
+}
@@ -0,0 +1,68 @@
+package com.voicenotes.app.benchmark
+
+import com.voicenotes.app.audio.CaptureEngine
+import com.voicenotes.app.audio.PcmFormat
+import com.voicenotes.app.audio.PcmSource
+import com.voicenotes.app.audio.WaveformEnvelope
+import com.voicenotes.app.audio.drainTo
+import org.openjdk.jmh.annotations.*
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+/**
+ * Drawing 400 columns of a two-hour recording's waveform sidecar over [spanMs]: the
+ * whole-recording scrubber, a 10 minute zoom and a 2 s zoom. Each call draws a
+ * different window. With -Pjmh.profilers=gc this should allocate nothing per fill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class WaveformEnvelopeBenchmark {
+
+    @Param("7200000", "600000", "2000")
+    var spanMs = 0L
+
+    private val mins = FloatArray(400)
+    private val maxs = FloatArray(400)
+    private lateinit var file: File
+    private lateinit var envelope: WaveformEnvelope
+    private var call = 0L
+
+    @Setup
+    fun setUp() {
+        file = File.createTempFile("benchmark", ".wave")
+        val writer = WaveformEnvelope.Writer(file)
+        looped(SyntheticPcm.speech(60), 2 * 3_600).drainTo(writer)
+        writer.error?.let { throw it }
+        envelope = WaveformEnvelope.open(file)
+    }
+
+    @TearDown
+    fun tearDown() {
+        file.delete()
+    }
+
+    @Benchmark
+    fun fill(): FloatArray {
+        val from = call++ * 997L % (envelope.durationMs - spanMs + 1)
+        envelope.fill(from, from + spanMs, 400, mins, maxs)
+        return maxs
+    }
+
+    /** [minute] played over and over for [seconds] */
+    private fun looped(minute: ShortArray, seconds: Int): PcmSource = object : PcmSource {
+        private var position = 0L
+        private val total = seconds.toLong() * 16_000
+        override val format = PcmFormat(16_000)
+        override fun open() {}
+        override fun close() {}
+        override fun read(buffer: ShortArray, offset: Int, length: Int): Int {
+            if (position >= total) return CaptureEngine.END_OF_STREAM
+            val start = (position % minute.size).toInt()
+            val count = minOf(length, minute.size - start, (total - position).toInt())
+            System.arraycopy(minute, start, buffer, offset, count)
+            position += count
+            return count
+        }
+    }
+}
@@ -0,0 +1,29 @@
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+import org.jetbrains.kotlin.gradle.tasks.KotlinCompile
+
+// Analysis, audio and naming code with no Android dependencies. The app depends on it,
+// and the benchmark build compiles it for the host JVM without the Android SDK.
+plugins {
+    id("org.jetbrains.kotlin.jvm")
+}
+
+// Same bytecode level as the app, so its inline functions can be inlined there
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<KotlinCompile>().configureEach {
+    compilerOptions {
+        jvmTarget.set(JvmTarget.JVM_1_8)
+    }
+}
+
+dependencies {
+    implementation(libs.kotlinx.coroutines.core)
+    implementation(libs.gson)
+    // Only for the @TypeConverter annotations on Converters; the app provides Room
+    compileOnly(libs.room.common)
+
+    testImplementation(libs.junit)
+}
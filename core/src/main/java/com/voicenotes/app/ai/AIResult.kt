@@ -0,0 +1,26 @@
+package com.voicenotes.app.ai
+
+import com.voicenotes.app.data.Chapter
+import com.voicenotes.app.data.SpeakingPatterns
+import com.voicenotes.app.data.SummarySource
+
+data class AIResult(
+    val title: String,
+    val summary: String,
+    val keyPoints: List<String>,
+    val actionItems: List<ActionItem> = emptyList(),
+    val speakingPatterns: SpeakingPatterns? = null,
+    val chapters: List<Chapter> = emptyList(),
+    val summarySource: SummarySource = SummarySource.LOCAL
+)
+
+data class ActionItem(
+    val task: String,
+    val priority: Priority = Priority.MEDIUM,
+    val dueDate: String? = null,
+    val category: String = "General"
+)
+
+enum class Priority {
+    LOW, MEDIUM, HIGH, URGENT
+}
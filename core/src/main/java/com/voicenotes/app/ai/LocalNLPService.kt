@@ -0,0 +1,196 @@
+package com.voicenotes.app.ai
+
+import com.voicenotes.app.ai.nlp.AnalyzedDocument
+import com.voicenotes.app.ai.nlp.SummaryLength
+import com.voicenotes.app.ai.nlp.TextRankSummarizer
+import com.voicenotes.app.ai.nlp.TopicSegmenter
+import com.voicenotes.app.ai.nlp.TranscriptAnalyzer
+import com.voicenotes.app.audio.SpeechTimeline
+import com.voicenotes.app.data.Chapter
+import com.voicenotes.app.data.SpeechSegment
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+
+class LocalNLPService {
+    
+    companion object {
+        /**
+         * Analyze a transcript on the calling thread. Stateless and safe to run on
+         * several threads at once, e.g. when re-analyzing the whole library.
+         */
+        fun analyze(transcript: String, options: Int = AnalysisOptions.NONE): LocalNLPResult.Success {
+            // Tokenize once; every extractor reads from the same document
+            val document = AnalyzedDocument.analyze(transcript)
+            return LocalNLPResult.Success(document).also { it.precompute(options) }
+        }
+
+        /**
+         * Chapters with time offsets, assuming an even speaking pace. With the
+         * recording's [speech] the pace covers the speech alone, as if the segments
+         * were stitched end to end, and times map back onto the recording through a
+         * [SpeechTimeline]; the pauses between segments then carry no words.
+         * Without it the pace covers all of [durationMs].
+         */
+        fun toChapters(
+            segments: List<TopicSegmenter.Segment>,
+            transcriptLength: Int,
+            durationMs: Long,
+            speech: List<SpeechSegment> = emptyList()
+        ): List<Chapter> {
+            if (segments.size < 2) return emptyList()
+            val timeline = if (speech.isNotEmpty()) SpeechTimeline(speech) else null
+            fun timeAt(offset: Int): Long {
+                if (transcriptLength == 0) return 0
+                if (timeline == null) return durationMs * offset / transcriptLength
+                // The first and last chapters still reach the ends of the recording
+                if (offset == 0) return 0
+                if (offset == transcriptLength) return durationMs
+                return timeline.toOriginalMs(timeline.stitchedMs * offset / transcriptLength)
+            }
+            return segments.map { segment ->
+                Chapter(
+                    title = chapterTitle(segment),
+                    startChar = segment.startChar,
+                    endChar = segment.endChar,
+                    startMs = timeAt(segment.startChar),
+                    endMs = timeAt(segment.endChar)
+                )
+            }
+        }
+
+        /**
+         * Summary of one chapter only, computed when the chapter is opened
+         */
+        fun summarizeChapter(transcript: String, chapter: Chapter, length: SummaryLength = SummaryLength.Sentences(2)): String {
+            val end = chapter.endChar.coerceAtMost(transcript.length)
+            val start = chapter.startChar.coerceIn(0, end)
+            return TextRankSummarizer.shared.summarize(AnalyzedDocument.analyze(transcript.substring(start, end)), length)
+        }
+
+        internal fun chapterTitle(segment: TopicSegmenter.Segment): String {
+            return segment.keywords.joinToString(", ").replaceFirstChar { it.uppercase() }.ifEmpty { "Untitled" }
+        }
+    }
+    
+    private var isInitialized = false
+    
+    /**
+     * Initialize NLP models (call once on app start)
+     */
+    suspend fun initialize(): Boolean {
+        return withContext(Dispatchers.IO) {
+            // Using lightweight rule-based NLP for better compatibility
+            // This avoids complex dependencies and keeps the app size small
+            isInitialized = true
+            true
+        }
+    }
+    
+    /**
+     * Process transcript with local NLP to extract insights.
+     *
+     * Only the parts selected by [options] (see [AnalysisOptions]) are computed here,
+     * on the IO dispatcher. Everything else is computed lazily on first read.
+     */
+    suspend fun processTranscript(
+        transcript: String,
+        options: Int = AnalysisOptions.NONE
+    ): LocalNLPResult {
+        return withContext(Dispatchers.IO) {
+            try {
+                if (!isInitialized) {
+                    initialize()
+                }
+                
+                analyze(transcript, options)
+            } catch (e: Exception) {
+                LocalNLPResult.Error("Local NLP processing failed: ${e.message}")
+            }
+        }
+    }
+    
+    /**
+     * Generate enhanced one-liner summary specifically for speech-to-text
+     */
+    fun generateOneLinerSummary(text: String): String {
+        return TranscriptAnalyzer.generateOneLinerSummary(AnalyzedDocument.analyze(text))
+    }
+
+    /**
+     * Extractive TextRank summary: one line, N sentences or a fraction of the transcript
+     */
+    fun generateSummary(transcript: String, length: SummaryLength = SummaryLength.OneLine): String {
+        return TextRankSummarizer.shared.summarize(AnalyzedDocument.analyze(transcript), length)
+    }
+}
+
+/**
+ * Bit flags selecting which LocalNLPResult parts processTranscript computes eagerly
+ */
+object AnalysisOptions {
+    const val NONE = 0
+    const val SUMMARY = 1
+    const val KEYWORDS = 1 shl 1
+    const val ACTION_ITEMS = 1 shl 2
+    const val ENTITIES = 1 shl 3
+    const val SENTIMENT = 1 shl 4
+    const val TOPICS = 1 shl 5
+    const val SENTENCES = 1 shl 6
+    const val CHAPTERS = 1 shl 7
+
+    /** What AIService reads when building an AIResult */
+    const val NOTE_SUMMARY = SUMMARY or KEYWORDS or ACTION_ITEMS or CHAPTERS
+
+    /** Everything, for analytics */
+    const val ALL = SUMMARY or KEYWORDS or ACTION_ITEMS or ENTITIES or SENTIMENT or TOPICS or SENTENCES or CHAPTERS
+}
+
+sealed class LocalNLPResult {
+    /**
+     * Analysis of one transcript. Each field is memoized and computed on first read,
+     * so callers only pay for what they use.
+     */
+    class Success internal constructor(private val document: AnalyzedDocument) : LocalNLPResult() {
+        val keywords: List<String> by lazy { TranscriptAnalyzer.extractKeywords(document) }
+        val chapters: List<TopicSegmenter.Segment> by lazy { TopicSegmenter.shared.segment(document) }
+
+        /**
+         * One line for the note list. Long multi-chapter notes get an outline of their
+         * chapters, since no single sentence covers several topics; each chapter is
+         * summarized on its own when opened. The outline costs about as much as
+         * ranking the whole transcript, so it is chosen for content, not speed.
+         */
+        val summary: String by lazy {
+            if (document.tokenCount >= LONG_TRANSCRIPT_TOKENS && chapters.size > 1) {
+                "${chapters.size} chapters: " + chapters.joinToString("; ") { LocalNLPService.chapterTitle(it) }
+            } else {
+                TranscriptAnalyzer.generateSummary(document, keywords)
+            }
+        }
+        val actionItems: List<String> by lazy { TranscriptAnalyzer.extractActionItems(document) }
+        val entities: Map<String, List<String>> by lazy { TranscriptAnalyzer.extractEntities(document) }
+        val sentiment: String by lazy { TranscriptAnalyzer.analyzeSentiment(document) }
+        val topics: List<String> by lazy { TranscriptAnalyzer.extractTopics(keywords) }
+        val sentences: List<String> get() = document.sentences
+        val wordCount: Int get() = document.tokenCount
+        val readingTime: Int get() = TranscriptAnalyzer.estimateReadingTime(wordCount)
+
+        internal fun precompute(options: Int) {
+            if (options and AnalysisOptions.CHAPTERS != 0) chapters
+            if (options and AnalysisOptions.KEYWORDS != 0) keywords
+            if (options and AnalysisOptions.SUMMARY != 0) summary
+            if (options and AnalysisOptions.ACTION_ITEMS != 0) actionItems
+            if (options and AnalysisOptions.ENTITIES != 0) entities
+            if (options and AnalysisOptions.SENTIMENT != 0) sentiment
+            if (options and AnalysisOptions.TOPICS != 0) topics
+            if (options and AnalysisOptions.SENTENCES != 0) sentences
+        }
+
+        private companion object {
+            /** About ten minutes of speech */
+            const val LONG_TRANSCRIPT_TOKENS = 1500
+        }
+    }
+    
+    data class Error(val message: String) : LocalNLPResult()
+}
@@ -0,0 +1,210 @@
+package com.voicenotes.app.ai
+
+import com.voicenotes.app.ai.nlp.DictionaryMatches
+import com.voicenotes.app.ai.nlp.Dictionaries
+import com.voicenotes.app.ai.nlp.Gazetteer
+import com.voicenotes.app.ai.nlp.IntArrayBuilder
+import com.voicenotes.app.ai.nlp.IntIntMap
+import com.voicenotes.app.ai.nlp.IntTopK
+import com.voicenotes.app.ai.nlp.TokenDictionary
+
+/**
+ * The mock analysis path: title, summary, key points and action items from the
+ * bundled dictionaries, with no model or network. AIService falls back to it when
+ * local and cloud analysis are off or fail.
+ */
+object MockAnalyzer {
+
+    private val STOP_WORDS = hashSetOf(
+        "the", "a", "an", "and", "or", "but", "in", "on", "at", "to", "for", "of", "with",
+        "by", "from", "up", "about", "into", "through", "during", "before", "after",
+        "this", "that", "these", "those", "i", "you", "he", "she", "it", "we", "they"
+    )
+
+    private val COMMON_WORDS = hashSetOf(
+        "said", "says", "going", "really", "think", "know", "like", "just",
+        "want", "need", "make", "take", "come", "good", "great", "nice",
+        "thing", "things", "stuff", "something", "anything", "everything"
+    )
+
+    /**
+     * Title from transcript length and a few content words
+     */
+    fun generateTitle(transcript: String): String {
+        // Simple title generation based on transcript length and content
+        val words = transcript.split(" ")
+        return when {
+            words.size < 10 -> "Quick Note"
+            words.size < 30 -> "Voice Memo"
+            transcript.contains("meeting", ignoreCase = true) -> "Meeting Notes"
+            transcript.contains("idea", ignoreCase = true) -> "Ideas & Thoughts"
+            transcript.contains("task", ignoreCase = true) -> "Task Notes"
+            transcript.contains("reminder", ignoreCase = true) -> "Reminders"
+            else -> "Voice Recording"
+        }
+    }
+
+    /**
+     * The first two sentences
+     */
+    fun generateSummaryText(transcript: String): String {
+        // Simple summary generation
+        val sentences = transcript.split(". ")
+        return if (sentences.size > 2) {
+            sentences.take(2).joinToString(". ") + "."
+        } else {
+            transcript
+        }
+    }
+
+    /**
+     * Up to eight key points; [matches] is the dictionary scan of the lowercased transcript
+     */
+    fun generateKeyPoints(transcript: String, matches: DictionaryMatches = Dictionaries.match(transcript.lowercase())): List<String> {
+        // Enhanced key points extraction using contextual analysis
+        val keyPoints = mutableListOf<String>()
+
+        // Extract specific, meaningful keywords
+        val contextualKeywords = extractContextualKeywords(matches)
+        val actionKeywords = extractActionKeywords(matches)
+        val entityKeywords = extractEntityKeywords(transcript, matches)
+
+        // Prioritize specific keywords over generic ones
+        keyPoints.addAll(contextualKeywords.take(3))
+        keyPoints.addAll(actionKeywords.take(2))
+        keyPoints.addAll(entityKeywords.take(3))
+
+        // Add content-based keywords if we have room
+        if (keyPoints.size < 5) {
+            val contentKeywords = extractContentKeywords(transcript)
+            keyPoints.addAll(contentKeywords.take(5 - keyPoints.size))
+        }
+
+        return keyPoints.distinct().take(8).ifEmpty { listOf("Voice note") }
+    }
+
+    /**
+     * Extract contextual keywords from transcript, the first hit of each group
+     * in nlp/mock_contextual.txt
+     */
+    private fun extractContextualKeywords(matches: DictionaryMatches): List<String> {
+        val dictionary = Dictionaries.mockContextual
+        return dictionary.groups.mapNotNull { group ->
+            matches.firstMatchedEntry(dictionary, group)?.label
+        }
+    }
+
+    /**
+     * Extract action-oriented keywords (nlp/mock_actions.txt)
+     */
+    private fun extractActionKeywords(matches: DictionaryMatches): List<String> {
+        return matches.matchedLabels(Dictionaries.mockActions)
+    }
+
+    /**
+     * Extract entity keywords (names, places, specific items) from nlp/mock_entities.txt,
+     * then the people, places and organizations the gazetteer knows
+     */
+    private fun extractEntityKeywords(transcript: String, matches: DictionaryMatches): List<String> {
+        val names = Gazetteer.shared.find(transcript).map { it.entry.name.lowercase() }
+        return (matches.matchedLabels(Dictionaries.mockEntities) + names).distinct()
+    }
+
+    /**
+     * Extract content-based keywords
+     */
+    private fun extractContentKeywords(transcript: String): List<String> {
+        val lowerText = transcript.lowercase()
+        val dictionary = TokenDictionary()
+
+        // Count whitespace-delimited words by interned id, no per-word strings or boxing
+        val counts = IntIntMap()
+        val distinctIds = IntArrayBuilder()
+        var i = 0
+        while (i < lowerText.length) {
+            if (lowerText[i].isWhitespace()) {
+                i++
+                continue
+            }
+            val start = i
+            while (i < lowerText.length && !lowerText[i].isWhitespace()) i++
+            if (i - start > 3) {
+                val id = dictionary.intern(lowerText, start, i)
+                if (counts.increment(id) == 1) distinctIds.add(id)
+            }
+        }
+
+        // Filter meaningful words and keep the 5 most frequent
+        val top = IntTopK(5)
+        for (index in 0 until distinctIds.size) {
+            val id = distinctIds[index]
+            val word = dictionary.term(id)
+            if (!isStopWord(word) && !isCommonWord(word)) {
+                top.offer(id, counts[id])
+            }
+        }
+        return top.toIdArray().map { dictionary.term(it) }
+    }
+
+    /**
+     * Check if word is a stop word
+     */
+    private fun isStopWord(word: String): Boolean {
+        return STOP_WORDS.contains(word)
+    }
+
+    /**
+     * Check if word is too common to be meaningful
+     */
+    private fun isCommonWord(word: String): Boolean {
+        return COMMON_WORDS.contains(word)
+    }
+
+    /**
+     * Up to three action items around trigger phrases, or one generic item for the content type
+     */
+    fun extractActionItems(transcript: String, matches: DictionaryMatches = Dictionaries.match(transcript.lowercase())): List<ActionItem> {
+        val actionItems = mutableListOf<ActionItem>()
+
+        // Category is decided by the whole transcript, so resolve it once
+        val category = matches.firstMatchedEntry(Dictionaries.actionItemCategories)?.label ?: "General"
+
+        // Look for action-oriented phrases (nlp/action_item_triggers.txt, label is the priority)
+        val triggers = Dictionaries.actionItemTriggers
+        triggers.entries.forEachIndexed { entryIndex, trigger ->
+            val index = matches.firstStart(triggers, entryIndex)
+            if (index >= 0) {
+                // Extract context around the action phrase
+                val pattern = trigger.phrases.first()
+                val start = maxOf(0, index - 20)
+                val end = minOf(transcript.length, index + pattern.length + 40)
+                val context = transcript.substring(start, end).trim()
+
+                actionItems.add(
+                    ActionItem(
+                        task = context,
+                        priority = Priority.valueOf(trigger.label),
+                        category = category
+                    )
+                )
+            }
+        }
+
+        // If no specific action items found, create generic ones based on content
+        if (actionItems.isEmpty()) {
+            when (matches.firstMatchedEntry(Dictionaries.actionItemFallbacks)?.label) {
+                "meeting" -> {
+                    actionItems.add(ActionItem("Follow up on meeting discussion", Priority.MEDIUM, category = "Work"))
+                }
+                "idea" -> {
+                    actionItems.add(ActionItem("Develop the ideas mentioned", Priority.LOW, category = "Ideas"))
+                }
+                "project" -> {
+                    actionItems.add(ActionItem("Continue project work", Priority.MEDIUM, category = "Work"))
+                }
+            }
+        }
+
+        return actionItems.take(3) // Limit to 3 action items
+    }
+}
@@ -0,0 +1,190 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Immutable Aho–Corasick automaton for multi-pattern substring search.
+ *
+ * One pass over the text reports every occurrence of every pattern, so the cost
+ * is O(text length + hits) no matter how many patterns the dictionaries hold.
+ * Matching is case-sensitive; callers pass lowercased text and patterns.
+ */
+class AhoCorasick private constructor(
+    private val patterns: Array<String>,
+    private val edgeOffsets: IntArray,
+    private val edgeChars: CharArray,
+    private val edgeTargets: IntArray,
+    private val failLinks: IntArray,
+    private val outputs: IntArray,
+    private val outputLinks: IntArray
+) {
+
+    val patternCount: Int get() = patterns.size
+
+    fun pattern(id: Int): String = patterns[id]
+
+    /**
+     * Calls [onMatch] for every occurrence, ordered by end offset.
+     * [onMatch] receives the pattern id and the [start, end) offsets in [text].
+     */
+    inline fun forEachMatch(text: CharSequence, onMatch: (patternId: Int, start: Int, end: Int) -> Unit) {
+        resume(ROOT, text, 0, onMatch)
+    }
+
+    /**
+     * Continue a scan from [state] over the next chunk of a longer text, so matches
+     * spanning chunk boundaries are still found. [offset] is the position of [chunk]
+     * in the whole text; reported offsets are relative to the whole text.
+     * Returns the state to resume from with the following chunk.
+     */
+    inline fun resume(
+        state: Int,
+        chunk: CharSequence,
+        offset: Int,
+        onMatch: (patternId: Int, start: Int, end: Int) -> Unit
+    ): Int {
+        var current = state
+        for (i in 0 until chunk.length) {
+            current = next(current, chunk[i])
+            var node = if (outputAt(current) >= 0) current else outputLinkAt(current)
+            while (node != NONE) {
+                val patternId = outputAt(node)
+                val end = offset + i + 1
+                onMatch(patternId, end - pattern(patternId).length, end)
+                node = outputLinkAt(node)
+            }
+        }
+        return current
+    }
+
+    fun findAll(text: CharSequence): List<Match> {
+        val matches = ArrayList<Match>()
+        forEachMatch(text) { patternId, start, end -> matches.add(Match(patternId, start, end)) }
+        return matches
+    }
+
+    @PublishedApi
+    internal fun next(state: Int, c: Char): Int {
+        var current = state
+        while (true) {
+            val target = edge(current, c)
+            if (target != NONE) return target
+            if (current == ROOT) return ROOT
+            current = failLinks[current]
+        }
+    }
+
+    @PublishedApi
+    internal fun outputAt(node: Int): Int = outputs[node]
+
+    @PublishedApi
+    internal fun outputLinkAt(node: Int): Int = outputLinks[node]
+
+    private fun edge(node: Int, c: Char): Int {
+        // Edges of a node are stored sorted by character, binary search them
+        var low = edgeOffsets[node]
+        var high = edgeOffsets[node + 1] - 1
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            val midChar = edgeChars[mid]
+            when {
+                midChar < c -> low = mid + 1
+                midChar > c -> high = mid - 1
+                else -> return edgeTargets[mid]
+            }
+        }
+        return NONE
+    }
+
+    data class Match(val patternId: Int, val start: Int, val end: Int)
+
+    companion object {
+        /** State to start a scan from */
+        const val ROOT = 0
+
+        @PublishedApi
+        internal const val NONE = -1
+
+        /**
+         * Build an automaton; pattern ids are indices into [patterns].
+         * Empty and duplicate patterns are not allowed.
+         */
+        fun build(patterns: List<String>): AhoCorasick {
+            // Trie with per-node maps while building, flattened afterwards
+            val children = ArrayList<HashMap<Char, Int>>()
+            val nodeOutputs = ArrayList<Int>()
+            children.add(HashMap())
+            nodeOutputs.add(NONE)
+
+            patterns.forEachIndexed { id, pattern ->
+                require(pattern.isNotEmpty()) { "Empty pattern at index $id" }
+                var node = ROOT
+                for (c in pattern) {
+                    node = children[node].getOrPut(c) {
+                        children.add(HashMap())
+                        nodeOutputs.add(NONE)
+                        children.size - 1
+                    }
+                }
+                require(nodeOutputs[node] == NONE) { "Duplicate pattern '$pattern'" }
+                nodeOutputs[node] = id
+            }
+
+            val nodeCount = children.size
+            val edgeOffsets = IntArray(nodeCount + 1)
+            for (node in 0 until nodeCount) {
+                edgeOffsets[node + 1] = edgeOffsets[node] + children[node].size
+            }
+            val edgeChars = CharArray(edgeOffsets[nodeCount])
+            val edgeTargets = IntArray(edgeOffsets[nodeCount])
+            for (node in 0 until nodeCount) {
+                var offset = edgeOffsets[node]
+                for (c in children[node].keys.sorted()) {
+                    edgeChars[offset] = c
+                    edgeTargets[offset] = children[node].getValue(c)
+                    offset++
+                }
+            }
+
+            // Breadth-first: fail links and links to the nearest suffix that is a pattern
+            val failLinks = IntArray(nodeCount)
+            val outputLinks = IntArray(nodeCount) { NONE }
+            val outputs = IntArray(nodeCount) { nodeOutputs[it] }
+            val queue = IntArray(nodeCount)
+            var head = 0
+            var tail = 0
+            for (offset in edgeOffsets[ROOT] until edgeOffsets[ROOT + 1]) {
+                queue[tail++] = edgeTargets[offset]
+            }
+            while (head < tail) {
+                val node = queue[head++]
+                for (offset in edgeOffsets[node] until edgeOffsets[node + 1]) {
+                    val c = edgeChars[offset]
+                    val child = edgeTargets[offset]
+                    var fallback = failLinks[node]
+                    var fail = ROOT
+                    while (true) {
+                        val target = children[fallback][c]
+                        if (target != null) {
+                            fail = target
+                            break
+                        }
+                        if (fallback == ROOT) break
+                        fallback = failLinks[fallback]
+                    }
+                    failLinks[child] = fail
+                    outputLinks[child] = if (outputs[fail] != NONE) fail else outputLinks[fail]
+                    queue[tail++] = child
+                }
+            }
+
+            return AhoCorasick(
+                patterns = patterns.toTypedArray(),
+                edgeOffsets = edgeOffsets,
+                edgeChars = edgeChars,
+                edgeTargets = edgeTargets,
+                failLinks = failLinks,
+                outputs = outputs,
+                outputLinks = outputLinks
+            )
+        }
+    }
+}
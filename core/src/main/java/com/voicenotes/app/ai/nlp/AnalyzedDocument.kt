@@ -0,0 +1,238 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Immutable single-pass view of a transcript.
+ *
+ * Built once per transcript so every extractor reads the same lowercased text,
+ * token offsets, sentence spans and token counts instead of re-tokenizing.
+ * All offsets index into both [text] and [lowerText], which have the same length.
+ * Tokens are ids in [dictionary], the document's own unless the caller shares one,
+ * and counts are kept in a primitive map.
+ * [language] is identified from the opening characters unless the caller knows it.
+ */
+class AnalyzedDocument private constructor(
+    val text: String,
+    val lowerText: String,
+    private val tokenStarts: IntArray,
+    private val tokenEnds: IntArray,
+    private val tokenIds: IntArray,
+    /** Distinct token ids in first-occurrence order */
+    val distinctTokenIds: IntArray,
+    internal val counts: IntIntMap,
+    val dictionary: TokenDictionary,
+    val language: Language,
+    private val sentenceStarts: IntArray,
+    private val sentenceEnds: IntArray,
+    private val wordStarts: IntArray,
+    private val wordEnds: IntArray
+) {
+
+    val tokenCount: Int get() = tokenIds.size
+
+    /** Function words of [language], skipped by keyword and similarity extractors */
+    val stopWords: Set<String> get() = LanguagePack.of(language).stopWords
+
+    /** Token strings, only materialized when a caller needs them */
+    val tokens: List<String> by lazy { List(tokenIds.size) { dictionary.term(tokenIds[it]) } }
+
+    val sentenceCount: Int get() = sentenceStarts.size
+
+    /** Sentence strings, only materialized when a caller needs them */
+    val sentences: List<String> by lazy {
+        List(sentenceStarts.size) { text.substring(sentenceStarts[it], sentenceEnds[it]) }
+    }
+
+    /** Number of whitespace-delimited words, including short ones */
+    val wordCount: Int get() = wordStarts.size
+
+    /** Every dictionary phrase in the text, found by one shared automaton scan */
+    val dictionaryMatches: DictionaryMatches by lazy { Dictionaries.match(lowerText) }
+
+    fun tokenId(index: Int): Int = tokenIds[index]
+
+    fun tokenStart(index: Int): Int = tokenStarts[index]
+
+    fun tokenEnd(index: Int): Int = tokenEnds[index]
+
+    fun sentenceStart(index: Int): Int = sentenceStarts[index]
+
+    fun sentenceEnd(index: Int): Int = sentenceEnds[index]
+
+    /** Occurrences of the token with this id */
+    fun count(tokenId: Int): Int = if (tokenId < 0) 0 else counts[tokenId]
+
+    /** Occurrences of a lowercase token */
+    fun count(token: String): Int = count(dictionary.idOf(token))
+
+    fun term(tokenId: Int): String = dictionary.term(tokenId)
+
+    fun isStopWord(tokenId: Int): Boolean = stopWords.contains(dictionary.term(tokenId))
+
+    fun lowerSentence(index: Int): String = lowerText.substring(sentenceStarts[index], sentenceEnds[index])
+
+    fun word(index: Int): String = text.substring(wordStarts[index], wordEnds[index])
+
+    fun lowerWord(index: Int): String = lowerText.substring(wordStarts[index], wordEnds[index])
+
+    /** Character offset of a word in [text] */
+    fun wordStart(index: Int): Int = wordStarts[index]
+
+    companion object {
+        /** Tokens shorter than this are dropped, matching the old extractTokens filter */
+        const val MIN_TOKEN_LENGTH = 3
+
+        /** Sentences this short or shorter are dropped, matching the old extractSentences filter */
+        private const val MAX_IGNORED_SENTENCE_LENGTH = 3
+
+        fun analyze(
+            text: String,
+            dictionary: TokenDictionary = TokenDictionary(),
+            language: Language = LanguageIdentifier.identify(text)
+        ): AnalyzedDocument {
+            val lowerText = lowercasePreservingLength(text)
+            val length = text.length
+
+            // Tokens: runs of letters/digits in any script, everything else separates
+            val tokenStarts = IntArrayBuilder()
+            val tokenEnds = IntArrayBuilder()
+            val tokenIds = IntArrayBuilder()
+            val distinctTokenIds = IntArrayBuilder()
+            val counts = IntIntMap()
+            var i = 0
+            while (i < length) {
+                if (!isTokenChar(lowerText[i])) {
+                    i++
+                    continue
+                }
+                val start = i
+                while (i < length && isTokenChar(lowerText[i])) i++
+                if (i - start >= MIN_TOKEN_LENGTH) {
+                    val id = dictionary.intern(lowerText, start, i)
+                    tokenStarts.add(start)
+                    tokenEnds.add(i)
+                    tokenIds.add(id)
+                    if (counts.increment(id) == 1) distinctTokenIds.add(id)
+                }
+            }
+
+            // Sentences: split on runs of terminal punctuation, trimmed
+            val sentenceStarts = IntArrayBuilder()
+            val sentenceEnds = IntArrayBuilder()
+            var segmentStart = 0
+            i = 0
+            while (i <= length) {
+                if (i == length || isSentenceTerminator(text[i])) {
+                    var start = segmentStart
+                    var end = i
+                    while (start < end && text[start].isWhitespace()) start++
+                    while (end > start && text[end - 1].isWhitespace()) end--
+                    if (end - start > MAX_IGNORED_SENTENCE_LENGTH) {
+                        sentenceStarts.add(start)
+                        sentenceEnds.add(end)
+                    }
+                    while (i < length && isSentenceTerminator(text[i])) i++
+                    segmentStart = i
+                    if (i == length) break
+                } else {
+                    i++
+                }
+            }
+
+            // Words: whitespace-delimited, used where the original casing matters
+            val wordStarts = IntArrayBuilder()
+            val wordEnds = IntArrayBuilder()
+            i = 0
+            while (i < length) {
+                if (text[i].isWhitespace()) {
+                    i++
+                    continue
+                }
+                val start = i
+                while (i < length && !text[i].isWhitespace()) i++
+                wordStarts.add(start)
+                wordEnds.add(i)
+            }
+
+            return AnalyzedDocument(
+                text = text,
+                lowerText = lowerText,
+                tokenStarts = tokenStarts.toArray(),
+                tokenEnds = tokenEnds.toArray(),
+                tokenIds = tokenIds.toArray(),
+                distinctTokenIds = distinctTokenIds.toArray(),
+                counts = counts,
+                dictionary = dictionary,
+                language = language,
+                sentenceStarts = sentenceStarts.toArray(),
+                sentenceEnds = sentenceEnds.toArray(),
+                wordStarts = wordStarts.toArray(),
+                wordEnds = wordEnds.toArray()
+            )
+        }
+
+        /**
+         * Char-by-char lowercase so offsets stay valid in both strings.
+         * Only differs from String.lowercase() for a few characters whose
+         * lowercase form is longer, such as the dotted capital I.
+         */
+        internal fun lowercasePreservingLength(text: String): String {
+            val chars = CharArray(text.length)
+            for (i in text.indices) {
+                chars[i] = Character.toLowerCase(text[i])
+            }
+            return String(chars)
+        }
+
+        /** Letters keep their accents so "café" and "über" stay one token */
+        internal fun isTokenChar(c: Char): Boolean {
+            return (c in 'a'..'z') || (c in '0'..'9') || (c > '\u007f' && Character.isLetterOrDigit(c))
+        }
+
+        private fun isSentenceTerminator(c: Char): Boolean = c == '.' || c == '!' || c == '?'
+    }
+}
+
+/**
+ * Growable primitive int buffer, avoids boxing offsets into a List<Int>
+ */
+internal class IntArrayBuilder(initialCapacity: Int = 16) {
+    private var data = IntArray(initialCapacity)
+
+    var size = 0
+        private set
+
+    fun add(value: Int) {
+        if (size == data.size) {
+            data = data.copyOf(maxOf(16, size * 2))
+        }
+        data[size++] = value
+    }
+
+    operator fun get(index: Int): Int = data[index]
+
+    operator fun set(index: Int, value: Int) {
+        require(index < size) { "Index $index out of $size" }
+        data[index] = value
+    }
+
+    fun removeLast(): Int = data[--size]
+
+    /**
+     * Remove one occurrence of [value] by moving the last element into its place
+     */
+    fun swapRemove(value: Int): Boolean {
+        for (i in 0 until size) {
+            if (data[i] == value) {
+                data[i] = data[--size]
+                return true
+            }
+        }
+        return false
+    }
+
+    fun clear() {
+        size = 0
+    }
+
+    fun toArray(): IntArray = data.copyOf(size)
+}
@@ -0,0 +1,197 @@
+package com.voicenotes.app.ai.nlp
+
+import java.util.IdentityHashMap
+
+/**
+ * Process-wide phrase dictionaries and one Aho–Corasick automaton over all of them.
+ *
+ * Dictionaries are loaded from classpath resources under nlp/ the first time this
+ * object is touched. [match] scans a lowercased text once and answers every
+ * dictionary lookup from that single pass.
+ */
+object Dictionaries {
+
+    // LocalNLPService keyword extraction
+    val localContextual = PatternDictionary.loadResource("nlp/local_contextual.txt")
+    val localActions = PatternDictionary.loadResource("nlp/local_actions.txt")
+    val localEntities = PatternDictionary.loadResource("nlp/local_entities.txt")
+
+    // AIService mock path
+    val mockContextual = PatternDictionary.loadResource("nlp/mock_contextual.txt")
+    val mockActions = PatternDictionary.loadResource("nlp/mock_actions.txt")
+    val mockEntities = PatternDictionary.loadResource("nlp/mock_entities.txt")
+    val actionItemTriggers = PatternDictionary.loadResource("nlp/action_item_triggers.txt")
+    val actionItemCategories = PatternDictionary.loadResource("nlp/action_item_categories.txt")
+    val actionItemFallbacks = PatternDictionary.loadResource("nlp/action_item_fallbacks.txt")
+
+    // NamingManager smart names
+    val namingCategories = PatternDictionary.loadResource("nlp/naming_categories.txt")
+
+    private val all = listOf(
+        localContextual, localActions, localEntities,
+        mockContextual, mockActions, mockEntities,
+        actionItemTriggers, actionItemCategories, actionItemFallbacks,
+        namingCategories
+    )
+
+    /** Offset of each dictionary's first entry in the global entry numbering */
+    private val entryBase = IdentityHashMap<PatternDictionary, Int>()
+
+    /** Global entry indices that each distinct phrase belongs to */
+    private val phraseEntries: Array<IntArray>
+
+    private val entryCount: Int
+
+    private val automaton: AhoCorasick
+
+    init {
+        val phraseIds = LinkedHashMap<String, Int>()
+        val entriesByPhrase = ArrayList<IntArrayBuilder>()
+        var nextEntry = 0
+        for (dictionary in all) {
+            entryBase[dictionary] = nextEntry
+            for (entry in dictionary.entries) {
+                for (phrase in entry.phrases) {
+                    val id = phraseIds.getOrPut(phrase) {
+                        entriesByPhrase.add(IntArrayBuilder(2))
+                        phraseIds.size
+                    }
+                    entriesByPhrase[id].add(nextEntry)
+                }
+                nextEntry++
+            }
+        }
+        entryCount = nextEntry
+        phraseEntries = Array(entriesByPhrase.size) { entriesByPhrase[it].toArray() }
+        automaton = AhoCorasick.build(phraseIds.keys.toList())
+    }
+
+    /**
+     * Find every dictionary phrase in [lowerText] with a single scan
+     */
+    fun match(lowerText: CharSequence): DictionaryMatches {
+        val firstStarts = IntArray(entryCount) { -1 }
+        val hits = IntArrayBuilder()
+        automaton.forEachMatch(lowerText) { phraseId, start, _ ->
+            recordHit(phraseId, start, firstStarts, hits)
+        }
+        return DictionaryMatches(this, firstStarts, hits.toArray())
+    }
+
+    private fun recordHit(phraseId: Int, start: Int, firstStarts: IntArray, hits: IntArrayBuilder) {
+        hits.add(phraseId)
+        hits.add(start)
+        for (entry in phraseEntries[phraseId]) {
+            if (firstStarts[entry] < 0 || start < firstStarts[entry]) {
+                firstStarts[entry] = start
+            }
+        }
+    }
+
+    /**
+     * Start a scan over text that arrives in chunks
+     */
+    fun streamingMatch(): StreamingMatch = StreamingMatch()
+
+    /**
+     * Same result as [match] on the concatenated chunks, at O(chunk) per [feed]
+     */
+    class StreamingMatch internal constructor() {
+        private val firstStarts = IntArray(entryCount) { -1 }
+        private val hits = IntArrayBuilder()
+        private var state = AhoCorasick.ROOT
+        private var offset = 0
+
+        fun feed(lowerChunk: CharSequence) {
+            state = automaton.resume(state, lowerChunk, offset) { phraseId, start, _ ->
+                recordHit(phraseId, start, firstStarts, hits)
+            }
+            offset += lowerChunk.length
+        }
+
+        /**
+         * Matches in everything fed so far
+         */
+        fun matches(): DictionaryMatches = DictionaryMatches(Dictionaries, firstStarts.copyOf(), hits.toArray())
+    }
+
+    internal fun baseOf(dictionary: PatternDictionary): Int {
+        return entryBase[dictionary]
+            ?: throw IllegalArgumentException("Dictionary '${dictionary.name}' is not registered")
+    }
+
+    internal fun phrase(phraseId: Int): String = automaton.pattern(phraseId)
+
+    /** Entries across all dictionaries, the size of a [DictionaryMatches.matchedEntryIndices] count table */
+    internal val totalEntries: Int get() = entryCount
+}
+
+/**
+ * Result of one [Dictionaries.match] scan
+ */
+class DictionaryMatches internal constructor(
+    private val dictionaries: Dictionaries,
+    private val firstStarts: IntArray,
+    private val hits: IntArray
+) {
+
+    val hitCount: Int get() = hits.size / 2
+
+    /**
+     * Every phrase occurrence, ordered by end offset
+     */
+    inline fun forEachHit(action: (phrase: String, start: Int, end: Int) -> Unit) {
+        for (i in 0 until hitCount) {
+            val phrase = hitPhrase(i)
+            val start = hitStart(i)
+            action(phrase, start, start + phrase.length)
+        }
+    }
+
+    fun hitPhrase(index: Int): String = dictionaries.phrase(hits[index * 2])
+
+    fun hitStart(index: Int): Int = hits[index * 2 + 1]
+
+    /**
+     * Start of the earliest occurrence of any phrase of the entry, or -1
+     */
+    fun firstStart(dictionary: PatternDictionary, entryIndex: Int): Int {
+        return firstStarts[dictionaries.baseOf(dictionary) + entryIndex]
+    }
+
+    fun isMatched(dictionary: PatternDictionary, entryIndex: Int): Boolean = firstStart(dictionary, entryIndex) >= 0
+
+    /**
+     * Matched entries in dictionary order
+     */
+    fun matchedEntries(dictionary: PatternDictionary): List<PatternDictionary.Entry> {
+        val base = dictionaries.baseOf(dictionary)
+        return dictionary.entries.filterIndexed { index, _ -> firstStarts[base + index] >= 0 }
+    }
+
+    fun matchedLabels(dictionary: PatternDictionary): List<String> = matchedEntries(dictionary).map { it.label }
+
+    /**
+     * Global indices of every matched entry across all dictionaries, ascending
+     */
+    internal fun matchedEntryIndices(): IntArray {
+        val matched = IntArrayBuilder()
+        for (entry in firstStarts.indices) {
+            if (firstStarts[entry] >= 0) matched.add(entry)
+        }
+        return matched.toArray()
+    }
+
+    /**
+     * First matched entry in dictionary order, optionally restricted to one group
+     */
+    fun firstMatchedEntry(dictionary: PatternDictionary, group: String? = null): PatternDictionary.Entry? {
+        val base = dictionaries.baseOf(dictionary)
+        dictionary.entries.forEachIndexed { index, entry ->
+            if ((group == null || entry.group == group) && firstStarts[base + index] >= 0) {
+                return entry
+            }
+        }
+        return null
+    }
+}
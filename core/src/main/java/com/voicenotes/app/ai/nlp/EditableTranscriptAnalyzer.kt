@@ -0,0 +1,295 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Keeps a transcript's analysis current across edits.
+ *
+ * The text is cut into spans that end after a run of terminal punctuation followed
+ * by whitespace, so no token, word or sentence crosses a span. Each span's features
+ * (token ids, dictionary entries, action items, sentiment word counts and
+ * proper-noun candidates) are computed once and memoized by the span's content.
+ * An edit re-splits only the spans it touches and the one before; spans that come
+ * out unchanged are found by content, so only new text is analyzed, and the document
+ * totals are adjusted by the difference. [snapshot] then ranks keywords from the
+ * totals in O(distinct tokens), giving the same keywords, action items and
+ * sentiment as LocalNLPService.analyze on the whole text.
+ *
+ * Not thread-safe; edit and read it from one coroutine.
+ */
+class EditableTranscriptAnalyzer(
+    text: String,
+    private val dictionary: TokenDictionary = TokenDictionary(),
+    private val corpus: TfIdfModel = TfIdfModel.shared
+) {
+
+    /**
+     * Analysis of the transcript after the latest edit
+     */
+    class Snapshot internal constructor(
+        val text: String,
+        val language: Language,
+        val keywords: List<String>,
+        val actionItems: List<String>,
+        val sentiment: String,
+        val tokenCount: Int,
+        val wordCount: Int,
+        val sentenceCount: Int
+    )
+
+    /**
+     * Everything the document totals need from one span of text
+     */
+    private class SpanFeatures(
+        val tokenIds: IntArray,
+        /** Distinct token ids in first-occurrence order */
+        val distinctTokenIds: IntArray,
+        /** Global dictionary entry indices, see [DictionaryMatches.matchedEntryIndices] */
+        val dictionaryEntries: IntArray,
+        val actionItems: List<String>,
+        val positiveCount: Int,
+        val negativeCount: Int,
+        /** Lowercased proper-noun candidates, stop words not yet removed */
+        val entityWords: List<String>,
+        val wordCount: Int,
+        val sentenceCount: Int
+    )
+
+    private class Span(val text: String, val features: SpanFeatures)
+
+    var text: String = text
+        private set
+
+    private var language = LanguageIdentifier.identify(text)
+
+    private val spans = ArrayList<Span>()
+    /** Start offset of each span in [text]; spans.size + 1 entries, the last is text.length */
+    private var spanStarts = IntArray(1)
+
+    // Totals over all spans
+    private val counts = IntIntMap()
+    private val entryCounts = IntArray(Dictionaries.totalEntries)
+    private var tokenCount = 0
+    private var wordCount = 0
+    private var sentenceCount = 0
+    private var positiveCount = 0
+    private var negativeCount = 0
+
+    private var snapshot: Snapshot? = null
+
+    /** Spans whose features were computed rather than reused, for measuring edit cost */
+    var spansAnalyzed = 0
+        private set
+
+    init {
+        val added = ArrayList<Span>()
+        splitSpans(text, 0, text.length, emptyMap(), added)
+        added.forEach { addTotals(it.features, 1) }
+        spans.addAll(added)
+        rebuildStarts()
+    }
+
+    /**
+     * Replace characters [start, end) with [replacement]
+     */
+    fun replace(start: Int, end: Int, replacement: String) {
+        require(start in 0..end && end <= text.length) { "Bad edit range [$start, $end) of ${text.length}" }
+        val newText = StringBuilder(text.length - (end - start) + replacement.length)
+            .append(text, 0, start)
+            .append(replacement)
+            .append(text, end, text.length)
+            .toString()
+        applyEdit(newText, start, end, start + replacement.length)
+    }
+
+    /**
+     * Switch to [newText], e.g. a corrected transcript or a better recognition pass.
+     * Only the part between the common prefix and suffix is re-analyzed.
+     */
+    fun update(newText: String) {
+        if (newText == text) return
+        val limit = minOf(text.length, newText.length)
+        var prefix = 0
+        while (prefix < limit && text[prefix] == newText[prefix]) prefix++
+        var suffix = 0
+        while (suffix < limit - prefix &&
+            text[text.length - 1 - suffix] == newText[newText.length - 1 - suffix]
+        ) {
+            suffix++
+        }
+        applyEdit(newText, prefix, text.length - suffix, newText.length - suffix)
+    }
+
+    fun snapshot(): Snapshot = snapshot ?: buildSnapshot().also { snapshot = it }
+
+    /**
+     * Old text [start, oldEnd) became new text [start, newEnd); everything else is unchanged
+     */
+    private fun applyEdit(newText: String, start: Int, oldEnd: Int, newEnd: Int) {
+        // A span boundary depends on the characters either side of it, so the spans
+        // touching the edit and the one before it are re-split. The span holding oldEnd
+        // ends past the edit, so its end is still a boundary in the new text.
+        val last = spanIndexAt(oldEnd)
+        val first = maxOf(0, spanIndexAt(start) - 1)
+        val regionStart = spanStarts[first]
+        val regionEnd = spanStarts[last + 1] + (newEnd - oldEnd)
+
+        val removed = HashMap<String, SpanFeatures>()
+        for (i in first..last) {
+            val span = spans[i]
+            removed[span.text] = span.features
+            addTotals(span.features, -1)
+        }
+        val added = ArrayList<Span>()
+        splitSpans(newText, regionStart, regionEnd, removed, added)
+        added.forEach { addTotals(it.features, 1) }
+
+        spans.subList(first, last + 1).clear()
+        spans.addAll(first, added)
+        text = newText
+        rebuildStarts()
+        if (start < LanguageIdentifier.SAMPLE_CHARS) language = LanguageIdentifier.identify(newText)
+        snapshot = null
+    }
+
+    /**
+     * Index of the span containing [offset]; the end of the text belongs to the last span
+     */
+    private fun spanIndexAt(offset: Int): Int {
+        if (spans.isEmpty()) return -1
+        var low = 0
+        var high = spans.size - 1
+        while (low < high) {
+            val mid = (low + high + 1) ushr 1
+            if (spanStarts[mid] <= offset) low = mid else high = mid - 1
+        }
+        return low
+    }
+
+    private fun rebuildStarts() {
+        val starts = IntArray(spans.size + 1)
+        for (i in spans.indices) starts[i + 1] = starts[i] + spans[i].text.length
+        spanStarts = starts
+    }
+
+    /**
+     * Cut [from, to) of [source] into spans, reusing features of identical spans in [known]
+     */
+    private fun splitSpans(source: String, from: Int, to: Int, known: Map<String, SpanFeatures>, out: MutableList<Span>) {
+        var spanStart = from
+        var i = from
+        while (i < to) {
+            val c = source[i]
+            i++
+            if (i == to || (isSentenceTerminator(c) && source[i].isWhitespace())) {
+                val spanText = source.substring(spanStart, i)
+                out.add(Span(spanText, known[spanText] ?: analyzeSpan(spanText)))
+                spanStart = i
+            }
+        }
+    }
+
+    private fun analyzeSpan(spanText: String): SpanFeatures {
+        spansAnalyzed++
+        // The language only matters for totals, so the span is not identified on its own
+        val document = AnalyzedDocument.analyze(spanText, dictionary, Language.DEFAULT)
+
+        val tokenIds = IntArray(document.tokenCount) { document.tokenId(it) }
+        var positive = 0
+        var negative = 0
+        for (id in document.distinctTokenIds) {
+            val term = document.term(id)
+            if (TranscriptAnalyzer.isPositiveWord(term)) positive += document.count(id)
+            if (TranscriptAnalyzer.isNegativeWord(term)) negative += document.count(id)
+        }
+
+        val actionItems = ArrayList<String>()
+        for (i in 0 until document.sentenceCount) {
+            TranscriptAnalyzer.addActionItems(document.sentences[i], document.lowerSentence(i), actionItems)
+        }
+
+        val entityWords = ArrayList<String>()
+        for (i in 0 until document.wordCount) {
+            TranscriptAnalyzer.entityKeywordOf(document.word(i))?.let { entityWords.add(it) }
+        }
+
+        return SpanFeatures(
+            tokenIds = tokenIds,
+            distinctTokenIds = document.distinctTokenIds,
+            dictionaryEntries = document.dictionaryMatches.matchedEntryIndices(),
+            actionItems = actionItems,
+            positiveCount = positive,
+            negativeCount = negative,
+            entityWords = entityWords,
+            wordCount = document.wordCount,
+            sentenceCount = document.sentenceCount
+        )
+    }
+
+    private fun addTotals(features: SpanFeatures, sign: Int) {
+        for (id in features.tokenIds) counts.increment(id, sign)
+        for (entry in features.dictionaryEntries) entryCounts[entry] += sign
+        tokenCount += sign * features.tokenIds.size
+        wordCount += sign * features.wordCount
+        sentenceCount += sign * features.sentenceCount
+        positiveCount += sign * features.positiveCount
+        negativeCount += sign * features.negativeCount
+    }
+
+    private fun buildSnapshot(): Snapshot {
+        val pack = LanguagePack.of(language)
+        val stopWords = pack.stopWords
+
+        // Distinct tokens and proper nouns in first-occurrence order, from the memoized spans
+        val seen = IntIntMap(counts.capacity() / 2)
+        val distinct = IntArrayBuilder()
+        val entityWords = LinkedHashSet<String>()
+        val actionItems = LinkedHashSet<String>()
+        for (span in spans) {
+            for (id in span.features.distinctTokenIds) {
+                if (seen.increment(id) == 1) distinct.add(id)
+            }
+            for (word in span.features.entityWords) {
+                if (!stopWords.contains(word)) entityWords.add(word)
+            }
+            if (pack.hasPhraseRules && actionItems.size < TranscriptAnalyzer.MAX_ACTION_ITEMS) {
+                actionItems.addAll(span.features.actionItems)
+            }
+        }
+        val distinctIds = distinct.toArray()
+        val corpusSnapshot = corpus.snapshot()
+
+        // English phrase rules stay quiet on other languages, as in TranscriptAnalyzer
+        fun labels(dictionary: PatternDictionary): List<String> {
+            if (!pack.hasPhraseRules) return emptyList()
+            val base = Dictionaries.baseOf(dictionary)
+            return dictionary.entries.filterIndexed { index, _ -> entryCounts[base + index] > 0 }.map { it.label }
+        }
+
+        val contextual = LinkedHashSet<String>()
+        contextual.addAll(labels(Dictionaries.localContextual))
+        contextual.addAll(TranscriptAnalyzer.rankImportantTokens(distinctIds, counts, dictionary, stopWords, corpusSnapshot))
+        val entities = LinkedHashSet<String>()
+        entities.addAll(labels(Dictionaries.localEntities))
+        entities.addAll(entityWords)
+        val keywords = TranscriptAnalyzer.combineKeywords(
+            contextual.toList(),
+            labels(Dictionaries.localActions).distinct(),
+            entities.toList(),
+            TranscriptAnalyzer.topTfIdfTokens(distinctIds, counts, dictionary, stopWords, corpusSnapshot, 5)
+        )
+
+        return Snapshot(
+            text = text,
+            language = language,
+            keywords = keywords,
+            actionItems = actionItems.take(TranscriptAnalyzer.MAX_ACTION_ITEMS),
+            sentiment = if (pack.hasPhraseRules) TranscriptAnalyzer.sentimentOf(positiveCount, negativeCount) else "neutral",
+            tokenCount = tokenCount,
+            wordCount = wordCount,
+            sentenceCount = sentenceCount
+        )
+    }
+
+    private companion object {
+        fun isSentenceTerminator(c: Char): Boolean = c == '.' || c == '!' || c == '?'
+    }
+}
@@ -0,0 +1,146 @@
+package com.voicenotes.app.ai.nlp
+
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.FloatBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Fixed-size embedding records packed in a memory-mapped file.
+ *
+ * Layout: a 32-byte header (magic, format, embedder id hash, dimension, slot count)
+ * followed by records of note id (8 bytes), IVF list (4 bytes), padding (4 bytes)
+ * and [dimension] little-endian floats. Vectors are read straight from the mapping,
+ * so the library is never copied onto the heap. Deleted records keep their slot
+ * with note id [EMPTY] until a later insert reuses it; any id below 1 is empty.
+ *
+ * Writes reach the page cache immediately and survive an app crash; [flush] forces
+ * them to storage. Not thread-safe; [SemanticIndex] serializes access.
+ */
+internal class EmbeddingStore(
+    file: File,
+    val dimension: Int,
+    private val embedderId: String
+) {
+
+    private val recordBytes = RECORD_HEADER_BYTES + dimension * 4
+    private val recordFloats = recordBytes / 4
+
+    private val randomAccessFile = RandomAccessFile(file, "rw")
+    private lateinit var buffer: MappedByteBuffer
+    private lateinit var floats: FloatBuffer
+
+    /** Slots ever used, live or deleted */
+    var slotCount = 0
+        private set
+
+    init {
+        if (!hasValidHeader()) {
+            // New file, or written by another embedder: start over
+            randomAccessFile.setLength(0)
+            map(INITIAL_CAPACITY)
+            buffer.putInt(0, MAGIC)
+            buffer.putInt(4, FORMAT_VERSION)
+            buffer.putInt(8, embedderId.hashCode())
+            buffer.putInt(12, dimension)
+            buffer.putInt(16, 0)
+        } else {
+            map(((randomAccessFile.length() - HEADER_BYTES) / recordBytes).toInt())
+            slotCount = buffer.getInt(16)
+        }
+    }
+
+    fun noteId(slot: Int): Long = buffer.getLong(offsetOf(slot))
+
+    fun list(slot: Int): Int = buffer.getInt(offsetOf(slot) + 8)
+
+    fun setList(slot: Int, list: Int) {
+        buffer.putInt(offsetOf(slot) + 8, list)
+    }
+
+    /**
+     * Write a record into [slot], which may be a reused deleted slot or [slotCount]
+     */
+    fun write(slot: Int, noteId: Long, vector: FloatArray, list: Int) {
+        require(vector.size == dimension) { "Expected $dimension floats, got ${vector.size}" }
+        if (slot >= capacity()) map(maxOf(slot + 1, capacity() * 2))
+        val offset = offsetOf(slot)
+        val first = vectorStart(slot)
+        for (i in 0 until dimension) floats.put(first + i, vector[i])
+        buffer.putInt(offset + 8, list)
+        // Note id last, so a torn write leaves an empty slot rather than a bad vector
+        buffer.putLong(offset, noteId)
+        if (slot >= slotCount) {
+            slotCount = slot + 1
+            buffer.putInt(16, slotCount)
+        }
+    }
+
+    fun delete(slot: Int) {
+        buffer.putLong(offsetOf(slot), EMPTY)
+    }
+
+    fun dot(slot: Int, query: FloatArray): Float {
+        val first = vectorStart(slot)
+        var sum = 0f
+        for (i in 0 until dimension) sum += floats.get(first + i) * query[i]
+        return sum
+    }
+
+    fun read(slot: Int, out: FloatArray) {
+        val first = vectorStart(slot)
+        for (i in 0 until dimension) out[i] = floats.get(first + i)
+    }
+
+    fun flush() {
+        buffer.force()
+    }
+
+    fun close() {
+        buffer.force()
+        randomAccessFile.close()
+    }
+
+    private fun offsetOf(slot: Int): Int = HEADER_BYTES + slot * recordBytes
+
+    private fun vectorStart(slot: Int): Int = slot * recordFloats + (HEADER_BYTES + RECORD_HEADER_BYTES) / 4
+
+    private fun capacity(): Int = (buffer.capacity() - HEADER_BYTES) / recordBytes
+
+    /**
+     * (Re)map the file with room for [slots] records
+     */
+    private fun map(slots: Int) {
+        val size = HEADER_BYTES.toLong() + slots.coerceAtLeast(INITIAL_CAPACITY).toLong() * recordBytes
+        check(size <= Int.MAX_VALUE) { "Embedding file too large" }
+        randomAccessFile.setLength(size)
+        buffer = randomAccessFile.channel.map(FileChannel.MapMode.READ_WRITE, 0, size)
+        buffer.order(ByteOrder.LITTLE_ENDIAN)
+        floats = buffer.asFloatBuffer()
+    }
+
+    private fun hasValidHeader(): Boolean {
+        if (randomAccessFile.length() < HEADER_BYTES) return false
+        randomAccessFile.seek(0)
+        val header = ByteArray(HEADER_BYTES)
+        randomAccessFile.readFully(header)
+        val view = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN)
+        return view.getInt(0) == MAGIC &&
+            view.getInt(4) == FORMAT_VERSION &&
+            view.getInt(8) == embedderId.hashCode() &&
+            view.getInt(12) == dimension
+    }
+
+    companion object {
+        const val EMPTY = -1L
+
+        private const val MAGIC = 0x564E454D // "VNEM"
+        private const val FORMAT_VERSION = 1
+        private const val HEADER_BYTES = 32
+        private const val RECORD_HEADER_BYTES = 16
+        private const val INITIAL_CAPACITY = 256
+    }
+}
@@ -0,0 +1,237 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Known names of people, places and organizations, matched as whole token sequences.
+ *
+ * Names are tokenized like transcripts and stored in a trie whose edges are token
+ * ids, held in one open-addressing table keyed by (node, token). [find] walks the
+ * transcript's tokens once; at each token it follows the trie at most
+ * [maxTokens] steps and keeps the longest name that ends on a node, so
+ * "New York City" wins over "New York". Each step is one hash lookup, so the cost
+ * per token does not grow with the number of names.
+ *
+ * Immutable once built. Sources that change (the user's list, contacts) build a
+ * new gazetteer in the background and [install] it.
+ */
+class Gazetteer private constructor(
+    private val dictionary: TokenDictionary,
+    private val edgeKeys: LongArray,
+    private val edgeTargets: IntArray,
+    /** Entry index ending at each node, or -1 */
+    private val nodeEntries: IntArray,
+    private val entries: List<Entry>,
+    /** Longest name in tokens */
+    private val maxTokens: Int
+) {
+
+    enum class Type(val group: String) {
+        PERSON("person"),
+        PLACE("place"),
+        ORGANIZATION("organization");
+
+        companion object {
+            fun fromGroup(group: String): Type? = values().firstOrNull { it.group == group }
+        }
+    }
+
+    data class Entry(val name: String, val type: Type)
+
+    /**
+     * One occurrence of [entry] at characters [start, end) of the text
+     */
+    data class Match(val entry: Entry, val start: Int, val end: Int)
+
+    /** Distinct names; alternative spellings share one entry */
+    val size: Int get() = entries.size
+
+    /**
+     * Leftmost-longest occurrences of known names in [text], in text order.
+     * With [capitalizedOnly], a match must start with an uppercase letter, which keeps
+     * "Mark" the person apart from "mark" the verb.
+     */
+    fun find(
+        text: String,
+        lowerText: String = AnalyzedDocument.lowercasePreservingLength(text),
+        capitalizedOnly: Boolean = true
+    ): List<Match> {
+        if (entries.isEmpty()) return emptyList()
+
+        // Token spans with their ids in this gazetteer; words it does not know are -1
+        val starts = IntArrayBuilder()
+        val ends = IntArrayBuilder()
+        val ids = IntArrayBuilder()
+        var i = 0
+        while (i < lowerText.length) {
+            if (!AnalyzedDocument.isTokenChar(lowerText[i])) {
+                i++
+                continue
+            }
+            val start = i
+            while (i < lowerText.length && AnalyzedDocument.isTokenChar(lowerText[i])) i++
+            starts.add(start)
+            ends.add(i)
+            ids.add(dictionary.idOf(lowerText, start, i))
+        }
+
+        val matches = ArrayList<Match>()
+        var token = 0
+        while (token < ids.size) {
+            var node = ROOT
+            var matchedEntry = -1
+            var matchedEnd = token
+            var next = token
+            while (next < ids.size && next - token < maxTokens) {
+                val id = ids[next]
+                if (id < 0) break
+                // A name does not run across a sentence break
+                if (next > token && hasTerminator(text, ends[next - 1], starts[next])) break
+                node = child(node, id)
+                if (node < 0) break
+                next++
+                if (nodeEntries[node] >= 0) {
+                    matchedEntry = nodeEntries[node]
+                    matchedEnd = next
+                }
+            }
+            val start = starts[token]
+            if (matchedEntry >= 0 && (!capitalizedOnly || Character.isUpperCase(text[start]))) {
+                matches.add(Match(entries[matchedEntry], start, ends[matchedEnd - 1]))
+                token = matchedEnd
+            } else {
+                token++
+            }
+        }
+        return matches
+    }
+
+    private fun child(node: Int, tokenId: Int): Int {
+        val key = edgeKey(node, tokenId)
+        val mask = edgeKeys.size - 1
+        var slot = slotOf(key, mask)
+        while (true) {
+            val stored = edgeKeys[slot]
+            if (stored == key) return edgeTargets[slot]
+            if (stored == NO_EDGE) return -1
+            slot = (slot + 1) and mask
+        }
+    }
+
+    private fun hasTerminator(text: String, from: Int, to: Int): Boolean {
+        for (i in from until to) {
+            val c = text[i]
+            if (c == '.' || c == '!' || c == '?') return true
+        }
+        return false
+    }
+
+    /**
+     * Collects names, then lays the trie out in flat arrays
+     */
+    class Builder {
+        private val dictionary = TokenDictionary()
+        private val entries = ArrayList<Entry>()
+        private val entryIndex = HashMap<Entry, Int>()
+        private val edges = HashMap<Long, Int>()
+        private val nodeEntries = IntArrayBuilder().apply { add(-1) }
+        private var maxTokens = 0
+
+        /**
+         * Add [name] under [type]; [spellings] default to the name itself.
+         * A spelling already added keeps its first entry.
+         */
+        fun add(name: String, type: Type, spellings: List<String> = listOf(name)): Builder {
+            val trimmed = name.trim()
+            if (trimmed.isEmpty()) return this
+            val entry = Entry(trimmed, type)
+            val index = entryIndex.getOrPut(entry) {
+                entries.add(entry)
+                entries.size - 1
+            }
+            for (spelling in spellings) addSpelling(spelling, index)
+            return this
+        }
+
+        /**
+         * Entries of a dictionary whose groups are [Type] groups; other groups are skipped
+         */
+        fun addAll(names: PatternDictionary): Builder {
+            for (entry in names.entries) {
+                val type = Type.fromGroup(entry.group) ?: continue
+                add(entry.label, type, entry.phrases)
+            }
+            return this
+        }
+
+        fun build(): Gazetteer {
+            var capacity = 16
+            while (capacity < edges.size * 2) capacity = capacity shl 1
+            val keys = LongArray(capacity) { NO_EDGE }
+            val targets = IntArray(capacity)
+            val mask = capacity - 1
+            for ((key, target) in edges) {
+                var slot = slotOf(key, mask)
+                while (keys[slot] != NO_EDGE) slot = (slot + 1) and mask
+                keys[slot] = key
+                targets[slot] = target
+            }
+            return Gazetteer(dictionary, keys, targets, nodeEntries.toArray(), entries.toList(), maxTokens)
+        }
+
+        private fun addSpelling(spelling: String, entry: Int) {
+            val lower = AnalyzedDocument.lowercasePreservingLength(spelling)
+            var node = ROOT
+            var tokens = 0
+            var i = 0
+            while (i < lower.length) {
+                if (!AnalyzedDocument.isTokenChar(lower[i])) {
+                    i++
+                    continue
+                }
+                val start = i
+                while (i < lower.length && AnalyzedDocument.isTokenChar(lower[i])) i++
+                val key = edgeKey(node, dictionary.intern(lower, start, i))
+                node = edges.getOrPut(key) {
+                    nodeEntries.add(-1)
+                    nodeEntries.size - 1
+                }
+                tokens++
+            }
+            if (tokens == 0 || nodeEntries[node] >= 0) return
+            nodeEntries[node] = entry
+            maxTokens = maxOf(maxTokens, tokens)
+        }
+    }
+
+    companion object {
+        const val BUNDLED_PATH = "nlp/gazetteer.txt"
+
+        private const val ROOT = 0
+        private const val NO_EDGE = -1L
+
+        private fun edgeKey(node: Int, tokenId: Int): Long = (node.toLong() shl 32) or tokenId.toLong()
+
+        private fun slotOf(key: Long, mask: Int): Int {
+            val mixed = key * -0x61c8864680b583ebL
+            return (mixed ushr 40).toInt() and mask
+        }
+
+        private val bundled: Gazetteer by lazy {
+            Builder().addAll(PatternDictionary.loadResource(BUNDLED_PATH)).build()
+        }
+
+        @Volatile
+        private var installed: Gazetteer? = null
+
+        /** The names every extractor uses: the bundled list until a fuller one is installed */
+        val shared: Gazetteer get() = installed ?: bundled
+
+        /**
+         * A builder already holding the bundled names, for adding the user's own
+         */
+        fun builderWithBundled(): Builder = Builder().addAll(PatternDictionary.loadResource(BUNDLED_PATH))
+
+        fun install(gazetteer: Gazetteer) {
+            installed = gazetteer
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.voicenotes.app.ai.nlp
+
+import kotlin.math.sqrt
+
+/**
+ * CPU-only embedder that needs no model download.
+ *
+ * The content tokens of an [AnalyzedDocument], adjacent token pairs and the
+ * character trigrams of each token are hashed into [dimension] buckets with a
+ * random sign (the "hashing trick"). Trigrams make inflections and shared stems
+ * land close together ("dentist", "dentists", "dental"); true paraphrases with
+ * no shared letters need a learned model behind the same [TextEmbedder] interface,
+ * passed to [SemanticIndex.getInstance] or swapped in with [SemanticIndex.useEmbedder].
+ */
+class HashedNgramEmbedder(override val dimension: Int = DEFAULT_DIMENSION) : TextEmbedder {
+
+    // v2 hashes the document's tokens, which drops two-letter words
+    override val id: String = "hashed-ngram-v2-$dimension"
+
+    override fun embed(text: String): FloatArray = embed(AnalyzedDocument.analyze(text))
+
+    override fun embed(document: AnalyzedDocument): FloatArray {
+        val vector = FloatArray(dimension)
+        val word = StringBuilder()
+        var previousWordHash = 0L
+        var hasPrevious = false
+
+        for (index in 0 until document.tokenCount) {
+            val id = document.tokenId(index)
+            if (document.isStopWord(id)) continue
+            word.setLength(0)
+            word.append(document.term(id))
+            val wordHash = hash(word, 0, word.length, WORD_SEED)
+            add(vector, wordHash, WORD_WEIGHT)
+            if (hasPrevious) add(vector, mix(previousWordHash * 31 + wordHash), PAIR_WEIGHT)
+            addTrigrams(vector, word)
+            previousWordHash = wordHash
+            hasPrevious = true
+        }
+
+        normalize(vector)
+        return vector
+    }
+
+    /**
+     * Trigrams of the word padded with boundary markers, sharing one unit of weight
+     */
+    private fun addTrigrams(vector: FloatArray, word: StringBuilder) {
+        word.insert(0, '<').append('>')
+        val grams = word.length - 2
+        val weight = TRIGRAM_WEIGHT / sqrt(grams.toFloat())
+        for (start in 0 until grams) {
+            add(vector, hash(word, start, start + 3, TRIGRAM_SEED), weight)
+        }
+    }
+
+    private fun add(vector: FloatArray, featureHash: Long, weight: Float) {
+        val mixed = mix(featureHash)
+        val bucket = ((mixed ushr 1) % dimension).toInt()
+        vector[bucket] += if (mixed and 1L == 0L) weight else -weight
+    }
+
+    private fun normalize(vector: FloatArray) {
+        var norm = 0.0
+        for (value in vector) norm += value * value
+        if (norm == 0.0) return
+        val scale = (1.0 / sqrt(norm)).toFloat()
+        for (i in vector.indices) vector[i] *= scale
+    }
+
+    companion object {
+        const val DEFAULT_DIMENSION = 256
+
+        private const val WORD_WEIGHT = 1.0f
+        private const val PAIR_WEIGHT = 0.5f
+        private const val TRIGRAM_WEIGHT = 1.0f
+        private const val WORD_SEED = 0x1F3D5B79L
+        private const val TRIGRAM_SEED = 0x6C8E9CF5L
+
+        /** FNV-1a over a character range, seeded per feature kind */
+        private fun hash(text: CharSequence, start: Int, end: Int, seed: Long): Long {
+            var hash = -0x340d631b7bdddcdbL xor seed
+            for (i in start until end) {
+                hash = (hash xor text[i].code.toLong()) * 0x100000001b3L
+            }
+            return hash
+        }
+
+        /** SplitMix64 finalizer */
+        private fun mix(value: Long): Long {
+            var z = value
+            z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+            z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+            return z xor (z ushr 31)
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Analyzes a transcript while it is still being recognized.
+ *
+ * Each [append] only scans the new chunk (plus a word or sentence left open by the
+ * previous one), updating token counts, sentence boundaries, dictionary matches and
+ * action items in place. [snapshot] turns the running state into keywords and
+ * action items without re-reading the text. Tokenization, sentence splitting and
+ * keyword rules are the same as [AnalyzedDocument] and [TranscriptAnalyzer], so a
+ * finished analyzer agrees with analyzing the whole transcript at once.
+ *
+ * Not thread-safe; feed it from one coroutine.
+ */
+class IncrementalTranscriptAnalyzer(
+    private val dictionary: TokenDictionary = TokenDictionary(),
+    private val corpus: TfIdfModel = TfIdfModel.shared
+) {
+
+    /**
+     * Analysis of everything appended up to one point
+     */
+    class Snapshot internal constructor(
+        val text: String,
+        val keywords: List<String>,
+        val actionItems: List<String>,
+        val sentences: List<String>,
+        val tokenCount: Int,
+        val wordCount: Int
+    )
+
+    private val textBuffer = StringBuilder()
+    private val lowerBuffer = StringBuilder()
+
+    // Token counts; a token touching the end of the buffer waits for the next chunk
+    private val counts = IntIntMap()
+    private val distinctTokenIds = IntArrayBuilder()
+    private var tokenCount = 0
+    private var tokenCursor = 0
+
+    // Whitespace-delimited words, for proper-noun keywords
+    private var wordCount = 0
+    private var wordCursor = 0
+    private val entityWords = LinkedHashSet<String>()
+
+    // Sentences close at terminal punctuation; the last one stays open
+    private val sentences = ArrayList<String>()
+    private var sentenceStart = 0
+    private var sentenceCursor = 0
+    private val actionItems = LinkedHashSet<String>()
+
+    private val dictionaryMatch = Dictionaries.streamingMatch()
+
+    // Identified from the opening characters, like AnalyzedDocument; fixed once there are enough
+    private var language: Language? = null
+
+    private var finished = false
+
+    /** Everything appended so far */
+    val text: CharSequence get() = textBuffer
+
+    val length: Int get() = textBuffer.length
+
+    /**
+     * Add the next piece of recognized text, in O(chunk)
+     */
+    fun append(textChunk: String) {
+        check(!finished) { "Analyzer already finished" }
+        if (textChunk.isEmpty()) return
+        val chunkStart = textBuffer.length
+        textBuffer.append(textChunk)
+        for (c in textChunk) lowerBuffer.append(Character.toLowerCase(c))
+
+        dictionaryMatch.feed(lowerBuffer.subSequence(chunkStart, lowerBuffer.length))
+        scanTokens(atEnd = false)
+        scanWords(atEnd = false)
+        scanSentences()
+    }
+
+    /**
+     * Mark the transcript complete, closing the last token, word and sentence
+     */
+    fun finish() {
+        if (finished) return
+        finished = true
+        scanTokens(atEnd = true)
+        scanWords(atEnd = true)
+        closeSentence(textBuffer.length)
+        sentenceStart = textBuffer.length
+    }
+
+    /**
+     * Keywords and action items for the text so far. Ranking costs O(distinct tokens);
+     * the text itself is never re-scanned.
+     */
+    fun snapshot(): Snapshot {
+        val currentSentences = ArrayList<String>(sentences.size + 1)
+        currentSentences.addAll(sentences)
+        val currentActionItems = LinkedHashSet(actionItems)
+        openSentence()?.let { (sentence, lowerSentence) ->
+            currentSentences.add(sentence)
+            if (currentActionItems.size < TranscriptAnalyzer.MAX_ACTION_ITEMS) {
+                TranscriptAnalyzer.addActionItems(sentence, lowerSentence, currentActionItems)
+            }
+        }
+
+        val pack = LanguagePack.of(currentLanguage())
+        // English phrase rules stay quiet on other languages, as in TranscriptAnalyzer
+        val matches = if (pack.hasPhraseRules) dictionaryMatch.matches() else null
+        if (!pack.hasPhraseRules) currentActionItems.clear()
+        val corpusSnapshot = corpus.snapshot()
+        val distinct = distinctTokenIds.toArray()
+
+        val contextual = LinkedHashSet<String>()
+        matches?.let { contextual.addAll(it.matchedLabels(Dictionaries.localContextual)) }
+        contextual.addAll(TranscriptAnalyzer.rankImportantTokens(distinct, counts, dictionary, pack.stopWords, corpusSnapshot))
+        val entities = LinkedHashSet<String>()
+        matches?.let { entities.addAll(it.matchedLabels(Dictionaries.localEntities)) }
+        entityWords.filterTo(entities) { !pack.stopWords.contains(it) }
+        val keywords = TranscriptAnalyzer.combineKeywords(
+            contextual.toList(),
+            matches?.matchedLabels(Dictionaries.localActions)?.distinct().orEmpty(),
+            entities.toList(),
+            TranscriptAnalyzer.topTfIdfTokens(distinct, counts, dictionary, pack.stopWords, corpusSnapshot, 5)
+        )
+
+        return Snapshot(
+            text = textBuffer.toString(),
+            keywords = keywords,
+            actionItems = currentActionItems.take(TranscriptAnalyzer.MAX_ACTION_ITEMS),
+            sentences = currentSentences,
+            tokenCount = tokenCount,
+            wordCount = wordCount
+        )
+    }
+
+    /**
+     * Same answer as [AnalyzedDocument.analyze] once the opening sample is complete
+     */
+    private fun currentLanguage(): Language {
+        language?.let { return it }
+        val detected = LanguageIdentifier.identify(textBuffer)
+        if (finished || textBuffer.length >= LanguageIdentifier.SAMPLE_CHARS) language = detected
+        return detected
+    }
+
+    private fun scanTokens(atEnd: Boolean) {
+        val end = lowerBuffer.length
+        var i = tokenCursor
+        while (i < end) {
+            if (!AnalyzedDocument.isTokenChar(lowerBuffer[i])) {
+                i++
+                continue
+            }
+            val start = i
+            while (i < end && AnalyzedDocument.isTokenChar(lowerBuffer[i])) i++
+            if (i == end && !atEnd) {
+                // May continue in the next chunk
+                tokenCursor = start
+                return
+            }
+            if (i - start >= AnalyzedDocument.MIN_TOKEN_LENGTH) {
+                val id = dictionary.intern(lowerBuffer, start, i)
+                tokenCount++
+                if (counts.increment(id) == 1) distinctTokenIds.add(id)
+            }
+        }
+        tokenCursor = end
+    }
+
+    private fun scanWords(atEnd: Boolean) {
+        val end = textBuffer.length
+        var i = wordCursor
+        while (i < end) {
+            if (textBuffer[i].isWhitespace()) {
+                i++
+                continue
+            }
+            val start = i
+            while (i < end && !textBuffer[i].isWhitespace()) i++
+            if (i == end && !atEnd) {
+                wordCursor = start
+                return
+            }
+            wordCount++
+            TranscriptAnalyzer.entityKeywordOf(textBuffer.substring(start, i))?.let { entityWords.add(it) }
+        }
+        wordCursor = end
+    }
+
+    private fun scanSentences() {
+        val end = textBuffer.length
+        for (i in sentenceCursor until end) {
+            if (isSentenceTerminator(textBuffer[i])) {
+                closeSentence(i)
+                // Runs of terminators leave empty segments, which closeSentence drops
+                sentenceStart = i + 1
+            }
+        }
+        sentenceCursor = end
+    }
+
+    private fun closeSentence(end: Int) {
+        val (sentence, lowerSentence) = trimmedSentence(sentenceStart, end) ?: return
+        sentences.add(sentence)
+        if (actionItems.size < TranscriptAnalyzer.MAX_ACTION_ITEMS) {
+            TranscriptAnalyzer.addActionItems(sentence, lowerSentence, actionItems)
+        }
+    }
+
+    private fun openSentence(): Pair<String, String>? = trimmedSentence(sentenceStart, textBuffer.length)
+
+    private fun trimmedSentence(from: Int, to: Int): Pair<String, String>? {
+        var start = from
+        var end = to
+        while (start < end && textBuffer[start].isWhitespace()) start++
+        while (end > start && textBuffer[end - 1].isWhitespace()) end--
+        if (end - start <= MAX_IGNORED_SENTENCE_LENGTH) return null
+        return textBuffer.substring(start, end) to lowerBuffer.substring(start, end)
+    }
+
+    companion object {
+        /** Same filter as AnalyzedDocument */
+        private const val MAX_IGNORED_SENTENCE_LENGTH = 3
+
+        private fun isSentenceTerminator(c: Char): Boolean = c == '.' || c == '!' || c == '?'
+    }
+}
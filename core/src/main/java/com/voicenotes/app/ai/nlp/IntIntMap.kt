@@ -0,0 +1,107 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Open-addressing int to int map for non-negative keys, no boxing.
+ * Missing keys read as 0, which suits counting.
+ */
+class IntIntMap(expectedSize: Int = 16) {
+
+    private var keys: IntArray
+    private var values: IntArray
+
+    var size = 0
+        private set
+
+    init {
+        var capacity = 16
+        while (capacity < expectedSize * 2) capacity = capacity shl 1
+        keys = IntArray(capacity) { EMPTY }
+        values = IntArray(capacity)
+    }
+
+    operator fun get(key: Int): Int {
+        val slot = find(key)
+        return if (keys[slot] == key) values[slot] else 0
+    }
+
+    operator fun set(key: Int, value: Int) {
+        val slot = find(key)
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key
+            size++
+            values[slot] = value
+            if (size * 2 > keys.size) grow()
+        } else {
+            values[slot] = value
+        }
+    }
+
+    /**
+     * Add [delta] to the value of [key] and return the new value
+     */
+    fun increment(key: Int, delta: Int = 1): Int {
+        val slot = find(key)
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key
+            values[slot] = delta
+            size++
+            if (size * 2 > keys.size) grow()
+            return delta
+        }
+        values[slot] += delta
+        return values[slot]
+    }
+
+    fun containsKey(key: Int): Boolean = keys[find(key)] == key
+
+    inline fun forEach(action: (key: Int, value: Int) -> Unit) {
+        for (slot in 0 until capacity()) {
+            val key = keyAt(slot)
+            if (key >= 0) action(key, valueAt(slot))
+        }
+    }
+
+    @PublishedApi
+    internal fun capacity(): Int = keys.size
+
+    @PublishedApi
+    internal fun keyAt(slot: Int): Int = keys[slot]
+
+    @PublishedApi
+    internal fun valueAt(slot: Int): Int = values[slot]
+
+    private fun find(key: Int): Int {
+        require(key >= 0) { "Negative key $key" }
+        val mask = keys.size - 1
+        var slot = mix(key) and mask
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) and mask
+        }
+        return slot
+    }
+
+    private fun grow() {
+        val oldKeys = keys
+        val oldValues = values
+        keys = IntArray(oldKeys.size * 2) { EMPTY }
+        values = IntArray(oldKeys.size * 2)
+        val mask = keys.size - 1
+        for (i in oldKeys.indices) {
+            val key = oldKeys[i]
+            if (key == EMPTY) continue
+            var slot = mix(key) and mask
+            while (keys[slot] != EMPTY) slot = (slot + 1) and mask
+            keys[slot] = key
+            values[slot] = oldValues[i]
+        }
+    }
+
+    private companion object {
+        const val EMPTY = -1
+
+        fun mix(key: Int): Int {
+            val h = key * -0x61c88647
+            return h xor (h ushr 16)
+        }
+    }
+}
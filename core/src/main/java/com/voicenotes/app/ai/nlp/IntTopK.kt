@@ -0,0 +1,104 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Keeps the [k] best (id, score) pairs seen, in a bounded min-heap.
+ *
+ * Ties on score go to the earlier offer, which matches a stable
+ * sortedByDescending { score }.take(k). Offering n items costs O(n log k).
+ */
+class IntTopK(private val k: Int) {
+
+    private val ids = IntArray(k)
+    private val scores = DoubleArray(k)
+    private val order = LongArray(k)
+    private var size = 0
+    private var offered = 0L
+
+    fun offer(id: Int, score: Double) {
+        val sequence = offered++
+        if (k == 0) return
+        if (size < k) {
+            ids[size] = id
+            scores[size] = score
+            order[size] = sequence
+            siftUp(size++)
+        } else if (isBetter(score, sequence, scores[0], order[0])) {
+            ids[0] = id
+            scores[0] = score
+            order[0] = sequence
+            siftDown(0)
+        }
+    }
+
+    fun offer(id: Int, score: Int) = offer(id, score.toDouble())
+
+    /**
+     * Ids ordered best first
+     */
+    fun toIdArray(): IntArray {
+        // Heap sort without boxing: pop the worst entry into the back, then restore the heap
+        val keptIds = ids.copyOf(size)
+        val keptScores = scores.copyOf(size)
+        val keptOrder = order.copyOf(size)
+        val count = size
+        val result = IntArray(count)
+        while (size > 0) {
+            result[size - 1] = ids[0]
+            swap(0, --size)
+            siftDown(0)
+        }
+        keptIds.copyInto(ids)
+        keptScores.copyInto(scores)
+        keptOrder.copyInto(order)
+        size = count
+        return result
+    }
+
+    /**
+     * Forget all entries so the heap can be reused
+     */
+    fun clear() {
+        size = 0
+    }
+
+    private fun isBetter(score: Double, sequence: Long, otherScore: Double, otherSequence: Long): Boolean {
+        return score > otherScore || (score == otherScore && sequence < otherSequence)
+    }
+
+    // Root holds the worst kept entry
+    private fun siftUp(start: Int) {
+        var child = start
+        while (child > 0) {
+            val parent = (child - 1) / 2
+            if (!isBetter(scores[parent], order[parent], scores[child], order[child])) break
+            swap(parent, child)
+            child = parent
+        }
+    }
+
+    private fun siftDown(start: Int) {
+        var parent = start
+        while (true) {
+            val left = parent * 2 + 1
+            if (left >= size) break
+            val right = left + 1
+            var worst = left
+            if (right < size && isBetter(scores[left], order[left], scores[right], order[right])) worst = right
+            if (!isBetter(scores[parent], order[parent], scores[worst], order[worst])) break
+            swap(parent, worst)
+            parent = worst
+        }
+    }
+
+    private fun swap(a: Int, b: Int) {
+        val id = ids[a]
+        ids[a] = ids[b]
+        ids[b] = id
+        val score = scores[a]
+        scores[a] = scores[b]
+        scores[b] = score
+        val sequence = order[a]
+        order[a] = order[b]
+        order[b] = sequence
+    }
+}
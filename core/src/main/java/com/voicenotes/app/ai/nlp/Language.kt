@@ -0,0 +1,30 @@
+package com.voicenotes.app.ai.nlp
+
+import java.util.Locale
+
+/**
+ * Languages with a trigram profile and a language pack.
+ *
+ * [code] is the ISO 639-1 code Whisper takes; [localeTag] is the BCP 47 tag that
+ * Android's RecognizerIntent, Google Cloud and Azure speech recognition expect.
+ */
+enum class Language(val code: String, val localeTag: String) {
+    ENGLISH("en", "en-US"),
+    SPANISH("es", "es-ES"),
+    FRENCH("fr", "fr-FR"),
+    GERMAN("de", "de-DE"),
+    ITALIAN("it", "it-IT"),
+    PORTUGUESE("pt", "pt-BR"),
+    DUTCH("nl", "nl-NL");
+
+    companion object {
+        val DEFAULT = ENGLISH
+
+        fun fromCode(code: String?): Language? = values().firstOrNull { it.code == code }
+
+        /**
+         * The supported language of [locale], e.g. for the device default before any note is recorded
+         */
+        fun fromLocale(locale: Locale): Language? = fromCode(locale.language)
+    }
+}
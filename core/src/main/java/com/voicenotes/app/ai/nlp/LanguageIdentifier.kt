@@ -0,0 +1,189 @@
+package com.voicenotes.app.ai.nlp
+
+import kotlin.math.ln
+
+/**
+ * Character-trigram language identification.
+ *
+ * Each language has a profile of its most frequent trigrams (nlp/lang/trigrams.txt).
+ * Text is scored as a naive Bayes sum of log probabilities over its trigrams, reading
+ * only the first [SAMPLE_CHARS] characters: a few hundred characters decide the
+ * language reliably, and each trigram costs one hash lookup plus one add per
+ * language. All profiles share one open-addressing table keyed by the packed
+ * trigram, so there is no boxing and no per-call allocation beyond the score array.
+ */
+object LanguageIdentifier {
+
+    const val SAMPLE_CHARS = 300
+
+    /** Fewer trigrams than this (a few words) are not enough to tell languages apart */
+    private const val MIN_TRIGRAMS = 12
+
+    /** Average log-likelihood lead per trigram of the best language over the runner-up */
+    private const val MIN_MARGIN = 0.15
+
+    data class Detection(
+        val language: Language,
+        /** How far ahead of the next language [language] scored, per trigram */
+        val margin: Double,
+        val isReliable: Boolean
+    )
+
+    private val languages: Array<Language>
+    private val languageCount: Int
+    private val tableMask: Int
+    private val keys: LongArray
+    private val rows: IntArray
+    /** Log probability of row r in language l at r * languageCount + l */
+    private val logProbabilities: FloatArray
+    /** Log probability of a trigram outside a language's profile */
+    private val unseenLogProbabilities: FloatArray
+
+    init {
+        val profiles = loadProfiles("nlp/lang/trigrams.txt")
+        languages = profiles.keys.toTypedArray()
+        languageCount = languages.size
+
+        val trigrams = LinkedHashSet<Long>()
+        profiles.values.forEach { trigrams.addAll(it.keys) }
+        var capacity = 16
+        while (capacity < trigrams.size * 2) capacity = capacity shl 1
+        tableMask = capacity - 1
+        keys = LongArray(capacity)
+        rows = IntArray(capacity)
+
+        logProbabilities = FloatArray(trigrams.size * languageCount)
+        unseenLogProbabilities = FloatArray(languageCount)
+        val totals = IntArray(languageCount) { profiles.getValue(languages[it]).values.sum() }
+        // Add-one smoothing over the union of profiled trigrams
+        for (l in 0 until languageCount) {
+            unseenLogProbabilities[l] = ln(1.0 / (totals[l] + trigrams.size)).toFloat()
+        }
+        trigrams.forEachIndexed { row, key ->
+            var slot = slotOf(key)
+            while (keys[slot] != 0L) slot = (slot + 1) and tableMask
+            keys[slot] = key
+            rows[slot] = row
+            for (l in 0 until languageCount) {
+                val count = profiles.getValue(languages[l])[key] ?: 0
+                logProbabilities[row * languageCount + l] =
+                    ln((count + 1.0) / (totals[l] + trigrams.size)).toFloat()
+            }
+        }
+    }
+
+    /**
+     * The language of [text], or [fallback] when too little text or too close a call
+     */
+    fun identify(text: CharSequence, fallback: Language = Language.DEFAULT): Language {
+        val detection = detect(text)
+        return if (detection.isReliable) detection.language else fallback
+    }
+
+    fun detect(text: CharSequence, maxChars: Int = SAMPLE_CHARS): Detection {
+        val scores = DoubleArray(languageCount)
+        val end = minOf(text.length, maxChars)
+        var trigramCount = 0
+
+        // Slide over the normalized stream: lowercased letters, runs of anything else as one space
+        var first = NONE
+        var second = SPACE
+        for (i in 0..end) {
+            val next = when {
+                i == end -> if (end == text.length) SPACE else break // a cut-off last word is not closed
+                Character.isLetter(text[i]) -> Character.toLowerCase(text[i])
+                else -> SPACE
+            }
+            if (next == SPACE && second == SPACE) continue
+            if (first != NONE) {
+                addTrigram(pack(first, second, next), scores)
+                trigramCount++
+            }
+            first = second
+            second = next
+        }
+
+        var best = 0
+        var runnerUp = -1
+        for (l in 1 until languageCount) {
+            if (scores[l] > scores[best]) {
+                runnerUp = best
+                best = l
+            } else if (runnerUp < 0 || scores[l] > scores[runnerUp]) {
+                runnerUp = l
+            }
+        }
+        val margin = if (trigramCount == 0 || runnerUp < 0) 0.0 else (scores[best] - scores[runnerUp]) / trigramCount
+        return Detection(
+            language = if (trigramCount == 0) Language.DEFAULT else languages[best],
+            margin = margin,
+            isReliable = trigramCount >= MIN_TRIGRAMS && margin >= MIN_MARGIN
+        )
+    }
+
+    private fun addTrigram(key: Long, scores: DoubleArray) {
+        var slot = slotOf(key)
+        while (true) {
+            val stored = keys[slot]
+            if (stored == key) {
+                val first = rows[slot] * languageCount
+                for (l in 0 until languageCount) scores[l] += logProbabilities[first + l]
+                return
+            }
+            if (stored == 0L) {
+                for (l in 0 until languageCount) scores[l] += unseenLogProbabilities[l]
+                return
+            }
+            slot = (slot + 1) and tableMask
+        }
+    }
+
+    private fun slotOf(key: Long): Int {
+        val mixed = key * -0x61c8864680b583ebL
+        return (mixed ushr 40).toInt() and tableMask
+    }
+
+    /** Never zero, since a trigram always holds at least one letter */
+    private fun pack(a: Char, b: Char, c: Char): Long {
+        return (a.code.toLong() shl 32) or (b.code.toLong() shl 16) or c.code.toLong()
+    }
+
+    private const val SPACE = ' '
+    private const val NONE = '\u0000'
+
+    /**
+     * Trigram counts per language. Format: a [code] line per language, then
+     * whitespace-separated trigram:count pairs with '_' for a space.
+     */
+    private fun loadProfiles(path: String): Map<Language, Map<Long, Int>> {
+        val input = LanguageIdentifier::class.java.classLoader?.getResourceAsStream(path)
+            ?: throw IllegalStateException("Language profiles not found: $path")
+        val profiles = LinkedHashMap<Language, HashMap<Long, Int>>()
+        var current: HashMap<Long, Int>? = null
+        input.bufferedReader().useLines { lines ->
+            lines.forEachIndexed { index, rawLine ->
+                val line = rawLine.trim()
+                when {
+                    line.isEmpty() || line.startsWith("#") -> Unit
+                    line.startsWith("[") && line.endsWith("]") -> {
+                        val code = line.substring(1, line.length - 1)
+                        val language = Language.fromCode(code)
+                            ?: throw IllegalStateException("Unknown language '$code' in $path at line ${index + 1}")
+                        current = HashMap<Long, Int>().also { profiles[language] = it }
+                    }
+                    else -> {
+                        val profile = current
+                            ?: throw IllegalStateException("Trigrams before a language in $path at line ${index + 1}")
+                        for (pair in line.split(' ')) {
+                            val separator = pair.lastIndexOf(':')
+                            require(separator == 3) { "Malformed trigram '$pair' in $path at line ${index + 1}" }
+                            val trigram = pair.substring(0, 3).replace('_', SPACE)
+                            profile[pack(trigram[0], trigram[1], trigram[2])] = pair.substring(4).toInt()
+                        }
+                    }
+                }
+            }
+        }
+        return profiles
+    }
+}
@@ -0,0 +1,30 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Per-language word lists for the NLP extractors.
+ *
+ * A pack is read from nlp/lang/ the first time its language is seen, so languages
+ * that never occur in the user's notes cost no memory.
+ */
+class LanguagePack private constructor(val language: Language) {
+
+    val stopWords: Set<String> = PatternDictionary.loadResource("nlp/lang/stop_words_${language.code}.txt")
+        .entries.mapTo(HashSet()) { it.label }
+
+    /**
+     * Phrase dictionaries, action item patterns and sentiment words are written in
+     * English; other languages use only the statistical extractors.
+     */
+    val hasPhraseRules: Boolean get() = language == Language.ENGLISH
+
+    companion object {
+        private val packs = arrayOfNulls<LanguagePack>(Language.values().size)
+
+        fun of(language: Language): LanguagePack {
+            packs[language.ordinal]?.let { return it }
+            return synchronized(packs) {
+                packs[language.ordinal] ?: LanguagePack(language).also { packs[language.ordinal] = it }
+            }
+        }
+    }
+}
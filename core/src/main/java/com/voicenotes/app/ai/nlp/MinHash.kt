@@ -0,0 +1,102 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * MinHash signatures for near-duplicate detection.
+ *
+ * A transcript becomes the set of its words and adjacent word pairs; the signature
+ * keeps the minimum of [SIGNATURE_SIZE] independent hashes over that set. The share
+ * of equal positions in two signatures estimates the Jaccard similarity of the sets.
+ * Hashes depend only on the text, so signatures stay valid across app restarts.
+ */
+object MinHash {
+
+    const val SIGNATURE_SIZE = 32
+
+    // Fixed odd seeds; changing them invalidates every stored signature
+    private val SEEDS = LongArray(SIGNATURE_SIZE) { mix64(0x5DEECE66DL + it * -0x61c8864680b583ebL) or 1L }
+
+    /**
+     * Signature of a transcript, or null when it has no words to compare
+     */
+    fun signature(transcript: String): IntArray? {
+        if (transcript.isBlank()) return null
+        return signature(AnalyzedDocument.analyze(transcript))
+    }
+
+    /**
+     * Signature of an already analyzed transcript; hashes terms, so any dictionary works
+     */
+    fun signature(document: AnalyzedDocument): IntArray? {
+        if (document.tokenCount == 0) return null
+
+        val signature = IntArray(SIGNATURE_SIZE) { Int.MAX_VALUE }
+        var previous = 0L
+        for (index in 0 until document.tokenCount) {
+            val word = termHash(document, document.tokenId(index))
+            update(signature, word)
+            if (index > 0) update(signature, mix64(previous * 31 + word))
+            previous = word
+        }
+        return signature
+    }
+
+    /**
+     * Estimated Jaccard similarity of the two transcripts, 0..1
+     */
+    fun similarity(a: IntArray, b: IntArray): Double {
+        var equal = 0
+        for (i in 0 until SIGNATURE_SIZE) {
+            if (a[i] == b[i]) equal++
+        }
+        return equal.toDouble() / SIGNATURE_SIZE
+    }
+
+    fun toBytes(signature: IntArray): ByteArray {
+        val bytes = ByteArray(signature.size * 4)
+        for (i in signature.indices) {
+            val value = signature[i]
+            bytes[i * 4] = (value ushr 24).toByte()
+            bytes[i * 4 + 1] = (value ushr 16).toByte()
+            bytes[i * 4 + 2] = (value ushr 8).toByte()
+            bytes[i * 4 + 3] = value.toByte()
+        }
+        return bytes
+    }
+
+    fun fromBytes(bytes: ByteArray): IntArray {
+        return IntArray(bytes.size / 4) { i ->
+            ((bytes[i * 4].toInt() and 0xFF) shl 24) or
+                ((bytes[i * 4 + 1].toInt() and 0xFF) shl 16) or
+                ((bytes[i * 4 + 2].toInt() and 0xFF) shl 8) or
+                (bytes[i * 4 + 3].toInt() and 0xFF)
+        }
+    }
+
+    private fun update(signature: IntArray, feature: Long) {
+        for (i in 0 until SIGNATURE_SIZE) {
+            // Top bits of a seeded mix; signed compare is fine, it only needs a total order
+            val hash = (mix64(feature xor SEEDS[i]) ushr 32).toInt()
+            if (hash < signature[i]) signature[i] = hash
+        }
+    }
+
+    /**
+     * FNV-1a over the term's characters, stable unlike dictionary ids
+     */
+    private fun termHash(document: AnalyzedDocument, tokenId: Int): Long {
+        val term = document.term(tokenId)
+        var hash = -0x340d631b7bdddcdbL
+        for (c in term) {
+            hash = (hash xor c.code.toLong()) * 0x100000001b3L
+        }
+        return hash
+    }
+
+    /** SplitMix64 finalizer */
+    private fun mix64(value: Long): Long {
+        var z = value
+        z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+        z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+        return z xor (z ushr 31)
+    }
+}
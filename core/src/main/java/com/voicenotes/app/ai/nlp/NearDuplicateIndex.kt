@@ -0,0 +1,119 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Locality-sensitive hashing index over [MinHash] signatures.
+ *
+ * Each signature is cut into [BANDS] bands of [ROWS] hashes, and notes sharing any
+ * whole band land in the same bucket. A lookup only compares against notes in its
+ * own buckets, so the cost depends on the number of near matches rather than the
+ * library size. With 8 bands of 4 rows, pairs at 0.8 similarity are found with
+ * about 98% probability and pairs below 0.3 almost never become candidates.
+ */
+class NearDuplicateIndex(private val threshold: Double = DEFAULT_THRESHOLD) {
+
+    data class Match(val noteId: Long, val similarity: Double)
+
+    private val signatures = HashMap<Long, IntArray>()
+    private val buckets = Array(BANDS) { HashMap<Int, LongBucket>() }
+
+    val size: Int
+        @Synchronized get() = signatures.size
+
+    @Synchronized
+    fun add(noteId: Long, signature: IntArray) {
+        require(signature.size == MinHash.SIGNATURE_SIZE) { "Unexpected signature size ${signature.size}" }
+        remove(noteId)
+        signatures[noteId] = signature
+        for (band in 0 until BANDS) {
+            buckets[band].getOrPut(bandKey(signature, band)) { LongBucket() }.add(noteId)
+        }
+    }
+
+    @Synchronized
+    fun remove(noteId: Long) {
+        val signature = signatures.remove(noteId) ?: return
+        for (band in 0 until BANDS) {
+            val key = bandKey(signature, band)
+            val bucket = buckets[band][key] ?: continue
+            bucket.remove(noteId)
+            if (bucket.size == 0) buckets[band].remove(key)
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        signatures.clear()
+        buckets.forEach { it.clear() }
+    }
+
+    /**
+     * Notes at or above the similarity threshold, most similar first
+     */
+    @Synchronized
+    fun findDuplicates(signature: IntArray, excludeNoteId: Long? = null): List<Match> {
+        val seen = HashSet<Long>()
+        val matches = ArrayList<Match>()
+        for (band in 0 until BANDS) {
+            val bucket = buckets[band][bandKey(signature, band)] ?: continue
+            for (i in 0 until bucket.size) {
+                val candidate = bucket[i]
+                if (candidate == excludeNoteId || !seen.add(candidate)) continue
+                val similarity = MinHash.similarity(signature, signatures.getValue(candidate))
+                if (similarity >= threshold) matches.add(Match(candidate, similarity))
+            }
+        }
+        matches.sortByDescending { it.similarity }
+        return matches
+    }
+
+    /**
+     * Duplicates of a note already in the index
+     */
+    @Synchronized
+    fun findDuplicates(noteId: Long): List<Match> {
+        val signature = signatures[noteId] ?: return emptyList()
+        return findDuplicates(signature, excludeNoteId = noteId)
+    }
+
+    private fun bandKey(signature: IntArray, band: Int): Int {
+        var key = band
+        for (row in band * ROWS until (band + 1) * ROWS) {
+            key = key * 31 + signature[row]
+        }
+        return key
+    }
+
+    /**
+     * Unordered growable list of note ids
+     */
+    private class LongBucket {
+        private var ids = LongArray(2)
+
+        var size = 0
+            private set
+
+        operator fun get(index: Int): Long = ids[index]
+
+        fun add(id: Long) {
+            if (size == ids.size) ids = ids.copyOf(size * 2)
+            ids[size++] = id
+        }
+
+        fun remove(id: Long) {
+            for (i in 0 until size) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size]
+                    return
+                }
+            }
+        }
+    }
+
+    companion object {
+        const val BANDS = 8
+        const val ROWS = MinHash.SIGNATURE_SIZE / BANDS
+        const val DEFAULT_THRESHOLD = 0.6
+
+        val shared = NearDuplicateIndex()
+    }
+}
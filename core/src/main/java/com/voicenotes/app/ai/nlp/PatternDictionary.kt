@@ -0,0 +1,70 @@
+package com.voicenotes.app.ai.nlp
+
+import java.io.InputStream
+
+/**
+ * Ordered list of labelled phrase entries loaded from a text resource.
+ *
+ * Format, one entry per line:
+ * ```
+ * # comment
+ * [group]                        optional, applies to the following entries
+ * label = phrase one | phrase two
+ * phrase                         shorthand for "phrase = phrase"
+ * ```
+ * Entry order is significant; extractors use it to keep their priorities.
+ */
+class PatternDictionary(val name: String, val entries: List<Entry>) {
+
+    /** Distinct groups in first-appearance order */
+    val groups: List<String> = entries.map { it.group }.distinct()
+
+    data class Entry(
+        val group: String,
+        val label: String,
+        val phrases: List<String>
+    )
+
+    companion object {
+        const val DEFAULT_GROUP = ""
+
+        fun parse(name: String, lines: Sequence<String>): PatternDictionary {
+            val entries = mutableListOf<Entry>()
+            var group = DEFAULT_GROUP
+            lines.forEachIndexed { index, rawLine ->
+                val line = rawLine.trim()
+                when {
+                    line.isEmpty() || line.startsWith("#") -> Unit
+                    line.startsWith("[") && line.endsWith("]") -> group = line.substring(1, line.length - 1).trim()
+                    else -> {
+                        val separator = line.indexOf('=')
+                        val label = if (separator >= 0) line.substring(0, separator).trim() else line
+                        val phrases = if (separator >= 0) {
+                            line.substring(separator + 1).split('|').map { it.trim().lowercase() }.filter { it.isNotEmpty() }
+                        } else {
+                            listOf(line.lowercase())
+                        }
+                        require(label.isNotEmpty() && phrases.isNotEmpty()) {
+                            "Malformed entry in dictionary '$name' at line ${index + 1}: $rawLine"
+                        }
+                        entries.add(Entry(group, label, phrases))
+                    }
+                }
+            }
+            return PatternDictionary(name, entries)
+        }
+
+        fun load(name: String, input: InputStream): PatternDictionary {
+            return input.bufferedReader().useLines { parse(name, it.toList().asSequence()) }
+        }
+
+        /**
+         * Load a bundled dictionary from the classpath, e.g. "nlp/local_actions.txt"
+         */
+        fun loadResource(path: String): PatternDictionary {
+            val input = PatternDictionary::class.java.classLoader?.getResourceAsStream(path)
+                ?: throw IllegalStateException("Dictionary resource not found: $path")
+            return load(path.substringAfterLast('/').substringBeforeLast('.'), input)
+        }
+    }
+}
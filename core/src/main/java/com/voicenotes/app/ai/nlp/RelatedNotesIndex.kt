@@ -0,0 +1,281 @@
+package com.voicenotes.app.ai.nlp
+
+import kotlin.math.ln
+import kotlin.math.sqrt
+
+/**
+ * Inverted index over transcripts for "related notes" lookups.
+ *
+ * Every note is a TF-IDF vector (log-scaled term counts times [TfIdfModel] idf, stop
+ * words dropped) normalized to unit length, so the dot product of two notes is their
+ * cosine similarity. Postings map each term to the notes containing it and their
+ * weights. Weights use the idf at the time a note is added; they drift slightly as
+ * the library grows and are refreshed whenever the index is reloaded.
+ *
+ * Queries accumulate scores term by term, rarest terms first, and stop as soon as
+ * the remaining terms can no longer change which notes make the top k.
+ */
+class RelatedNotesIndex(private val minSimilarity: Double = DEFAULT_MIN_SIMILARITY) {
+
+    data class Match(val noteId: Long, val similarity: Double)
+
+    /**
+     * Term ids and counts of one transcript, as persisted
+     */
+    class TermCounts(val termIds: IntArray, val counts: IntArray) {
+        val size: Int get() = termIds.size
+    }
+
+    // Notes live in dense slots; freed slots are reused
+    private val slotOf = HashMap<Long, Int>()
+    private var noteIds = LongArray(64)
+    private var vectorTerms = arrayOfNulls<IntArray>(64)
+    private var vectorWeights = arrayOfNulls<FloatArray>(64)
+    private val freeSlots = IntArrayBuilder()
+    private var slotCount = 0
+
+    // Postings indexed by term id
+    private var postings = arrayOfNulls<Postings>(1024)
+
+    // Query scratch, reused under the lock
+    private var scores = FloatArray(64)
+    private val touched = IntArrayBuilder()
+
+    val size: Int
+        @Synchronized get() = slotOf.size
+
+    @Synchronized
+    fun add(noteId: Long, terms: TermCounts, corpus: TfIdfModel.Snapshot) {
+        remove(noteId)
+        if (terms.size == 0) return
+
+        // Term ids ascending, so two vectors can be merged for exact scoring
+        val order = terms.termIds.indices.sortedBy { terms.termIds[it] }
+        val termIds = IntArray(order.size) { terms.termIds[order[it]] }
+        val weights = FloatArray(order.size)
+        var norm = 0.0
+        for (i in order.indices) {
+            val weight = (1.0 + ln(terms.counts[order[i]].toDouble())) * corpus.idf(termIds[i])
+            weights[i] = weight.toFloat()
+            norm += weight * weight
+        }
+        val length = sqrt(norm).toFloat()
+        for (i in weights.indices) weights[i] /= length
+
+        val slot = if (freeSlots.size > 0) freeSlots.removeLast() else newSlot()
+        slotOf[noteId] = slot
+        noteIds[slot] = noteId
+        vectorTerms[slot] = termIds
+        vectorWeights[slot] = weights
+        for (i in termIds.indices) {
+            postingsFor(termIds[i]).add(slot, weights[i])
+        }
+    }
+
+    @Synchronized
+    fun remove(noteId: Long) {
+        val slot = slotOf.remove(noteId) ?: return
+        val termIds = vectorTerms[slot]!!
+        for (termId in termIds) {
+            postings[termId]?.remove(slot)
+        }
+        vectorTerms[slot] = null
+        vectorWeights[slot] = null
+        freeSlots.add(slot)
+    }
+
+    @Synchronized
+    fun clear() {
+        slotOf.clear()
+        vectorTerms.fill(null)
+        vectorWeights.fill(null)
+        freeSlots.clear()
+        slotCount = 0
+        postings.fill(null)
+    }
+
+    /**
+     * The [k] notes most similar to [noteId], best first
+     */
+    @Synchronized
+    fun relatedNotes(noteId: Long, k: Int): List<Match> {
+        val querySlot = slotOf[noteId] ?: return emptyList()
+        if (k <= 0) return emptyList()
+        val queryTerms = vectorTerms[querySlot]!!
+        val queryWeights = vectorWeights[querySlot]!!
+
+        // Terms by the most they can add to any score, largest first
+        val bounds = DoubleArray(queryTerms.size) { i ->
+            queryWeights[i] * (postings[queryTerms[i]]?.maxWeight ?: 0f).toDouble()
+        }
+        val order = queryTerms.indices.sortedByDescending { bounds[it] }
+        val remaining = DoubleArray(order.size + 1)
+        for (i in order.indices.reversed()) remaining[i] = remaining[i + 1] + bounds[order[i]]
+
+        if (scores.size < slotCount) scores = FloatArray(noteIds.size)
+        touched.clear()
+        val ranking = IntTopK(k + 1)
+        var acceptNew = true
+        for (position in order.indices) {
+            val term = order[position]
+            val list = postings[queryTerms[term]] ?: continue
+            val weight = queryWeights[term]
+            for (p in 0 until list.size) {
+                val slot = list.slots[p]
+                if (slot == querySlot) continue
+                if (scores[slot] == 0f) {
+                    if (!acceptNew) continue
+                    touched.add(slot)
+                }
+                scores[slot] += weight * list.weights[p]
+            }
+
+            // Partial scores only grow, so the k-th best partial score bounds the final k-th.
+            // Once the rest cannot lift a new note or an outsider past it, the top k is settled.
+            val rest = remaining[position + 1]
+            if (touched.size > k && rest < remaining[0] * EARLY_EXIT_CHECK) {
+                ranking.clear()
+                for (i in 0 until touched.size) ranking.offer(touched[i], scores[touched[i]].toDouble())
+                val ranked = ranking.toIdArray()
+                val kth = scores[ranked[k - 1]]
+                if (rest < kth) {
+                    acceptNew = false
+                    if (scores[ranked[k]] + rest < kth) break
+                }
+            }
+        }
+
+        // Candidates are settled; score them exactly so the order is right
+        val top = IntTopK(k)
+        for (i in 0 until touched.size) {
+            val slot = touched[i]
+            top.offer(slot, scores[slot].toDouble())
+        }
+        val result = ArrayList<Match>(k)
+        for (slot in top.toIdArray()) {
+            val similarity = dot(querySlot, slot)
+            if (similarity >= minSimilarity) result.add(Match(noteIds[slot], similarity))
+        }
+        for (i in 0 until touched.size) scores[touched[i]] = 0f
+        result.sortByDescending { it.similarity }
+        return result
+    }
+
+    private fun dot(a: Int, b: Int): Double {
+        val termsA = vectorTerms[a]!!
+        val termsB = vectorTerms[b]!!
+        val weightsA = vectorWeights[a]!!
+        val weightsB = vectorWeights[b]!!
+        var i = 0
+        var j = 0
+        var sum = 0.0
+        while (i < termsA.size && j < termsB.size) {
+            when {
+                termsA[i] < termsB[j] -> i++
+                termsA[i] > termsB[j] -> j++
+                else -> sum += weightsA[i++] * weightsB[j++]
+            }
+        }
+        return sum
+    }
+
+    private fun newSlot(): Int {
+        if (slotCount == noteIds.size) {
+            val capacity = slotCount * 2
+            noteIds = noteIds.copyOf(capacity)
+            vectorTerms = vectorTerms.copyOf(capacity)
+            vectorWeights = vectorWeights.copyOf(capacity)
+        }
+        return slotCount++
+    }
+
+    private fun postingsFor(termId: Int): Postings {
+        if (termId >= postings.size) {
+            postings = postings.copyOf(maxOf(termId + 1, postings.size * 2))
+        }
+        return postings[termId] ?: Postings().also { postings[termId] = it }
+    }
+
+    /**
+     * Notes containing one term and the term's weight in each
+     */
+    private class Postings {
+        var slots = IntArray(4)
+        var weights = FloatArray(4)
+        var size = 0
+
+        // Never lowered on removal, so it stays a valid upper bound
+        var maxWeight = 0f
+
+        fun add(slot: Int, weight: Float) {
+            if (size == slots.size) {
+                slots = slots.copyOf(size * 2)
+                weights = weights.copyOf(size * 2)
+            }
+            slots[size] = slot
+            weights[size++] = weight
+            if (weight > maxWeight) maxWeight = weight
+        }
+
+        fun remove(slot: Int) {
+            for (i in 0 until size) {
+                if (slots[i] == slot) {
+                    slots[i] = slots[--size]
+                    weights[i] = weights[size]
+                    return
+                }
+            }
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MIN_SIMILARITY = 0.1
+
+        // Only rank partial scores once most of the possible score has been accumulated
+        private const val EARLY_EXIT_CHECK = 0.5
+
+        val shared = RelatedNotesIndex()
+
+        /**
+         * Content-word counts of a transcript; stop words carry no topic
+         */
+        fun termCounts(transcript: String?, dictionary: TokenDictionary = TokenDictionary.shared): TermCounts {
+            if (transcript.isNullOrBlank()) return TermCounts(IntArray(0), IntArray(0))
+            return termCounts(AnalyzedDocument.analyze(transcript, dictionary))
+        }
+
+        /**
+         * Content-word counts of a document analyzed with the index's dictionary
+         */
+        fun termCounts(document: AnalyzedDocument): TermCounts {
+            val termIds = IntArrayBuilder()
+            val counts = IntArrayBuilder()
+            for (id in document.distinctTokenIds) {
+                if (document.isStopWord(id)) continue
+                termIds.add(id)
+                counts.add(document.count(id))
+            }
+            return TermCounts(termIds.toArray(), counts.toArray())
+        }
+
+        /**
+         * "term count term count ..." for storage; terms never contain spaces
+         */
+        fun encode(terms: TermCounts, dictionary: TokenDictionary = TokenDictionary.shared): String {
+            val text = StringBuilder()
+            for (i in 0 until terms.size) {
+                if (i > 0) text.append(' ')
+                text.append(dictionary.term(terms.termIds[i])).append(' ').append(terms.counts[i])
+            }
+            return text.toString()
+        }
+
+        fun decode(encoded: String, dictionary: TokenDictionary = TokenDictionary.shared): TermCounts {
+            if (encoded.isEmpty()) return TermCounts(IntArray(0), IntArray(0))
+            val parts = encoded.split(' ')
+            val termIds = IntArray(parts.size / 2) { dictionary.intern(parts[it * 2]) }
+            val counts = IntArray(parts.size / 2) { parts[it * 2 + 1].toInt() }
+            return TermCounts(termIds, counts)
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.voicenotes.app.ai.nlp
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.Closeable
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.util.Random
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * Approximate nearest-neighbour search over note embeddings.
+ *
+ * Embeddings come from a pluggable [TextEmbedder] and live in an [EmbeddingStore]
+ * file. [useEmbedder] swaps the model at runtime, e.g. for a learned one once it is
+ * downloaded; [HashedNgramEmbedder] is only the default. Once the library reaches [MIN_TRAINING_SIZE] notes, an inverted-file (IVF)
+ * index clusters the vectors with spherical k-means into about sqrt(n) lists; a
+ * query scores only the lists whose centroids are closest to it. Inserts go to the
+ * nearest list and deletes leave their list in place. The clustering is redone when
+ * the library has doubled since it was trained, and centroids are saved next to the
+ * store so startup does not retrain. Inserts never cluster themselves; they hand
+ * [trainIfNeeded] to [trainer], a background thread unless the caller passes another.
+ *
+ * Below the training size every query is an exact scan.
+ */
+class SemanticIndex(
+    private val file: File,
+    embedder: TextEmbedder = HashedNgramEmbedder(),
+    private val trainer: Executor = BACKGROUND_TRAINER
+) : Closeable {
+
+    data class Match(val noteId: Long, val similarity: Double)
+
+    @Volatile
+    private var embedder = embedder
+    private var dimension = embedder.dimension
+    private var store = EmbeddingStore(file, dimension, embedder.id)
+    private val centroidsFile = File(file.path + ".centroids")
+
+    private val slotOf = HashMap<Long, Int>()
+    private val freeSlots = IntArrayBuilder()
+
+    private var listCount = 0
+    private var centroids = FloatArray(0)
+    private var lists = emptyArray<IntArrayBuilder>()
+    private var trainedSize = 0
+    private var closed = false
+
+    // Set while a clustering runs, so writes queue at most one more
+    private val training = AtomicBoolean(false)
+
+    // Held for a whole clustering, taken before the index lock, so the embedder cannot change under it
+    private val trainingLock = Any()
+
+    init {
+        for (slot in 0 until store.slotCount) {
+            val noteId = store.noteId(slot)
+            if (noteId > 0) slotOf[noteId] = slot else freeSlots.add(slot)
+        }
+        // Cheap enough for any thread; clustering waits for the trainer or trainIfNeeded
+        if (loadCentroids()) {
+            rebuildLists()
+        }
+    }
+
+    val size: Int
+        @Synchronized get() = slotOf.size
+
+    @Synchronized
+    fun contains(noteId: Long): Boolean = slotOf.containsKey(noteId)
+
+    @Synchronized
+    fun noteIds(): LongArray = slotOf.keys.toLongArray()
+
+    /**
+     * Embed and index a note's text, replacing any earlier embedding
+     */
+    fun add(noteId: Long, text: String) {
+        add(noteId, AnalyzedDocument.analyze(text))
+    }
+
+    /**
+     * Embed and index a note analyzed once for all of the library's indexes
+     */
+    fun add(noteId: Long, document: AnalyzedDocument) {
+        val current = embedder
+        val vector = current.embed(document)
+        synchronized(this) {
+            // Dropped if the embedder changed meanwhile; re-embedding the library covers it
+            if (embedder === current) put(noteId, vector)
+        }
+        scheduleTraining()
+    }
+
+    /**
+     * Index several notes, clustering at most once afterwards
+     */
+    fun addAll(texts: Map<Long, String>) {
+        val current = embedder
+        val vectors = texts.mapValues { current.embed(it.value) }
+        synchronized(this) {
+            if (embedder === current) vectors.forEach { (noteId, vector) -> put(noteId, vector) }
+        }
+        scheduleTraining()
+    }
+
+    fun addVector(noteId: Long, vector: FloatArray) {
+        synchronized(this) { put(noteId, vector) }
+        scheduleTraining()
+    }
+
+    @Synchronized
+    fun remove(noteId: Long) {
+        val slot = slotOf.remove(noteId) ?: return
+        val list = store.list(slot)
+        if (list in 0 until listCount) lists[list].swapRemove(slot)
+        store.delete(slot)
+        freeSlots.add(slot)
+    }
+
+    /**
+     * The [k] notes closest in meaning to [query], best first
+     */
+    fun search(query: String, k: Int, probes: Int = DEFAULT_PROBES): List<Match> {
+        val current = embedder
+        val vector = current.embed(query)
+        synchronized(this) {
+            return if (embedder === current) searchVector(vector, k, probes) else emptyList()
+        }
+    }
+
+    @Synchronized
+    fun searchVector(query: FloatArray, k: Int, probes: Int = DEFAULT_PROBES): List<Match> {
+        if (k <= 0 || slotOf.isEmpty()) return emptyList()
+        if (listCount == 0) return exactSearch(query, k)
+
+        val top = IntTopK(k)
+        for (list in nearestLists(query, probes)) {
+            val slots = lists[list]
+            for (i in 0 until slots.size) {
+                val slot = slots[i]
+                top.offer(slot, store.dot(slot, query).toDouble())
+            }
+        }
+        return matches(top, query)
+    }
+
+    /**
+     * Score every note; the reference for measuring recall
+     */
+    @Synchronized
+    fun exactSearch(query: FloatArray, k: Int): List<Match> {
+        if (k <= 0) return emptyList()
+        val top = IntTopK(k)
+        for (slot in 0 until store.slotCount) {
+            if (store.noteId(slot) > 0) top.offer(slot, store.dot(slot, query).toDouble())
+        }
+        return matches(top, query)
+    }
+
+    /**
+     * Cluster the library if it has outgrown its lists; may take seconds on a large
+     * library. The k-means iterations run on a copied sample outside the lock, so
+     * searches and writes only wait while the sample is copied and every stored
+     * vector is moved to its new list. Returns at once if a clustering is running.
+     */
+    fun trainIfNeeded() {
+        if (!training.compareAndSet(false, true)) return
+        try {
+            synchronized(trainingLock) {
+                val sample = synchronized(this) { if (needsTraining()) takeSample() else null } ?: return
+                val trained = cluster(sample)
+                synchronized(this) {
+                    if (!closed) install(trained, sample.listCount)
+                }
+            }
+        } finally {
+            training.set(false)
+        }
+    }
+
+    /**
+     * Switch to another embedder. Vectors from two models do not compare, so the
+     * stored embeddings and clustering are dropped; the caller re-embeds the library
+     * afterwards, as VoiceNoteRepository.useEmbedder does. Waits for a running
+     * clustering to finish.
+     */
+    fun useEmbedder(embedder: TextEmbedder) {
+        synchronized(trainingLock) {
+            synchronized(this) {
+                if (closed || embedder.id == this.embedder.id) return
+                store.close()
+                // The header no longer matches, so the store starts over
+                store = EmbeddingStore(file, embedder.dimension, embedder.id)
+                dimension = embedder.dimension
+                this.embedder = embedder
+                slotOf.clear()
+                freeSlots.clear()
+                listCount = 0
+                centroids = FloatArray(0)
+                lists = emptyArray()
+                trainedSize = 0
+                centroidsFile.delete()
+            }
+        }
+    }
+
+    fun embed(text: String): FloatArray = embedder.embed(text)
+
+    @Synchronized
+    override fun close() {
+        closed = true
+        store.close()
+    }
+
+    private fun needsTraining(): Boolean {
+        val size = slotOf.size
+        return !closed && size >= MIN_TRAINING_SIZE && (listCount == 0 || size > trainedSize * 2)
+    }
+
+    private fun scheduleTraining() {
+        if (!training.get() && synchronized(this) { needsTraining() }) {
+            trainer.execute { trainIfNeeded() }
+        }
+    }
+
+    private fun put(noteId: Long, vector: FloatArray) {
+        require(vector.size == dimension) { "Expected $dimension floats, got ${vector.size}" }
+        remove(noteId)
+        val slot = if (freeSlots.size > 0) freeSlots.removeLast() else store.slotCount
+        val list = if (listCount > 0) nearestList(vector) else NO_LIST
+        store.write(slot, noteId, vector, list)
+        slotOf[noteId] = slot
+        if (list != NO_LIST) lists[list].add(slot)
+    }
+
+    private fun matches(top: IntTopK, query: FloatArray): List<Match> {
+        return top.toIdArray().map { slot -> Match(store.noteId(slot), store.dot(slot, query).toDouble()) }
+    }
+
+    private fun nearestList(vector: FloatArray): Int = nearestCentroid(centroids, listCount, vector)
+
+    private fun nearestCentroid(centroids: FloatArray, count: Int, vector: FloatArray): Int {
+        var best = 0
+        var bestScore = Float.NEGATIVE_INFINITY
+        for (list in 0 until count) {
+            val score = centroidDot(centroids, list, vector)
+            if (score > bestScore) {
+                bestScore = score
+                best = list
+            }
+        }
+        return best
+    }
+
+    private fun nearestLists(query: FloatArray, probes: Int): IntArray {
+        val top = IntTopK(probes.coerceIn(1, listCount))
+        for (list in 0 until listCount) top.offer(list, centroidDot(centroids, list, query).toDouble())
+        return top.toIdArray()
+    }
+
+    private fun centroidDot(centroids: FloatArray, list: Int, vector: FloatArray): Float {
+        val first = list * dimension
+        var sum = 0f
+        for (i in 0 until dimension) sum += centroids[first + i] * vector[i]
+        return sum
+    }
+
+    /**
+     * Vectors to cluster, copied out of the store so k-means can run unlocked
+     */
+    private class Sample(val vectors: FloatArray, val size: Int, val listCount: Int)
+
+    private fun takeSample(): Sample {
+        val live = slotOf.values.toIntArray()
+        live.sort()
+        val count = sqrt(live.size.toDouble()).roundToInt().coerceAtLeast(1)
+        val random = Random(TRAINING_SEED)
+
+        // Partial Fisher-Yates shuffle picks the sample
+        val sampleSize = minOf(live.size, count * SAMPLE_PER_LIST)
+        for (i in 0 until sampleSize) {
+            val j = i + random.nextInt(live.size - i)
+            val slot = live[i]
+            live[i] = live[j]
+            live[j] = slot
+        }
+        val sample = FloatArray(sampleSize * dimension)
+        val vector = FloatArray(dimension)
+        for (i in 0 until sampleSize) {
+            store.read(live[i], vector)
+            vector.copyInto(sample, i * dimension)
+        }
+        return Sample(sample, sampleSize, count)
+    }
+
+    /**
+     * Spherical k-means on the sample; touches no index state
+     */
+    private fun cluster(sample: Sample): FloatArray {
+        val count = sample.listCount
+        val vectors = sample.vectors
+        val random = Random(TRAINING_SEED)
+        val trained = vectors.copyOf(count * dimension)
+        val assignment = IntArray(sample.size)
+        val vector = FloatArray(dimension)
+        repeat(KMEANS_ITERATIONS) {
+            for (i in 0 until sample.size) {
+                vectors.copyInto(vector, 0, i * dimension, (i + 1) * dimension)
+                assignment[i] = nearestCentroid(trained, count, vector)
+            }
+            val sums = FloatArray(count * dimension)
+            val sizes = IntArray(count)
+            for (i in 0 until sample.size) {
+                val list = assignment[i]
+                sizes[list]++
+                for (d in 0 until dimension) sums[list * dimension + d] += vectors[i * dimension + d]
+            }
+            for (list in 0 until count) {
+                if (sizes[list] == 0) {
+                    // Reseed an empty cluster from a random sample point
+                    val point = random.nextInt(sample.size)
+                    vectors.copyInto(sums, list * dimension, point * dimension, (point + 1) * dimension)
+                }
+                normalize(sums, list * dimension)
+            }
+            sums.copyInto(trained)
+        }
+        return trained
+    }
+
+    /**
+     * Switch to new centroids and assign every stored vector, including ones added
+     * while clustering ran, to its nearest list
+     */
+    private fun install(trained: FloatArray, count: Int) {
+        centroids = trained
+        listCount = count
+        saveCentroids()
+        lists = Array(count) { IntArrayBuilder() }
+        val vector = FloatArray(dimension)
+        for (slot in slotOf.values.sorted()) {
+            store.read(slot, vector)
+            val list = nearestList(vector)
+            store.setList(slot, list)
+            lists[list].add(slot)
+        }
+        trainedSize = slotOf.size
+    }
+
+    /**
+     * Lists from the ids stored with each record; records added before training are assigned now
+     */
+    private fun rebuildLists() {
+        lists = Array(listCount) { IntArrayBuilder() }
+        val vector = FloatArray(dimension)
+        for (slot in slotOf.values) {
+            var list = store.list(slot)
+            if (list !in 0 until listCount) {
+                store.read(slot, vector)
+                list = nearestList(vector)
+                store.setList(slot, list)
+            }
+            lists[list].add(slot)
+        }
+    }
+
+    private fun normalize(values: FloatArray, from: Int) {
+        var norm = 0.0
+        for (i in from until from + dimension) norm += values[i] * values[i]
+        if (norm == 0.0) return
+        val scale = (1.0 / sqrt(norm)).toFloat()
+        for (i in from until from + dimension) values[i] *= scale
+    }
+
+    private fun saveCentroids() {
+        val temp = File(centroidsFile.path + ".tmp")
+        DataOutputStream(BufferedOutputStream(temp.outputStream())).use { out ->
+            out.writeInt(CENTROIDS_MAGIC)
+            out.writeInt(embedder.id.hashCode())
+            out.writeInt(dimension)
+            out.writeInt(listCount)
+            out.writeInt(slotOf.size)
+            for (value in centroids) out.writeFloat(value)
+        }
+        // Replace atomically so a crash never leaves half a file
+        if (!temp.renameTo(centroidsFile)) {
+            centroidsFile.delete()
+            temp.renameTo(centroidsFile)
+        }
+    }
+
+    private fun loadCentroids(): Boolean {
+        if (!centroidsFile.exists()) return false
+        return try {
+            DataInputStream(BufferedInputStream(centroidsFile.inputStream())).use { input ->
+                if (input.readInt() != CENTROIDS_MAGIC ||
+                    input.readInt() != embedder.id.hashCode() ||
+                    input.readInt() != dimension
+                ) {
+                    return false
+                }
+                val count = input.readInt()
+                val trainedOn = input.readInt()
+                val values = FloatArray(count * dimension) { input.readFloat() }
+                centroids = values
+                listCount = count
+                trainedSize = trainedOn
+                true
+            }
+        } catch (e: IOException) {
+            false
+        }
+    }
+
+    companion object {
+        const val FILE_NAME = "semantic_index.bin"
+        const val MIN_TRAINING_SIZE = 1024
+        const val DEFAULT_PROBES = 8
+
+        private const val NO_LIST = -1
+        private const val SAMPLE_PER_LIST = 16
+        private const val KMEANS_ITERATIONS = 8
+        private const val TRAINING_SEED = 42L
+        private const val CENTROIDS_MAGIC = 0x564E4943 // "VNIC"
+
+        private val BACKGROUND_TRAINER: Executor by lazy {
+            Executors.newSingleThreadExecutor { task ->
+                Thread(task, "SemanticIndexTraining").apply { isDaemon = true }
+            }
+        }
+
+        @Volatile
+        private var INSTANCE: SemanticIndex? = null
+
+        /**
+         * The app-wide index, stored in [directory]. [embedder] is used when the index
+         * is first opened; pass the same one on every launch, since a different id
+         * discards the stored embeddings. Later changes go through [useEmbedder].
+         */
+        fun getInstance(directory: File, embedder: TextEmbedder = HashedNgramEmbedder()): SemanticIndex {
+            return INSTANCE ?: synchronized(this) {
+                INSTANCE ?: SemanticIndex(File(directory, FILE_NAME), embedder).also { INSTANCE = it }
+            }
+        }
+    }
+}
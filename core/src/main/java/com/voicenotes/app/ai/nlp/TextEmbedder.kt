@@ -0,0 +1,19 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Turns text into a fixed-size vector whose dot product with another
+ * embedding measures how close the two texts are in meaning.
+ *
+ * Implementations must return unit-length vectors of [dimension] floats and be
+ * deterministic; [id] names the model and its version, so stored embeddings are
+ * discarded when the embedder changes.
+ */
+interface TextEmbedder {
+    val id: String
+    val dimension: Int
+
+    fun embed(text: String): FloatArray
+
+    /** Embed an already analyzed note; override to reuse its tokens instead of the raw text */
+    fun embed(document: AnalyzedDocument): FloatArray = embed(document.text)
+}
@@ -0,0 +1,332 @@
+package com.voicenotes.app.ai.nlp
+
+import kotlin.math.abs
+import kotlin.math.ceil
+import kotlin.math.ln
+import kotlin.math.sqrt
+
+/**
+ * How much of a transcript an extractive summary keeps
+ */
+sealed class SummaryLength {
+    /** The single most central sentence, cut to one line */
+    object OneLine : SummaryLength()
+
+    /** The [count] most central sentences in transcript order */
+    data class Sentences(val count: Int) : SummaryLength()
+
+    /** About [ratio] of the sentences (0..1], at least one */
+    data class Ratio(val ratio: Double) : SummaryLength()
+}
+
+/**
+ * Extractive summarizer ranking sentences with TextRank.
+ *
+ * Sentences become sparse TF-ISF vectors over content tokens. Similar pairs are
+ * found through a term -> sentence inverted index, so only sentences that share
+ * a term are ever compared. For very common terms only the [maxPostingsPerTerm]
+ * postings nearest the sentence are visited, and each sentence keeps its
+ * [maxNeighbors] strongest edges. PageRank then runs for at most [maxIterations]
+ * rounds over that sparse graph. Cost is roughly linear in transcript length.
+ */
+class TextRankSummarizer(
+    private val damping: Double = 0.85,
+    private val maxIterations: Int = 30,
+    private val tolerance: Double = 1e-4,
+    private val maxNeighbors: Int = 16,
+    private val maxPostingsPerTerm: Int = 32,
+    private val minSimilarity: Double = 0.05
+) {
+
+    /**
+     * Summarize [document] to [length]. Sentences mentioning [keywords] get a
+     * higher restart probability, which biases the ranking towards them.
+     */
+    fun summarize(
+        document: AnalyzedDocument,
+        length: SummaryLength = SummaryLength.OneLine,
+        keywords: List<String> = emptyList()
+    ): String {
+        val sentenceCount = document.sentenceCount
+        if (sentenceCount == 0) return "No content to summarize"
+
+        val scores = rank(document, keywords)
+        return when (length) {
+            is SummaryLength.OneLine -> oneLine(document, scores)
+            is SummaryLength.Sentences -> joinSentences(document, topSentences(scores, length.count))
+            is SummaryLength.Ratio -> {
+                val count = ceil(sentenceCount * length.ratio.coerceIn(0.0, 1.0)).toInt()
+                joinSentences(document, topSentences(scores, count))
+            }
+        }
+    }
+
+    /**
+     * TextRank score per sentence of [document], summing to 1
+     */
+    fun rank(document: AnalyzedDocument, keywords: List<String> = emptyList()): DoubleArray {
+        val sentenceCount = document.sentenceCount
+        if (sentenceCount == 0) return DoubleArray(0)
+        if (sentenceCount == 1) return doubleArrayOf(1.0)
+
+        val vectors = SentenceVectors.build(document)
+        val graph = buildGraph(vectors, sentenceCount)
+        val teleport = teleportVector(document, vectors, keywords)
+        return powerIteration(graph, teleport)
+    }
+
+    /**
+     * Sparse sentence-term vectors in CSR layout plus the term -> sentence postings
+     */
+    private class SentenceVectors(
+        val rowStarts: IntArray,
+        val terms: IntArray,
+        val weights: DoubleArray,
+        val postingStarts: IntArray,
+        val postingSentences: IntArray,
+        val postingWeights: DoubleArray,
+        /** Document-local term index -> dictionary token id */
+        val tokenIds: IntArray
+    ) {
+        companion object {
+            fun build(document: AnalyzedDocument): SentenceVectors {
+                val sentenceCount = document.sentenceCount
+
+                // Document-local term indices keep the scratch arrays small
+                val localIndex = IntIntMap()
+                val localTokenIds = IntArrayBuilder()
+                for (id in document.distinctTokenIds) {
+                    if (!document.isStopWord(id)) {
+                        localIndex[id] = localTokenIds.size + 1
+                        localTokenIds.add(id)
+                    }
+                }
+                val termCount = localTokenIds.size
+                val lastSentence = IntArray(termCount) { -1 }
+                val slot = IntArray(termCount)
+                val sentenceFrequency = IntArray(termCount)
+
+                // Term counts per sentence; tokens outside kept sentences are ignored
+                val rowStarts = IntArray(sentenceCount + 1)
+                val terms = IntArrayBuilder()
+                var weights = DoubleArray(64)
+                var sentence = 0
+                for (index in 0 until document.tokenCount) {
+                    val start = document.tokenStart(index)
+                    while (sentence < sentenceCount && start >= document.sentenceEnd(sentence)) {
+                        rowStarts[++sentence] = terms.size
+                    }
+                    if (sentence == sentenceCount) break
+                    if (start < document.sentenceStart(sentence)) continue
+                    val local = localIndex[document.tokenId(index)] - 1
+                    if (local < 0) continue
+                    if (lastSentence[local] != sentence) {
+                        lastSentence[local] = sentence
+                        slot[local] = terms.size
+                        sentenceFrequency[local]++
+                        if (terms.size == weights.size) weights = weights.copyOf(weights.size * 2)
+                        weights[terms.size] = 1.0
+                        terms.add(local)
+                    } else {
+                        weights[slot[local]] += 1.0
+                    }
+                }
+                while (sentence < sentenceCount) rowStarts[++sentence] = terms.size
+
+                // TF-ISF weights, normalized so a dot product is a cosine similarity
+                val termArray = terms.toArray()
+                weights = weights.copyOf(termArray.size)
+                for (row in 0 until sentenceCount) {
+                    var norm = 0.0
+                    for (k in rowStarts[row] until rowStarts[row + 1]) {
+                        val weight = weights[k] * ln((sentenceCount + 1.0) / sentenceFrequency[termArray[k]])
+                        weights[k] = weight
+                        norm += weight * weight
+                    }
+                    if (norm > 0.0) {
+                        val inverse = 1.0 / sqrt(norm)
+                        for (k in rowStarts[row] until rowStarts[row + 1]) weights[k] *= inverse
+                    }
+                }
+
+                // Inverted index, sentences ascending within each term
+                val postingStarts = IntArray(termCount + 1)
+                for (term in termArray) postingStarts[term + 1]++
+                for (term in 0 until termCount) postingStarts[term + 1] += postingStarts[term]
+                val fill = postingStarts.copyOf(termCount)
+                val postingSentences = IntArray(termArray.size)
+                val postingWeights = DoubleArray(termArray.size)
+                for (row in 0 until sentenceCount) {
+                    for (k in rowStarts[row] until rowStarts[row + 1]) {
+                        val position = fill[termArray[k]]++
+                        postingSentences[position] = row
+                        postingWeights[position] = weights[k]
+                    }
+                }
+
+                return SentenceVectors(
+                    rowStarts, termArray, weights,
+                    postingStarts, postingSentences, postingWeights,
+                    localTokenIds.toArray()
+                )
+            }
+        }
+    }
+
+    /**
+     * Weighted adjacency in CSR layout, rows normalized to transition probabilities
+     */
+    private class Graph(val edgeStarts: IntArray, val targets: IntArray, val probabilities: DoubleArray)
+
+    private fun buildGraph(vectors: SentenceVectors, sentenceCount: Int): Graph {
+        val accumulator = DoubleArray(sentenceCount)
+        val touched = IntArrayBuilder()
+        val edgeStarts = IntArray(sentenceCount + 1)
+        val targets = IntArrayBuilder()
+        var probabilities = DoubleArray(64)
+        val neighbors = IntTopK(maxNeighbors)
+
+        for (row in 0 until sentenceCount) {
+            // Dot products with every sentence sharing at least one term
+            for (k in vectors.rowStarts[row] until vectors.rowStarts[row + 1]) {
+                val term = vectors.terms[k]
+                val weight = vectors.weights[k]
+                var from = vectors.postingStarts[term]
+                var to = vectors.postingStarts[term + 1]
+                if (to - from > maxPostingsPerTerm) {
+                    // Postings are in sentence order; visit a window centred on this sentence
+                    val position = vectors.postingSentences.binarySearch(row, from, to)
+                    from = (position - maxPostingsPerTerm / 2).coerceIn(from, to - maxPostingsPerTerm)
+                    to = from + maxPostingsPerTerm
+                }
+                for (p in from until to) {
+                    val other = vectors.postingSentences[p]
+                    if (other == row) continue
+                    if (accumulator[other] == 0.0) touched.add(other)
+                    accumulator[other] += weight * vectors.postingWeights[p]
+                }
+            }
+
+            // Keep the strongest edges only, so the graph stays sparse
+            neighbors.clear()
+            for (t in 0 until touched.size) {
+                val other = touched[t]
+                if (accumulator[other] >= minSimilarity) neighbors.offer(other, accumulator[other])
+            }
+            val best = neighbors.toIdArray()
+            var total = 0.0
+            for (other in best) total += accumulator[other]
+            for (other in best) {
+                if (targets.size == probabilities.size) probabilities = probabilities.copyOf(probabilities.size * 2)
+                probabilities[targets.size] = accumulator[other] / total
+                targets.add(other)
+            }
+            edgeStarts[row + 1] = targets.size
+
+            for (t in 0 until touched.size) accumulator[touched[t]] = 0.0
+            touched.clear()
+        }
+        return Graph(edgeStarts, targets.toArray(), probabilities.copyOf(targets.size))
+    }
+
+    /**
+     * Restart distribution: uniform, plus extra weight per keyword mention
+     */
+    private fun teleportVector(
+        document: AnalyzedDocument,
+        vectors: SentenceVectors,
+        keywords: List<String>
+    ): DoubleArray {
+        val sentenceCount = document.sentenceCount
+        val teleport = DoubleArray(sentenceCount) { 1.0 }
+        if (keywords.isNotEmpty()) {
+            val keywordIds = IntIntMap()
+            for (keyword in keywords) {
+                for (part in keyword.lowercase().split(' ')) {
+                    val id = document.dictionary.idOf(part)
+                    if (id >= 0) keywordIds[id] = 1
+                }
+            }
+            for (row in 0 until sentenceCount) {
+                for (k in vectors.rowStarts[row] until vectors.rowStarts[row + 1]) {
+                    if (keywordIds.containsKey(vectors.tokenIds[vectors.terms[k]])) teleport[row] += 1.0
+                }
+            }
+        }
+        val total = teleport.sum()
+        for (row in teleport.indices) teleport[row] /= total
+        return teleport
+    }
+
+    private fun powerIteration(graph: Graph, teleport: DoubleArray): DoubleArray {
+        val size = teleport.size
+        var scores = teleport.copyOf()
+        var next = DoubleArray(size)
+        for (iteration in 0 until maxIterations) {
+            var dangling = 0.0
+            for (row in 0 until size) {
+                next[row] = 0.0
+                if (graph.edgeStarts[row] == graph.edgeStarts[row + 1]) dangling += scores[row]
+            }
+            for (row in 0 until size) {
+                val mass = damping * scores[row]
+                for (e in graph.edgeStarts[row] until graph.edgeStarts[row + 1]) {
+                    next[graph.targets[e]] += mass * graph.probabilities[e]
+                }
+            }
+            // Restarts and sentences without edges jump back by the teleport distribution
+            val restart = 1.0 - damping + damping * dangling
+            var change = 0.0
+            for (row in 0 until size) {
+                next[row] += restart * teleport[row]
+                change += abs(next[row] - scores[row])
+            }
+            val swap = scores
+            scores = next
+            next = swap
+            if (change < tolerance) break
+        }
+        return scores
+    }
+
+    /**
+     * Indices of the [count] best sentences, in transcript order
+     */
+    private fun topSentences(scores: DoubleArray, count: Int): IntArray {
+        val top = IntTopK(count.coerceIn(1, scores.size))
+        for (row in scores.indices) top.offer(row, scores[row])
+        return top.toIdArray().sortedArray()
+    }
+
+    private fun oneLine(document: AnalyzedDocument, scores: DoubleArray): String {
+        // Prefer a short sentence among the few most central ones, as the old summary did
+        val candidates = IntTopK(minOf(ONE_LINE_CANDIDATES, scores.size))
+        for (row in scores.indices) candidates.offer(row, scores[row])
+        val ranked = candidates.toIdArray()
+        val sentences = document.sentences
+        val best = ranked.firstOrNull { sentences[it].length <= ONE_LINE_LENGTH } ?: ranked[0]
+        val sentence = sentences[best]
+        return if (sentence.length <= ONE_LINE_LENGTH) sentence else sentence.take(ONE_LINE_LENGTH - 3) + "..."
+    }
+
+    private fun joinSentences(document: AnalyzedDocument, rows: IntArray): String {
+        val text = document.text
+        val builder = StringBuilder()
+        for (row in rows) {
+            if (builder.isNotEmpty()) builder.append(' ')
+            val end = document.sentenceEnd(row)
+            builder.append(text, document.sentenceStart(row), end)
+            // Keep the sentence's own terminal punctuation
+            builder.append(if (end < text.length && text[end] in TERMINATORS) text[end] else '.')
+        }
+        return builder.toString()
+    }
+
+    companion object {
+        private const val ONE_LINE_LENGTH = 80
+        private const val ONE_LINE_CANDIDATES = 3
+        private const val TERMINATORS = ".!?"
+
+        val shared = TextRankSummarizer()
+    }
+}
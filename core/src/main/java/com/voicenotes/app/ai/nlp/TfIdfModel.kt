@@ -0,0 +1,97 @@
+package com.voicenotes.app.ai.nlp
+
+import kotlin.math.ln
+
+/**
+ * Library-wide document frequencies for TF-IDF keyword ranking.
+ *
+ * Frequencies live in a primitive array indexed by [TokenDictionary] id, so scoring
+ * a transcript never touches the database. Writers update the array in place and
+ * publish a new [snapshot]; readers take one per transcript without locking.
+ */
+class TfIdfModel(private val dictionary: TokenDictionary = TokenDictionary.shared) {
+
+    /**
+     * View of the corpus for scoring one transcript. It shares the frequency array
+     * with the model, so a write in progress can show through by at most one note.
+     */
+    class Snapshot internal constructor(
+        val documentCount: Int,
+        private val documentFrequencies: IntArray,
+        private val dictionary: TokenDictionary
+    ) {
+        fun documentFrequency(tokenId: Int): Int {
+            return if (tokenId in documentFrequencies.indices) documentFrequencies[tokenId] else 0
+        }
+
+        /**
+         * Smoothed inverse document frequency, 1.0 for every word on an empty corpus
+         */
+        fun idf(tokenId: Int): Double {
+            return ln((1.0 + documentCount) / (1.0 + documentFrequency(tokenId))) + 1.0
+        }
+
+        /** [idf] of a token interned in another dictionary, e.g. a document's own */
+        fun idf(dictionary: TokenDictionary, tokenId: Int): Double {
+            return idf(if (dictionary === this.dictionary) tokenId else this.dictionary.idOf(dictionary.term(tokenId)))
+        }
+    }
+
+    // Grown by doubling; only touched under the model's lock
+    private var frequencies = IntArray(0)
+
+    @Volatile
+    private var current = Snapshot(0, frequencies, dictionary)
+
+    @Volatile
+    var isLoaded = false
+        private set
+
+    fun snapshot(): Snapshot = current
+
+    /**
+     * Replace the model with persisted statistics
+     */
+    @Synchronized
+    fun load(documentCount: Int, documentFrequencies: Map<String, Int>) {
+        val ids = documentFrequencies.keys.map { dictionary.intern(it) }
+        // A fresh array, so snapshots taken before the load keep their counts
+        frequencies = IntArray(dictionary.size)
+        documentFrequencies.values.forEachIndexed { index, frequency -> frequencies[ids[index]] = frequency }
+        current = Snapshot(documentCount, frequencies, dictionary)
+        isLoaded = true
+    }
+
+    /**
+     * Apply one note change: [added] terms gain a document, [removed] terms lose one
+     */
+    @Synchronized
+    fun applyDelta(added: Collection<String>, removed: Collection<String>, documentDelta: Int) {
+        if (added.isEmpty() && removed.isEmpty() && documentDelta == 0) return
+        val addedIds = added.map { dictionary.intern(it) }
+        val removedIds = removed.map { dictionary.intern(it) }
+        if (dictionary.size > frequencies.size) {
+            frequencies = frequencies.copyOf(maxOf(dictionary.size, frequencies.size * 2))
+        }
+        addedIds.forEach { frequencies[it]++ }
+        removedIds.forEach { frequencies[it] = maxOf(0, frequencies[it] - 1) }
+        // The volatile write publishes the in-place updates along with the new count
+        current = Snapshot(maxOf(0, current.documentCount + documentDelta), frequencies, dictionary)
+    }
+
+    companion object {
+        val shared = TfIdfModel()
+
+        /**
+         * Distinct terms of a transcript as counted for document frequency
+         */
+        fun termsOf(transcript: String?): Set<String> {
+            if (transcript.isNullOrBlank()) return emptySet()
+            return termsOf(AnalyzedDocument.analyze(transcript))
+        }
+
+        fun termsOf(document: AnalyzedDocument): Set<String> {
+            return document.distinctTokenIds.mapTo(LinkedHashSet()) { document.term(it) }
+        }
+    }
+}
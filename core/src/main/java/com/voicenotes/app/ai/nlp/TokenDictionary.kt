@@ -0,0 +1,120 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Interns words to dense int ids so counting and ranking can use primitive arrays.
+ *
+ * Lookups hash a char range directly, so interning a token from a larger text
+ * allocates nothing once the word is known. Ids are stable for the life of the
+ * dictionary, so it lives as long as what holds its ids: each [AnalyzedDocument]
+ * and live transcript analyzer has its own, and [shared] holds only the library's
+ * vocabulary, for the corpus statistics and indexes kept across notes.
+ *
+ * Interning is synchronized; [term] and [idOf] read without locking. A new word is
+ * stored before [size] is raised past its id, and a grown table is filled before it
+ * is published, so a reader that checks [size] never sees a half-added word.
+ */
+class TokenDictionary(initialCapacity: Int = 1024) {
+
+    /** Terms by id, and an open-addressing table of ids in which -1 marks an empty slot */
+    private class Table(val terms: Array<String?>, val slots: IntArray)
+
+    @Volatile
+    private var table = Table(arrayOfNulls(initialCapacity), IntArray(tableSizeFor(initialCapacity * 2)) { EMPTY })
+
+    @Volatile
+    var size = 0
+        private set
+
+    /**
+     * Id of text[start, end), adding it if it is new
+     */
+    @Synchronized
+    fun intern(text: CharSequence, start: Int = 0, end: Int = text.length): Int {
+        var table = table
+        val mask = table.slots.size - 1
+        var slot = hashRange(text, start, end) and mask
+        while (true) {
+            val id = table.slots[slot]
+            if (id == EMPTY) break
+            if (matches(table.terms[id]!!, text, start, end)) return id
+            slot = (slot + 1) and mask
+        }
+
+        val id = size
+        if (id == table.terms.size) {
+            table = Table(table.terms.copyOf(table.terms.size * 2), table.slots)
+            this.table = table
+        }
+        table.terms[id] = text.subSequence(start, end).toString()
+        table.slots[slot] = id
+        size = id + 1
+        if (size * 2 > table.slots.size) rehash(table)
+        return id
+    }
+
+    /**
+     * Id of text[start, end), or -1 when the word has never been interned
+     */
+    fun idOf(text: CharSequence, start: Int = 0, end: Int = text.length): Int {
+        // Size first: every id below it is complete in any table read afterwards
+        val size = size
+        val table = table
+        val mask = table.slots.size - 1
+        var slot = hashRange(text, start, end) and mask
+        while (true) {
+            val id = table.slots[slot]
+            if (id == EMPTY) return EMPTY
+            // A word being added right now; wait for it
+            if (id >= size) return synchronized(this) { idOf(text, start, end) }
+            if (matches(table.terms[id]!!, text, start, end)) return id
+            slot = (slot + 1) and mask
+        }
+    }
+
+    fun term(id: Int): String {
+        if (id < 0 || id >= size) throw IndexOutOfBoundsException("No term with id $id")
+        return table.terms[id]!!
+    }
+
+    private fun rehash(table: Table) {
+        val newSlots = IntArray(table.slots.size * 2) { EMPTY }
+        val mask = newSlots.size - 1
+        for (id in 0 until size) {
+            val term = table.terms[id]!!
+            var slot = hashRange(term, 0, term.length) and mask
+            while (newSlots[slot] != EMPTY) slot = (slot + 1) and mask
+            newSlots[slot] = id
+        }
+        this.table = Table(table.terms, newSlots)
+    }
+
+    companion object {
+        private const val EMPTY = -1
+
+        /** The library's vocabulary; see [TfIdfModel] and [RelatedNotesIndex] */
+        val shared = TokenDictionary(8192)
+
+        /** Same value as String.hashCode() for the range, then spread */
+        private fun hashRange(text: CharSequence, start: Int, end: Int): Int {
+            var hash = 0
+            for (i in start until end) {
+                hash = 31 * hash + text[i].code
+            }
+            return hash xor (hash ushr 16)
+        }
+
+        private fun matches(term: String, text: CharSequence, start: Int, end: Int): Boolean {
+            if (term.length != end - start) return false
+            for (i in term.indices) {
+                if (term[i] != text[start + i]) return false
+            }
+            return true
+        }
+
+        private fun tableSizeFor(capacity: Int): Int {
+            var size = 16
+            while (size < capacity) size = size shl 1
+            return size
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.voicenotes.app.ai.nlp
+
+import kotlin.math.sqrt
+
+/**
+ * TextTiling-style topic segmentation for long transcripts.
+ *
+ * Content words are grouped into pseudo-sentences of [pseudoSentenceTokens] tokens.
+ * At every gap between pseudo-sentences, the [blockSize] pseudo-sentences on each
+ * side are compared by cosine similarity of their word counts; the two blocks slide
+ * along the transcript so each gap costs O(tokens moved), not O(block). Valleys of
+ * the smoothed similarity curve that sit well below the peaks around them are topic
+ * shifts. They are taken deepest first, at least [minChapterTokens] apart, and
+ * snapped to the nearest real sentence start.
+ */
+class TopicSegmenter(
+    private val pseudoSentenceTokens: Int = 20,
+    private val blockSize: Int = 10,
+    private val minChapterTokens: Int = 150,
+    private val maxChapters: Int = 24
+) {
+
+    /**
+     * One chapter: characters [startChar, endChar) of the transcript and its top words
+     */
+    data class Segment(val startChar: Int, val endChar: Int, val keywords: List<String>)
+
+    fun segment(document: AnalyzedDocument, corpus: TfIdfModel.Snapshot = TfIdfModel.shared.snapshot()): List<Segment> {
+        val textLength = document.text.length
+        if (textLength == 0) return emptyList()
+
+        val content = contentTokens(document)
+        val boundaries = if (content.size < minChapterTokens * 2) IntArray(0) else findBoundaries(document, content)
+
+        val starts = IntArray(boundaries.size + 1)
+        for (i in boundaries.indices) starts[i + 1] = boundaries[i]
+        return List(starts.size) { i ->
+            val start = starts[i]
+            val end = if (i + 1 < starts.size) starts[i + 1] else textLength
+            Segment(start, end, keywordsBetween(document, start, end, corpus))
+        }
+    }
+
+    /**
+     * Character offsets where new chapters start, ascending
+     */
+    private fun findBoundaries(document: AnalyzedDocument, content: IntArray): IntArray {
+        val pseudoSentences = (content.size + pseudoSentenceTokens - 1) / pseudoSentenceTokens
+        if (pseudoSentences < blockSize * 2) return IntArray(0)
+
+        val gapScores = gapSimilarities(document, content, pseudoSentences)
+        val smoothed = smooth(gapScores)
+        val depths = depthScores(smoothed)
+
+        // Only valleys of the similarity curve can be shifts. Gaps near either end
+        // compare clipped blocks and dip for no reason, so they are left out.
+        val valleys = IntArrayBuilder()
+        for (gap in blockSize until depths.size - blockSize) {
+            val isValley = (gap == 0 || smoothed[gap] <= smoothed[gap - 1]) &&
+                (gap == smoothed.size - 1 || smoothed[gap] <= smoothed[gap + 1])
+            if (isValley && depths[gap] > 0.0) valleys.add(gap)
+        }
+        if (valleys.size == 0) return IntArray(0)
+
+        // Keep valleys clearly deeper than usual: mean depth plus one standard deviation
+        var mean = 0.0
+        for (i in 0 until valleys.size) mean += depths[valleys[i]]
+        mean /= valleys.size
+        var variance = 0.0
+        for (i in 0 until valleys.size) variance += (depths[valleys[i]] - mean) * (depths[valleys[i]] - mean)
+        val cutoff = maxOf(mean + sqrt(variance / valleys.size), MIN_DEPTH)
+
+        val candidates = IntTopK(valleys.size)
+        for (i in 0 until valleys.size) {
+            val gap = valleys[i]
+            if (depths[gap] >= cutoff) candidates.offer(gap, depths[gap])
+        }
+
+        // Deepest first, keeping chapters at least minChapterTokens long
+        val chosen = ArrayList<Int>()
+        for (gap in candidates.toIdArray()) {
+            if (chosen.size == maxChapters - 1) break
+            val token = (gap + 1) * pseudoSentenceTokens
+            if (token < minChapterTokens || content.size - token < minChapterTokens) continue
+            if (chosen.any { kotlin.math.abs(it - token) < minChapterTokens }) continue
+            chosen.add(token)
+        }
+        chosen.sort()
+
+        val offsets = IntArrayBuilder()
+        for (token in chosen) {
+            val offset = nearestSentenceStart(document, document.tokenStart(content[token]))
+            if (offset > 0 && (offsets.size == 0 || offset > offsets[offsets.size - 1])) offsets.add(offset)
+        }
+        return offsets.toArray()
+    }
+
+    /**
+     * Cosine similarity of the blocks either side of each gap. Gap g sits after
+     * pseudo-sentence g; blocks are clipped at the transcript ends.
+     */
+    private fun gapSimilarities(document: AnalyzedDocument, content: IntArray, pseudoSentences: Int): DoubleArray {
+        val left = IntIntMap()
+        val right = IntIntMap()
+        var dot = 0L
+        var leftSquares = 0L
+        var rightSquares = 0L
+
+        fun tokenAt(index: Int): Int = document.tokenId(content[index])
+
+        fun range(pseudoSentence: Int): IntRange {
+            val from = pseudoSentence * pseudoSentenceTokens
+            return from until minOf(content.size, from + pseudoSentenceTokens)
+        }
+
+        fun addLeft(pseudoSentence: Int, delta: Int) {
+            for (i in range(pseudoSentence)) {
+                val id = tokenAt(i)
+                val before = left[id]
+                left[id] = before + delta
+                dot += delta.toLong() * right[id]
+                leftSquares += (2L * before + delta) * delta
+            }
+        }
+
+        fun addRight(pseudoSentence: Int, delta: Int) {
+            for (i in range(pseudoSentence)) {
+                val id = tokenAt(i)
+                val before = right[id]
+                right[id] = before + delta
+                dot += delta.toLong() * left[id]
+                rightSquares += (2L * before + delta) * delta
+            }
+        }
+
+        // Gap 0: left block is pseudo-sentence 0, right block the next blockSize
+        addLeft(0, 1)
+        for (p in 1..minOf(blockSize, pseudoSentences - 1)) addRight(p, 1)
+
+        val scores = DoubleArray(pseudoSentences - 1)
+        for (gap in scores.indices) {
+            val norm = sqrt(leftSquares.toDouble()) * sqrt(rightSquares.toDouble())
+            scores[gap] = if (norm > 0) dot / norm else 0.0
+
+            // Slide: pseudo-sentence gap + 1 crosses from the right block to the left
+            val crossing = gap + 1
+            addRight(crossing, -1)
+            addLeft(crossing, 1)
+            if (crossing - blockSize >= 0) addLeft(crossing - blockSize, -1)
+            if (crossing + blockSize < pseudoSentences) addRight(crossing + blockSize, 1)
+        }
+        return scores
+    }
+
+    private fun smooth(scores: DoubleArray): DoubleArray {
+        return DoubleArray(scores.size) { i ->
+            val from = maxOf(0, i - SMOOTHING_RADIUS)
+            val to = minOf(scores.size - 1, i + SMOOTHING_RADIUS)
+            var sum = 0.0
+            for (j in from..to) sum += scores[j]
+            sum / (to - from + 1)
+        }
+    }
+
+    /**
+     * How far each gap's similarity sits below the nearest peaks on both sides
+     */
+    private fun depthScores(scores: DoubleArray): DoubleArray {
+        return DoubleArray(scores.size) { gap ->
+            var leftPeak = scores[gap]
+            var i = gap - 1
+            while (i >= 0 && scores[i] >= leftPeak) leftPeak = scores[i--]
+            var rightPeak = scores[gap]
+            i = gap + 1
+            while (i < scores.size && scores[i] >= rightPeak) rightPeak = scores[i++]
+            (leftPeak - scores[gap]) + (rightPeak - scores[gap])
+        }
+    }
+
+    private fun nearestSentenceStart(document: AnalyzedDocument, offset: Int): Int {
+        var best = 0
+        var bestDistance = Int.MAX_VALUE
+        var low = 0
+        var high = document.sentenceCount - 1
+        // Binary search for the last sentence starting at or before offset, then compare neighbours
+        while (low <= high) {
+            val mid = (low + high) ushr 1
+            if (document.sentenceStart(mid) <= offset) low = mid + 1 else high = mid - 1
+        }
+        for (index in maxOf(0, high)..minOf(document.sentenceCount - 1, high + 1)) {
+            val distance = kotlin.math.abs(document.sentenceStart(index) - offset)
+            if (distance < bestDistance) {
+                bestDistance = distance
+                best = document.sentenceStart(index)
+            }
+        }
+        return if (document.sentenceCount == 0) offset else best
+    }
+
+    /**
+     * Positions of tokens that carry topic: no stop words
+     */
+    private fun contentTokens(document: AnalyzedDocument): IntArray {
+        val positions = IntArrayBuilder(document.tokenCount)
+        for (i in 0 until document.tokenCount) {
+            if (!document.isStopWord(document.tokenId(i))) positions.add(i)
+        }
+        return positions.toArray()
+    }
+
+    private fun keywordsBetween(
+        document: AnalyzedDocument,
+        startChar: Int,
+        endChar: Int,
+        corpus: TfIdfModel.Snapshot
+    ): List<String> {
+        val counts = IntIntMap()
+        val distinct = IntArrayBuilder()
+        for (i in 0 until document.tokenCount) {
+            val start = document.tokenStart(i)
+            if (start < startChar) continue
+            if (start >= endChar) break
+            val id = document.tokenId(i)
+            if (counts.increment(id) == 1) distinct.add(id)
+        }
+        return TranscriptAnalyzer.topTfIdfTokens(
+            distinct.toArray(), counts, document.dictionary, document.stopWords, corpus, KEYWORDS_PER_CHAPTER
+        )
+    }
+
+    companion object {
+        const val KEYWORDS_PER_CHAPTER = 3
+
+        private const val SMOOTHING_RADIUS = 2
+        private const val MIN_DEPTH = 0.3
+
+        val shared = TopicSegmenter()
+    }
+}
@@ -0,0 +1,470 @@
+package com.voicenotes.app.ai.nlp
+
+/**
+ * Rule-based extractors behind LocalNLPService.
+ *
+ * Pure Kotlin with no Android dependencies, so it can be benchmarked on the JVM.
+ * Every word table and regex is compiled once here instead of on each call.
+ * Stop words come from the document's [LanguagePack]; the phrase dictionaries,
+ * action patterns and word tables here are English and only run on English text.
+ */
+object TranscriptAnalyzer {
+
+    private val IMPORTANT_WORDS = hashSetOf(
+        // Time-related
+        "today", "tomorrow", "monday", "tuesday", "wednesday", "thursday", "friday",
+        "saturday", "sunday", "morning", "afternoon", "evening", "week", "month",
+
+        // Action words
+        "call", "email", "meeting", "buy", "get", "pick", "drop", "send", "schedule",
+        "book", "reserve", "cancel", "confirm", "check", "review", "prepare", "finish",
+
+        // Important nouns
+        "doctor", "dentist", "appointment", "deadline", "project", "report", "presentation",
+        "interview", "flight", "hotel", "restaurant", "grocery", "medicine", "keys",
+        "passport", "license", "insurance", "bank", "payment", "bill", "invoice",
+
+        // Places
+        "office", "home", "hospital", "school", "airport", "station", "mall", "store",
+
+        // People-related
+        "mom", "dad", "boss", "manager", "client", "customer", "friend", "family"
+    )
+
+    private val COMMON_WORDS = hashSetOf(
+        "said", "says", "going", "really", "think", "know", "like", "just",
+        "want", "need", "make", "take", "come", "good", "great", "nice",
+        "thing", "things", "stuff", "something", "anything", "everything",
+        "someone", "anyone", "everyone", "somewhere", "anywhere", "everywhere"
+    )
+
+    private val PERSON_TITLES = hashSetOf("mr", "mrs", "ms", "dr", "prof")
+
+    private val LOCATION_PREPOSITIONS = hashSetOf("in", "at", "from", "to")
+
+    private val POSITIVE_WORDS = hashSetOf(
+        "good", "great", "excellent", "amazing", "wonderful", "fantastic", "awesome",
+        "happy", "pleased", "satisfied", "successful", "positive", "love", "like",
+        "enjoy", "excited", "thrilled", "delighted", "perfect", "brilliant"
+    )
+
+    private val NEGATIVE_WORDS = hashSetOf(
+        "bad", "terrible", "awful", "horrible", "disappointing", "frustrated",
+        "angry", "upset", "sad", "worried", "concerned", "problem", "issue",
+        "difficult", "challenging", "failed", "wrong", "hate", "dislike"
+    )
+
+    private val TOPIC_KEYWORDS = linkedMapOf(
+        "Work" to hashSetOf("meeting", "project", "deadline", "task", "work", "office", "team", "client", "business"),
+        "Personal" to hashSetOf("family", "home", "personal", "friend", "weekend", "vacation", "hobby"),
+        "Health" to hashSetOf("doctor", "appointment", "health", "exercise", "medicine", "hospital", "diet"),
+        "Finance" to hashSetOf("money", "budget", "cost", "price", "payment", "bank", "investment", "expense"),
+        "Technology" to hashSetOf("app", "software", "computer", "phone", "internet", "website", "digital", "tech"),
+        "Education" to hashSetOf("learn", "study", "course", "school", "university", "training", "education")
+    )
+
+    /**
+     * Action item pattern. [triggers] are literals the regex cannot match without,
+     * checked on the lowercased sentence before running the regex.
+     */
+    private class ActionPattern(
+        val regex: Regex,
+        val triggers: List<String>,
+        val format: (MatchResult) -> String
+    )
+
+    internal const val MAX_ACTION_ITEMS = 5
+
+    private val ACTION_PATTERNS = listOf(
+        // "need to X" -> "X"
+        ActionPattern(
+            Regex("(need to|should|must|have to|remember to)\\s+(.+)", RegexOption.IGNORE_CASE),
+            listOf("need to", "should", "must", "have to", "remember to")
+        ) { it.groupValues[2] },
+        // "John should X" -> "John: X"
+        ActionPattern(
+            Regex("(\\w+)\\s+(needs to|should|must|will)\\s+(.+)", RegexOption.IGNORE_CASE),
+            listOf("needs to", "should", "must", "will")
+        ) { "${it.groupValues[1]}: ${it.groupValues[3]}" },
+        // "Action item: X" -> "X"
+        ActionPattern(
+            Regex("(action item|todo|task):\\s*(.+)", RegexOption.IGNORE_CASE),
+            listOf("action item", "todo", "task")
+        ) { it.groupValues[2] },
+        // "Schedule X" -> "Schedule X"
+        ActionPattern(
+            Regex("(follow up|schedule|book|call|email|send|prepare|review|complete)\\s+(.+)", RegexOption.IGNORE_CASE),
+            listOf("follow up", "schedule", "book", "call", "email", "send", "prepare", "review", "complete")
+        ) { "${it.groupValues[1]} ${it.groupValues[2]}" }
+    )
+
+    /**
+     * Extract named entities (people, organizations, locations): names known to
+     * [gazetteer] first, then capitalized words whose context suggests an entity
+     */
+    fun extractEntities(
+        document: AnalyzedDocument,
+        gazetteer: Gazetteer = Gazetteer.shared
+    ): Map<String, List<String>> {
+        val entities = HashMap<String, MutableList<String>>()
+
+        val personNames = mutableListOf<String>()
+        val organizationNames = mutableListOf<String>()
+        val locations = mutableListOf<String>()
+
+        // Known names, longest match first, so "New York City" is one location
+        val known = gazetteer.find(document.text, document.lowerText)
+        for (match in known) {
+            when (match.entry.type) {
+                Gazetteer.Type.PERSON -> personNames.add(match.entry.name)
+                Gazetteer.Type.ORGANIZATION -> organizationNames.add(match.entry.name)
+                Gazetteer.Type.PLACE -> locations.add(match.entry.name)
+            }
+        }
+
+        var nextKnown = 0
+        for (i in 0 until document.wordCount) {
+            // Words inside a known name are already classified
+            val wordStart = document.wordStart(i)
+            while (nextKnown < known.size && known[nextKnown].end <= wordStart) nextKnown++
+            if (nextKnown < known.size && known[nextKnown].start <= wordStart) continue
+
+            val word = lettersOnly(document.word(i))
+
+            if (word.length > 2 && word[0].isUpperCase()) {
+                // Check context for person indicators
+                val context = if (i > 0) document.lowerWord(i - 1) else ""
+                when {
+                    context in PERSON_TITLES -> personNames.add(word)
+                    word.endsWith("Corp") || word.endsWith("Inc") || word.endsWith("LLC") -> organizationNames.add(word)
+                    context in LOCATION_PREPOSITIONS -> locations.add(word)
+                }
+            }
+        }
+
+        entities["PERSON"] = personNames.distinct().toMutableList()
+        entities["ORGANIZATION"] = organizationNames.distinct().toMutableList()
+        entities["LOCATION"] = locations.distinct().toMutableList()
+
+        return entities
+    }
+
+    /**
+     * Extract meaningful keywords using enhanced contextual analysis.
+     * Free-text candidates are ranked by TF-IDF against the library in [corpus].
+     */
+    fun extractKeywords(
+        document: AnalyzedDocument,
+        corpus: TfIdfModel.Snapshot = TfIdfModel.shared.snapshot()
+    ): List<String> {
+        // Enhanced keyword extraction with multiple strategies
+        val contextualKeywords = extractContextualKeywords(document, corpus)
+        val actionKeywords = extractActionKeywords(document)
+        val entityKeywords = extractEntityKeywords(document)
+        val frequencyKeywords = extractFrequencyKeywords(document, corpus)
+
+        return combineKeywords(contextualKeywords, actionKeywords, entityKeywords, frequencyKeywords)
+    }
+
+    /**
+     * Combine and prioritize keywords from each strategy
+     */
+    internal fun combineKeywords(
+        contextualKeywords: List<String>,
+        actionKeywords: List<String>,
+        entityKeywords: List<String>,
+        frequencyKeywords: List<String>
+    ): List<String> {
+        val allKeywords = mutableSetOf<String>()
+        allKeywords.addAll(contextualKeywords.take(3))
+        allKeywords.addAll(actionKeywords.take(2))
+        allKeywords.addAll(entityKeywords.take(3))
+        allKeywords.addAll(frequencyKeywords.take(2))
+
+        return allKeywords.take(8).toList()
+    }
+
+    /**
+     * Extract contextual keywords based on speech patterns and importance
+     */
+    fun extractContextualKeywords(
+        document: AnalyzedDocument,
+        corpus: TfIdfModel.Snapshot = TfIdfModel.shared.snapshot()
+    ): List<String> {
+        val contextualWords = LinkedHashSet<String>()
+
+        // Context patterns for voice notes (nlp/local_contextual.txt), from the shared scan
+        if (hasPhraseRules(document)) {
+            contextualWords.addAll(document.dictionaryMatches.matchedLabels(Dictionaries.localContextual))
+        }
+
+        // Add high-value tokens that aren't stop words, most distinctive for this note first
+        contextualWords.addAll(
+            rankImportantTokens(document.distinctTokenIds, document.counts, document.dictionary, document.stopWords, corpus)
+        )
+
+        return contextualWords.toList()
+    }
+
+    /**
+     * Important non-stop tokens ordered by TF-IDF, ties in first-occurrence order
+     */
+    internal fun rankImportantTokens(
+        distinctTokenIds: IntArray,
+        counts: IntIntMap,
+        dictionary: TokenDictionary,
+        stopWords: Set<String>,
+        corpus: TfIdfModel.Snapshot
+    ): List<String> {
+        val candidates = IntArrayBuilder()
+        for (id in distinctTokenIds) {
+            val token = dictionary.term(id)
+            if (!stopWords.contains(token) && isImportantWord(token)) {
+                candidates.add(id)
+            }
+        }
+        val ranked = IntTopK(candidates.size)
+        for (index in 0 until candidates.size) {
+            val id = candidates[index]
+            ranked.offer(id, counts[id] * corpus.idf(dictionary, id))
+        }
+        return ranked.toIdArray().map { dictionary.term(it) }
+    }
+
+    /**
+     * Extract action-oriented keywords
+     */
+    fun extractActionKeywords(document: AnalyzedDocument): List<String> {
+        if (!hasPhraseRules(document)) return emptyList()
+
+        // Action patterns (nlp/local_actions.txt), from the shared scan
+        val actionWords = document.dictionaryMatches.matchedLabels(Dictionaries.localActions)
+
+        return actionWords.distinct()
+    }
+
+    /**
+     * Extract entity keywords (names, places, specific items)
+     */
+    fun extractEntityKeywords(document: AnalyzedDocument): List<String> {
+        val entities = LinkedHashSet<String>()
+
+        // Common entities that appear in voice notes (nlp/local_entities.txt)
+        if (hasPhraseRules(document)) {
+            entities.addAll(document.dictionaryMatches.matchedLabels(Dictionaries.localEntities))
+        }
+
+        // Look for capitalized words (potential proper nouns); sentence-initial stop words are not names
+        val stopWords = document.stopWords
+        for (i in 0 until document.wordCount) {
+            entityKeywordOf(document.word(i))?.let { if (!stopWords.contains(it)) entities.add(it) }
+        }
+
+        return entities.toList()
+    }
+
+    /**
+     * Lowercased proper-noun keyword for a whitespace-delimited word, or null
+     */
+    internal fun entityKeywordOf(word: String): String? {
+        val cleanWord = lettersOnly(word)
+        if (cleanWord.length > 2 &&
+            cleanWord[0].isUpperCase() &&
+            !isCommonWord(cleanWord.lowercase())) {
+            return cleanWord.lowercase()
+        }
+        return null
+    }
+
+    /**
+     * Extract keywords based on TF-IDF (fallback method)
+     */
+    fun extractFrequencyKeywords(
+        document: AnalyzedDocument,
+        corpus: TfIdfModel.Snapshot = TfIdfModel.shared.snapshot()
+    ): List<String> {
+        return topTfIdfTokens(document.distinctTokenIds, document.counts, document.dictionary, document.stopWords, corpus, 5)
+    }
+
+    /**
+     * The [limit] non-stop tokens with the highest term frequency times inverse
+     * document frequency in the library
+     */
+    internal fun topTfIdfTokens(
+        distinctTokenIds: IntArray,
+        counts: IntIntMap,
+        dictionary: TokenDictionary,
+        stopWords: Set<String>,
+        corpus: TfIdfModel.Snapshot,
+        limit: Int
+    ): List<String> {
+        // Bounded heap over TF-IDF scores; ties keep first-occurrence order.
+        // Words common to every note sink, words specific to this one surface.
+        val top = IntTopK(limit)
+        for (id in distinctTokenIds) {
+            if (!stopWords.contains(dictionary.term(id))) {
+                top.offer(id, counts[id] * corpus.idf(dictionary, id))
+            }
+        }
+        return top.toIdArray().map { dictionary.term(it) }
+    }
+
+    /**
+     * Extract action items using pattern matching
+     */
+    fun extractActionItems(document: AnalyzedDocument): List<String> {
+        if (!hasPhraseRules(document)) return emptyList()
+
+        val actionItems = LinkedHashSet<String>()
+        val sentences = document.sentences
+
+        for (i in sentences.indices) {
+            addActionItems(sentences[i], document.lowerSentence(i), actionItems)
+            if (actionItems.size >= MAX_ACTION_ITEMS) break
+        }
+
+        return actionItems.take(MAX_ACTION_ITEMS)
+    }
+
+    /**
+     * Add the action items found in one sentence to [actionItems]
+     */
+    internal fun addActionItems(sentence: String, lowerSentence: String, actionItems: MutableCollection<String>) {
+        for (pattern in ACTION_PATTERNS) {
+            // Skip the regex when none of its literals occur in the sentence
+            if (pattern.triggers.none { lowerSentence.contains(it) }) continue
+            val match = pattern.regex.find(sentence) ?: continue
+            val actionText = pattern.format(match)
+
+            if (actionText.length > 5 && actionText.length < 100) {
+                actionItems.add(actionText.trim())
+            }
+        }
+    }
+
+    /**
+     * Generate summary using extractive approach with one-liner focus
+     */
+    fun generateSummary(document: AnalyzedDocument, keywords: List<String>): String {
+        // Most central sentence by TextRank, biased towards sentences that mention keywords
+        return TextRankSummarizer.shared.summarize(document, SummaryLength.OneLine, keywords.take(5))
+    }
+
+    /**
+     * Generate enhanced one-liner summary specifically for speech-to-text
+     */
+    fun generateOneLinerSummary(document: AnalyzedDocument): String {
+        val text = document.text
+        val sentences = document.sentences
+        val keywords = extractKeywords(document).take(3)
+
+        // Try to create a meaningful one-liner
+        return when {
+            text.length <= 60 -> text
+            sentences.isNotEmpty() -> {
+                val firstSentence = sentences[0]
+                when {
+                    firstSentence.length <= 80 -> firstSentence
+                    keywords.isNotEmpty() -> {
+                        // Create summary using top keywords
+                        val keywordSummary = "Note about ${keywords.joinToString(", ")}"
+                        if (keywordSummary.length <= 80) keywordSummary else keywordSummary.take(77) + "..."
+                    }
+                    else -> firstSentence.take(77) + "..."
+                }
+            }
+            else -> text.take(77) + "..."
+        }
+    }
+
+    /**
+     * Analyze sentiment using keyword-based approach
+     */
+    fun analyzeSentiment(document: AnalyzedDocument): String {
+        if (!hasPhraseRules(document)) return "neutral"
+
+        val positiveCount = POSITIVE_WORDS.sumOf { document.count(it) }
+        val negativeCount = NEGATIVE_WORDS.sumOf { document.count(it) }
+
+        return sentimentOf(positiveCount, negativeCount)
+    }
+
+    internal fun sentimentOf(positiveCount: Int, negativeCount: Int): String {
+        return when {
+            positiveCount > negativeCount -> "positive"
+            negativeCount > positiveCount -> "negative"
+            else -> "neutral"
+        }
+    }
+
+    internal fun isPositiveWord(token: String): Boolean = POSITIVE_WORDS.contains(token)
+
+    internal fun isNegativeWord(token: String): Boolean = NEGATIVE_WORDS.contains(token)
+
+    /**
+     * Extract topics using keyword clustering
+     */
+    fun extractTopics(keywords: List<String>): List<String> {
+        val topics = mutableListOf<String>()
+
+        for ((topic, topicWords) in TOPIC_KEYWORDS) {
+            val matchCount = keywords.count { it in topicWords }
+            if (matchCount > 0) {
+                topics.add(topic)
+            }
+        }
+
+        return if (topics.isEmpty()) listOf("General") else topics
+    }
+
+    /**
+     * Estimate reading time in minutes
+     */
+    fun estimateReadingTime(wordCount: Int): Int {
+        return maxOf(1, wordCount / 200) // Average 200 words per minute
+    }
+
+    private fun hasPhraseRules(document: AnalyzedDocument): Boolean {
+        return LanguagePack.of(document.language).hasPhraseRules
+    }
+
+    /**
+     * Check if word is important enough to be a keyword
+     */
+    private fun isImportantWord(word: String): Boolean {
+        return IMPORTANT_WORDS.contains(word) || word.length > 4
+    }
+
+    /**
+     * Check if word is too common to be meaningful
+     */
+    private fun isCommonWord(word: String): Boolean {
+        return COMMON_WORDS.contains(word)
+    }
+
+    /**
+     * Drop everything but letters, the scanner equivalent of replace(Regex("[^\\p{L}]"), "")
+     */
+    private fun lettersOnly(word: String): String {
+        var firstOther = -1
+        for (i in word.indices) {
+            if (!isLetter(word[i])) {
+                firstOther = i
+                break
+            }
+        }
+        if (firstOther < 0) return word
+
+        val builder = StringBuilder(word.length)
+        builder.append(word, 0, firstOther)
+        for (i in firstOther + 1 until word.length) {
+            val c = word[i]
+            if (isLetter(c)) builder.append(c)
+        }
+        return builder.toString()
+    }
+
+    private fun isLetter(c: Char): Boolean {
+        return (c in 'a'..'z') || (c in 'A'..'Z') || (c > '\u007f' && Character.isLetter(c))
+    }
+}
@@ -0,0 +1,239 @@
+package com.voicenotes.app.audio
+
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Moves audio from a [PcmSource] to any number of [PcmConsumer]s.
+ *
+ * One capture thread reads [blockSamples] at a time from the source into a
+ * [PcmRingBuffer] and wakes the consumers. Each consumer has its own thread and ring
+ * reader, so a slow encoder never holds up the microphone or the level meter; a
+ * consumer more than a ring behind loses the oldest audio and the loss is counted in
+ * [stats]. After [start] nothing on the audio path allocates: the source, ring and
+ * consumers all work in preallocated arrays.
+ *
+ * [pause] parks the capture thread and pauses the source; consumers simply see no
+ * audio until [resume], so an encoder carries on in the same file with the pause cut
+ * out.
+ *
+ * [captureThreadSetup] runs first on the capture thread, e.g. to raise its priority
+ * with android.os.Process.
+ */
+class CaptureEngine(
+    private val source: PcmSource,
+    val blockSamples: Int = source.format.samplesFor(DEFAULT_BLOCK_MS),
+    ringCapacity: Int = ringCapacityFor(source.format, DEFAULT_RING_MS),
+    private val captureThreadSetup: () -> Unit = {}
+) {
+
+    val format: PcmFormat get() = source.format
+
+    data class ConsumerStats(
+        val name: String,
+        val deliveredSamples: Long,
+        val overruns: Long,
+        val droppedSamples: Long,
+        val error: Throwable?
+    )
+
+    data class Stats(
+        val capturedSamples: Long,
+        /** The source ended with an error rather than being stopped */
+        val sourceError: Int?,
+        val consumers: List<ConsumerStats>
+    ) {
+        val overruns: Long get() = consumers.sumOf { it.overruns }
+    }
+
+    private val ring = PcmRingBuffer(ringCapacity)
+    private val workers = ArrayList<ConsumerWorker>()
+    private var captureThread: Thread? = null
+
+    @Volatile
+    private var running = false
+
+    @Volatile
+    private var captureDone = false
+
+    @Volatile
+    private var sourceError: Int? = null
+
+    @Volatile
+    private var paused = false
+
+    init {
+        require(blockSamples in 1..ringCapacity / 2) { "Block of $blockSamples samples needs a ring of at least twice that" }
+    }
+
+    /**
+     * Register [consumer] under [name]; only before [start]
+     */
+    fun addConsumer(name: String, consumer: PcmConsumer): CaptureEngine {
+        check(captureThread == null) { "Consumers must be added before the engine starts" }
+        workers.add(ConsumerWorker(name, consumer, ring.newReader()))
+        return this
+    }
+
+    val isRunning: Boolean get() = running
+
+    val isPaused: Boolean get() = paused
+
+    /**
+     * Open the source and start capturing; throws if the source cannot be opened
+     */
+    fun start() {
+        check(captureThread == null) { "Engine already started" }
+        source.open()
+        running = true
+        workers.forEach { it.start() }
+        captureThread = Thread(::capture, "PcmCapture").apply {
+            priority = Thread.MAX_PRIORITY
+            start()
+        }
+    }
+
+    /**
+     * Stop capturing, let every consumer finish what is already in the ring, and
+     * return the final counters
+     */
+    fun stop(timeoutMs: Long = STOP_TIMEOUT_MS): Stats {
+        running = false
+        LockSupport.unpark(captureThread)
+        return awaitCompletion(timeoutMs)
+    }
+
+    /**
+     * Stop taking audio from the source until [resume]; what is already in the ring
+     * still reaches the consumers
+     */
+    fun pause() {
+        paused = true
+    }
+
+    fun resume() {
+        paused = false
+        LockSupport.unpark(captureThread)
+    }
+
+    /**
+     * Wait for the source to end on its own (a replayed recording) and the consumers to drain
+     */
+    fun awaitCompletion(timeoutMs: Long = STOP_TIMEOUT_MS): Stats {
+        val deadline = System.currentTimeMillis() + timeoutMs
+        captureThread?.join(remaining(deadline))
+        for (worker in workers) worker.thread?.join(remaining(deadline))
+        return stats()
+    }
+
+    fun stats(): Stats {
+        return Stats(
+            capturedSamples = ring.writtenSamples,
+            sourceError = sourceError,
+            consumers = workers.map {
+                ConsumerStats(it.name, it.delivered, it.reader.overruns, it.reader.droppedSamples, it.error)
+            }
+        )
+    }
+
+    private fun capture() {
+        val block = ShortArray(blockSamples)
+        var sourcePaused = false
+        try {
+            captureThreadSetup()
+            while (running) {
+                if (paused) {
+                    if (!sourcePaused) {
+                        source.pause()
+                        sourcePaused = true
+                    }
+                    LockSupport.park(this)
+                    continue
+                }
+                if (sourcePaused) {
+                    source.resume()
+                    sourcePaused = false
+                }
+                val read = source.read(block, 0, block.size)
+                if (read < 0) {
+                    // Replayed audio ends with -1; anything else is a device error
+                    if (read != END_OF_STREAM) sourceError = read
+                    break
+                }
+                if (read == 0) continue
+                ring.write(block, 0, read)
+                // Indexed, so waking the consumers does not allocate an iterator per block
+                for (i in workers.indices) LockSupport.unpark(workers[i].thread)
+            }
+        } finally {
+            running = false
+            try {
+                source.close()
+            } finally {
+                captureDone = true
+                for (worker in workers) LockSupport.unpark(worker.thread)
+            }
+        }
+    }
+
+    private inner class ConsumerWorker(
+        val name: String,
+        private val consumer: PcmConsumer,
+        val reader: PcmRingBuffer.Reader
+    ) {
+        var thread: Thread? = null
+            private set
+
+        @Volatile
+        var delivered = 0L
+            private set
+
+        @Volatile
+        var error: Throwable? = null
+            private set
+
+        fun start() {
+            thread = Thread(::run, "PcmConsumer-$name").apply { start() }
+        }
+
+        private fun run() {
+            val block = ShortArray(blockSamples)
+            try {
+                consumer.onStart(format)
+                while (true) {
+                    // Checked before reading, so everything written before the capture ended is drained
+                    val done = captureDone
+                    val read = reader.read(block, 0, block.size)
+                    if (read > 0) {
+                        consumer.onPcm(block, 0, read)
+                        delivered += read
+                    } else if (done) {
+                        break
+                    } else {
+                        LockSupport.park(this)
+                    }
+                }
+                consumer.onStop(reader.droppedSamples)
+            } catch (e: Throwable) {
+                // The reader is left behind; the writer keeps skipping it, so capture carries on
+                error = e
+            }
+        }
+    }
+
+    companion object {
+        const val END_OF_STREAM = -1
+        const val DEFAULT_BLOCK_MS = 20
+        const val DEFAULT_RING_MS = 2_000
+        private const val STOP_TIMEOUT_MS = 5_000L
+
+        /** Smallest power-of-two ring holding at least [millis] of audio */
+        fun ringCapacityFor(format: PcmFormat, millis: Int): Int {
+            val samples = format.samplesFor(millis)
+            var capacity = 1
+            while (capacity < samples) capacity = capacity shl 1
+            return capacity
+        }
+
+        private fun remaining(deadline: Long): Long = maxOf(1L, deadline - System.currentTimeMillis())
+    }
+}
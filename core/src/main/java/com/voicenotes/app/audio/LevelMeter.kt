@@ -0,0 +1,45 @@
+package com.voicenotes.app.audio
+
+import kotlin.math.sqrt
+
+/**
+ * Live input level for a recording indicator: RMS and peak of the latest block, as
+ * fractions of full scale. Written by its consumer thread, read from anywhere.
+ */
+class LevelMeter : PcmConsumer {
+
+    @Volatile
+    var rms = 0f
+        private set
+
+    @Volatile
+    var peak = 0f
+        private set
+
+    override fun onStart(format: PcmFormat) {
+        rms = 0f
+        peak = 0f
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        var sumSquares = 0.0
+        var max = 0
+        for (i in offset until offset + length) {
+            val sample = samples[i].toInt()
+            sumSquares += sample * sample
+            val magnitude = if (sample < 0) -sample else sample
+            if (magnitude > max) max = magnitude
+        }
+        rms = (sqrt(sumSquares / length) / FULL_SCALE).toFloat()
+        peak = max / FULL_SCALE.toFloat()
+    }
+
+    override fun onStop(droppedSamples: Long) {
+        rms = 0f
+        peak = 0f
+    }
+
+    private companion object {
+        const val FULL_SCALE = 32768.0
+    }
+}
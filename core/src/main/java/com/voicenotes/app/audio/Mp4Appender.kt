@@ -0,0 +1,440 @@
+package com.voicenotes.app.audio
+
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+
+/**
+ * Appends the audio of one MPEG-4 (or 3GP, the same box format) recording to another
+ * in place, without decoding, and without rewriting what is already on disk.
+ *
+ * The new segment's encoded frames are copied into a second `mdat` at the end of the
+ * target, followed by a new `moov` whose sample tables list the old frames where
+ * they are and the new ones after them. Only then is the old `moov`, which readers
+ * find first, renamed `free`, so a crash at any point leaves either the old
+ * recording or the combined one.
+ * Appending costs a copy of the new segment plus a rewrite of the sample tables,
+ * a few bytes per frame, however long the target already is.
+ *
+ * Recordings made in [SegmentedRecording]s are joined the same way, all segments
+ * in one pass.
+ *
+ * Both files must hold a single audio track with the same codec configuration and
+ * timescale, which is what two recordings made with the same [RecordingProfile] have.
+ */
+object Mp4Appender {
+
+    /** The files are not ones this can combine; remux them instead */
+    class Unsupported(message: String) : IOException(message)
+
+    /** What was appended */
+    class Appended(val durationMs: Long, val samples: Int, val bytesWritten: Long)
+
+    private const val CHUNK_SAMPLES = 256
+    private val CONTAINERS = setOf("moov", "trak", "mdia", "minf", "stbl", "edts")
+
+    /**
+     * Append the audio of [segment] to the end of [target]
+     */
+    fun append(target: File, segment: File): Appended = append(target, listOf(segment))
+
+    /**
+     * Append the audio of each of [segments], in order, to the end of [target], with
+     * a single rewrite of the sample tables
+     */
+    fun append(target: File, segments: List<File>): Appended {
+        if (segments.isEmpty()) return Appended(0, 0, 0)
+        val segmentTracks = segments.map { segment -> RandomAccessFile(segment, "r").use { readTrack(it) } }
+        RandomAccessFile(target, "rw").use { file ->
+            val targetTrack = readTrack(file)
+            segments.zip(segmentTracks).forEach { (segment, track) ->
+                if (track.formatKey != targetTrack.formatKey || track.timescale != targetTrack.timescale) {
+                    throw Unsupported("${segment.name} is not in the same format as ${target.name}")
+                }
+            }
+
+            // The new frames, in one mdat after everything already in the file
+            val dataBytes = segmentTracks.sumOf { it.sizes.sum() }
+            val mdatStart = file.length()
+            if (targetTrack.openEndedBox >= 0) {
+                // Give it its real size, or it would swallow what is appended
+                val size = mdatStart - targetTrack.openEndedBox
+                if (size > 0xffffffffL) throw Unsupported("Open-ended box too large to close")
+                file.seek(targetTrack.openEndedBox)
+                file.writeInt(size.toInt())
+            }
+            val largeMdat = dataBytes + 8 > 0xffffffffL
+            val headerBytes = if (largeMdat) 16 else 8
+            file.seek(mdatStart)
+            if (largeMdat) {
+                file.writeInt(1)
+                file.write("mdat".toByteArray(Charsets.US_ASCII))
+                file.writeLong(dataBytes + 16)
+            } else {
+                file.writeInt((dataBytes + 8).toInt())
+                file.write("mdat".toByteArray(Charsets.US_ASCII))
+            }
+            segments.zip(segmentTracks).forEach { (segment, track) ->
+                RandomAccessFile(segment, "r").use { copySamples(it, track, file) }
+            }
+
+            val moov = combinedMoov(targetTrack, segmentTracks, mdatStart + headerBytes)
+            file.write(moov)
+            file.fd.sync()
+
+            // The old moov becomes padding; until this write it is still the one read
+            file.seek(targetTrack.moovStart + 4)
+            file.write("free".toByteArray(Charsets.US_ASCII))
+            file.fd.sync()
+
+            val durationMs = segmentTracks.sumOf { it.mediaDuration } * 1000 / targetTrack.timescale
+            return Appended(durationMs, segmentTracks.sumOf { it.sizes.size }, file.length() - mdatStart)
+        }
+    }
+
+    /** File offset and size of every frame of the audio track in [file] */
+    internal fun frames(file: File): List<Pair<Long, Int>> = RandomAccessFile(file, "r").use { raf ->
+        val track = readTrack(raf)
+        track.offsets.indices.map { track.offsets[it] to track.sizes[it].toInt() }
+    }
+
+    /** Duration of the audio track in [file], in milliseconds */
+    internal fun durationMs(file: File): Long = RandomAccessFile(file, "r").use { raf ->
+        val track = readTrack(raf)
+        track.mediaDuration * 1000 / track.timescale
+    }
+
+    private class Box(val type: String, var payload: ByteArray, val children: MutableList<Box>?) {
+        fun child(type: String): Box? = children?.firstOrNull { it.type == type }
+        fun path(vararg types: String): Box? = types.fold(this as Box?) { box, type -> box?.child(type) }
+    }
+
+    private class Track(
+        val moovStart: Long,
+        /** A last box whose size says "to the end of the file", or -1 */
+        val openEndedBox: Long,
+        val moov: Box,
+        val trak: Box,
+        val timescale: Long,
+        val mediaDuration: Long,
+        val formatKey: String,
+        val sizes: LongArray,
+        val offsets: LongArray,
+        /** stts as count, delta pairs */
+        val timeToSample: List<LongArray>,
+        val sampleToChunk: List<LongArray>,
+        val chunkOffsets: LongArray
+    )
+
+    private fun readTrack(file: RandomAccessFile): Track {
+        var position = 0L
+        var moovStart = -1L
+        var moovBytes: ByteArray? = null
+        var openEnded = -1L
+        val length = file.length()
+        while (position + 8 <= length) {
+            file.seek(position)
+            var size = file.readInt().toLong() and 0xffffffffL
+            val type = ByteArray(4).also { file.readFully(it) }.toString(Charsets.US_ASCII)
+            var header = 8
+            if (size == 1L) {
+                size = file.readLong()
+                header = 16
+            } else if (size == 0L) {
+                size = length - position
+                openEnded = position
+            }
+            if (size < header || position + size > length) throw IOException("Damaged box $type at $position")
+            // Readers take the first moov, which stays the old one until it is renamed
+            if (type == "moov" && moovStart < 0) {
+                moovStart = position
+                moovBytes = ByteArray((size - header).toInt()).also { file.readFully(it) }
+            }
+            position += size
+        }
+        val moov = Box("moov", ByteArray(0), parseChildren(moovBytes ?: throw IOException("No moov box")))
+        val traks = moov.children!!.filter { it.type == "trak" }
+        if (traks.size != 1) throw Unsupported("Expected one track, found ${traks.size}")
+        val trak = traks[0]
+        val stbl = trak.path("mdia", "minf", "stbl") ?: throw IOException("No sample table")
+
+        val mdhd = ByteBuffer.wrap(trak.path("mdia", "mdhd")!!.payload)
+        val mdhdVersion = mdhd.get(0).toInt()
+        val timescale = mdhd.getInt(if (mdhdVersion == 1) 20 else 12).toLong() and 0xffffffffL
+
+        val sizes = readSampleSizes(stbl.child("stsz")?.payload ?: throw Unsupported("No stsz"))
+        val timeToSample = readEntries(stbl.child("stts")!!.payload, 2)
+        val sampleToChunk = readEntries(stbl.child("stsc")!!.payload, 3)
+        val chunkOffsets = stbl.child("stco")?.let { readChunkOffsets(it.payload, 4) }
+            ?: stbl.child("co64")?.let { readChunkOffsets(it.payload, 8) }
+            ?: throw IOException("No chunk offsets")
+
+        // Frame offsets from chunk offsets, chunk sizes and frame sizes
+        val offsets = LongArray(sizes.size)
+        var sample = 0
+        var entry = 0
+        for (chunk in chunkOffsets.indices) {
+            while (entry + 1 < sampleToChunk.size && sampleToChunk[entry + 1][0] <= chunk + 1) entry++
+            var offset = chunkOffsets[chunk]
+            repeat(sampleToChunk[entry][1].toInt()) {
+                if (sample < sizes.size) {
+                    offsets[sample] = offset
+                    offset += sizes[sample]
+                    sample++
+                }
+            }
+        }
+        if (sample != sizes.size) throw IOException("Sample table covers $sample of ${sizes.size} frames")
+
+        return Track(
+            moovStart = moovStart,
+            openEndedBox = openEnded,
+            moov = moov,
+            trak = trak,
+            timescale = timescale,
+            mediaDuration = timeToSample.sumOf { it[0] * it[1] },
+            formatKey = formatKey(stbl.child("stsd")!!.payload),
+            sizes = sizes,
+            offsets = offsets,
+            timeToSample = timeToSample,
+            sampleToChunk = sampleToChunk,
+            chunkOffsets = chunkOffsets
+        )
+    }
+
+    private fun parseChildren(bytes: ByteArray): MutableList<Box> {
+        val boxes = ArrayList<Box>()
+        val buffer = ByteBuffer.wrap(bytes)
+        while (buffer.remaining() >= 8) {
+            val start = buffer.position()
+            var size = buffer.getInt().toLong() and 0xffffffffL
+            val type = ByteArray(4).also { buffer.get(it) }.toString(Charsets.US_ASCII)
+            if (size == 1L) size = buffer.getLong()
+            if (size == 0L) size = (bytes.size - start).toLong()
+            val header = buffer.position() - start
+            if (size < header || start + size > bytes.size) throw IOException("Damaged box $type in moov")
+            val payload = bytes.copyOfRange(start + header, (start + size).toInt())
+            boxes.add(if (type in CONTAINERS) Box(type, ByteArray(0), parseChildren(payload)) else Box(type, payload, null))
+            buffer.position((start + size).toInt())
+        }
+        return boxes
+    }
+
+    private fun serialize(box: Box): ByteArray {
+        val body = box.children?.let { children ->
+            val parts = children.map { serialize(it) }
+            ByteArray(parts.sumOf { it.size }).also { out ->
+                var at = 0
+                for (part in parts) {
+                    System.arraycopy(part, 0, out, at, part.size)
+                    at += part.size
+                }
+            }
+        } ?: box.payload
+        return ByteBuffer.allocate(8 + body.size)
+            .putInt(8 + body.size)
+            .put(box.type.toByteArray(Charsets.US_ASCII))
+            .put(body)
+            .array()
+    }
+
+    private fun readSampleSizes(payload: ByteArray): LongArray {
+        val buffer = ByteBuffer.wrap(payload, 4, payload.size - 4)
+        val uniform = buffer.getInt().toLong() and 0xffffffffL
+        val count = buffer.getInt()
+        return if (uniform != 0L) LongArray(count) { uniform } else LongArray(count) { buffer.getInt().toLong() and 0xffffffffL }
+    }
+
+    private fun readEntries(payload: ByteArray, fields: Int): List<LongArray> {
+        val buffer = ByteBuffer.wrap(payload, 4, payload.size - 4)
+        return List(buffer.getInt()) { LongArray(fields) { buffer.getInt().toLong() and 0xffffffffL } }
+    }
+
+    private fun readChunkOffsets(payload: ByteArray, width: Int): LongArray {
+        val buffer = ByteBuffer.wrap(payload, 4, payload.size - 4)
+        return LongArray(buffer.getInt()) { if (width == 8) buffer.getLong() else buffer.getInt().toLong() and 0xffffffffL }
+    }
+
+    /**
+     * The parts of a sample description that decide whether frames can be mixed:
+     * codec, channels, rate, and for AAC the decoder configuration, but not the
+     * bit rate statistics that differ from file to file
+     */
+    private fun formatKey(stsd: ByteArray): String {
+        val buffer = ByteBuffer.wrap(stsd)
+        if (buffer.getInt(4) != 1) throw Unsupported("Expected one sample description")
+        val entryStart = 8
+        val entrySize = buffer.getInt(entryStart)
+        val codec = String(stsd, entryStart + 4, 4, Charsets.US_ASCII)
+        val channels = buffer.getShort(entryStart + 24)
+        val sampleRate = buffer.getInt(entryStart + 32) ushr 16
+        val decoderConfig = if (codec == "mp4a") {
+            decoderSpecificInfo(stsd.copyOfRange(entryStart + 36, entryStart + entrySize))
+        } else {
+            ""
+        }
+        return "$codec/$channels/$sampleRate/$decoderConfig"
+    }
+
+    /** Hex of the DecoderSpecificInfo inside the esds box among [boxes] */
+    private fun decoderSpecificInfo(boxes: ByteArray): String {
+        val esds = parseChildren(boxes).firstOrNull { it.type == "esds" } ?: return ""
+        val data = esds.payload
+        var at = 4
+        while (at < data.size) {
+            val tag = data[at++].toInt() and 0xff
+            var length = 0
+            do {
+                val byte = data[at++].toInt() and 0xff
+                length = (length shl 7) or (byte and 0x7f)
+            } while (byte and 0x80 != 0)
+            when (tag) {
+                // ES_Descriptor: ES_ID and flags, then nested descriptors
+                0x03 -> {
+                    val flags = data[at + 2].toInt() and 0xff
+                    at += 3
+                    if (flags and 0x80 != 0) at += 2
+                    if (flags and 0x40 != 0) at += 1 + (data[at].toInt() and 0xff)
+                    if (flags and 0x20 != 0) at += 2
+                }
+                // DecoderConfigDescriptor: 13 bytes, then the DecoderSpecificInfo
+                0x04 -> at += 13
+                0x05 -> return data.copyOfRange(at, at + length).joinToString("") { "%02x".format(it) }
+                else -> at += length
+            }
+        }
+        return ""
+    }
+
+    private fun copySamples(source: RandomAccessFile, track: Track, target: RandomAccessFile) {
+        val channel = source.channel
+        val out = target.channel
+        out.position(target.filePointer)
+        // Frames are usually contiguous within a chunk, so copy runs rather than frames
+        var index = 0
+        while (index < track.sizes.size) {
+            val start = track.offsets[index]
+            var end = start + track.sizes[index]
+            index++
+            while (index < track.sizes.size && track.offsets[index] == end) {
+                end += track.sizes[index]
+                index++
+            }
+            var copied = 0L
+            while (copied < end - start) {
+                val n = channel.transferTo(start + copied, end - start - copied, out)
+                if (n <= 0) throw IOException("Short read copying frames")
+                copied += n
+            }
+        }
+        target.seek(out.position())
+    }
+
+    private fun combinedMoov(target: Track, segments: List<Track>, dataStart: Long): ByteArray {
+        val stbl = target.trak.path("mdia", "minf", "stbl")!!
+        val newSizes = LongArray(segments.sumOf { it.sizes.size })
+        var filled = 0
+        for (segment in segments) {
+            System.arraycopy(segment.sizes, 0, newSizes, filled, segment.sizes.size)
+            filled += segment.sizes.size
+        }
+        val newDuration = segments.sumOf { it.mediaDuration }
+
+        // Sizes
+        val sizes = target.sizes + newSizes
+        val uniform = sizes.isNotEmpty() && sizes.all { it == sizes[0] }
+        stbl.replace("stsz", ByteBuffer.allocate(12 + if (uniform) 0 else 4 * sizes.size).apply {
+            putInt(0)
+            putInt(if (uniform) sizes[0].toInt() else 0)
+            putInt(sizes.size)
+            if (!uniform) sizes.forEach { putInt(it.toInt()) }
+        }.array())
+
+        // Durations, merging the join when both sides use the same frame duration
+        val timeToSample = target.timeToSample.map { it.copyOf() }.toMutableList()
+        for (entry in segments.flatMap { it.timeToSample }) {
+            val last = timeToSample.lastOrNull()
+            if (last != null && last[1] == entry[1]) last[0] += entry[0] else timeToSample.add(entry.copyOf())
+        }
+        stbl.replace("stts", entries(timeToSample))
+
+        // New frames go in chunks of CHUNK_SAMPLES, laid out back to back
+        val sampleToChunk = target.sampleToChunk.map { it.copyOf() }.toMutableList()
+        val chunkOffsets = ArrayList<Long>(target.chunkOffsets.size + newSizes.size / CHUNK_SAMPLES + 1)
+        target.chunkOffsets.forEach { chunkOffsets.add(it) }
+        var offset = dataStart
+        var index = 0
+        while (index < newSizes.size) {
+            val count = minOf(CHUNK_SAMPLES, newSizes.size - index)
+            if (sampleToChunk.last()[1] != count.toLong()) {
+                sampleToChunk.add(longArrayOf(chunkOffsets.size + 1L, count.toLong(), 1))
+            }
+            chunkOffsets.add(offset)
+            for (i in index until index + count) offset += newSizes[i]
+            index += count
+        }
+        stbl.replace("stsc", entries(sampleToChunk))
+
+        val wide = chunkOffsets.last() > 0xffffffffL
+        stbl.children!!.removeAll { it.type == "stco" || it.type == "co64" }
+        stbl.children.add(Box(if (wide) "co64" else "stco", ByteBuffer.allocate(8 + chunkOffsets.size * if (wide) 8 else 4).apply {
+            putInt(0)
+            putInt(chunkOffsets.size)
+            chunkOffsets.forEach { if (wide) putLong(it) else putInt(it.toInt()) }
+        }.array(), null))
+
+        // Durations in the media and movie timescales
+        addDuration(target.trak.path("mdia", "mdhd")!!, newDuration)
+        val mvhd = target.moov.child("mvhd")!!
+        val movieScale = ByteBuffer.wrap(mvhd.payload).let { it.getInt(if (it.get(0).toInt() == 1) 20 else 12).toLong() and 0xffffffffL }
+        val movieDuration = newDuration * movieScale / target.timescale
+        addDuration(mvhd, movieDuration)
+        addDuration(target.trak.child("tkhd")!!, movieDuration)
+        target.trak.path("edts", "elst")?.let { extendLastEdit(it, movieDuration) }
+
+        return serialize(target.moov)
+    }
+
+    private fun Box.replace(type: String, payload: ByteArray) {
+        val box = child(type) ?: throw IOException("No $type box")
+        box.payload = payload
+    }
+
+    private fun entries(rows: List<LongArray>): ByteArray {
+        val fields = rows.firstOrNull()?.size ?: 0
+        return ByteBuffer.allocate(8 + rows.size * fields * 4).apply {
+            putInt(0)
+            putInt(rows.size)
+            rows.forEach { row -> row.forEach { putInt(it.toInt()) } }
+        }.array()
+    }
+
+    /** Add to the duration field of an mvhd, tkhd or mdhd box, in either version */
+    private fun addDuration(box: Box, amount: Long) {
+        val buffer = ByteBuffer.wrap(box.payload)
+        val version = buffer.get(0).toInt()
+        val at = when (box.type) {
+            "tkhd" -> if (version == 1) 28 else 20
+            else -> if (version == 1) 24 else 16
+        }
+        if (version == 1) {
+            buffer.putLong(at, buffer.getLong(at) + amount)
+        } else {
+            val total = (buffer.getInt(at).toLong() and 0xffffffffL) + amount
+            if (total > 0xffffffffL) throw Unsupported("Combined duration too long for a version 0 ${box.type}")
+            buffer.putInt(at, total.toInt())
+        }
+    }
+
+    private fun extendLastEdit(elst: Box, amount: Long) {
+        val buffer = ByteBuffer.wrap(elst.payload)
+        val version = buffer.get(0).toInt()
+        val count = buffer.getInt(4)
+        if (count == 0) return
+        val entryBytes = if (version == 1) 20 else 12
+        val at = 8 + (count - 1) * entryBytes
+        if (version == 1) buffer.putLong(at, buffer.getLong(at) + amount)
+        else buffer.putInt(at, ((buffer.getInt(at).toLong() and 0xffffffffL) + amount).toInt())
+    }
+}
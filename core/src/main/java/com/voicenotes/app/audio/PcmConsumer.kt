@@ -0,0 +1,23 @@
+package com.voicenotes.app.audio
+
+/**
+ * Something that processes captured audio: an encoder, a level meter, voice activity
+ * detection or a speech-to-text tap. Each consumer runs on its own thread and reads
+ * the capture ring at its own pace.
+ */
+interface PcmConsumer {
+
+    fun onStart(format: PcmFormat) {}
+
+    /**
+     * Samples [offset, offset + length) of [samples], in capture order. The array is
+     * reused for the next block, so copy anything that must outlive the call.
+     */
+    fun onPcm(samples: ShortArray, offset: Int, length: Int)
+
+    /**
+     * The capture ended and every sample this consumer could read was delivered.
+     * [droppedSamples] is how much it missed by falling more than a ring behind.
+     */
+    fun onStop(droppedSamples: Long) {}
+}
@@ -0,0 +1,28 @@
+package com.voicenotes.app.audio
+
+/**
+ * Shape of 16-bit PCM audio. Multi-channel audio is interleaved, so one frame is
+ * [channels] samples.
+ */
+data class PcmFormat(
+    val sampleRate: Int,
+    val channels: Int = 1
+) {
+    init {
+        require(sampleRate > 0) { "Bad sample rate $sampleRate" }
+        require(channels in 1..2) { "Only mono and stereo are supported, got $channels channels" }
+    }
+
+    val samplesPerSecond: Int get() = sampleRate * channels
+
+    val bytesPerSecond: Int get() = samplesPerSecond * BYTES_PER_SAMPLE
+
+    /** Whole frames covering [millis], in samples */
+    fun samplesFor(millis: Int): Int = (sampleRate.toLong() * millis / 1000).toInt() * channels
+
+    fun millisFor(samples: Long): Long = samples * 1000 / samplesPerSecond
+
+    companion object {
+        const val BYTES_PER_SAMPLE = 2
+    }
+}
@@ -0,0 +1,153 @@
+package com.voicenotes.app.audio
+
+import java.util.Arrays
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+/**
+ * Converts audio to mono at [targetRate] on its way to [downstream]: channels are
+ * averaged, then resampled with a polyphase windowed-sinc filter.
+ *
+ * The rate ratio is reduced to up/down integers, and the filter is tabulated once for
+ * every output phase, so each output sample is one dot product. When downsampling
+ * the cutoff drops to [ROLLOFF] of the new Nyquist frequency, so nothing above it
+ * folds back into speech. Working buffers grow to the largest block seen and are
+ * then reused, so a steady stream allocates nothing.
+ */
+class PcmResampler(
+    private val targetRate: Int,
+    private val downstream: PcmConsumer
+) : PcmConsumer {
+
+    private var channels = 1
+    private var up = 1
+    private var down = 1
+    private var phases = 1
+    private var taps = 0
+    private var half = 0
+    private var filter = FloatArray(0)
+
+    // Mono input, from half a filter before the next output onwards
+    private var input = FloatArray(0)
+    private var inputCount = 0
+    // The next output falls at input[position] + fraction / up
+    private var position = 0
+    private var fraction = 0
+    private var inputSamples = 0L
+    private var outputSamples = 0L
+    private var output = ShortArray(0)
+
+    override fun onStart(format: PcmFormat) {
+        channels = format.channels
+        val divisor = gcd(format.sampleRate, targetRate)
+        up = targetRate / divisor
+        down = format.sampleRate / divisor
+        phases = minOf(up, MAX_PHASES)
+
+        // At the same rate the filter reduces to copying each sample
+        val cutoff = if (up == down) 1.0 else minOf(1.0, up.toDouble() / down) * ROLLOFF
+        half = if (up == down) 1 else (ZERO_CROSSINGS / cutoff).toInt() + 1
+        taps = 2 * half
+        filter = FloatArray(phases * taps)
+        for (phase in 0 until phases) {
+            var sum = 0.0
+            for (tap in 0 until taps) {
+                // Distance from the output point to this tap's input sample
+                val x = phase.toDouble() / phases + half - 1 - tap
+                val value = cutoff * sinc(cutoff * x) * blackman(x / half)
+                filter[phase * taps + tap] = value.toFloat()
+                sum += value
+            }
+            // Unity gain at DC for every phase
+            for (tap in 0 until taps) filter[phase * taps + tap] = (filter[phase * taps + tap] / sum).toFloat()
+        }
+
+        // Silence before the first sample, so the first output has a full filter
+        input = FloatArray(taps * 4)
+        inputCount = half - 1
+        position = half - 1
+        fraction = 0
+        inputSamples = 0
+        outputSamples = 0
+        downstream.onStart(PcmFormat(targetRate))
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        val frames = length / channels
+        ensureInput(frames)
+        var i = offset
+        for (frame in 0 until frames) {
+            var sum = 0
+            for (channel in 0 until channels) sum += samples[i++]
+            input[inputCount++] = sum.toFloat() / channels
+        }
+        inputSamples += frames
+        produce(inputCount - half)
+    }
+
+    override fun onStop(droppedSamples: Long) {
+        // Let the filter run past the last sample, then stop at the matching output
+        ensureInput(half)
+        Arrays.fill(input, inputCount, inputCount + half, 0f)
+        inputCount += half
+        produce(inputCount - half)
+        downstream.onStop(droppedSamples * up / down / channels)
+    }
+
+    /** Outputs whose filter ends before [limit] + half; then drop consumed input */
+    private fun produce(limit: Int) {
+        val expected = (inputSamples * up + down - 1) / down
+        var count = 0
+        while (position < limit && outputSamples < expected) {
+            if (count == output.size) {
+                downstream.onPcm(output, 0, count)
+                count = 0
+            }
+            val row = (fraction.toLong() * phases / up).toInt() * taps
+            val start = position - half + 1
+            var sum = 0f
+            for (tap in 0 until taps) sum += input[start + tap] * filter[row + tap]
+            output[count++] = sum.roundToInt().coerceIn(Short.MIN_VALUE.toInt(), Short.MAX_VALUE.toInt()).toShort()
+            outputSamples++
+
+            fraction += down
+            position += fraction / up
+            fraction %= up
+        }
+        if (count > 0) downstream.onPcm(output, 0, count)
+
+        val drop = minOf(position - (half - 1), inputCount)
+        if (drop > 0) {
+            System.arraycopy(input, drop, input, 0, inputCount - drop)
+            inputCount -= drop
+            position -= drop
+        }
+    }
+
+    private fun ensureInput(frames: Int) {
+        if (inputCount + frames > input.size) input = input.copyOf(inputCount + frames + taps)
+        val outputs = (frames.toLong() * up / down).toInt() + 2
+        if (outputs > output.size) output = ShortArray(outputs)
+    }
+
+    private fun gcd(a: Int, b: Int): Int = if (b == 0) a else gcd(b, a % b)
+
+    private fun sinc(x: Double): Double = if (x == 0.0) 1.0 else sin(PI * x) / (PI * x)
+
+    /** Blackman window over -1..1 */
+    private fun blackman(x: Double): Double {
+        if (x <= -1 || x >= 1) return 0.0
+        val t = PI * (x + 1)
+        return 0.42 - 0.5 * cos(t) + 0.08 * cos(2 * t)
+    }
+
+    companion object {
+        /** Passband edge as a share of the lower Nyquist frequency */
+        const val ROLLOFF = 0.9
+        private const val ZERO_CROSSINGS = 16
+        /** Above this many phases, positions are rounded down to a tabulated one */
+        private const val MAX_PHASES = 1024
+    }
+}
@@ -0,0 +1,117 @@
+package com.voicenotes.app.audio
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Preallocated ring of PCM samples with one writer and any number of readers.
+ *
+ * Positions are total samples since the start and never wrap; a position maps to
+ * slot `position and mask`. The writer never waits for readers. Before it overwrites
+ * slots it moves every reader that still needs them forward with a CAS and counts
+ * the skipped samples as an overrun of that reader. A reader copies out of the ring
+ * and then commits its new position with a CAS from the position it started at; if
+ * the writer moved it in the meantime the copy may be torn, so it is discarded and
+ * the read retried from the new position. Neither side locks or allocates.
+ */
+class PcmRingBuffer(val capacity: Int) {
+
+    init {
+        require(capacity > 0 && capacity and (capacity - 1) == 0) { "Capacity must be a power of two, got $capacity" }
+    }
+
+    private val data = ShortArray(capacity)
+    private val mask = capacity - 1
+
+    /** Samples published so far; slots below this position hold complete data */
+    private val written = AtomicLong()
+
+    @Volatile
+    private var readers = emptyArray<Reader>()
+
+    val writtenSamples: Long get() = written.get()
+
+    /**
+     * A new reader that starts at the current write position
+     */
+    @Synchronized
+    fun newReader(): Reader {
+        val reader = Reader(written.get())
+        readers = readers + reader
+        return reader
+    }
+
+    /**
+     * Publish [length] samples from [source]. Single writer only.
+     */
+    fun write(source: ShortArray, offset: Int, length: Int) {
+        require(length in 0..capacity) { "Block of $length samples does not fit a ring of $capacity" }
+        if (length == 0) return
+        val start = written.get()
+        val end = start + length
+
+        // Slots about to be overwritten hold positions below this
+        val limit = end - capacity
+        for (reader in readers) reader.moveTo(limit)
+
+        val slot = (start and mask.toLong()).toInt()
+        val first = minOf(length, capacity - slot)
+        System.arraycopy(source, offset, data, slot, first)
+        if (first < length) System.arraycopy(source, offset + first, data, 0, length - first)
+        written.lazySet(end)
+    }
+
+    /**
+     * One consumer's view of the ring
+     */
+    inner class Reader internal constructor(start: Long) {
+
+        private val position = AtomicLong(start)
+
+        /** Times the writer had to skip this reader ahead, written by the writer only */
+        @Volatile
+        var overruns = 0L
+            private set
+
+        /** Samples this reader never saw because of overruns */
+        @Volatile
+        var droppedSamples = 0L
+            private set
+
+        /** Samples ready to read; never more than the capacity */
+        fun available(): Int = maxOf(0L, written.get() - position.get()).toInt()
+
+        /**
+         * Copy up to [maxLength] of the oldest unread samples into [destination];
+         * returns the number copied, 0 when the reader has caught up
+         */
+        fun read(destination: ShortArray, offset: Int, maxLength: Int): Int {
+            while (true) {
+                val from = position.get()
+                val ready = written.get() - from
+                if (ready <= 0) return 0
+                val length = minOf(ready, maxLength.toLong()).toInt()
+
+                val slot = (from and mask.toLong()).toInt()
+                val first = minOf(length, capacity - slot)
+                System.arraycopy(data, slot, destination, offset, first)
+                if (first < length) System.arraycopy(data, 0, destination, offset + first, length - first)
+
+                if (position.compareAndSet(from, from + length)) return length
+                // Overrun while copying: the writer moved this reader on, retry from there
+            }
+        }
+
+        /** Writer side: make sure this reader no longer needs anything below [limit] */
+        internal fun moveTo(limit: Long) {
+            while (true) {
+                val current = position.get()
+                if (current >= limit) return
+                if (position.compareAndSet(current, limit)) {
+                    overruns++
+                    droppedSamples += limit - current
+                    return
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.voicenotes.app.audio
+
+import java.io.IOException
+
+/**
+ * Where a [CaptureEngine] gets its samples: the microphone, or a recording replayed in tests
+ */
+interface PcmSource {
+
+    val format: PcmFormat
+
+    /**
+     * Prepare to deliver audio. Called on the caller's thread, so failures (no
+     * microphone, permission revoked) surface before the engine starts.
+     */
+    fun open()
+
+    /**
+     * Block until samples are available and copy up to [length] of them into [buffer].
+     * Returns the number copied, or a negative value at the end of the audio or on error.
+     * Called on the capture thread only.
+     */
+    fun read(buffer: ShortArray, offset: Int, length: Int): Int
+
+    /**
+     * Stop producing audio until [resume], e.g. to release the microphone while a
+     * recording is paused. Called on the capture thread only.
+     */
+    fun pause() {}
+
+    fun resume() {}
+
+    fun close()
+}
+
+/**
+ * Open this source and feed everything it delivers to [consumer] on the calling
+ * thread, in blocks of [blockMs] through one reused buffer; throws if the source
+ * ends with an error
+ */
+fun PcmSource.drainTo(consumer: PcmConsumer, blockMs: Int = 200) {
+    val block = ShortArray(format.samplesFor(blockMs) * format.channels)
+    open()
+    try {
+        consumer.onStart(format)
+        while (true) {
+            val read = read(block, 0, block.size)
+            if (read < 0) {
+                if (read != CaptureEngine.END_OF_STREAM) throw IOException("Source failed ($read)")
+                break
+            }
+            consumer.onPcm(block, 0, read)
+        }
+        consumer.onStop(0)
+    } finally {
+        close()
+    }
+}
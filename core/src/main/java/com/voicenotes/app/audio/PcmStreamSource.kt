@@ -0,0 +1,127 @@
+package com.voicenotes.app.audio
+
+import java.io.DataInputStream
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Replays 16-bit little-endian PCM from a stream, either a WAV file or raw samples in
+ * a known [PcmFormat]. With [realTime] it delivers audio no faster than it was
+ * recorded, as a microphone would, so consumers see the same timing as on a device.
+ */
+class PcmStreamSource private constructor(
+    private val input: InputStream,
+    override val format: PcmFormat,
+    private val realTime: Boolean
+) : PcmSource {
+
+    private var bytes = ByteArray(0)
+    private var deliveredSamples = 0L
+    private var startNanos = 0L
+
+    override fun open() {
+        startNanos = System.nanoTime()
+    }
+
+    override fun read(buffer: ShortArray, offset: Int, length: Int): Int {
+        if (bytes.size < length * PcmFormat.BYTES_PER_SAMPLE) bytes = ByteArray(length * PcmFormat.BYTES_PER_SAMPLE)
+        if (realTime) waitUntilDue(deliveredSamples + length)
+
+        // Fill whole samples; a short read from the stream is topped up
+        var filled = 0
+        val wanted = length * PcmFormat.BYTES_PER_SAMPLE
+        while (filled < wanted) {
+            val n = input.read(bytes, filled, wanted - filled)
+            if (n < 0) break
+            filled += n
+        }
+        val samples = filled / PcmFormat.BYTES_PER_SAMPLE
+        if (samples == 0) return CaptureEngine.END_OF_STREAM
+        for (i in 0 until samples) {
+            val low = bytes[2 * i].toInt() and 0xff
+            val high = bytes[2 * i + 1].toInt()
+            buffer[offset + i] = ((high shl 8) or low).toShort()
+        }
+        deliveredSamples += samples
+        return samples
+    }
+
+    override fun close() {
+        input.close()
+    }
+
+    private fun waitUntilDue(samples: Long) {
+        val dueNanos = startNanos + samples * 1_000_000_000L / format.samplesPerSecond
+        while (true) {
+            val wait = dueNanos - System.nanoTime()
+            if (wait <= 0) return
+            Thread.sleep(wait / 1_000_000, (wait % 1_000_000).toInt())
+        }
+    }
+
+    companion object {
+
+        fun raw(input: InputStream, format: PcmFormat, realTime: Boolean = false): PcmStreamSource {
+            return PcmStreamSource(input, format, realTime)
+        }
+
+        /**
+         * Read the header of a 16-bit PCM WAV stream, leaving [input] at the first sample
+         */
+        fun wav(input: InputStream, realTime: Boolean = false): PcmStreamSource {
+            val data = DataInputStream(input)
+            try {
+                if (data.readTag() != "RIFF") throw IOException("Not a RIFF file")
+                data.readIntLe()
+                if (data.readTag() != "WAVE") throw IOException("Not a WAVE file")
+                var format: PcmFormat? = null
+                while (true) {
+                    val chunk = data.readTag()
+                    val size = data.readIntLe()
+                    when (chunk) {
+                        "fmt " -> {
+                            val encoding = data.readShortLe()
+                            val channels = data.readShortLe()
+                            val sampleRate = data.readIntLe()
+                            data.skipFully(6)
+                            val bits = data.readShortLe()
+                            if (encoding != 1 || bits != 16) throw IOException("Only 16-bit PCM WAV is supported")
+                            data.skipFully(size - 16)
+                            format = PcmFormat(sampleRate, channels)
+                        }
+                        "data" -> {
+                            return PcmStreamSource(
+                                input,
+                                format ?: throw IOException("WAV data before its format"),
+                                realTime
+                            )
+                        }
+                        else -> data.skipFully(size + (size and 1))
+                    }
+                }
+            } catch (e: EOFException) {
+                throw IOException("Truncated WAV header", e)
+            }
+        }
+
+        private fun DataInputStream.readTag(): String {
+            val tag = ByteArray(4)
+            readFully(tag)
+            return String(tag, Charsets.US_ASCII)
+        }
+
+        private fun DataInputStream.readIntLe(): Int = Integer.reverseBytes(readInt())
+
+        private fun DataInputStream.readShortLe(): Int = java.lang.Short.reverseBytes(readShort()).toInt() and 0xffff
+
+        private fun DataInputStream.skipFully(count: Int) {
+            var left = count
+            while (left > 0) {
+                val skipped = skipBytes(left)
+                if (skipped <= 0) throw EOFException()
+                left -= skipped
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.voicenotes.app.audio
+
+/**
+ * How a recording is captured and encoded. The speech profiles capture 16 kHz mono,
+ * the rate speech recognizers work at and voice activity detection is tuned for,
+ * and cost about a quarter of [HIGH_FIDELITY] per minute or less.
+ */
+enum class RecordingProfile(
+    val label: String,
+    val description: String,
+    /** MediaCodec encoder type */
+    val mimeType: String,
+    val container: Container,
+    val sampleRate: Int,
+    val bitRate: Int,
+    /** Samples per channel in one encoded frame */
+    val frameSamples: Int,
+    /** First Android version that can both encode and mux it */
+    val minSdk: Int
+) {
+    SPEECH_OPUS("Speech (Opus)", "Smallest files, clear voice", "audio/opus", Container.OGG, 16_000, 24_000, 320, 29),
+    SPEECH_AAC("Speech (AAC)", "Small files that play anywhere", "audio/mp4a-latm", Container.MPEG_4, 16_000, 32_000, 1024, 23),
+    SPEECH_AMR_WB("Speech (AMR-WB)", "Phone-call codec, very small files", "audio/amr-wb", Container.THREE_GPP, 16_000, 23_850, 320, 26),
+    HIGH_FIDELITY("High fidelity", "44.1 kHz AAC for music and ambience", "audio/mp4a-latm", Container.MPEG_4, 44_100, 128_000, 1024, 23);
+
+    enum class Container(val extension: String, val overheadBytesPerFrame: Int) {
+        // One sample-size table entry per frame
+        MPEG_4("m4a", 4),
+        THREE_GPP("3gp", 4),
+        // Lacing byte per packet plus a 27-byte page header every ~50 packets
+        OGG("ogg", 2);
+
+        companion object {
+            /** The container that holds audio of [mimeType] without re-encoding */
+            fun forMime(mimeType: String): Container = when (mimeType) {
+                "audio/opus" -> OGG
+                "audio/amr-wb", "audio/3gpp" -> THREE_GPP
+                else -> MPEG_4
+            }
+        }
+    }
+
+    val format: PcmFormat get() = PcmFormat(sampleRate, channels = 1)
+
+    /** Encoded size of a minute, from the bit rate and the container's per-frame cost */
+    val bytesPerMinute: Long
+        get() {
+            val framesPerMinute = 60L * sampleRate / frameSamples
+            return bitRate / 8L * 60 + framesPerMinute * container.overheadBytesPerFrame
+        }
+
+    companion object {
+        /** Preferred first; AAC needs nothing beyond the minimum SDK */
+        private val DEFAULT_ORDER = listOf(SPEECH_OPUS, SPEECH_AAC)
+
+        /**
+         * The profile new recordings use until one is chosen: the smallest speech
+         * profile the device can encode
+         */
+        fun defaultFor(isSupported: (RecordingProfile) -> Boolean): RecordingProfile =
+            DEFAULT_ORDER.firstOrNull(isSupported) ?: HIGH_FIDELITY
+
+        fun fromName(name: String?): RecordingProfile? = values().firstOrNull { it.name == name }
+    }
+}
@@ -0,0 +1,63 @@
+package com.voicenotes.app.audio
+
+import java.io.File
+import java.io.IOException
+
+/**
+ * A recording kept, while it is being made, as a directory of short segment files
+ * that are each complete on their own. A segment is written under a `.partial`
+ * name and renamed once its muxer has finished it, so if the process dies only the
+ * segment being written, at most [segmentMs] of audio, is lost; the finished ones
+ * are joined into the recording when it stops, or when it is recovered.
+ *
+ * [onSegment] is told of every finished segment, with the recording's length up to
+ * its end, e.g. to checkpoint the recording.
+ */
+class SegmentedRecording(
+    val directory: File,
+    val extension: String,
+    val segmentMs: Long = SEGMENT_MS,
+    private val onSegment: (index: Int, file: File, endMs: Long) -> Unit = { _, _, _ -> }
+) {
+
+    /** Where segment [index] is written */
+    fun partialFile(index: Int): File {
+        if (!directory.isDirectory && !directory.mkdirs()) throw IOException("Cannot create ${directory.path}")
+        return File(directory, name(index) + PARTIAL_SUFFIX)
+    }
+
+    /** Segment [index] has been written in full */
+    fun complete(index: Int, endMs: Long): File {
+        val file = File(directory, name(index))
+        if (!partialFile(index).renameTo(file)) throw IOException("Could not finish segment ${file.name}")
+        onSegment(index, file, endMs)
+        return file
+    }
+
+    /** A segment that was never finished, e.g. one with no audio in it */
+    fun discard(index: Int) {
+        partialFile(index).delete()
+    }
+
+    /** The finished segments, in recording order */
+    fun completeSegments(): List<File> =
+        directory.listFiles { file -> file.isFile && file.name.endsWith(".$extension") }
+            ?.sortedBy { it.name }
+            .orEmpty()
+
+    fun delete() {
+        directory.deleteRecursively()
+    }
+
+    // Zero-padded so names sort in recording order
+    private fun name(index: Int) = "%06d.%s".format(index, extension)
+
+    companion object {
+        /** At most this much audio is lost if the process dies while recording */
+        const val SEGMENT_MS = 5_000L
+        private const val PARTIAL_SUFFIX = ".partial"
+
+        /** The segment directory of a recording that will be written to [output] */
+        fun directoryFor(output: File): File = File(output.path + ".segments")
+    }
+}
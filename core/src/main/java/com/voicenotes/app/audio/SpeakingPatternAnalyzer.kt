@@ -0,0 +1,125 @@
+package com.voicenotes.app.audio
+
+import com.voicenotes.app.data.SpeakingPatterns
+
+/**
+ * Measures how a recording was spoken from its audio: voiced time, and every pause
+ * between stretches of speech with its length.
+ *
+ * Works on the raw decisions of a [SpeechFrameClassifier], which are finer than
+ * [VoiceActivityDetector] segments: those bridge pauses on purpose, this counts
+ * them. A speech run shorter than [MIN_RUN_FRAMES] (a click, a breath) does not end
+ * a pause, and a gap shorter than [MIN_PAUSE_MS] is part of a word, not a pause.
+ * Silence before the first and after the last speech is not a pause.
+ *
+ * State is a few counters and a histogram, so memory does not depend on the length
+ * of the recording.
+ */
+class SpeakingPatternAnalyzer : PcmConsumer {
+
+    class Result(
+        val totalMs: Long,
+        val voicedMs: Long,
+        val pauseCount: Int,
+        val totalPauseMs: Long,
+        val longestPauseMs: Long,
+        /** Pause counts split at [SpeakingPatterns.PAUSE_BUCKET_BOUNDS] */
+        val pauseHistogram: List<Int>
+    ) {
+        val speechRatio: Double get() = if (totalMs > 0) voicedMs.toDouble() / totalMs else 0.0
+        val averagePauseMs: Double get() = if (pauseCount > 0) totalPauseMs.toDouble() / pauseCount else 0.0
+    }
+
+    private val bounds = SpeakingPatterns.PAUSE_BUCKET_BOUNDS
+    private val histogram = IntArray(bounds.size + 1)
+    private var runStart = 0L
+    private var runLength = 0
+    private var speechEnd = -1L
+    private var voicedFrames = 0L
+    private var pauseCount = 0
+    private var totalPauseFrames = 0L
+    private var longestPauseFrames = 0L
+
+    private val classifier = SpeechFrameClassifier { index, isSpeech -> onFrame(index, isSpeech) }
+
+    /** Complete once [onStop] has run */
+    @Volatile
+    var result: Result? = null
+        private set
+
+    override fun onStart(format: PcmFormat) {
+        histogram.fill(0)
+        runLength = 0
+        speechEnd = -1
+        voicedFrames = 0
+        pauseCount = 0
+        totalPauseFrames = 0
+        longestPauseFrames = 0
+        result = null
+        classifier.onStart(format)
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        classifier.onPcm(samples, offset, length)
+    }
+
+    override fun onStop(droppedSamples: Long) {
+        result = Result(
+            totalMs = classifier.analyzedMs,
+            voicedMs = voicedFrames * FRAME_MS,
+            pauseCount = pauseCount,
+            totalPauseMs = totalPauseFrames * FRAME_MS,
+            longestPauseMs = longestPauseFrames * FRAME_MS,
+            pauseHistogram = histogram.toList()
+        )
+    }
+
+    private fun onFrame(index: Long, isSpeech: Boolean) {
+        if (!isSpeech) {
+            runLength = 0
+            return
+        }
+        if (runLength == 0) runStart = index
+        runLength++
+        when {
+            runLength < MIN_RUN_FRAMES -> return
+            runLength == MIN_RUN_FRAMES -> {
+                // A confirmed run: the gap since the previous one may be a pause
+                if (speechEnd >= 0) countPause(runStart - speechEnd)
+                voicedFrames += MIN_RUN_FRAMES
+            }
+            else -> voicedFrames++
+        }
+        speechEnd = index + 1
+    }
+
+    private fun countPause(frames: Long) {
+        val millis = frames * FRAME_MS
+        if (millis < MIN_PAUSE_MS) {
+            // Too short to be a pause, so it is still speaking time
+            voicedFrames += frames
+            return
+        }
+        pauseCount++
+        totalPauseFrames += frames
+        if (frames > longestPauseFrames) longestPauseFrames = frames
+        var bucket = 0
+        while (bucket < bounds.size && millis >= bounds[bucket]) bucket++
+        histogram[bucket]++
+    }
+
+    companion object {
+        const val MIN_RUN_FRAMES = 2
+        const val MIN_PAUSE_MS = 250L
+        private const val FRAME_MS = SpeechFrameClassifier.FRAME_MS.toLong()
+
+        /**
+         * Analyze everything [source] delivers, on the calling thread
+         */
+        fun analyze(source: PcmSource): Result {
+            val analyzer = SpeakingPatternAnalyzer()
+            source.drainTo(analyzer)
+            return analyzer.result!!
+        }
+    }
+}
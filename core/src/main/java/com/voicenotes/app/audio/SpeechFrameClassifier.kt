@@ -0,0 +1,93 @@
+package com.voicenotes.app.audio
+
+import kotlin.math.log10
+
+/**
+ * Splits audio into 20 ms frames and decides for each whether it is speech, from
+ * its energy and zero-crossing rate.
+ *
+ * A frame well above an adaptive noise floor is voiced speech, and a frame only a
+ * little above it counts when its zero-crossing rate is high, which is how
+ * fricatives ("s", "f") look. The floor drops quickly to quieter frames and creeps
+ * up only on frames that are not speech, so it follows a changing room without
+ * rising into a long utterance. Decisions are raw: callers smooth them as they need.
+ */
+class SpeechFrameClassifier(private val listener: FrameListener) : PcmConsumer {
+
+    fun interface FrameListener {
+        fun onFrame(index: Long, isSpeech: Boolean)
+    }
+
+    private var sampleRate = 0
+    private var frameSamples = 0
+
+    // The frame being accumulated
+    private var frameFill = 0
+    private var frameSumSquares = 0.0
+    private var frameCrossings = 0
+    private var previousSample = 0
+
+    private var noiseFloorDb = Double.NaN
+
+    /** Complete frames classified so far */
+    var frames = 0L
+        private set
+
+    /** Length of the audio seen, in milliseconds */
+    val analyzedMs: Long get() = frames * FRAME_MS + frameFill * 1000L / maxOf(1, sampleRate)
+
+    override fun onStart(format: PcmFormat) {
+        sampleRate = format.samplesPerSecond * format.channels
+        frameSamples = format.samplesFor(FRAME_MS) * format.channels
+        frameFill = 0
+        frameSumSquares = 0.0
+        frameCrossings = 0
+        previousSample = 0
+        noiseFloorDb = Double.NaN
+        frames = 0
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        for (i in offset until offset + length) {
+            val sample = samples[i].toInt()
+            frameSumSquares += sample * sample
+            if ((sample >= 0) != (previousSample >= 0)) frameCrossings++
+            previousSample = sample
+            if (++frameFill == frameSamples) endFrame()
+        }
+    }
+
+    private fun endFrame() {
+        val energyDb = 10 * log10(frameSumSquares / frameSamples / FULL_SCALE_SQUARED + 1e-12)
+        val crossingRate = frameCrossings.toDouble() / frameSamples
+        frameFill = 0
+        frameSumSquares = 0.0
+        frameCrossings = 0
+
+        if (noiseFloorDb.isNaN()) noiseFloorDb = energyDb
+        val aboveFloor = energyDb - noiseFloorDb
+        val isSpeech = energyDb > MIN_SPEECH_DBFS &&
+            (aboveFloor > VOICED_MARGIN_DB || (aboveFloor > FRICATIVE_MARGIN_DB && crossingRate > FRICATIVE_CROSSING_RATE))
+
+        if (energyDb < noiseFloorDb) {
+            noiseFloorDb += (energyDb - noiseFloorDb) * FLOOR_FALL
+        } else if (!isSpeech) {
+            noiseFloorDb += (energyDb - noiseFloorDb) * FLOOR_RISE
+        }
+
+        listener.onFrame(frames++, isSpeech)
+    }
+
+    companion object {
+        const val FRAME_MS = 20
+
+        /** Quieter than this is never speech, however still the room */
+        private const val MIN_SPEECH_DBFS = -55.0
+        private const val VOICED_MARGIN_DB = 12.0
+        private const val FRICATIVE_MARGIN_DB = 6.0
+        private const val FRICATIVE_CROSSING_RATE = 0.3
+        private const val FLOOR_FALL = 0.3
+        private const val FLOOR_RISE = 0.02
+        private const val FULL_SCALE_SQUARED = 32768.0 * 32768.0
+    }
+}
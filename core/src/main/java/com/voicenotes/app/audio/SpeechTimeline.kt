@@ -0,0 +1,44 @@
+package com.voicenotes.app.audio
+
+import com.voicenotes.app.data.SpeechSegment
+
+/**
+ * Where each speech segment lands once the segments are stitched end to end, so
+ * times reported against the stitched audio (word offsets, chapter marks) can be
+ * mapped back onto the original recording.
+ */
+class SpeechTimeline(val segments: List<SpeechSegment>) {
+
+    /** Start of each segment within the stitched audio */
+    private val stitchedStarts = LongArray(segments.size)
+
+    /** Length of the stitched audio */
+    val stitchedMs: Long
+
+    init {
+        var offset = 0L
+        segments.forEachIndexed { index, segment ->
+            require(index == 0 || segment.startMs >= segments[index - 1].endMs) { "Segments must be sorted and apart" }
+            stitchedStarts[index] = offset
+            offset += segment.durationMs
+        }
+        stitchedMs = offset
+    }
+
+    /**
+     * The original time of [stitchedMs] into the stitched audio
+     */
+    fun toOriginalMs(stitchedMs: Long): Long {
+        if (segments.isEmpty()) return stitchedMs
+        var index = stitchedStarts.binarySearch(stitchedMs)
+        if (index < 0) index = -index - 2
+        index = index.coerceIn(0, segments.lastIndex)
+        val segment = segments[index]
+        return minOf(segment.endMs, segment.startMs + (stitchedMs - stitchedStarts[index]))
+    }
+
+    /**
+     * Share of a recording of [totalMs] that is kept
+     */
+    fun keptFraction(totalMs: Long): Double = if (totalMs <= 0) 1.0 else stitchedMs.toDouble() / totalMs
+}
@@ -0,0 +1,73 @@
+package com.voicenotes.app.audio
+
+import java.io.File
+import java.io.IOException
+import java.security.MessageDigest
+
+/**
+ * Transcoded copies of audio files, keyed by a SHA-256 of the source's content, so
+ * transcribing a note again, or the same audio under another name, reuses the
+ * earlier output. The least recently used entries are deleted once the directory
+ * holds more than [maxBytes].
+ */
+class TranscodeCache(
+    private val directory: File,
+    private val maxBytes: Long = DEFAULT_MAX_BYTES
+) {
+
+    /** Hex SHA-256 of the content of [file] */
+    fun keyFor(file: File): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        val buffer = ByteArray(BUFFER_BYTES)
+        file.inputStream().use { input ->
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    /**
+     * The cached [variant] of [source], written by [transcode] on a miss. [transcode]
+     * writes to the file it is given; if it throws, nothing is cached.
+     */
+    fun getOrPut(source: File, variant: String, extension: String, transcode: (File) -> Unit): File {
+        val entry = File(directory, "${keyFor(source)}_$variant.$extension")
+        if (entry.isFile) {
+            entry.setLastModified(System.currentTimeMillis())
+            return entry
+        }
+
+        if (!directory.isDirectory && !directory.mkdirs()) throw IOException("Cannot create ${directory.path}")
+        // Written beside the entry and renamed, so a failed transcode never looks cached
+        val partial = File.createTempFile(entry.nameWithoutExtension, ".partial", directory)
+        try {
+            transcode(partial)
+            if (!partial.renameTo(entry)) throw IOException("Could not write ${entry.name}")
+        } finally {
+            partial.delete()
+        }
+        trim(keep = entry)
+        return entry
+    }
+
+    /** Delete the least recently used entries until the cache fits, never [keep] */
+    @Synchronized
+    fun trim(keep: File? = null) {
+        val entries = directory.listFiles { file -> file.isFile && !file.name.endsWith(".partial") } ?: return
+        var total = entries.sumOf { it.length() }
+        for (file in entries.sortedBy { it.lastModified() }) {
+            if (total <= maxBytes) break
+            if (file == keep) continue
+            total -= file.length()
+            file.delete()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BYTES = 50L * 1024 * 1024
+        private const val BUFFER_BYTES = 64 * 1024
+    }
+}
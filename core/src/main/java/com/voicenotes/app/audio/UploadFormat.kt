@@ -0,0 +1,25 @@
+package com.voicenotes.app.audio
+
+/**
+ * Audio as speech-to-text providers want it: 16 kHz mono, the rate they recognize
+ * at, in a format they decode natively. Encoded formats use the matching speech
+ * [RecordingProfile]; [WAV_PCM] needs no encoder and is always available.
+ */
+enum class UploadFormat(
+    val mimeType: String,
+    val extension: String,
+    val profile: RecordingProfile?
+) {
+    OGG_OPUS("audio/ogg", "ogg", RecordingProfile.SPEECH_OPUS),
+    M4A_AAC("audio/mp4", "m4a", RecordingProfile.SPEECH_AAC),
+    WAV_PCM("audio/wav", "wav", null);
+
+    val format: PcmFormat get() = PcmFormat(SAMPLE_RATE)
+
+    val bytesPerMinute: Long
+        get() = profile?.bytesPerMinute ?: format.bytesPerSecond * 60L
+
+    companion object {
+        const val SAMPLE_RATE = 16_000
+    }
+}
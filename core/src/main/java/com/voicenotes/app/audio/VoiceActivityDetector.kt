@@ -0,0 +1,112 @@
+package com.voicenotes.app.audio
+
+import com.voicenotes.app.data.SpeechSegment
+
+/**
+ * Finds the speech in a recording as segments worth keeping.
+ *
+ * Frames are classified by a [SpeechFrameClassifier]. A segment opens after
+ * [ONSET_FRAMES] speech frames in a row, so a click or a bump does not open one,
+ * and stays open through [HANGOVER_MS] of non-speech, so pauses between words do
+ * not split it. Segments are padded and nearby ones merged, so a trimmed recording
+ * does not clip the first and last syllables.
+ *
+ * Runs as a [PcmConsumer] on a recording, or over a whole source with [detect].
+ * [segments] is complete once [onStop] has run.
+ */
+class VoiceActivityDetector : PcmConsumer {
+
+    private val classifier = SpeechFrameClassifier { index, isSpeech -> onFrame(index, isSpeech) }
+
+    private var speechRun = 0
+    private var silenceRun = 0
+    private var openStartFrame = -1L
+    private var lastSpeechFrame = -1L
+
+    private val found = ArrayList<SpeechSegment>()
+
+    /** Speech found so far, in milliseconds from the start */
+    @Volatile
+    var segments: List<SpeechSegment> = emptyList()
+        private set
+
+    /** Total length of the audio seen, in milliseconds */
+    @Volatile
+    var analyzedMs = 0L
+        private set
+
+    override fun onStart(format: PcmFormat) {
+        classifier.onStart(format)
+        speechRun = 0
+        silenceRun = 0
+        openStartFrame = -1
+        lastSpeechFrame = -1
+        found.clear()
+        segments = emptyList()
+        analyzedMs = 0
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        classifier.onPcm(samples, offset, length)
+    }
+
+    override fun onStop(droppedSamples: Long) {
+        analyzedMs = classifier.analyzedMs
+        if (openStartFrame >= 0) closeSegment()
+        segments = merged(found, analyzedMs)
+    }
+
+    private fun onFrame(index: Long, isSpeech: Boolean) {
+        if (isSpeech) {
+            speechRun++
+            silenceRun = 0
+            lastSpeechFrame = index
+            if (openStartFrame < 0 && speechRun >= ONSET_FRAMES) openStartFrame = index - (ONSET_FRAMES - 1)
+        } else {
+            speechRun = 0
+            silenceRun++
+            if (openStartFrame >= 0 && silenceRun * FRAME_MS >= HANGOVER_MS) closeSegment()
+        }
+    }
+
+    private fun closeSegment() {
+        found.add(SpeechSegment(openStartFrame * FRAME_MS, (lastSpeechFrame + 1) * FRAME_MS))
+        openStartFrame = -1
+    }
+
+    companion object {
+        const val FRAME_MS = SpeechFrameClassifier.FRAME_MS
+        const val ONSET_FRAMES = 3
+        const val HANGOVER_MS = 400L
+        const val PADDING_MS = 200L
+        const val MERGE_GAP_MS = 300L
+
+        /**
+         * Run detection over everything [source] delivers, on the calling thread
+         */
+        fun detect(source: PcmSource): List<SpeechSegment> {
+            val detector = VoiceActivityDetector()
+            source.drainTo(detector)
+            return detector.segments
+        }
+
+        /**
+         * Pad every segment by [PADDING_MS] and join those less than [MERGE_GAP_MS]
+         * apart, within a recording of [totalMs]
+         */
+        fun merged(segments: List<SpeechSegment>, totalMs: Long): List<SpeechSegment> {
+            val result = ArrayList<SpeechSegment>()
+            for (segment in segments) {
+                val start = maxOf(0L, segment.startMs - PADDING_MS)
+                val end = minOf(totalMs, segment.endMs + PADDING_MS)
+                val last = result.lastOrNull()
+                if (last != null && start - last.endMs < MERGE_GAP_MS) {
+                    result[result.size - 1] = last.copy(endMs = maxOf(last.endMs, end))
+                } else {
+                    result.add(SpeechSegment(start, end))
+                }
+            }
+            return result
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.voicenotes.app.audio
+
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Writes PCM to a 16-bit WAV file. The header's sizes are patched in once the audio
+ * ends, so the length need not be known up front.
+ */
+class WavWriter(private val output: File) : PcmConsumer {
+
+    private var stream: BufferedOutputStream? = null
+    private var bytes = ByteArray(0)
+    private var dataBytes = 0L
+
+    override fun onStart(format: PcmFormat) {
+        dataBytes = 0
+        stream = BufferedOutputStream(FileOutputStream(output), BUFFER_BYTES).apply {
+            write(header(format, 0))
+        }
+    }
+
+    override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+        val stream = stream ?: return
+        if (bytes.size < length * PcmFormat.BYTES_PER_SAMPLE) bytes = ByteArray(length * PcmFormat.BYTES_PER_SAMPLE)
+        for (i in 0 until length) {
+            val sample = samples[offset + i].toInt()
+            bytes[2 * i] = sample.toByte()
+            bytes[2 * i + 1] = (sample shr 8).toByte()
+        }
+        stream.write(bytes, 0, length * PcmFormat.BYTES_PER_SAMPLE)
+        dataBytes += length * PcmFormat.BYTES_PER_SAMPLE
+    }
+
+    override fun onStop(droppedSamples: Long) {
+        val stream = stream ?: return
+        stream.close()
+        this.stream = null
+        if (dataBytes > MAX_DATA_BYTES) throw IOException("${output.name} is too long for a WAV file")
+        RandomAccessFile(output, "rw").use {
+            it.seek(RIFF_SIZE_OFFSET)
+            it.writeIntLe((HEADER_BYTES - 8 + dataBytes).toInt())
+            it.seek(DATA_SIZE_OFFSET)
+            it.writeIntLe(dataBytes.toInt())
+        }
+    }
+
+    private fun RandomAccessFile.writeIntLe(value: Int) = writeInt(Integer.reverseBytes(value))
+
+    companion object {
+        private const val BUFFER_BYTES = 64 * 1024
+        private const val HEADER_BYTES = 44
+        private const val RIFF_SIZE_OFFSET = 4L
+        private const val DATA_SIZE_OFFSET = 40L
+        private const val MAX_DATA_BYTES = Int.MAX_VALUE.toLong() - HEADER_BYTES
+
+        /** A canonical 44-byte header for [dataBytes] of audio in [format] */
+        private fun header(format: PcmFormat, dataBytes: Int): ByteArray {
+            val header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+            header.put("RIFF".toByteArray(Charsets.US_ASCII))
+            header.putInt(HEADER_BYTES - 8 + dataBytes)
+            header.put("WAVE".toByteArray(Charsets.US_ASCII))
+            header.put("fmt ".toByteArray(Charsets.US_ASCII))
+            header.putInt(16)
+            header.putShort(1)
+            header.putShort(format.channels.toShort())
+            header.putInt(format.sampleRate)
+            header.putInt(format.bytesPerSecond)
+            header.putShort((format.channels * PcmFormat.BYTES_PER_SAMPLE).toShort())
+            header.putShort(16)
+            header.put("data".toByteArray(Charsets.US_ASCII))
+            header.putInt(dataBytes)
+            return header.array()
+        }
+    }
+}
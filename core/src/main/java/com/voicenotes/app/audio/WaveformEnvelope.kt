@@ -0,0 +1,232 @@
+package com.voicenotes.app.audio
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+
+/**
+ * Min/max peaks of a recording at several zoom levels, kept in a sidecar file next
+ * to it so a waveform can be drawn without decoding any audio.
+ *
+ * The finest level has one peak per [BASE_PEAK_MS]; each further level merges
+ * [LEVEL_FACTOR] peaks of the one below, down to a few hundred peaks. A peak is two
+ * signed bytes, the minimum and maximum sample scaled to ±127, so an hour costs
+ * about 240 KB. The file is big-endian:
+ *
+ *     "VNWF" version:int sampleRate:int durationMs:long levelCount:int
+ *     levelCount × (samplesPerPeak:int peakCount:int offset:int)
+ *     peaks of each level, as min:byte max:byte pairs
+ *
+ * An opened envelope is memory-mapped, and [fill] reads just the peaks it needs
+ * straight from the mapping, so drawing allocates nothing and costs the same for a
+ * short memo or a long meeting.
+ */
+class WaveformEnvelope private constructor(
+    private val buffer: ByteBuffer,
+    val sampleRate: Int,
+    val durationMs: Long,
+    val levels: List<Level>
+) {
+
+    class Level(val samplesPerPeak: Int, val peakCount: Int, internal val offset: Int)
+
+    /**
+     * Peaks for [columns] columns spanning [fromMs] to [toMs], as fractions of full
+     * scale in [mins] and [maxs]. Uses the coarsest level that still has a peak for
+     * every column, so a column merges only a few peaks however long the span.
+     * Columns past the end of the recording are left at zero.
+     */
+    fun fill(fromMs: Long, toMs: Long, columns: Int, mins: FloatArray, maxs: FloatArray) {
+        if (columns <= 0 || toMs <= fromMs) return
+        val spanSamples = (toMs - fromMs) * sampleRate / 1000.0
+        var level = levels[0]
+        for (candidate in levels) {
+            if (spanSamples / candidate.samplesPerPeak >= columns) level = candidate
+        }
+        val firstPeak = fromMs * sampleRate / 1000.0 / level.samplesPerPeak
+        val peaksPerColumn = spanSamples / level.samplesPerPeak / columns
+
+        for (column in 0 until columns) {
+            val start = (firstPeak + column * peaksPerColumn).toInt()
+            val end = maxOf(start + 1, (firstPeak + (column + 1) * peaksPerColumn).toInt())
+            var min = 0
+            var max = 0
+            for (peak in start until minOf(end, level.peakCount)) {
+                val position = level.offset + peak * 2
+                val peakMin = buffer.get(position).toInt()
+                val peakMax = buffer.get(position + 1).toInt()
+                if (peakMin < min) min = peakMin
+                if (peakMax > max) max = peakMax
+            }
+            mins[column] = min / 127f
+            maxs[column] = max / 127f
+        }
+    }
+
+    /**
+     * Builds an envelope from PCM as it is captured or decoded and writes it when the
+     * audio ends. Only the finest level is accumulated; coarser ones are derived
+     * from it when writing.
+     *
+     * With [previous], the envelope of a recording this audio is appended to, the new
+     * peaks continue after the old ones.
+     */
+    class Writer(private val output: File, private val previous: WaveformEnvelope? = null) : PcmConsumer {
+
+        private lateinit var format: PcmFormat
+        private var samplesPerPeak = 0
+        private val peaks = ByteArrayOutputStream()
+        private var fill = 0
+        private var min = 0
+        private var max = 0
+        private var totalSamples = 0L
+
+        /** The write failure, if the sidecar could not be written */
+        @Volatile
+        var error: IOException? = null
+            private set
+
+        override fun onStart(format: PcmFormat) {
+            this.format = format
+            samplesPerPeak = format.samplesFor(BASE_PEAK_MS)
+            peaks.reset()
+            fill = 0
+            min = 0
+            max = 0
+            totalSamples = 0
+            error = null
+            previous?.takeIf { it.sampleRate == format.sampleRate }?.let {
+                val base = it.levels[0]
+                for (i in 0 until base.peakCount * 2) peaks.write(it.buffer.get(base.offset + i).toInt())
+                totalSamples = it.durationMs * format.samplesPerSecond / 1000
+            }
+        }
+
+        override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+            for (i in offset until offset + length) {
+                val sample = samples[i].toInt()
+                if (sample < min) min = sample
+                if (sample > max) max = sample
+                if (++fill == samplesPerPeak) endPeak()
+            }
+            totalSamples += length
+        }
+
+        override fun onStop(droppedSamples: Long) {
+            if (fill > 0) endPeak()
+            try {
+                write()
+            } catch (e: IOException) {
+                error = e
+                output.delete()
+            }
+        }
+
+        private fun endPeak() {
+            // Full-scale negative would be -128; keep the scale symmetric
+            peaks.write(maxOf(min shr 8, -127))
+            peaks.write(max shr 8)
+            fill = 0
+            min = 0
+            max = 0
+        }
+
+        private fun write() {
+            val base = peaks.toByteArray()
+            val levelPeaks = ArrayList<ByteArray>()
+            levelPeaks.add(base)
+            while (levelPeaks.last().size / 2 > MIN_LEVEL_PEAKS * LEVEL_FACTOR) {
+                levelPeaks.add(merge(levelPeaks.last()))
+            }
+
+            val durationMs = format.millisFor(totalSamples)
+            val headerBytes = HEADER_BYTES + levelPeaks.size * LEVEL_HEADER_BYTES
+            // Written beside the target and renamed, so a reader never maps half a file
+            val partial = File(output.path + ".partial")
+            DataOutputStream(partial.outputStream().buffered()).use { out ->
+                out.write(MAGIC)
+                out.writeInt(VERSION)
+                out.writeInt(format.sampleRate)
+                out.writeLong(durationMs)
+                out.writeInt(levelPeaks.size)
+                var offset = headerBytes
+                var spp = samplesPerPeak / format.channels
+                for (level in levelPeaks) {
+                    out.writeInt(spp)
+                    out.writeInt(level.size / 2)
+                    out.writeInt(offset)
+                    offset += level.size
+                    spp *= LEVEL_FACTOR
+                }
+                for (level in levelPeaks) out.write(level)
+            }
+            if (!partial.renameTo(output)) {
+                partial.delete()
+                throw IOException("Could not write ${output.name}")
+            }
+        }
+
+        private fun merge(peaks: ByteArray): ByteArray {
+            val count = peaks.size / 2
+            val merged = ByteArray((count + LEVEL_FACTOR - 1) / LEVEL_FACTOR * 2)
+            for (i in 0 until count) {
+                val target = i / LEVEL_FACTOR * 2
+                if (i % LEVEL_FACTOR == 0) {
+                    merged[target] = peaks[2 * i]
+                    merged[target + 1] = peaks[2 * i + 1]
+                } else {
+                    if (peaks[2 * i] < merged[target]) merged[target] = peaks[2 * i]
+                    if (peaks[2 * i + 1] > merged[target + 1]) merged[target + 1] = peaks[2 * i + 1]
+                }
+            }
+            return merged
+        }
+    }
+
+    companion object {
+        const val BASE_PEAK_MS = 40
+        const val LEVEL_FACTOR = 4
+        private const val MIN_LEVEL_PEAKS = 256
+        private const val VERSION = 1
+        private val MAGIC = "VNWF".toByteArray(Charsets.US_ASCII)
+        private const val HEADER_BYTES = 4 + 4 + 4 + 8 + 4
+        private const val LEVEL_HEADER_BYTES = 12
+
+        /** Where the envelope of [audioFile] lives */
+        fun sidecarFor(audioFile: File): File = File(audioFile.path + ".wave")
+
+        /**
+         * Map an envelope file; throws if it is missing or not an envelope
+         */
+        fun open(file: File): WaveformEnvelope {
+            val buffer = RandomAccessFile(file, "r").use { raf ->
+                raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+            }
+            buffer.order(ByteOrder.BIG_ENDIAN)
+            try {
+                val magic = ByteArray(4)
+                buffer.get(magic)
+                if (!magic.contentEquals(MAGIC)) throw IOException("${file.name} is not a waveform envelope")
+                val version = buffer.getInt()
+                if (version != VERSION) throw IOException("Unsupported waveform envelope version $version")
+                val sampleRate = buffer.getInt()
+                val durationMs = buffer.getLong()
+                val levels = List(buffer.getInt()) {
+                    Level(samplesPerPeak = buffer.getInt(), peakCount = buffer.getInt(), offset = buffer.getInt())
+                }
+                if (levels.isEmpty() || levels.any { it.offset + it.peakCount * 2 > buffer.capacity() }) {
+                    throw IOException("${file.name} is truncated")
+                }
+                return WaveformEnvelope(buffer, sampleRate, durationMs, levels)
+            } catch (e: BufferUnderflowException) {
+                throw IOException("${file.name} is truncated", e)
+            }
+        }
+    }
+}
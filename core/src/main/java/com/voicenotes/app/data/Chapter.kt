@@ -0,0 +1,15 @@
+package com.voicenotes.app.data
+
+/**
+ * A topic section of a long note, stored with the note as JSON.
+ *
+ * [startChar]/[endChar] index into the transcript. [startMs]/[endMs] are estimated
+ * by assuming speech runs at an even pace across the recording.
+ */
+data class Chapter(
+    val title: String,
+    val startChar: Int,
+    val endChar: Int,
+    val startMs: Long,
+    val endMs: Long
+)
@@ -0,0 +1,62 @@
+package com.voicenotes.app.data
+
+import androidx.room.TypeConverter
+import com.google.gson.Gson
+import com.google.gson.reflect.TypeToken
+import java.util.Date
+
+class Converters {
+    
+    @TypeConverter
+    fun fromTimestamp(value: Long?): Date? {
+        return value?.let { Date(it) }
+    }
+
+    @TypeConverter
+    fun dateToTimestamp(date: Date?): Long? {
+        return date?.time
+    }
+
+    @TypeConverter
+    fun fromStringList(value: List<String>): String {
+        return Gson().toJson(value)
+    }
+
+    @TypeConverter
+    fun toStringList(value: String): List<String> {
+        val listType = object : TypeToken<List<String>>() {}.type
+        return Gson().fromJson(value, listType) ?: emptyList()
+    }
+
+    @TypeConverter
+    fun fromChapterList(value: List<Chapter>): String {
+        return Gson().toJson(value)
+    }
+
+    @TypeConverter
+    fun toChapterList(value: String): List<Chapter> {
+        val listType = object : TypeToken<List<Chapter>>() {}.type
+        return Gson().fromJson(value, listType) ?: emptyList()
+    }
+
+    @TypeConverter
+    fun fromSpeechSegmentList(value: List<SpeechSegment>): String {
+        return Gson().toJson(value)
+    }
+
+    @TypeConverter
+    fun toSpeechSegmentList(value: String): List<SpeechSegment> {
+        val listType = object : TypeToken<List<SpeechSegment>>() {}.type
+        return Gson().fromJson(value, listType) ?: emptyList()
+    }
+
+    @TypeConverter
+    fun fromSpeakingPatterns(value: SpeakingPatterns?): String? {
+        return value?.let { Gson().toJson(it) }
+    }
+
+    @TypeConverter
+    fun toSpeakingPatterns(value: String?): SpeakingPatterns? {
+        return value?.let { Gson().fromJson(it, SpeakingPatterns::class.java) }
+    }
+}
@@ -0,0 +1,27 @@
+package com.voicenotes.app.data
+
+/**
+ * How a note was spoken, stored with the note as JSON. Times are milliseconds.
+ *
+ * When [measured] the figures come from the decoded audio: [totalSpeakingTime] is
+ * voiced time only, and [wordsPerMinute] is over that time, so pauses do not drag
+ * it down. Otherwise they are estimated from the transcript and file duration.
+ */
+data class SpeakingPatterns(
+    val wordsPerMinute: Int,
+    val pauseCount: Int,
+    val averagePauseLength: Double,
+    val totalSpeakingTime: Long,
+    val confidenceLevel: String,
+    /** Voiced share of the recording */
+    val speechRatio: Double = 0.0,
+    val longestPause: Long = 0,
+    /** Pause counts by length, split at [PAUSE_BUCKET_BOUNDS] */
+    val pauseHistogram: List<Int> = emptyList(),
+    val measured: Boolean = false
+) {
+    companion object {
+        /** Upper bounds of the histogram buckets but the last, which is open */
+        val PAUSE_BUCKET_BOUNDS = longArrayOf(500, 1_000, 2_000)
+    }
+}
@@ -0,0 +1,12 @@
+package com.voicenotes.app.data
+
+/**
+ * A stretch of a recording that holds speech, found by voice activity detection and
+ * stored with the note as JSON. Times are milliseconds into the original recording.
+ */
+data class SpeechSegment(
+    val startMs: Long,
+    val endMs: Long
+) {
+    val durationMs: Long get() = endMs - startMs
+}
@@ -0,0 +1,12 @@
+package com.voicenotes.app.data
+
+/**
+ * Where a note's summary came from; library re-analysis only rewrites local ones
+ */
+enum class SummarySource {
+    /** On-device NLP or the offline fallback */
+    LOCAL,
+
+    /** A cloud LLM the user configured with an API key */
+    CLOUD
+}
@@ -0,0 +1,12 @@
+package com.voicenotes.app.data
+
+/**
+ * Analysis columns of a voice note, for partial updates that leave the rest of the row alone
+ */
+data class VoiceNoteAnalysis(
+    val id: Long,
+    val summary: String?,
+    val keyPoints: List<String>,
+    val chapters: List<Chapter> = emptyList(),
+    val summarySource: SummarySource? = SummarySource.LOCAL
+)
@@ -0,0 +1,184 @@
+package com.voicenotes.app.naming
+
+import com.voicenotes.app.ai.nlp.Dictionaries
+import java.text.SimpleDateFormat
+import java.util.*
+
+/**
+ * Builds recording titles for each naming pattern. Holds no settings of its own;
+ * NamingManager passes in what the user saved.
+ */
+object RecordingNamer {
+
+    const val PATTERN_SMART = "smart"
+    const val PATTERN_DATE_TIME = "date_time"
+    const val PATTERN_SEQUENTIAL = "sequential"
+    const val PATTERN_CUSTOM = "custom"
+
+    fun generate(
+        pattern: String,
+        settings: DateTimeSettings,
+        transcript: String = "",
+        duration: Long = 0,
+        recordingNumber: Int = 1,
+        customPrefix: String = ""
+    ): String {
+        return when (pattern) {
+            PATTERN_SMART -> generateSmartName(transcript, duration, settings)
+            PATTERN_DATE_TIME -> generateDateTimeName(settings)
+            PATTERN_SEQUENTIAL -> generateSequentialName(recordingNumber, customPrefix)
+            PATTERN_CUSTOM -> generateCustomName(transcript, duration, recordingNumber)
+            else -> generateSmartName(transcript, duration, settings)
+        }
+    }
+    
+    private fun generateSmartName(transcript: String, duration: Long, settings: DateTimeSettings): String {
+        if (transcript.isBlank()) {
+            return generateDateTimeName(settings)
+        }
+        
+        // One scan over nlp/naming_categories.txt, first matching category wins
+        val category = Dictionaries.match(transcript.lowercase())
+            .firstMatchedEntry(Dictionaries.namingCategories)?.label
+        
+        when (category) {
+            // Meeting detection
+            "meeting" -> {
+                val participants = extractParticipants(transcript)
+                val date = SimpleDateFormat("MMM dd", Locale.getDefault()).format(Date())
+                return if (participants.isNotEmpty()) {
+                    "Meeting with $participants - $date"
+                } else {
+                    "Meeting - $date"
+                }
+            }
+            // Idea/brainstorming detection
+            "ideas" -> return "Ideas - ${getCurrentTimeString()}"
+            // Task/todo detection
+            "tasks" -> return "Tasks - ${getCurrentDateString()}"
+            // Project detection
+            "project" -> {
+                val projectName = extractProjectName(transcript)
+                return if (projectName.isNotEmpty()) {
+                    "Project: $projectName"
+                } else {
+                    "Project Discussion - ${getCurrentDateString()}"
+                }
+            }
+            // Personal/diary detection
+            "personal" -> return "Personal Note - ${getCurrentDateString()}"
+            // Shopping list detection
+            "shopping" -> return "Shopping List - ${getCurrentDateString()}"
+        }
+        
+        // Default: extract key topic
+        val keyTopic = extractKeyTopic(transcript)
+        return if (keyTopic.isNotEmpty()) {
+            "$keyTopic - ${getCurrentTimeString()}"
+        } else {
+            generateDateTimeName(settings)
+        }
+    }
+    
+    private fun generateDateTimeName(settings: DateTimeSettings): String {
+        val now = Date()
+        val parts = mutableListOf<String>()
+        
+        if (settings.includeDate) {
+            parts.add(SimpleDateFormat(settings.dateFormat, Locale.getDefault()).format(now))
+        }
+        
+        if (settings.includeTime) {
+            parts.add(SimpleDateFormat(settings.timeFormat, Locale.getDefault()).format(now))
+        }
+        
+        return if (parts.isNotEmpty()) {
+            "Recording ${parts.joinToString(" ")}"
+        } else {
+            "Voice Recording"
+        }
+    }
+    
+    private fun generateSequentialName(recordingNumber: Int, customPrefix: String): String {
+        val prefix = customPrefix.ifEmpty { "Recording" }
+        val paddedNumber = recordingNumber.toString().padStart(3, '0')
+        return "$prefix $paddedNumber"
+    }
+    
+    private fun generateCustomName(transcript: String, duration: Long, recordingNumber: Int): String {
+        // This would use user-defined templates with placeholders
+        // For now, return a combination approach
+        val smartPart = extractKeyTopic(transcript).take(20)
+        val datePart = getCurrentDateString()
+        
+        return if (smartPart.isNotEmpty()) {
+            "$smartPart - $datePart"
+        } else {
+            "Recording ${recordingNumber.toString().padStart(3, '0')} - $datePart"
+        }
+    }
+    
+    private fun extractParticipants(transcript: String): String {
+        // Simple participant extraction (in real app, this would be more sophisticated)
+        val words = transcript.split(" ")
+        val participants = mutableListOf<String>()
+        
+        for (i in words.indices) {
+            val word = words[i].lowercase()
+            if ((word == "with" || word == "and") && i + 1 < words.size) {
+                val nextWord = words[i + 1].trim(',', '.', '!', '?')
+                if (nextWord.length > 2 && nextWord[0].isUpperCase()) {
+                    participants.add(nextWord)
+                }
+            }
+        }
+        
+        return participants.take(2).joinToString(" & ")
+    }
+    
+    private fun extractProjectName(transcript: String): String {
+        val words = transcript.split(" ")
+        
+        for (i in words.indices) {
+            val word = words[i].lowercase()
+            if (word == "project" && i + 1 < words.size) {
+                val nextWord = words[i + 1].trim(',', '.', '!', '?')
+                if (nextWord.length > 2) {
+                    return nextWord.replaceFirstChar { it.uppercase() }
+                }
+            }
+        }
+        
+        return ""
+    }
+    
+    private fun extractKeyTopic(transcript: String): String {
+        // Extract the most important words/phrases
+        val words = transcript.split(" ").filter { it.length > 3 }
+        val importantWords = words.filter { word ->
+            val lower = word.lowercase()
+            !listOf("this", "that", "with", "have", "will", "been", "were", "they", "them", "from", "what", "when", "where").contains(lower)
+        }
+        
+        return importantWords.take(3).joinToString(" ").take(30)
+    }
+    
+    private fun getCurrentDateString(): String {
+        return SimpleDateFormat("MMM dd", Locale.getDefault()).format(Date())
+    }
+    
+    private fun getCurrentTimeString(): String {
+        return SimpleDateFormat("HH:mm", Locale.getDefault()).format(Date())
+    }
+}
+
+data class DateTimeSettings(
+    val includeDate: Boolean,
+    val includeTime: Boolean,
+    val dateFormat: String,
+    val timeFormat: String
+) {
+    companion object {
+        val DEFAULT = DateTimeSettings(includeDate = true, includeTime = true, dateFormat = "MMM dd, yyyy", timeFormat = "HH:mm")
+    }
+}
@@ -0,0 +1,104 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Every occurrence of every pattern, overlapping or nested, in end-offset order, and
+ * the same matches whether the text is scanned whole or in chunks
+ */
+class AhoCorasickTest {
+
+    /** Every occurrence by checking each pattern at each offset, in the automaton's order */
+    private fun bruteForce(patterns: List<String>, text: String): List<AhoCorasick.Match> {
+        val matches = ArrayList<AhoCorasick.Match>()
+        for (end in 1..text.length) {
+            // Longest first, as the output links report them
+            patterns.indices.sortedByDescending { patterns[it].length }.forEach { id ->
+                val start = end - patterns[id].length
+                if (start >= 0 && text.regionMatches(start, patterns[id], 0, patterns[id].length)) {
+                    matches.add(AhoCorasick.Match(id, start, end))
+                }
+            }
+        }
+        return matches
+    }
+
+    @Test
+    fun findAll_reportsOverlappingAndNestedPatterns() {
+        val automaton = AhoCorasick.build(listOf("he", "she", "his", "hers"))
+
+        assertEquals(
+            listOf(
+                AhoCorasick.Match(1, 1, 4),
+                AhoCorasick.Match(0, 2, 4),
+                AhoCorasick.Match(3, 2, 6)
+            ),
+            automaton.findAll("ushers")
+        )
+        assertEquals("hers", automaton.pattern(3))
+        assertEquals(4, automaton.patternCount)
+    }
+
+    @Test
+    fun findAll_repeatedAndSelfOverlapping() {
+        val runs = AhoCorasick.build(listOf("aa", "a")).findAll("aaa").map { it.patternId to it.start }
+        assertEquals(listOf(1 to 0, 0 to 0, 1 to 1, 0 to 1, 1 to 2), runs)
+
+        val phrases = AhoCorasick.build(listOf("follow up", "up"))
+        assertEquals(
+            listOf(0 to 0, 1 to 7, 0 to 16, 1 to 23),
+            phrases.findAll("follow up, then follow up again").map { it.patternId to it.start }
+        )
+        assertTrue(phrases.findAll("nothing here").isEmpty())
+    }
+
+    @Test
+    fun findAll_matchesBruteForce() {
+        val random = Random(27)
+        // A small alphabet, so patterns share prefixes and suffixes and overlap often
+        val patterns = LinkedHashSet<String>()
+        while (patterns.size < 200) {
+            patterns.add(String(CharArray(1 + random.nextInt(6)) { "abcd"[random.nextInt(4)] }))
+        }
+        val list = patterns.toList()
+        val automaton = AhoCorasick.build(list)
+
+        repeat(20) {
+            val text = String(CharArray(500) { "abcde"[random.nextInt(5)] })
+            assertEquals(bruteForce(list, text), automaton.findAll(text))
+        }
+    }
+
+    @Test
+    fun resume_findsMatchesAcrossChunks() {
+        val patterns = listOf("call john", "john", "meeting tomorrow", "tomorrow")
+        val automaton = AhoCorasick.build(patterns)
+        val text = "i need to call john about the project meeting tomorrow"
+
+        for (chunkSize in listOf(1, 3, 7, text.length)) {
+            val matches = ArrayList<AhoCorasick.Match>()
+            var state = AhoCorasick.ROOT
+            for (offset in text.indices step chunkSize) {
+                val chunk = text.substring(offset, minOf(text.length, offset + chunkSize))
+                state = automaton.resume(state, chunk, offset) { id, start, end -> matches.add(AhoCorasick.Match(id, start, end)) }
+            }
+            assertEquals("chunks of $chunkSize", automaton.findAll(text), matches)
+        }
+        assertEquals(4, automaton.findAll(text).size)
+    }
+
+    @Test
+    fun build_rejectsEmptyAndDuplicatePatterns() {
+        for (patterns in listOf(listOf("a", ""), listOf("todo", "call", "todo"))) {
+            try {
+                AhoCorasick.build(patterns)
+                fail("$patterns built")
+            } catch (e: IllegalArgumentException) {
+                // Expected
+            }
+        }
+        assertTrue(AhoCorasick.build(emptyList()).findAll("anything").isEmpty())
+    }
+}
@@ -0,0 +1,134 @@
+package com.voicenotes.app.ai.nlp
+
+import com.voicenotes.app.ai.LocalNLPService
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Re-analysis after small edits to a long transcript: results against a full
+ * analysis of the edited text, and how many sentence spans each edit re-analyzes
+ */
+class EditableTranscriptAnalyzerTest {
+
+    private val subjects = listOf("the client", "Sarah", "the design team", "my manager", "Dr Patel", "the landlord")
+    private val verbs = listOf("call", "email", "review", "send", "prepare", "book", "schedule")
+    private val objects = listOf(
+        "the quarterly report", "the budget draft", "a dentist appointment", "the flight to Berlin",
+        "the invoice", "the presentation slides", "the insurance forms", "the hotel booking"
+    )
+    private val moods = listOf("great", "frustrated", "happy", "worried", "excellent", "difficult", "fine")
+    private val fillers = List(300) { "filler$it" }
+
+    private fun sentence(random: Random): String {
+        val subject = subjects[random.nextInt(subjects.size)]
+        val target = objects[random.nextInt(objects.size)]
+        return when (random.nextInt(5)) {
+            0 -> "I need to ${verbs[random.nextInt(verbs.size)]} $target before Friday."
+            1 -> "${subject.replaceFirstChar { it.uppercase() }} should ${verbs[random.nextInt(verbs.size)]} $target."
+            2 -> "The meeting about $target went ${moods[random.nextInt(moods.size)]}!"
+            3 -> "We talked with $subject about ${fillers[random.nextInt(fillers.size)]} and ${fillers[random.nextInt(fillers.size)]}."
+            else -> List(6 + random.nextInt(8)) { fillers[random.nextInt(fillers.size)] }
+                .joinToString(" ").replaceFirstChar { it.uppercase() } + "?"
+        }
+    }
+
+    private fun transcript(random: Random, sentences: Int): String {
+        return List(sentences) { sentence(random) }.joinToString(" ")
+    }
+
+    /** One small correction somewhere in the text, as a user would make it */
+    private fun edit(random: Random, text: String): Triple<Int, Int, String> {
+        if (text.isEmpty()) return Triple(0, 0, sentence(random))
+        val at = random.nextInt(text.length)
+        return when (random.nextInt(4)) {
+            // Retype a word
+            0 -> {
+                var start = at
+                while (start > 0 && text[start - 1] != ' ') start--
+                var end = at
+                while (end < text.length && text[end] != ' ') end++
+                Triple(start, end, fillers[random.nextInt(fillers.size)])
+            }
+            // Insert a sentence
+            1 -> {
+                val start = text.indexOf(". ", at).let { if (it < 0) text.length else it + 2 }
+                Triple(start, start, sentence(random) + " ")
+            }
+            // Delete a sentence
+            2 -> {
+                val start = text.lastIndexOf(". ", at).let { if (it < 0) 0 else it + 2 }
+                val end = text.indexOf(". ", at).let { if (it < 0) text.length else it + 2 }
+                Triple(start, end, "")
+            }
+            // Join two sentences
+            else -> {
+                val start = text.indexOf(". ", at)
+                if (start < 0) Triple(at, at, "") else Triple(start, start + 2, ", and ")
+            }
+        }
+    }
+
+    private fun assertSameAsFullAnalysis(snapshot: EditableTranscriptAnalyzer.Snapshot) {
+        val full = LocalNLPService.analyze(snapshot.text)
+        assertEquals(full.keywords, snapshot.keywords)
+        assertEquals(full.actionItems, snapshot.actionItems)
+        assertEquals(full.sentiment, snapshot.sentiment)
+        assertEquals(full.sentences.size, snapshot.sentenceCount)
+        assertEquals(full.wordCount, snapshot.tokenCount)
+    }
+
+    @Test
+    fun edits_matchFullAnalysis() {
+        val random = Random(3)
+        val analyzer = EditableTranscriptAnalyzer(transcript(random, 200))
+        assertSameAsFullAnalysis(analyzer.snapshot())
+
+        repeat(300) {
+            val (start, end, replacement) = edit(random, analyzer.text)
+            analyzer.replace(start, end, replacement)
+            assertSameAsFullAnalysis(analyzer.snapshot())
+        }
+        analyzer.replace(0, analyzer.text.length, "")
+        assertSameAsFullAnalysis(analyzer.snapshot())
+        analyzer.update("Remember to call the dentist tomorrow. Great news about the project.")
+        assertSameAsFullAnalysis(analyzer.snapshot())
+    }
+
+    @Test
+    fun smallEdit_longTranscript_reanalyzesOnlyTheEditedSpans() {
+        // About 6,000 words, forty minutes of speech
+        val random = Random(7)
+        val analyzer = EditableTranscriptAnalyzer(transcript(random, 900))
+        analyzer.snapshot()
+
+        val edits = 200
+        val before = analyzer.spansAnalyzed
+        repeat(edits) {
+            val (start, end, replacement) = edit(random, analyzer.text)
+            analyzer.replace(start, end, replacement)
+            analyzer.snapshot()
+        }
+        val spansPerEdit = (analyzer.spansAnalyzed - before).toDouble() / edits
+
+        assertSameAsFullAnalysis(analyzer.snapshot())
+        assertTrue("$spansPerEdit spans per edit", spansPerEdit <= 3.0)
+    }
+
+    @Test
+    fun update_betterRecognitionPass_reusesUnchangedSentences() {
+        val random = Random(11)
+        val sentences = List(100) { sentence(random) }.toMutableList()
+        val analyzer = EditableTranscriptAnalyzer(sentences.joinToString(" "))
+        val initial = analyzer.spansAnalyzed
+
+        // The new pass differs in three sentences spread across the note
+        for (index in listOf(5, 50, 95)) sentences[index] = sentence(random)
+        analyzer.update(sentences.joinToString(" "))
+
+        // Everything between the first and last change is re-split, but unchanged sentences are reused
+        val reanalyzed = analyzer.spansAnalyzed - initial
+        assertSameAsFullAnalysis(analyzer.snapshot())
+        assertEquals(3, reanalyzed)
+    }
+}
@@ -0,0 +1,116 @@
+package com.voicenotes.app.ai.nlp
+
+import com.voicenotes.app.ai.LocalNLPService
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Gazetteer lookup: longest-match behaviour, capitalization and sentence breaks,
+ * and name lists from a hundred entries to a hundred thousand
+ */
+class GazetteerTest {
+
+    private val syllables = listOf("ka", "lo", "mir", "ta", "ven", "so", "ri", "bel", "an", "dor", "qui", "zel")
+
+    private fun syntheticName(random: Random): String {
+        val words = 1 + random.nextInt(3)
+        return List(words) {
+            List(2 + random.nextInt(2)) { syllables[random.nextInt(syllables.size)] }
+                .joinToString("").replaceFirstChar { c -> c.uppercase() }
+        }.joinToString(" ")
+    }
+
+    private fun gazetteer(size: Int, random: Random): Pair<Gazetteer, List<String>> {
+        val builder = Gazetteer.Builder()
+        val names = LinkedHashSet<String>()
+        val types = Gazetteer.Type.values()
+        while (names.size < size) {
+            val name = syntheticName(random)
+            if (names.add(name)) builder.add(name, types[random.nextInt(types.size)])
+        }
+        return builder.build() to names.toList()
+    }
+
+    /** About 10,000 words, a few percent of them known names */
+    private fun transcript(random: Random, names: List<String>): String {
+        val filler = listOf("we", "talked", "about", "the", "budget", "and", "then", "met", "with", "at", "office", "later")
+        val text = StringBuilder()
+        repeat(1_000) {
+            repeat(9) { text.append(filler[random.nextInt(filler.size)]).append(' ') }
+            text.append(names[random.nextInt(names.size)]).append(". ")
+        }
+        return text.toString()
+    }
+
+    @Test
+    fun find_largeGazetteer_findsEveryMention() {
+        for (size in listOf(100, 100_000)) {
+            val random = Random(size.toLong())
+            val (gazetteer, names) = gazetteer(size, random)
+            assertEquals(size, gazetteer.size)
+
+            val text = transcript(random, names)
+            val matches = gazetteer.find(text, AnalyzedDocument.lowercasePreservingLength(text))
+
+            // Each of the 1,000 sentences ends in exactly one known name
+            assertEquals(1_000, matches.size)
+            matches.forEach { assertEquals(it.entry.name, text.substring(it.start, it.end)) }
+        }
+    }
+
+    @Test
+    fun find_longestMatchWins() {
+        val gazetteer = Gazetteer.Builder()
+            .add("New York", Gazetteer.Type.PLACE, listOf("new york", "nyc"))
+            .add("New York City", Gazetteer.Type.PLACE)
+            .add("York", Gazetteer.Type.PLACE)
+            .add("New York Times", Gazetteer.Type.ORGANIZATION)
+            .build()
+
+        val text = "Flying to New York City, then New York. Read the New York Times in NYC and York."
+        assertEquals(
+            listOf("New York City", "New York", "New York Times", "New York", "York"),
+            gazetteer.find(text).map { it.entry.name }
+        )
+        val first = gazetteer.find(text).first()
+        assertEquals("New York City", text.substring(first.start, first.end))
+    }
+
+    @Test
+    fun find_capitalizationAndSentenceBreaks() {
+        val gazetteer = Gazetteer.Builder()
+            .add("Mark", Gazetteer.Type.PERSON)
+            .add("Rose Bay", Gazetteer.Type.PLACE)
+            .add("Rose", Gazetteer.Type.PERSON)
+            .build()
+
+        // "mark" the verb is not a name
+        assertEquals(listOf("Mark"), gazetteer.find("Please mark this for Mark.").map { it.entry.name })
+        assertEquals(2, gazetteer.find("mark Mark", capitalizedOnly = false).size)
+        // A name does not run across a sentence break
+        assertEquals(listOf("Rose"), gazetteer.find("I saw Rose. Bay leaves are next.").map { it.entry.name })
+        assertEquals(listOf("Rose Bay"), gazetteer.find("We swam at Rose Bay today.").map { it.entry.name })
+    }
+
+    @Test
+    fun extractEntities_usesInstalledGazetteer() {
+        val text = "Met Sarah in New York City and then called Priyanka about the Acme Robotics deal."
+        val before = LocalNLPService.analyze(text).entities
+        assertEquals(listOf("Sarah"), before["PERSON"])
+        assertEquals(listOf("New York City"), before["LOCATION"])
+
+        val custom = Gazetteer.builderWithBundled()
+            .add("Priyanka", Gazetteer.Type.PERSON)
+            .add("Acme Robotics", Gazetteer.Type.ORGANIZATION)
+            .build()
+        try {
+            Gazetteer.install(custom)
+            val after = LocalNLPService.analyze(text).entities
+            assertEquals(listOf("Sarah", "Priyanka"), after["PERSON"])
+            assertEquals(listOf("Acme Robotics"), after["ORGANIZATION"])
+        } finally {
+            Gazetteer.install(Gazetteer.builderWithBundled().build())
+        }
+    }
+}
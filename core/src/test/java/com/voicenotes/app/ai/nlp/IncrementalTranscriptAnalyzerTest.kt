@@ -0,0 +1,103 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * However the recognizer splits the transcript, the incremental result must be the
+ * one a full re-analysis of the same text gives
+ */
+class IncrementalTranscriptAnalyzerTest {
+
+    private val transcript =
+        "I need to call John about the project meeting tomorrow. Don't forget to buy groceries!! " +
+            "Sarah must review the quarterly report before Monday... Action item: email the team " +
+            "about the deadline changes. Mr Smith from Acme Corp will send the invoice next week? " +
+            "The new workflow system had a problem with payments, so remember to pick up the keys " +
+            "from the office and schedule a dentist appointment in Boston. Café budget — 2024 plan"
+
+    private val corpus = TfIdfModel(TokenDictionary()).apply {
+        load(4, mapOf("meeting" to 3, "project" to 2, "budget" to 4, "invoice" to 1))
+    }
+
+    private fun assertMatchesFullAnalysis(text: String, snapshot: IncrementalTranscriptAnalyzer.Snapshot) {
+        val document = AnalyzedDocument.analyze(text)
+        assertEquals(text, snapshot.text)
+        assertEquals(document.sentences, snapshot.sentences)
+        assertEquals(document.tokenCount, snapshot.tokenCount)
+        assertEquals(document.wordCount, snapshot.wordCount)
+        assertEquals(TranscriptAnalyzer.extractKeywords(document, corpus.snapshot()), snapshot.keywords)
+        assertEquals(TranscriptAnalyzer.extractActionItems(document), snapshot.actionItems)
+    }
+
+    private fun analyzeInChunks(text: String, chunks: List<String>): IncrementalTranscriptAnalyzer.Snapshot {
+        assertEquals(text, chunks.joinToString(""))
+        val analyzer = IncrementalTranscriptAnalyzer(corpus = corpus)
+        chunks.forEach { analyzer.append(it) }
+        analyzer.finish()
+        return analyzer.snapshot()
+    }
+
+    private fun fixedChunks(text: String, size: Int): List<String> = text.chunked(size)
+
+    private fun randomChunks(text: String, random: Random): List<String> {
+        val chunks = ArrayList<String>()
+        var at = 0
+        while (at < text.length) {
+            val end = minOf(text.length, at + 1 + random.nextInt(12))
+            chunks.add(text.substring(at, end))
+            at = end
+        }
+        return chunks
+    }
+
+    @Test
+    fun finished_matchesFullAnalysisAtAnyChunking() {
+        val expected = AnalyzedDocument.analyze(transcript)
+        assertTrue(TranscriptAnalyzer.extractActionItems(expected).isNotEmpty())
+
+        for (size in listOf(1, 2, 5, 17, transcript.length)) {
+            assertMatchesFullAnalysis(transcript, analyzeInChunks(transcript, fixedChunks(transcript, size)))
+        }
+        val random = Random(33)
+        repeat(20) {
+            assertMatchesFullAnalysis(transcript, analyzeInChunks(transcript, randomChunks(transcript, random)))
+        }
+        // Word by word, the way partial results usually arrive
+        assertMatchesFullAnalysis(transcript, analyzeInChunks(transcript, transcript.split(" ").mapIndexed { i, word -> if (i == 0) word else " $word" }))
+    }
+
+    @Test
+    fun snapshotMidStream_matchesAnalysisOfTheTextSoFar() {
+        val analyzer = IncrementalTranscriptAnalyzer(corpus = corpus)
+        var text = ""
+        // Each chunk but the last ends between words, so no token is left waiting for the next one
+        val sentences = transcript.split(Regex("(?<=[.!?] )"))
+        sentences.forEachIndexed { i, sentence ->
+            analyzer.append(sentence)
+            text += sentence
+            if (i == sentences.lastIndex) analyzer.finish()
+            assertMatchesFullAnalysis(text, analyzer.snapshot())
+        }
+        assertTrue(sentences.size > 5)
+    }
+
+    @Test
+    fun nonEnglish_noEnglishActionItems() {
+        val spanish = "Necesito llamar a Juan sobre la reunión del proyecto mañana. " +
+            "No olvides comprar comida para la casa. El informe trimestral está listo para revisar."
+
+        val snapshot = analyzeInChunks(spanish, randomChunks(spanish, Random(7)))
+        assertMatchesFullAnalysis(spanish, snapshot)
+        assertTrue(snapshot.actionItems.isEmpty())
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun append_afterFinish() {
+        val analyzer = IncrementalTranscriptAnalyzer(corpus = corpus)
+        analyzer.append("Call John tomorrow.")
+        analyzer.finish()
+        analyzer.append(" And Sarah.")
+    }
+}
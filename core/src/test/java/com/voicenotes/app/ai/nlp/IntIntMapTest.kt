@@ -0,0 +1,89 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Open addressing must agree with a HashMap through collisions and every resize
+ */
+class IntIntMapTest {
+
+    private fun assertSameAs(expected: Map<Int, Int>, map: IntIntMap) {
+        assertEquals(expected.size, map.size)
+        expected.forEach { (key, value) ->
+            assertTrue("$key", map.containsKey(key))
+            assertEquals("$key", value, map[key])
+        }
+        val seen = HashMap<Int, Int>()
+        map.forEach { key, value -> assertNull("$key twice", seen.put(key, value)) }
+        assertEquals(expected, seen)
+    }
+
+    @Test
+    fun missingKeys_readAsZero() {
+        val map = IntIntMap()
+        map[3] = 7
+
+        assertEquals(0, map[4])
+        assertFalse(map.containsKey(4))
+        assertEquals(1, map.size)
+    }
+
+    @Test
+    fun increment_countsFromZero() {
+        val map = IntIntMap()
+        assertEquals(1, map.increment(42))
+        assertEquals(4, map.increment(42, 3))
+        assertEquals(-2, map.increment(7, -2))
+        map[42] = 10
+
+        assertEquals(10, map[42])
+        assertEquals(2, map.size)
+    }
+
+    @Test
+    fun growsPastItsInitialCapacity() {
+        val map = IntIntMap(expectedSize = 1)
+        val expected = HashMap<Int, Int>()
+        for (key in 0 until 10_000) {
+            map.increment(key, key)
+            expected[key] = key
+            // Check around each doubling
+            if (key and (key - 1) == 0) assertSameAs(expected, map)
+        }
+        assertSameAs(expected, map)
+    }
+
+    @Test
+    fun collidingKeys_allKept() {
+        // Multiples of a large power of two differ only in high bits
+        val map = IntIntMap()
+        val expected = HashMap<Int, Int>()
+        for (i in 0 until 2_000) {
+            val key = i shl 20 and Int.MAX_VALUE
+            map[key] = i
+            expected[key] = i
+        }
+        assertSameAs(expected, map)
+    }
+
+    @Test
+    fun randomWorkload_matchesHashMap() {
+        val random = Random(30)
+        val map = IntIntMap()
+        val expected = HashMap<Int, Int>()
+        repeat(50_000) {
+            val key = random.nextInt(5_000)
+            val delta = random.nextInt(10) - 3
+            assertEquals((expected[key] ?: 0) + delta, map.increment(key, delta))
+            expected[key] = (expected[key] ?: 0) + delta
+        }
+        assertSameAs(expected, map)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun negativeKeys_rejected() {
+        IntIntMap()[-1] = 1
+    }
+}
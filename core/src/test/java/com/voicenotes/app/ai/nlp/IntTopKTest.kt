@@ -0,0 +1,69 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * The bounded heap must rank exactly like a stable sortedByDescending { score }.take(k)
+ */
+class IntTopKTest {
+
+    private fun expected(scores: List<Double>, k: Int): List<Int> =
+        scores.indices.sortedByDescending { scores[it] }.take(k)
+
+    @Test
+    fun toIdArray_bestFirst() {
+        val topK = IntTopK(3)
+        listOf(5 to 0.2, 9 to 0.9, 1 to 0.5, 4 to 0.1, 7 to 0.7).forEach { (id, score) -> topK.offer(id, score) }
+
+        assertArrayEquals(intArrayOf(9, 7, 1), topK.toIdArray())
+    }
+
+    @Test
+    fun ties_goToTheEarlierOffer() {
+        val topK = IntTopK(3)
+        for (id in 0 until 10) topK.offer(id, if (id == 6) 2 else 1)
+
+        assertArrayEquals(intArrayOf(6, 0, 1), topK.toIdArray())
+    }
+
+    @Test
+    fun offer_matchesStableSort() {
+        val random = Random(30)
+        for (k in listOf(1, 5, 50, 1_000)) {
+            // Few distinct scores, so most comparisons are ties
+            val scores = List(500) { random.nextInt(20) / 4.0 }
+            val topK = IntTopK(k)
+            scores.forEachIndexed { id, score -> topK.offer(id, score) }
+
+            assertEquals("k = $k", expected(scores, k), topK.toIdArray().toList())
+        }
+    }
+
+    @Test
+    fun toIdArray_leavesTheHeapIntact() {
+        val topK = IntTopK(2)
+        topK.offer(1, 3.0)
+        topK.offer(2, 1.0)
+        topK.offer(3, 2.0)
+        assertArrayEquals(intArrayOf(1, 3), topK.toIdArray())
+        assertArrayEquals(intArrayOf(1, 3), topK.toIdArray())
+
+        topK.offer(4, 5.0)
+        assertArrayEquals(intArrayOf(4, 1), topK.toIdArray())
+
+        topK.clear()
+        assertEquals(0, topK.toIdArray().size)
+        topK.offer(8, 0.0)
+        assertArrayEquals(intArrayOf(8), topK.toIdArray())
+    }
+
+    @Test
+    fun zeroK_keepsNothing() {
+        val topK = IntTopK(0)
+        topK.offer(1, 1.0)
+
+        assertEquals(0, topK.toIdArray().size)
+    }
+}
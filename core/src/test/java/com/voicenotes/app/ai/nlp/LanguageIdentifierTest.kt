@@ -0,0 +1,132 @@
+package com.voicenotes.app.ai.nlp
+
+import com.voicenotes.app.ai.LocalNLPService
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Language identification accuracy on held-out voice-note text (none of it appears
+ * in the trigram training samples), and the per-language stop words that follow
+ * from it
+ */
+class LanguageIdentifierTest {
+
+    private val notes = mapOf(
+        Language.ENGLISH to """
+            Okay so just a reminder for myself about the garden. The tomatoes along the fence need
+            stakes before the weekend storm, and I should ask the neighbour whether they still want
+            the spare seedlings. Also the hose has a leak near the tap, so pick up a new washer at
+            the hardware store. Next month we might move the herbs closer to the kitchen door since
+            nobody walks all the way to the back to cut basil. Remember to water the pots on the
+            balcony every evening while it stays this hot, and check the apple tree for those spots.
+        """,
+        Language.SPANISH to """
+            Vale, apunto esto para no olvidarlo. Mañana por la tarde viene el fontanero a mirar la
+            caldera, así que alguien tiene que quedarse en casa hasta las seis. Hay que comprar pan,
+            huevos y fruta para el desayuno del domingo, cuando vienen mis padres a comer. Creo que
+            el coche necesita una revisión antes del viaje a Valencia; llamaré al taller el lunes a
+            primera hora. Y no me puedo olvidar de pagar la cuota del gimnasio, que vence esta semana.
+        """,
+        Language.FRENCH to """
+            Bon, petite note pour ne pas oublier. Il faut rappeler la banque demain matin au sujet
+            du prêt, parce que le conseiller attend encore nos relevés. Ensuite, passer chez le
+            pharmacien pour les médicaments de maman et acheter des fleurs pour son anniversaire.
+            Le rendez-vous chez le garagiste est décalé à jeudi, donc je prendrai le train pour aller
+            au bureau. Penser aussi à réserver les billets pour les vacances avant que les prix montent.
+        """,
+        Language.GERMAN to """
+            Also, kurze Notiz für später. Morgen früh muss ich unbedingt beim Zahnarzt anrufen und den
+            Termin verschieben, weil die Besprechung mit dem Vermieter länger dauern wird. Danach
+            sollten wir die Kartons aus dem Keller holen und die Bücher sortieren, bevor die Umzugsfirma
+            am Freitag kommt. Vergiss nicht, Milch und Brot einzukaufen, und frag bitte deinen Bruder,
+            ob er uns am Samstag mit dem Auto helfen kann. Die Rechnung für den Strom liegt noch auf dem Tisch.
+        """,
+        Language.ITALIAN to """
+            Allora, una nota veloce prima di uscire. Domani devo chiamare l'idraulico perché il
+            rubinetto della cucina perde ancora, e poi passare in farmacia a prendere le medicine per
+            la nonna. Sabato sera abbiamo la cena con i colleghi, quindi bisogna prenotare il tavolo
+            entro giovedì. Ricordarsi anche di comprare il regalo per il compleanno di Luca e di
+            rinnovare l'abbonamento del treno, che scade alla fine del mese. La lavatrice fa un rumore strano.
+        """,
+        Language.PORTUGUESE to """
+            Certo, uma nota rápida para não esquecer. Amanhã de manhã preciso ligar para o mecânico
+            porque o carro voltou a fazer aquele barulho estranho quando freio. Depois tenho que
+            passar no mercado e comprar arroz, feijão e frutas para a semana toda. A reunião com o
+            pessoal do projeto ficou para quinta-feira, então vou aproveitar a quarta para terminar
+            o relatório. Não esquecer de pagar a conta de luz e de marcar consulta com a dentista.
+        """,
+        Language.DUTCH to """
+            Even een notitie voor mezelf. Morgen moet ik de huisarts bellen om een afspraak te maken,
+            want mijn rug doet nog steeds pijn na het verhuizen. Daarna boodschappen doen: melk,
+            brood, kaas en iets voor het verjaardagsfeestje van mijn zus op zaterdag. De fiets moet
+            ook naar de reparateur omdat de achterband steeds leegloopt. Vergeet niet de huur over te
+            maken voor het einde van de maand en de planten water te geven als we op vakantie gaan.
+        """
+    ).mapValues { (_, text) -> text.trimIndent().replace('\n', ' ') }
+
+    /**
+     * Every window of [length] characters, starting at each word, across all notes
+     */
+    private fun windows(length: Int): List<Pair<Language, String>> {
+        return notes.flatMap { (language, text) ->
+            text.indices
+                .filter { it == 0 || text[it - 1] == ' ' }
+                .filter { it + length <= text.length }
+                .map { language to text.substring(it, it + length) }
+        }
+    }
+
+    @Test
+    fun identify_heldOutNotes_accurate() {
+        for (length in listOf(LanguageIdentifier.SAMPLE_CHARS, 100)) {
+            val samples = windows(length)
+            val detections = samples.map { (_, text) -> LanguageIdentifier.detect(text) }
+
+            val correct = samples.zip(detections).count { (sample, detection) -> sample.first == detection.language }
+            val reliable = detections.count { it.isReliable }
+            val reliableWrong = samples.zip(detections).count { (sample, detection) ->
+                detection.isReliable && sample.first != detection.language
+            }
+            val accuracy = correct.toDouble() / samples.size
+
+            assertEquals(0, reliableWrong)
+            if (length == LanguageIdentifier.SAMPLE_CHARS) {
+                assertEquals(1.0, accuracy, 0.0)
+                assertEquals(samples.size, reliable)
+            } else {
+                assertTrue("accuracy $accuracy", accuracy >= 0.95)
+            }
+        }
+    }
+
+    @Test
+    fun identify_tooLittleText_fallsBack() {
+        assertEquals(Language.DEFAULT, LanguageIdentifier.identify(""))
+        assertEquals(Language.DEFAULT, LanguageIdentifier.identify("OK"))
+        assertEquals(Language.GERMAN, LanguageIdentifier.identify("Ja", fallback = Language.GERMAN))
+        assertFalse(LanguageIdentifier.detect("1234 5678 !!").isReliable)
+    }
+
+    @Test
+    fun analyze_nonEnglishNote_usesItsStopWords() {
+        val spanish = notes.getValue(Language.SPANISH)
+        val document = AnalyzedDocument.analyze(spanish)
+        assertEquals(Language.SPANISH, document.language)
+        assertTrue(document.isStopWord(document.dictionary.idOf("que")))
+        assertFalse(document.isStopWord(document.dictionary.idOf("fontanero")))
+
+        val keywords = LocalNLPService.analyze(spanish).keywords
+        val stopWords = LanguagePack.of(Language.SPANISH).stopWords
+        assertTrue(keywords.isNotEmpty())
+        assertTrue(keywords.none { it.lowercase() in stopWords })
+        // English phrase rules do not fire on other languages
+        assertTrue(LocalNLPService.analyze(spanish).actionItems.isEmpty())
+    }
+
+    @Test
+    fun analyze_englishNote_unchanged() {
+        val document = AnalyzedDocument.analyze(notes.getValue(Language.ENGLISH))
+        assertEquals(Language.ENGLISH, document.language)
+        assertTrue(document.isStopWord(document.dictionary.idOf("the")))
+    }
+}
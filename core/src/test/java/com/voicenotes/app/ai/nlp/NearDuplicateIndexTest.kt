@@ -0,0 +1,82 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Near-duplicate lookup: the LSH index must report what comparing every signature
+ * would, find a re-recorded note and reject an unrelated one
+ */
+class NearDuplicateIndexTest {
+
+    private val vocabulary = List(5_000) { "word$it" }
+
+    /**
+     * Zipf-ish random transcript, like a short dictated note
+     */
+    private fun transcript(random: Random, words: Int): String {
+        val text = StringBuilder()
+        repeat(words) {
+            val rank = (Math.pow(random.nextDouble(), 3.0) * vocabulary.size).toInt()
+            text.append(vocabulary[rank]).append(if (random.nextInt(12) == 0) ". " else " ")
+        }
+        return text.toString()
+    }
+
+    /**
+     * Same note spoken again: a few words dropped or changed
+     */
+    private fun reRecorded(random: Random, original: String): String {
+        return original.split(' ').filter { it.isNotEmpty() }.mapNotNull { word ->
+            when (random.nextInt(40)) {
+                0 -> null
+                1 -> vocabulary[random.nextInt(vocabulary.size)]
+                else -> word
+            }
+        }.joinToString(" ")
+    }
+
+    @Test
+    fun findDuplicates_matchesBruteForce() {
+        val random = Random(11)
+        val libraryTranscripts = List(5_000) { transcript(random, 60 + random.nextInt(120)) }
+
+        val signatures = libraryTranscripts.map { MinHash.signature(it)!! }
+        val index = NearDuplicateIndex()
+        signatures.forEachIndexed { i, signature -> index.add(i + 1L, signature) }
+
+        val duplicateOf = 2_000L
+        val query = MinHash.signature(reRecorded(random, libraryTranscripts[(duplicateOf - 1).toInt()]))!!
+        val unrelated = MinHash.signature(transcript(random, 150))!!
+
+        val matches = index.findDuplicates(query)
+        assertEquals(duplicateOf, matches.firstOrNull()?.noteId)
+        assertTrue(matches.first().similarity >= NearDuplicateIndex.DEFAULT_THRESHOLD)
+        assertEquals(bruteForce(signatures, query), matches.map { it.noteId })
+        assertTrue(index.findDuplicates(unrelated).isEmpty())
+    }
+
+    @Test
+    fun removedNote_isNoLongerReported() {
+        val random = Random(5)
+        val original = transcript(random, 120)
+        val index = NearDuplicateIndex()
+        index.add(1, MinHash.signature(original)!!)
+        index.add(2, MinHash.signature(reRecorded(random, original))!!)
+
+        assertEquals(listOf(2L), index.findDuplicates(1L).map { it.noteId })
+        index.remove(2)
+        assertTrue(index.findDuplicates(1L).isEmpty())
+        assertEquals(1, index.size)
+    }
+
+    private fun bruteForce(signatures: List<IntArray>, query: IntArray): List<Long> {
+        val matches = ArrayList<Pair<Long, Double>>()
+        signatures.forEachIndexed { i, signature ->
+            val similarity = MinHash.similarity(query, signature)
+            if (similarity >= NearDuplicateIndex.DEFAULT_THRESHOLD) matches.add(i + 1L to similarity)
+        }
+        return matches.sortedByDescending { it.second }.map { it.first }
+    }
+}
@@ -0,0 +1,99 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+import kotlin.math.ln
+import kotlin.math.sqrt
+
+/**
+ * Related-notes lookups over a 10k-note library, checked against exact cosine
+ * similarity over every note
+ */
+class RelatedNotesIndexTest {
+
+    private val topics = 200
+    private val generalWords = List(3_000) { "common$it" }
+    private val topicWords = List(topics) { topic -> List(30) { "topic${topic}term$it" } }
+
+    /**
+     * A note about one topic, padded with Zipf-ish everyday words
+     */
+    private fun transcript(random: Random, topic: Int): String {
+        val text = StringBuilder()
+        repeat(80 + random.nextInt(120)) {
+            val word = if (random.nextInt(10) < 3) {
+                topicWords[topic][random.nextInt(topicWords[topic].size)]
+            } else {
+                generalWords[(Math.pow(random.nextDouble(), 3.0) * generalWords.size).toInt()]
+            }
+            text.append(word).append(if (random.nextInt(12) == 0) ". " else " ")
+        }
+        return text.toString()
+    }
+
+    @Test
+    fun relatedNotes_10kNotes_matchesExactCosine() {
+        val random = Random(17)
+        val noteCount = 10_000
+        val transcripts = List(noteCount) { transcript(random, random.nextInt(topics)) }
+        val terms = transcripts.map { RelatedNotesIndex.termCounts(it) }
+
+        val documentFrequencies = HashMap<String, Int>()
+        terms.forEach { counts ->
+            counts.termIds.forEach { id -> documentFrequencies.merge(TokenDictionary.shared.term(id), 1, Int::plus) }
+        }
+        val model = TfIdfModel()
+        model.load(noteCount, documentFrequencies)
+        val corpus = model.snapshot()
+
+        val index = RelatedNotesIndex()
+        terms.forEachIndexed { i, counts -> index.add(i + 1L, counts, corpus) }
+
+        // Early termination must not change the top k
+        val k = 5
+        val vectors = terms.map { exactVector(it, corpus) }
+        repeat(20) {
+            val noteId = random.nextInt(noteCount) + 1L
+            val expected = bruteForce(vectors, noteId, k)
+            val actual = index.relatedNotes(noteId, k)
+            assertEquals(expected.map { it.noteId }, actual.map { it.noteId })
+            expected.zip(actual).forEach { (e, a) -> assertEquals(e.similarity, a.similarity, 1e-4) }
+        }
+    }
+
+    @Test
+    fun updatedNote_movesToItsNewTopic() {
+        val random = Random(3)
+        val model = TfIdfModel()
+        val index = RelatedNotesIndex()
+        index.add(1, RelatedNotesIndex.termCounts(transcript(random, 0)), model.snapshot())
+        index.add(2, RelatedNotesIndex.termCounts(transcript(random, 1)), model.snapshot())
+        index.add(3, RelatedNotesIndex.termCounts(transcript(random, 0)), model.snapshot())
+
+        assertEquals(3L, index.relatedNotes(1, 1).first().noteId)
+        index.add(3, RelatedNotesIndex.termCounts(transcript(random, 1)), model.snapshot())
+        assertEquals(2L, index.relatedNotes(3, 1).first().noteId)
+        index.remove(2)
+        assertTrue(index.relatedNotes(3, 2).none { it.noteId == 2L })
+    }
+
+    private fun exactVector(terms: RelatedNotesIndex.TermCounts, corpus: TfIdfModel.Snapshot): Map<Int, Double> {
+        val weights = HashMap<Int, Double>()
+        for (i in 0 until terms.size) {
+            weights[terms.termIds[i]] = (1.0 + ln(terms.counts[i].toDouble())) * corpus.idf(terms.termIds[i])
+        }
+        val norm = sqrt(weights.values.sumOf { it * it })
+        return weights.mapValues { it.value / norm }
+    }
+
+    private fun bruteForce(vectors: List<Map<Int, Double>>, noteId: Long, k: Int): List<RelatedNotesIndex.Match> {
+        val query = vectors[(noteId - 1).toInt()]
+        return vectors.indices
+            .filter { it + 1L != noteId }
+            .map { i -> RelatedNotesIndex.Match(i + 1L, query.entries.sumOf { (term, w) -> w * (vectors[i][term] ?: 0.0) }) }
+            .filter { it.similarity >= RelatedNotesIndex.DEFAULT_MIN_SIMILARITY }
+            .sortedByDescending { it.similarity }
+            .take(k)
+    }
+}
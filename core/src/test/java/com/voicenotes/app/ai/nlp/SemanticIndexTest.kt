@@ -0,0 +1,141 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.Random
+import java.util.concurrent.Executor
+
+/**
+ * Semantic search recall of the IVF index against an exact scan, background
+ * clustering, embedder swaps and persistence of the memory-mapped store
+ */
+class SemanticIndexTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    // Clusters on the adding thread, so results do not depend on a background thread
+    private val trainInline = Executor { it.run() }
+
+    private val topics = 400
+    private val generalWords = List(3_000) { "common$it" }
+    private val topicWords = List(topics) { topic -> List(25) { "subject${topic}word$it" } }
+
+    private fun transcript(random: Random, topic: Int): String {
+        val text = StringBuilder()
+        repeat(40 + random.nextInt(100)) {
+            val word = if (random.nextInt(10) < 3) {
+                topicWords[topic][random.nextInt(topicWords[topic].size)]
+            } else {
+                generalWords[(Math.pow(random.nextDouble(), 3.0) * generalWords.size).toInt()]
+            }
+            text.append(word).append(' ')
+        }
+        return text.toString()
+    }
+
+    private fun recallAt10(noteCount: Int): Double {
+        val random = Random(noteCount.toLong())
+        val index = SemanticIndex(File(folder.root, "index_$noteCount.bin"), trainer = trainInline)
+        index.addAll((1..noteCount).associate { it.toLong() to transcript(random, random.nextInt(topics)) })
+
+        val k = 10
+        val queries = List(200) { index.embed(transcript(random, random.nextInt(topics)).take(200)) }
+        var found = 0
+        for (query in queries) {
+            val expected = index.exactSearch(query, k).map { it.noteId }.toSet()
+            found += index.searchVector(query, k).count { it.noteId in expected }
+        }
+        index.close()
+        return found.toDouble() / (queries.size * k)
+    }
+
+    @Test
+    fun search_10kNotes_recallAgainstExactScan() {
+        val recall = recallAt10(10_000)
+        assertTrue("recall $recall", recall >= 0.9)
+    }
+
+    @Test
+    fun search_100kNotes_recallAgainstExactScan() {
+        val recall = recallAt10(100_000)
+        assertTrue("recall $recall", recall >= 0.9)
+    }
+
+    @Test
+    fun add_leavesClusteringToTrainer() {
+        val queued = ArrayList<Runnable>()
+        val index = SemanticIndex(File(folder.root, "deferred.bin"), trainer = Executor { queued.add(it) })
+        val random = Random(2)
+        index.addAll((1..SemanticIndex.MIN_TRAINING_SIZE.toLong()).associateWith { transcript(random, (it % topics).toInt()) })
+
+        assertEquals(1, queued.size)
+        val query = index.embed(transcript(random, 3))
+        assertEquals(index.exactSearch(query, 5), index.searchVector(query, 5))
+        queued.single().run()
+        assertEquals(SemanticIndex.MIN_TRAINING_SIZE, index.size)
+        index.close()
+    }
+
+    @Test
+    fun useEmbedder_dropsOldVectorsAndKeepsNewOnes() {
+        val file = File(folder.root, "swap.bin")
+        // Stand-in for a learned model: one dimension per note topic
+        val byTopic = object : TextEmbedder {
+            override val id = "topic-test"
+            override val dimension = 4
+            override fun embed(text: String) = FloatArray(dimension) { if (text.contains("topic$it")) 1f else 0f }
+        }
+
+        val index = SemanticIndex(file, trainer = trainInline)
+        index.add(1, "Schedule a teeth cleaning at the dentist")
+        index.useEmbedder(byTopic)
+        assertEquals(0, index.size)
+
+        index.add(2, "notes on topic2")
+        index.add(3, "notes on topic3")
+        assertEquals(3L, index.search("back to topic3", 1).single().noteId)
+        index.close()
+
+        val reopened = SemanticIndex(file, byTopic, trainInline)
+        assertEquals(2, reopened.size)
+        reopened.close()
+    }
+
+    @Test
+    fun reopen_keepsEmbeddingsAndDeletes() {
+        val file = File(folder.root, "index.bin")
+        val random = Random(1)
+        val texts = (1..2_000L).associateWith { transcript(random, (it % topics).toInt()) }
+        val query = transcript(random, 7)
+
+        val index = SemanticIndex(file, trainer = trainInline)
+        index.addAll(texts)
+        index.remove(8)
+        index.add(2_001, transcript(random, 7))
+        val before = index.search(query, 5)
+        index.close()
+
+        val reopened = SemanticIndex(file, trainer = trainInline)
+        assertEquals(2_000, reopened.size)
+        assertFalse(reopened.contains(8))
+        assertTrue(reopened.contains(2_001))
+        assertEquals(before, reopened.search(query, 5))
+        reopened.close()
+    }
+
+    @Test
+    fun search_matchesSharedStems() {
+        val index = SemanticIndex(File(folder.root, "small.bin"), trainer = trainInline)
+        index.add(1, "Schedule a teeth cleaning at the dentist")
+        index.add(2, "Buy milk, eggs and bread on the way home")
+        index.add(3, "Quarterly report review with the finance team")
+
+        assertEquals(1L, index.search("dentists appointment", 1).first().noteId)
+        assertEquals(3L, index.search("reviewing the reports", 1).first().noteId)
+        index.close()
+    }
+}
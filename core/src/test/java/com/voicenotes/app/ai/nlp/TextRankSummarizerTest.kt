@@ -0,0 +1,98 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+import kotlin.math.pow
+
+/**
+ * TextRank on short notes and on a synthetic one-hour transcript
+ * (about 9,000 words at 150 words per minute, Zipf-distributed vocabulary)
+ */
+class TextRankSummarizerTest {
+
+    private val syllables = listOf("ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ze", "pa", "di", "gu")
+
+    private fun oneHourTranscript(seed: Long = 7): String {
+        val random = Random(seed)
+        val vocabulary = List(3000) { index ->
+            var n = index
+            val word = StringBuilder()
+            do {
+                word.append(syllables[n % syllables.size])
+                n /= syllables.size
+            } while (n > 0)
+            word.append("n").toString()
+        }
+        // Cumulative Zipf weights for inverse-CDF sampling
+        val cumulative = DoubleArray(vocabulary.size)
+        var total = 0.0
+        for (rank in vocabulary.indices) {
+            total += 1.0 / (rank + 1.0).pow(1.1)
+            cumulative[rank] = total
+        }
+
+        val builder = StringBuilder()
+        var words = 0
+        while (words < WORDS_PER_HOUR) {
+            val length = 8 + random.nextInt(14)
+            for (i in 0 until length) {
+                val target = random.nextDouble() * total
+                var index = cumulative.binarySearch(target)
+                if (index < 0) index = -index - 1
+                if (i > 0) builder.append(' ')
+                builder.append(vocabulary[minOf(index, vocabulary.size - 1)])
+            }
+            builder.append(if (random.nextInt(5) == 0) "? " else ". ")
+            words += length
+        }
+        return builder.toString()
+    }
+
+    @Test
+    fun summarize_oneHourTranscript_picksTopRankedSentencesInOrder() {
+        val document = AnalyzedDocument.analyze(oneHourTranscript())
+        val summarizer = TextRankSummarizer()
+
+        val scores = summarizer.rank(document)
+        assertEquals(document.sentenceCount, scores.size)
+        assertEquals(1.0, scores.sum(), 1e-6)
+
+        val expected = scores.indices.sortedByDescending { scores[it] }.take(5).sorted()
+        val summary = summarizer.summarize(document, SummaryLength.Sentences(5))
+        var from = 0
+        for (row in expected) {
+            val at = summary.indexOf(document.sentences[row], from)
+            assertTrue("sentence $row missing or out of order", at >= from)
+            from = at + document.sentences[row].length
+        }
+        assertEquals(summary, summarizer.summarize(document, SummaryLength.Sentences(5)))
+    }
+
+    @Test
+    fun summarize_respectsRequestedLength() {
+        val document = AnalyzedDocument.analyze(
+            "The budget review is on Friday. The budget review needs the sales numbers. " +
+                "Lunch was nice today. Sales numbers for the budget review come from Anna. " +
+                "My cat likes the window."
+        )
+        val summarizer = TextRankSummarizer()
+
+        val oneLine = summarizer.summarize(document, SummaryLength.OneLine)
+        assertTrue(oneLine.contains("budget review"))
+
+        val two = summarizer.summarize(document, SummaryLength.Sentences(2))
+        assertEquals(2, two.count { it == '.' })
+
+        val all = summarizer.summarize(document, SummaryLength.Ratio(1.0))
+        assertEquals(document.sentenceCount, all.count { it == '.' })
+
+        val scores = summarizer.rank(document)
+        assertEquals(1.0, scores.sum(), 1e-6)
+        assertTrue(scores[0] > scores[4])
+    }
+
+    companion object {
+        private const val WORDS_PER_HOUR = 9_000
+    }
+}
@@ -0,0 +1,104 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Document frequencies kept by note deltas must match the ones counted from scratch.
+ *
+ * ./gradlew :core:test --tests "*TfIdfModelTest*"
+ */
+class TfIdfModelTest {
+
+    private val notes = listOf(
+        "Budget meeting with the design team on Thursday",
+        "Call the dentist about the appointment on Thursday",
+        "Design review for the new budget dashboard",
+        "Grocery list: apples, bread, coffee and milk"
+    )
+
+    private fun loadedFrom(transcripts: List<String>, dictionary: TokenDictionary): TfIdfModel {
+        val frequencies = HashMap<String, Int>()
+        transcripts.forEach { transcript ->
+            TfIdfModel.termsOf(transcript).forEach { frequencies[it] = (frequencies[it] ?: 0) + 1 }
+        }
+        return TfIdfModel(dictionary).apply { load(transcripts.size, frequencies) }
+    }
+
+    private fun assertSameStatistics(expected: TfIdfModel, actual: TfIdfModel, dictionary: TokenDictionary) {
+        val expectedSnapshot = expected.snapshot()
+        val actualSnapshot = actual.snapshot()
+        assertEquals(expectedSnapshot.documentCount, actualSnapshot.documentCount)
+        for (id in 0 until dictionary.size) {
+            assertEquals(dictionary.term(id), expectedSnapshot.documentFrequency(id), actualSnapshot.documentFrequency(id))
+        }
+    }
+
+    @Test
+    fun applyDelta_insertsMatchFullCount() {
+        val dictionary = TokenDictionary()
+        val incremental = TfIdfModel(dictionary)
+        notes.forEach { incremental.applyDelta(TfIdfModel.termsOf(it), emptyList(), 1) }
+
+        assertSameStatistics(loadedFrom(notes, dictionary), incremental, dictionary)
+    }
+
+    @Test
+    fun applyDelta_deleteUndoesInsert() {
+        val dictionary = TokenDictionary()
+        val model = loadedFrom(notes.take(3), dictionary)
+        val before = loadedFrom(notes.take(3), dictionary)
+
+        val terms = TfIdfModel.termsOf(notes[3])
+        model.applyDelta(terms, emptyList(), 1)
+        model.applyDelta(emptyList(), terms, -1)
+
+        assertSameStatistics(before, model, dictionary)
+    }
+
+    @Test
+    fun applyDelta_editMovesOnlyChangedTerms() {
+        val dictionary = TokenDictionary()
+        val model = loadedFrom(notes, dictionary)
+        val previous = TfIdfModel.termsOf(notes[1])
+        val edited = "Call the dentist about the cleaning on Friday"
+        val terms = TfIdfModel.termsOf(edited)
+        model.applyDelta(terms.filterNot { it in previous }, previous.filterNot { it in terms }, 0)
+
+        val expected = loadedFrom(notes.toMutableList().also { it[1] = edited }, dictionary)
+        assertSameStatistics(expected, model, dictionary)
+    }
+
+    @Test
+    fun applyDelta_neverDropsBelowZero() {
+        val dictionary = TokenDictionary()
+        val model = TfIdfModel(dictionary)
+        model.applyDelta(emptyList(), listOf("budget"), -1)
+
+        assertEquals(0, model.snapshot().documentCount)
+        assertEquals(0, model.snapshot().documentFrequency(dictionary.idOf("budget")))
+    }
+
+    @Test
+    fun snapshot_keepsCountsAcrossLoad() {
+        val dictionary = TokenDictionary()
+        val model = loadedFrom(notes, dictionary)
+        val snapshot = model.snapshot()
+        val budget = dictionary.idOf("budget")
+
+        model.load(0, emptyMap())
+
+        assertEquals(notes.size, snapshot.documentCount)
+        assertEquals(2, snapshot.documentFrequency(budget))
+        assertEquals(0, model.snapshot().documentFrequency(budget))
+    }
+
+    @Test
+    fun idf_rarerTermsScoreHigher() {
+        val dictionary = TokenDictionary()
+        val snapshot = loadedFrom(notes, dictionary).snapshot()
+
+        assertTrue(snapshot.idf(dictionary.idOf("dentist")) > snapshot.idf(dictionary.idOf("budget")))
+        assertEquals(snapshot.idf(dictionary.idOf("budget")), snapshot.idf(TokenDictionary().apply { intern("budget") }, 0), 1e-9)
+    }
+}
@@ -0,0 +1,85 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Dense, stable ids: one per word, whether it is interned from a whole string or a
+ * range of a longer text, across growth and from several threads
+ */
+class TokenDictionaryTest {
+
+    @Test
+    fun intern_denseIdsPerWord() {
+        val dictionary = TokenDictionary()
+        val words = listOf("meeting", "budget", "meeting", "call", "budget")
+
+        assertEquals(listOf(0, 1, 0, 2, 1), words.map { dictionary.intern(it) })
+        assertEquals(3, dictionary.size)
+        assertEquals("call", dictionary.term(2))
+    }
+
+    @Test
+    fun intern_rangeOfLongerText() {
+        val dictionary = TokenDictionary()
+        val text = "call john about the budget"
+        val john = dictionary.intern(text, 5, 9)
+
+        assertEquals(john, dictionary.intern("john"))
+        assertEquals(john, dictionary.idOf(StringBuilder("ask john"), 4, 8))
+        assertEquals("john", dictionary.term(john))
+        assertEquals(-1, dictionary.idOf(text, 0, 4))
+        assertEquals(1, dictionary.size)
+    }
+
+    @Test
+    fun idsStableThroughGrowth() {
+        val dictionary = TokenDictionary(initialCapacity = 2)
+        val words = List(20_000) { "w$it" }
+        words.forEach { dictionary.intern(it) }
+
+        assertEquals(words.size, dictionary.size)
+        words.forEachIndexed { id, word ->
+            assertEquals(word, id, dictionary.idOf(word))
+            assertEquals(word, dictionary.term(id))
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException::class)
+    fun term_unknownId() {
+        TokenDictionary().apply { intern("one") }.term(1)
+    }
+
+    @Test
+    fun concurrentInterning_oneIdPerWord() {
+        val dictionary = TokenDictionary(initialCapacity = 16)
+        val words = List(5_000) { "word$it" }
+        val threads = 4
+        val start = CountDownLatch(1)
+        val pool = Executors.newFixedThreadPool(threads)
+        val results = (0 until threads).map { thread ->
+            pool.submit<IntArray> {
+                start.await()
+                // Each thread in its own order, checking lookups of what it added so far
+                val order = if (thread % 2 == 0) words.indices else words.indices.reversed()
+                val ids = IntArray(words.size)
+                for (i in order) {
+                    ids[i] = dictionary.intern(words[i])
+                    assertEquals(ids[i], dictionary.idOf(words[i]))
+                }
+                ids
+            }
+        }
+        start.countDown()
+        val ids = results.map { it.get(30, TimeUnit.SECONDS) }
+        pool.shutdown()
+
+        assertEquals(words.size, dictionary.size)
+        for (other in ids.drop(1)) assertArrayEquals(ids[0], other)
+        words.forEachIndexed { i, word -> assertEquals(word, dictionary.term(ids[0][i])) }
+        assertEquals(words.size, ids[0].toSet().size)
+    }
+}
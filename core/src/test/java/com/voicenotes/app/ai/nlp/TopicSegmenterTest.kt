@@ -0,0 +1,110 @@
+package com.voicenotes.app.ai.nlp
+
+import com.voicenotes.app.ai.LocalNLPService
+import com.voicenotes.app.data.SpeechSegment
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * Chapter detection on an hour-long synthetic meeting: boundaries against the
+ * known topic shifts, chapter times, and the chapter outline used as the
+ * summary of a long note
+ */
+class TopicSegmenterTest {
+
+    private val generalWords = List(400) { "common$it" }
+
+    /**
+     * Sentences about one topic at a time; returns the text and where each topic starts
+     */
+    private fun meeting(random: Random, topics: Int, wordsPerTopic: Int): Pair<String, List<Int>> {
+        val text = StringBuilder()
+        val starts = ArrayList<Int>()
+        for (topic in 0 until topics) {
+            starts.add(text.length)
+            val vocabulary = List(40) { "topic${topic}term$it" }
+            var words = 0
+            while (words < wordsPerTopic) {
+                val length = 8 + random.nextInt(12)
+                repeat(length) { i ->
+                    val word = if (random.nextInt(10) < 4) {
+                        vocabulary[random.nextInt(vocabulary.size)]
+                    } else {
+                        generalWords[(random.nextDouble() * generalWords.size).toInt()]
+                    }
+                    text.append(if (i == 0) word.replaceFirstChar { it.uppercase() } else word)
+                    text.append(if (i == length - 1) ". " else " ")
+                }
+                words += length
+            }
+        }
+        return text.toString() to starts
+    }
+
+    @Test
+    fun segment_hourLongMeeting_findsTopicShifts() {
+        // About 150 words a minute for an hour, six agenda items
+        val (transcript, starts) = meeting(Random(5), 6, 1_500)
+        val document = AnalyzedDocument.analyze(transcript)
+
+        val segments = TopicSegmenter.shared.segment(document)
+
+        assertEquals(starts.size, segments.size)
+        // Every chapter starts within two sentences of the real shift
+        segments.zip(starts).forEach { (segment, start) ->
+            assertTrue("chapter at ${segment.startChar}, topic at $start", Math.abs(segment.startChar - start) < 400)
+        }
+        segments.forEachIndexed { topic, segment ->
+            assertTrue(segment.keywords.all { it.startsWith("topic${topic}term") })
+        }
+        assertEquals(transcript.length, segments.last().endChar)
+    }
+
+    @Test
+    fun summary_longNote_isChapterOutline() {
+        val (transcript, _) = meeting(Random(9), 6, 1_500)
+        val result = LocalNLPService.analyze(transcript)
+        val chapters = LocalNLPService.toChapters(result.chapters, transcript.length, 60 * 60_000L)
+        val chapterSummary = LocalNLPService.summarizeChapter(transcript, chapters[2])
+
+        assertTrue(result.summary.startsWith("6 chapters: "))
+        assertTrue(chapterSummary.contains("topic2term"))
+        assertEquals(0L, chapters.first().startMs)
+        assertEquals(60 * 60_000L, chapters.last().endMs)
+        assertTrue(chapters.zipWithNext().all { (a, b) -> a.endMs == b.startMs && a.endChar == b.startChar })
+    }
+
+    @Test
+    fun toChapters_withSpeech_skipsPauses() {
+        val (transcript, _) = meeting(Random(9), 6, 1_500)
+        val result = LocalNLPService.analyze(transcript)
+        val minute = 60_000L
+        // Ten minutes of talk, a ten-minute break, then the rest of the hour
+        val speech = listOf(SpeechSegment(0, 10 * minute), SpeechSegment(20 * minute, 60 * minute))
+
+        val chapters = LocalNLPService.toChapters(result.chapters, transcript.length, 60 * minute, speech)
+
+        assertEquals(6, chapters.size)
+        assertEquals(0L, chapters.first().startMs)
+        assertEquals(60 * minute, chapters.last().endMs)
+        assertTrue(chapters.zipWithNext().all { (a, b) -> a.endMs == b.startMs })
+        assertTrue(chapters.drop(1).none { it.startMs > 10 * minute && it.startMs < 20 * minute })
+        // A sixth of the 50 minutes of speech; even pacing over the whole hour would say 10
+        assertEquals(50.0 * minute / 6, chapters[1].startMs.toDouble(), 1.0 * minute)
+    }
+
+    @Test
+    fun segment_longSingleTopic_isOneChapter() {
+        val (transcript, _) = meeting(Random(11), 1, 6_000)
+        assertEquals(1, TopicSegmenter.shared.segment(AnalyzedDocument.analyze(transcript)).size)
+    }
+
+    @Test
+    fun segment_shortNote_isOneChapter() {
+        val document = AnalyzedDocument.analyze("Call the dentist tomorrow. Buy milk on the way home.")
+        val segments = TopicSegmenter.shared.segment(document)
+        assertEquals(1, segments.size)
+        assertTrue(LocalNLPService.toChapters(segments, document.text.length, 5_000).isEmpty())
+    }
+}
@@ -0,0 +1,102 @@
+package com.voicenotes.app.ai.nlp
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.Random
+
+/**
+ * The rule-based extractors, whose word tables and regexes are compiled once and
+ * shared by every call
+ */
+class TranscriptAnalyzerTest {
+
+    private val sentences = listOf(
+        "I need to call John about the project meeting tomorrow",
+        "Don't forget to buy groceries on the way home",
+        "The meeting with the client went well and we should follow up with the proposal by Friday",
+        "Sarah must review the quarterly report before Monday",
+        "Schedule a dentist appointment at the hospital in Boston",
+        "Today's brainstorming session was productive and everyone was excited",
+        "Action item: email the team about the deadline changes",
+        "Mr Smith from Acme Corp will send the invoice next week",
+        "The new workflow system had a problem with payments",
+        "Remember to pick up the medicine and the keys from the office"
+    )
+
+    private fun transcript(words: Int, seed: Long = 42): String {
+        val random = Random(seed)
+        val builder = StringBuilder()
+        var count = 0
+        while (count < words) {
+            val sentence = sentences[random.nextInt(sentences.size)]
+            builder.append(sentence).append(if (random.nextInt(4) == 0) "! " else ". ")
+            count += sentence.count { it == ' ' } + 1
+        }
+        return builder.toString()
+    }
+
+    private fun runPipeline(text: String): List<Any> {
+        val document = AnalyzedDocument.analyze(text)
+        val keywords = TranscriptAnalyzer.extractKeywords(document)
+        return listOf(
+            TranscriptAnalyzer.extractEntities(document),
+            keywords,
+            TranscriptAnalyzer.extractActionItems(document),
+            TranscriptAnalyzer.generateSummary(document, keywords),
+            TranscriptAnalyzer.analyzeSentiment(document),
+            TranscriptAnalyzer.extractTopics(keywords)
+        )
+    }
+
+    @Test
+    fun extractors_findEntitiesAndActionItems() {
+        val document = AnalyzedDocument.analyze(
+            "I need to call John about the project meeting tomorrow. " +
+                "Sarah must review the quarterly report before Monday. " +
+                "Mr Smith from Acme Corp will send the invoice next week."
+        )
+
+        val people = TranscriptAnalyzer.extractEntities(document)["PERSON"].orEmpty()
+        assertTrue(people.containsAll(listOf("John", "Sarah", "Smith")))
+
+        val actionItems = TranscriptAnalyzer.extractActionItems(document)
+        assertTrue(actionItems.contains("call John about the project meeting tomorrow"))
+        assertTrue(actionItems.contains("review the quarterly report before Monday"))
+        assertTrue(actionItems.contains("send the invoice next week"))
+
+        val keywords = TranscriptAnalyzer.extractKeywords(document)
+        assertTrue(keywords.containsAll(listOf("meeting", "project")))
+    }
+
+    @Test
+    fun analyzeSentiment_followsWordTables() {
+        assertEquals(
+            "negative",
+            TranscriptAnalyzer.analyzeSentiment(
+                AnalyzedDocument.analyze("The launch was a terrible failure and everyone is angry and disappointed.")
+            )
+        )
+        assertEquals(
+            "positive",
+            TranscriptAnalyzer.analyzeSentiment(
+                AnalyzedDocument.analyze("The demo was great, the team is happy and the results are excellent.")
+            )
+        )
+    }
+
+    @Test
+    fun pipeline_isRepeatableAcrossCallsAndSizes() {
+        for (words in listOf(1_000, 10_000)) {
+            val text = transcript(words)
+            val first = runPipeline(text)
+
+            // Shared tables carry no state from one call to the next
+            runPipeline(transcript(words, seed = 7))
+            assertEquals(first, runPipeline(text))
+
+            @Suppress("UNCHECKED_CAST")
+            val keywords = first[1] as List<String>
+            assertTrue(keywords.isNotEmpty())
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.voicenotes.app.audio
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.util.Random
+
+/**
+ * Capture engine driven by a replayed PCM fixture instead of the microphone.
+ *
+ * pcm/speech_16k_mono.wav is 3 s of 16 kHz mono: room noise, with synthetic voiced
+ * speech at 0.5–1.3 s and 1.8–2.6 s.
+ */
+class CaptureEngineTest {
+
+    private val fixture: ByteArray = javaClass.classLoader!!.getResourceAsStream(FIXTURE)!!.use { it.readBytes() }
+
+    private fun fixtureSamples(): ShortArray {
+        val source = PcmStreamSource.wav(ByteArrayInputStream(fixture))
+        val samples = ShortArray(fixture.size / 2)
+        var count = 0
+        while (true) {
+            val read = source.read(samples, count, minOf(1024, samples.size - count))
+            if (read <= 0) break
+            count += read
+        }
+        return samples.copyOf(count)
+    }
+
+    /** Keeps everything it is given, in a preallocated array */
+    private class Recorder(capacity: Int, private val delayMs: Long = 0) : PcmConsumer {
+        val samples = ShortArray(capacity)
+        var count = 0
+        var stopped = false
+
+        override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+            if (delayMs > 0) Thread.sleep(delayMs)
+            val copied = minOf(length, this.samples.size - count)
+            System.arraycopy(samples, offset, this.samples, count, copied)
+            count += copied
+        }
+
+        override fun onStop(droppedSamples: Long) {
+            stopped = true
+        }
+    }
+
+    @Test
+    fun replay_realTime_everyConsumerGetsEverySample() {
+        val expected = fixtureSamples()
+        val engine = CaptureEngine(PcmStreamSource.wav(ByteArrayInputStream(fixture), realTime = true))
+        val recorders = List(3) { Recorder(expected.size) }
+        recorders.forEachIndexed { index, recorder -> engine.addConsumer("recorder$index", recorder) }
+        val level = LevelMeter()
+        engine.addConsumer("level", level)
+
+        engine.start()
+        val stats = engine.awaitCompletion()
+
+        assertEquals(expected.size.toLong(), stats.capturedSamples)
+        assertEquals(0L, stats.overruns)
+        for (recorder in recorders) {
+            assertTrue(recorder.stopped)
+            assertArrayEquals(expected, recorder.samples.copyOf(recorder.count))
+        }
+        assertEquals(0f, level.rms, 0f)
+        assertTrue(stats.consumers.all { it.deliveredSamples == expected.size.toLong() && it.error == null })
+    }
+
+    @Test
+    fun levelMeter_followsTheLatestBlock() {
+        val samples = fixtureSamples()
+        val level = LevelMeter()
+        level.onStart(PcmFormat(16_000))
+
+        // Room noise before the first utterance, then a block inside it
+        level.onPcm(samples, 1_600, 320)
+        assertTrue("level ${level.rms}", level.rms < 0.01f)
+        level.onPcm(samples, 14_400, 320)
+        assertTrue("level ${level.rms}", level.rms > 0.05f)
+        assertTrue(level.peak >= level.rms)
+        level.onStop(0)
+        assertEquals(0f, level.rms, 0f)
+    }
+
+    @Test
+    fun slowConsumer_overrunsWithoutHoldingUpCapture() {
+        val expected = fixtureSamples()
+        // Half a second of ring; the slow consumer takes 60 ms for every 20 ms block
+        val engine = CaptureEngine(
+            PcmStreamSource.wav(ByteArrayInputStream(fixture), realTime = true),
+            ringCapacity = 8_192
+        )
+        val fast = Recorder(expected.size)
+        val slow = Recorder(expected.size, delayMs = 60)
+        engine.addConsumer("fast", fast).addConsumer("slow", slow)
+
+        engine.start()
+        val stats = engine.awaitCompletion()
+
+        val slowStats = stats.consumers.first { it.name == "slow" }
+        val fastStats = stats.consumers.first { it.name == "fast" }
+
+        assertEquals(expected.size.toLong(), stats.capturedSamples)
+        assertEquals(0L, fastStats.overruns)
+        assertArrayEquals(expected, fast.samples.copyOf(fast.count))
+        assertTrue(slowStats.overruns > 0)
+        assertEquals(expected.size.toLong(), slowStats.deliveredSamples + slowStats.droppedSamples)
+    }
+
+    @Test
+    fun pause_holdsTheSourceAndLosesNothing() {
+        val expected = fixtureSamples()
+        val replay = PcmStreamSource.wav(ByteArrayInputStream(fixture), realTime = true)
+        var pauses = 0
+        var resumes = 0
+        val source = object : PcmSource by replay {
+            override fun pause() {
+                pauses++
+            }
+
+            override fun resume() {
+                resumes++
+            }
+        }
+        val engine = CaptureEngine(source)
+        val recorder = Recorder(expected.size)
+        engine.addConsumer("recorder", recorder)
+
+        engine.start()
+        Thread.sleep(300)
+        engine.pause()
+        Thread.sleep(100)
+        val capturedAtPause = engine.stats().capturedSamples
+        Thread.sleep(500)
+        assertTrue(engine.isPaused)
+        assertEquals(capturedAtPause, engine.stats().capturedSamples)
+        engine.resume()
+        val stats = engine.awaitCompletion()
+
+        assertEquals(1, pauses)
+        assertEquals(1, resumes)
+        assertFalse(engine.isPaused)
+        // Consumers see one continuous recording with the pause cut out
+        assertArrayEquals(expected, recorder.samples.copyOf(recorder.count))
+    }
+
+    @Test
+    fun ringBuffer_concurrentReaders_neverSeeTornBlocks() {
+        val ring = PcmRingBuffer(1_024)
+        val readers = List(4) { ring.newReader() }
+        val total = 5_000_000L
+        val failures = ArrayList<String>()
+
+        val threads = readers.mapIndexed { index, reader ->
+            Thread {
+                val random = Random(index.toLong())
+                val block = ShortArray(300)
+                var expectedNext = 0L
+                var seenDropped = 0L
+                var done = false
+                while (!done) {
+                    // Taken before reading: a drop counted later may already belong to the next block
+                    val droppedBefore = reader.droppedSamples
+                    val read = reader.read(block, 0, random.nextInt(block.size) + 1)
+                    if (read == 0) {
+                        done = ring.writtenSamples >= total && reader.available() == 0
+                        if (index % 2 == 1) Thread.yield()
+                        continue
+                    }
+                    // Samples carry their position; a block must be one contiguous run
+                    for (i in 1 until read) {
+                        if (block[i].toInt() != (block[i - 1] + 1) and 0x7fff) {
+                            synchronized(failures) { failures.add("reader $index: torn block") }
+                            return@Thread
+                        }
+                    }
+                    // A jump between blocks is only allowed when it was counted as dropped
+                    val first = block[0].toInt() and 0x7fff
+                    val gap = (first - (expectedNext and 0x7fff).toInt() + 0x8000) and 0x7fff
+                    // The writer counts a drop just after moving the reader, and may be descheduled in between
+                    val deadline = System.nanoTime() + 1_000_000_000L
+                    while (gap != 0 && reader.droppedSamples == seenDropped && System.nanoTime() < deadline) Thread.onSpinWait()
+                    if (gap != 0 && reader.droppedSamples == seenDropped) {
+                        synchronized(failures) { failures.add("reader $index: uncounted gap of $gap") }
+                        return@Thread
+                    }
+                    seenDropped = droppedBefore
+                    expectedNext = (first + read).toLong()
+                    if (index >= 2 && random.nextInt(50) == 0) Thread.sleep(1)
+                }
+            }.apply { start() }
+        }
+
+        val block = ShortArray(256)
+        var written = 0L
+        while (written < total) {
+            for (i in block.indices) block[i] = ((written + i) and 0x7fff).toShort()
+            ring.write(block, 0, block.size)
+            written += block.size
+        }
+        threads.forEach { it.join(10_000) }
+
+        assertEquals(emptyList<String>(), failures)
+        assertTrue(readers.any { it.overruns > 0 })
+    }
+
+    private companion object {
+        const val FIXTURE = "pcm/speech_16k_mono.wav"
+    }
+}
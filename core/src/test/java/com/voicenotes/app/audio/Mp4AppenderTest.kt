@@ -0,0 +1,288 @@
+package com.voicenotes.app.audio
+
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.util.Random
+
+/**
+ * Appending a recorded segment to an MPEG-4 recording in place, on files laid out
+ * the way MediaMuxer writes them: frames come back in order, the old recording
+ * survives an interrupted append, and what is written follows the segment rather
+ * than the recording it is added to. Also the crash-safe [SegmentedRecording], whose
+ * segments are joined the same way.
+ */
+class Mp4AppenderTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val random = Random(49)
+
+    /** AAC frames of a 32 kbps speech recording: about 250 bytes each */
+    private fun frames(count: Int): List<ByteArray> =
+        List(count) { ByteArray(150 + random.nextInt(200)).also { random.nextBytes(it) } }
+
+    private fun framesFor(minutes: Double) = (minutes * 60 * SAMPLE_RATE / FRAME_SAMPLES).toInt()
+
+    @Test
+    fun append_keepsEveryFrameInOrder() {
+        for (moovFirst in listOf(false, true)) {
+            val first = frames(500)
+            val second = frames(321)
+            val third = frames(7)
+            val target = writeMp4(folder.newFile(), first, moovFirst, avgBitrate = 31_000)
+            val original = target.readBytes()
+
+            val appended = Mp4Appender.append(target, writeMp4(folder.newFile(), second, moovFirst, avgBitrate = 28_500))
+            assertEquals(321, appended.samples)
+            assertEquals(321L * FRAME_SAMPLES * 1000 / SAMPLE_RATE, appended.durationMs)
+            Mp4Appender.append(target, writeMp4(folder.newFile(), third, moovFirst = false, avgBitrate = 12_000))
+
+            val all = first + second + third
+            val stored = readFrames(target)
+            assertEquals(all.size, stored.size)
+            for (i in all.indices) assertArrayEquals("frame $i", all[i], stored[i])
+            val durationMs = all.size.toLong() * FRAME_SAMPLES * 1000 / SAMPLE_RATE
+            assertEquals(durationMs, Mp4Appender.durationMs(target))
+
+            // Movie, track and edit durations all grew with the media
+            val bytes = target.readBytes()
+            for (box in listOf("mvhd", "mdhd")) assertEquals(box, durationMs, headerDuration(bytes, box, if (box == "mvhd") 1000 else SAMPLE_RATE))
+            assertEquals(durationMs, fieldAfter(bytes, "tkhd", 20).toLong())
+            assertEquals(durationMs, fieldAfter(bytes, "elst", 8).toLong())
+
+            // Nothing before the old end changed but the old moov's name
+            val moovAt = topLevelBoxes(original).first { it.first == "moov" }.second
+            for (i in original.indices) {
+                if (i in moovAt + 4 until moovAt + 8) continue
+                assertEquals("byte $i", original[i], bytes[i])
+            }
+            assertEquals(1, topLevelBoxes(bytes).count { it.first == "moov" })
+        }
+    }
+
+    @Test
+    fun append_interruptedLeavesOldRecording() {
+        val first = frames(200)
+        val target = writeMp4(folder.newFile(), first, moovFirst = true)
+        val moovAt = topLevelBoxes(target.readBytes()).first { it.first == "moov" }.second
+        Mp4Appender.append(target, writeMp4(folder.newFile(), frames(50), moovFirst = false))
+
+        // Stopped before the old moov was renamed: readers still find it first
+        RandomAccessFile(target, "rw").use {
+            it.seek(moovAt + 4L)
+            it.write("moov".toByteArray(Charsets.US_ASCII))
+        }
+        val stored = readFrames(target)
+        assertEquals(first.size, stored.size)
+        for (i in first.indices) assertArrayEquals(first[i], stored[i])
+    }
+
+    @Test
+    fun append_rejectsOtherFormats() {
+        val target = writeMp4(folder.newFile(), frames(100), moovFirst = false)
+        val original = target.readBytes()
+        val other = writeMp4(folder.newFile(), frames(100), moovFirst = false, audioSpecificConfig = byteArrayOf(0x12, 0x10))
+        try {
+            Mp4Appender.append(target, other)
+            fail()
+        } catch (e: Mp4Appender.Unsupported) {
+            // Expected: 44.1 kHz frames cannot follow 16 kHz ones
+        }
+        assertArrayEquals(original, target.readBytes())
+    }
+
+    @Test
+    fun append_writesOnlyTheSegmentAndTables() {
+        val segmentFrames = frames(framesFor(1.0))
+        val segmentBytes = segmentFrames.sumOf { it.size.toLong() }
+
+        for (minutes in listOf(1.0, 30.0, 120.0)) {
+            val target = writeMp4(folder.newFile(), frames(framesFor(minutes)), moovFirst = false)
+            val segment = writeMp4(folder.newFile(), segmentFrames, moovFirst = false)
+            val before = target.length()
+
+            val appended = Mp4Appender.append(target, segment)
+
+            // The segment's frames plus sample tables of about 4 bytes a frame
+            assertTrue(appended.bytesWritten < segmentBytes + 6L * (framesFor(minutes) + segmentFrames.size) + 4_096)
+            // A small fraction of what remuxing the whole recording would write
+            if (minutes >= 30) assertTrue(appended.bytesWritten * 10 < before)
+        }
+    }
+
+    @Test
+    fun segmentedRecording_killedWhileRecording_losesOnlyTheSegmentBeingWritten() {
+        val checkpoints = ArrayList<Pair<Int, Long>>()
+        val recording = SegmentedRecording(File(folder.root, "recording.m4a.segments"), "m4a") { index, _, endMs ->
+            checkpoints.add(index to endMs)
+        }
+        val segmentFrames = framesFor(SegmentedRecording.SEGMENT_MS / 60_000.0)
+        val written = ArrayList<ByteArray>()
+        // More than ten segments, so their names must sort by number
+        for (index in 0 until 12) {
+            val frames = frames(segmentFrames)
+            writeMp4(recording.partialFile(index), frames, moovFirst = false)
+            written += frames
+            recording.complete(index, written.size.toLong() * FRAME_SAMPLES * 1000 / SAMPLE_RATE)
+        }
+        // Killed while the muxer was writing the next one
+        val unfinished = writeMp4(recording.partialFile(12), frames(segmentFrames), moovFirst = false)
+        unfinished.writeBytes(unfinished.readBytes().copyOf(unfinished.length().toInt() / 2))
+
+        val segments = recording.completeSegments()
+        assertEquals((0 until 12).map { "%06d.m4a".format(it) }, segments.map { it.name })
+        assertEquals(11 to 12L * segmentFrames * FRAME_SAMPLES * 1000 / SAMPLE_RATE, checkpoints.last())
+
+        val output = File(folder.root, "recording.m4a")
+        segments[0].copyTo(output)
+        val joined = Mp4Appender.append(output, segments.drop(1))
+        assertEquals(11 * segmentFrames, joined.samples)
+        val stored = readFrames(output)
+        assertEquals(written.size, stored.size)
+        for (i in written.indices) assertArrayEquals("frame $i", written[i], stored[i])
+        val recordedMs = (written.size + segmentFrames).toLong() * FRAME_SAMPLES * 1000 / SAMPLE_RATE
+        assertTrue(recordedMs - Mp4Appender.durationMs(output) <= SegmentedRecording.SEGMENT_MS)
+        assertEquals(1, topLevelBoxes(output.readBytes()).count { it.first == "moov" })
+    }
+
+    @Test
+    fun joinSegments_rewritesTheSampleTablesOnce() {
+        val segmentFrames = frames(framesFor(SegmentedRecording.SEGMENT_MS / 60_000.0))
+        val segmentBytes = segmentFrames.sumOf { it.size.toLong() }
+        // An hour in 5 s segments
+        val count = (60 * 60_000 / SegmentedRecording.SEGMENT_MS).toInt()
+        val segments = List(count) { writeMp4(folder.newFile(), segmentFrames, moovFirst = false) }
+        val output = folder.newFile()
+
+        segments[0].copyTo(output, overwrite = true)
+        val joined = Mp4Appender.append(output, segments.drop(1))
+
+        assertEquals((count - 1) * segmentFrames.size, joined.samples)
+        assertEquals(count * segmentFrames.size, Mp4Appender.frames(output).size)
+        // The frames once, and one set of sample tables rather than one per segment
+        assertTrue(joined.bytesWritten < segmentBytes * (count - 1) + 6L * count * segmentFrames.size + 4_096)
+    }
+
+    // MPEG-4 as MediaMuxer writes it: ftyp, then mdat and moov in either order
+
+    private fun writeMp4(
+        file: File,
+        frames: List<ByteArray>,
+        moovFirst: Boolean,
+        avgBitrate: Int = 32_000,
+        audioSpecificConfig: ByteArray = byteArrayOf(0x14, 0x08)
+    ): File {
+        val ftyp = box("ftyp", "M4A ".toByteArray(), int(0), "isomM4A ".toByteArray())
+        val data = ByteArrayOutputStream().apply { frames.forEach { write(it) } }.toByteArray()
+        val mdatHeader = 8
+        // The moov's size does not depend on the offsets in it, so build it twice
+        val probe = moov(frames, 0, avgBitrate, audioSpecificConfig)
+        val dataStart = ftyp.size + mdatHeader + if (moovFirst) probe.size else 0
+        val moov = moov(frames, dataStart.toLong(), avgBitrate, audioSpecificConfig)
+        val mdat = box("mdat", data)
+        file.outputStream().use { out ->
+            out.write(ftyp)
+            if (moovFirst) out.write(moov)
+            out.write(mdat)
+            if (!moovFirst) out.write(moov)
+        }
+        return file
+    }
+
+    private fun moov(frames: List<ByteArray>, dataStart: Long, avgBitrate: Int, asc: ByteArray): ByteArray {
+        val mediaDuration = frames.size * FRAME_SAMPLES
+        val movieDuration = mediaDuration.toLong() * 1000 / SAMPLE_RATE
+        val mvhd = box("mvhd", int(0), int(0), int(0), int(1000), int(movieDuration.toInt()), int(0x10000), short(0x100), ByteArray(10), ByteArray(36), ByteArray(24), int(2))
+        val tkhd = box("tkhd", int(7), int(0), int(0), int(1), int(0), int(movieDuration.toInt()), ByteArray(8), short(0), short(0), short(0x100), short(0), ByteArray(36), int(0), int(0))
+        val elst = box("elst", int(0), int(1), int(movieDuration.toInt()), int(0), int(0x10000))
+        val mdhd = box("mdhd", int(0), int(0), int(0), int(SAMPLE_RATE), int(mediaDuration), short(0x55c4), short(0))
+        val hdlr = box("hdlr", int(0), int(0), "soun".toByteArray(), ByteArray(12), byteArrayOf(0))
+
+        val decoderConfig = byteArrayOf(0x40, 0x15, 0, 0x03, 0) + int(avgBitrate + 4_000) + int(avgBitrate)
+        val esDescriptor = short(0) + byteArrayOf(0) +
+            descriptor(0x04, decoderConfig + descriptor(0x05, asc)) + descriptor(0x06, byteArrayOf(0x02))
+        val esds = box("esds", int(0), descriptor(0x03, esDescriptor))
+        val mp4a = box("mp4a", ByteArray(6), short(1), ByteArray(8), short(1), short(16), short(0), short(0), int(SAMPLE_RATE shl 16), esds)
+        val stsd = box("stsd", int(0), int(1), mp4a)
+
+        val stts = box("stts", int(0), int(1), int(frames.size), int(FRAME_SAMPLES))
+        val chunks = (frames.size + CHUNK - 1) / CHUNK
+        val stscRows = mutableListOf(intArrayOf(1, CHUNK, 1))
+        if (frames.size % CHUNK != 0) stscRows.add(intArrayOf(chunks, frames.size % CHUNK, 1))
+        val stsc = box("stsc", int(0), int(stscRows.size), *stscRows.flatMap { row -> row.map { int(it) } }.toTypedArray())
+        val stsz = box("stsz", int(0), int(0), int(frames.size), *frames.map { int(it.size) }.toTypedArray())
+        var offset = dataStart
+        val chunkOffsets = (0 until chunks).map { chunk ->
+            int(offset.toInt()).also { frames.subList(chunk * CHUNK, minOf(frames.size, (chunk + 1) * CHUNK)).forEach { offset += it.size } }
+        }
+        val stco = box("stco", int(0), int(chunks), *chunkOffsets.toTypedArray())
+
+        val stbl = box("stbl", stsd, stts, stsc, stsz, stco)
+        val minf = box("minf", box("smhd", int(0), int(0)), stbl)
+        val trak = box("trak", tkhd, box("edts", elst), box("mdia", mdhd, hdlr, minf))
+        return box("moov", mvhd, trak)
+    }
+
+    private fun box(type: String, vararg parts: ByteArray): ByteArray {
+        val out = ByteArrayOutputStream()
+        DataOutputStream(out).apply {
+            writeInt(8 + parts.sumOf { it.size })
+            write(type.toByteArray(Charsets.US_ASCII))
+            parts.forEach { write(it) }
+        }
+        return out.toByteArray()
+    }
+
+    private fun descriptor(tag: Int, body: ByteArray) = byteArrayOf(tag.toByte(), body.size.toByte()) + body
+
+    private fun int(value: Int) = byteArrayOf((value ushr 24).toByte(), (value ushr 16).toByte(), (value ushr 8).toByte(), value.toByte())
+
+    private fun short(value: Int) = byteArrayOf((value ushr 8).toByte(), value.toByte())
+
+    private fun readFrames(file: File): List<ByteArray> = RandomAccessFile(file, "r").use { raf ->
+        Mp4Appender.frames(file).map { (offset, size) ->
+            ByteArray(size).also {
+                raf.seek(offset)
+                raf.readFully(it)
+            }
+        }
+    }
+
+    private fun topLevelBoxes(bytes: ByteArray): List<Pair<String, Int>> {
+        val boxes = ArrayList<Pair<String, Int>>()
+        var at = 0
+        while (at + 8 <= bytes.size) {
+            boxes.add(String(bytes, at + 4, 4, Charsets.US_ASCII) to at)
+            at += readInt(bytes, at)
+        }
+        return boxes
+    }
+
+    /** A 32-bit field [offset] bytes into the payload of the last [type] box */
+    private fun fieldAfter(bytes: ByteArray, type: String, offset: Int): Int {
+        val name = type.toByteArray(Charsets.US_ASCII)
+        val at = (bytes.size - 4 downTo 0).first { i -> name.indices.all { bytes[i + it] == name[it] } }
+        return readInt(bytes, at + 4 + offset)
+    }
+
+    /** Duration of the last [type] header in milliseconds */
+    private fun headerDuration(bytes: ByteArray, type: String, timescale: Int) =
+        fieldAfter(bytes, type, 16).toLong() * 1000 / timescale
+
+    private fun readInt(bytes: ByteArray, at: Int) =
+        (bytes[at].toInt() and 0xff shl 24) or (bytes[at + 1].toInt() and 0xff shl 16) or
+            (bytes[at + 2].toInt() and 0xff shl 8) or (bytes[at + 3].toInt() and 0xff)
+
+    private companion object {
+        const val SAMPLE_RATE = 16_000
+        const val FRAME_SAMPLES = 1024
+        const val CHUNK = 10
+    }
+}
@@ -0,0 +1,35 @@
+package com.voicenotes.app.audio
+
+import org.junit.Assert.*
+import org.junit.Test
+
+/**
+ * Bytes per minute of every recording profile and the default each kind of device gets
+ */
+class RecordingProfileTest {
+
+    @Test
+    fun bytesPerMinute_speechProfilesAboutAQuarterOfHighFidelity() {
+        val highFidelity = RecordingProfile.HIGH_FIDELITY.bytesPerMinute
+
+        // The old fixed setting: about 1 MB a minute
+        assertEquals(1_000_000.0, highFidelity.toDouble(), 50_000.0)
+        for (profile in RecordingProfile.values().filter { it != RecordingProfile.HIGH_FIDELITY }) {
+            assertEquals(profile.name, 16_000, profile.sampleRate)
+            assertEquals(profile.name, 1, profile.format.channels)
+            assertTrue(profile.name, profile.bytesPerMinute * 3.8 <= highFidelity)
+        }
+    }
+
+    @Test
+    fun defaultProfile_followsDeviceCapability() {
+        // Android 10 and later encode Opus into Ogg
+        assertEquals(RecordingProfile.SPEECH_OPUS, RecordingProfile.defaultFor { true })
+        for (sdk in listOf(23, 26, 28)) {
+            assertEquals("API $sdk", RecordingProfile.SPEECH_AAC, RecordingProfile.defaultFor { it.minSdk <= sdk })
+        }
+        // A device without the Opus encoder despite its version
+        assertEquals(RecordingProfile.SPEECH_AAC, RecordingProfile.defaultFor { it != RecordingProfile.SPEECH_OPUS })
+        assertEquals(RecordingProfile.HIGH_FIDELITY, RecordingProfile.defaultFor { false })
+    }
+}
@@ -0,0 +1,99 @@
+package com.voicenotes.app.audio
+
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.InputStream
+import java.util.Random
+
+/**
+ * Pause and voiced-time measurement over the speech fixture, over utterances spliced
+ * with known gaps, and streamed over a two-hour recording.
+ */
+class SpeakingPatternAnalyzerTest {
+
+    private val fixture: ByteArray = javaClass.classLoader!!.getResourceAsStream(FIXTURE)!!.use { it.readBytes() }
+    private val format = PcmFormat(16_000)
+
+    /** The fixture's first utterance, 0.5–1.3 s, as little-endian PCM bytes */
+    private val utterance: ByteArray = fixture.copyOfRange(WAV_HEADER + format.samplesFor(500) * 2, WAV_HEADER + format.samplesFor(1_300) * 2)
+
+    private fun noise(millis: Int, random: Random): ByteArray {
+        val bytes = ByteArray(format.samplesFor(millis) * 2)
+        for (i in 0 until bytes.size / 2) {
+            val sample = (random.nextGaussian() * 30).toInt()
+            bytes[2 * i] = sample.toByte()
+            bytes[2 * i + 1] = (sample shr 8).toByte()
+        }
+        return bytes
+    }
+
+    @Test
+    fun fixture_findsThePauseBetweenUtterances() {
+        val result = SpeakingPatternAnalyzer.analyze(PcmStreamSource.wav(ByteArrayInputStream(fixture)))
+        // Speech at 0.5–1.3 s and 1.8–2.6 s
+        assertEquals(1, result.pauseCount)
+        assertEquals(500.0, result.longestPauseMs.toDouble(), 100.0)
+        assertEquals(1_600.0, result.voicedMs.toDouble(), 200.0)
+        assertEquals(3_000L, result.totalMs)
+    }
+
+    @Test
+    fun splicedGaps_measuredToTheFrame() {
+        val random = Random(7)
+        val gaps = listOf(300, 700, 1_500, 3_000)
+        val spliced = ByteArrayOutputStream()
+        spliced.write(noise(1_000, random))
+        spliced.write(utterance)
+        for (gap in gaps) {
+            spliced.write(noise(gap, random))
+            spliced.write(utterance)
+        }
+        spliced.write(noise(1_000, random))
+
+        val result = SpeakingPatternAnalyzer.analyze(PcmStreamSource.raw(ByteArrayInputStream(spliced.toByteArray()), format))
+        assertEquals(gaps.size, result.pauseCount)
+        // One gap in each bucket: under 0.5 s, 0.5–1 s, 1–2 s, 2 s and over
+        assertEquals(listOf(1, 1, 1, 1), result.pauseHistogram)
+        assertEquals(3_000.0, result.longestPauseMs.toDouble(), 100.0)
+        assertEquals(gaps.average(), result.averagePauseMs, 100.0)
+        assertEquals(5 * 800.0, result.voicedMs.toDouble(), 300.0)
+    }
+
+    @Test
+    fun twoHourRecording_countsEveryPause() {
+        // 0.8 s of speech then 1.2 s of room noise, for two hours
+        val cycle = utterance + noise(1_200, Random(11))
+        val cycles = 2 * 3_600 / 2
+        val stream = object : InputStream() {
+            private var position = 0L
+            private val total = cycle.size.toLong() * cycles
+
+            override fun read(): Int {
+                if (position >= total) return -1
+                return cycle[(position++ % cycle.size).toInt()].toInt() and 0xff
+            }
+
+            override fun read(b: ByteArray, off: Int, len: Int): Int {
+                if (position >= total) return -1
+                val inCycle = (position % cycle.size).toInt()
+                val count = minOf(len, cycle.size - inCycle, (total - position).toInt())
+                System.arraycopy(cycle, inCycle, b, off, count)
+                position += count
+                return count
+            }
+        }
+
+        val result = SpeakingPatternAnalyzer.analyze(PcmStreamSource.raw(stream, format))
+
+        assertEquals(7_200_000L, result.totalMs)
+        assertEquals(cycles - 1, result.pauseCount)
+        assertEquals(0.4, result.speechRatio, 0.05)
+    }
+
+    private companion object {
+        const val FIXTURE = "pcm/speech_16k_mono.wav"
+        const val WAV_HEADER = 44
+    }
+}
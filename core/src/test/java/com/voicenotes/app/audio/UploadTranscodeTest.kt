@@ -0,0 +1,184 @@
+package com.voicenotes.app.audio
+
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.util.Random
+import kotlin.math.PI
+import kotlin.math.log10
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * The upload transcode stage without MediaCodec: resampler accuracy, the upload size
+ * of each format against what used to be sent, and the content-hash cache.
+ */
+class UploadTranscodeTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val fixture: ByteArray = javaClass.classLoader!!.getResourceAsStream(FIXTURE)!!.use { it.readBytes() }
+
+    /** Everything delivered to it, in one array */
+    private class Collector : PcmConsumer {
+        var format: PcmFormat? = null
+        var samples = ShortArray(0)
+        var count = 0
+        var stopped = false
+
+        override fun onStart(format: PcmFormat) {
+            this.format = format
+        }
+
+        override fun onPcm(samples: ShortArray, offset: Int, length: Int) {
+            if (count + length > this.samples.size) this.samples = this.samples.copyOf(maxOf(count + length, this.samples.size * 2))
+            System.arraycopy(samples, offset, this.samples, count, length)
+            count += length
+        }
+
+        override fun onStop(droppedSamples: Long) {
+            stopped = true
+        }
+    }
+
+    private fun tone(rate: Int, hz: Double, seconds: Double, channels: Int = 1, amplitude: Double = 10_000.0): ShortArray {
+        val frames = (rate * seconds).toInt()
+        return ShortArray(frames * channels) { (amplitude * sin(2 * PI * hz * (it / channels) / rate)).toInt().toShort() }
+    }
+
+    private fun resample(input: ShortArray, format: PcmFormat, targetRate: Int, blocks: IntArray = intArrayOf(4096)): Collector {
+        val collector = Collector()
+        val resampler = PcmResampler(targetRate, collector)
+        resampler.onStart(format)
+        var offset = 0
+        var block = 0
+        while (offset < input.size) {
+            val length = minOf(blocks[block++ % blocks.size] * format.channels, input.size - offset)
+            resampler.onPcm(input, offset, length)
+            offset += length
+        }
+        resampler.onStop(0)
+        return collector
+    }
+
+    /** RMS level of the middle of [samples], away from the filter's edges */
+    private fun rms(samples: ShortArray, count: Int): Double {
+        var sum = 0.0
+        val from = count / 4
+        val to = count * 3 / 4
+        for (i in from until to) sum += samples[i].toDouble() * samples[i]
+        return sqrt(sum / (to - from))
+    }
+
+    @Test
+    fun resampler_keepsSpeechAndRejectsAliases() {
+        val inputRms = 10_000 / sqrt(2.0)
+        for (rate in listOf(44_100, 48_000, 22_050, 8_000)) {
+            val nyquist = minOf(rate, UploadFormat.SAMPLE_RATE) / 2
+            val passband = listOf(300.0, 1_000.0, 3_000.0, nyquist * PcmResampler.ROLLOFF * 0.85)
+            val stopband = listOf(8_800.0, 12_000.0, 20_000.0).filter { it < rate / 2 && it > 8_000 * 1.1 }
+            val gains = (passband + stopband).map { hz ->
+                val out = resample(tone(rate, hz, 1.0), PcmFormat(rate), UploadFormat.SAMPLE_RATE)
+                hz to 20 * log10(maxOf(rms(out.samples, out.count), 1e-3) / inputRms)
+            }
+            for ((hz, db) in gains) {
+                if (hz in passband) assertEquals("$rate: $hz Hz", 0.0, db, 0.5)
+                else assertTrue("$rate: $hz Hz at $db dB", db < -50)
+            }
+        }
+    }
+
+    @Test
+    fun resampler_lengthAndBlockingIndependent() {
+        val random = Random(3)
+        val input = ShortArray(44_100 * 3 + 77) { (random.nextGaussian() * 3_000).toInt().toShort() }
+        val whole = resample(input, PcmFormat(44_100), 16_000, intArrayOf(input.size))
+        val ragged = resample(input, PcmFormat(44_100), 16_000, intArrayOf(1, 7, 441, 1_000, 4_096, 13))
+
+        assertEquals(PcmFormat(16_000), whole.format)
+        assertTrue(whole.stopped)
+        assertEquals((input.size * 16_000L + 44_099) / 44_100, whole.count.toLong())
+        assertArrayEquals(whole.samples.copyOf(whole.count), ragged.samples.copyOf(ragged.count))
+
+        // At the target rate samples pass through untouched
+        val same = resample(input, PcmFormat(16_000), 16_000, intArrayOf(333))
+        assertArrayEquals(input, same.samples.copyOf(same.count))
+
+        // Stereo is averaged: opposite channels cancel, equal ones pass
+        val stereo = tone(48_000, 1_000.0, 1.0, channels = 2)
+        val opposite = ShortArray(stereo.size) { if (it % 2 == 0) stereo[it] else (-stereo[it]).toShort() }
+        val cancelled = resample(opposite, PcmFormat(48_000, 2), 16_000)
+        assertEquals(0.0, rms(cancelled.samples, cancelled.count), 1.0)
+        val equal = resample(stereo, PcmFormat(48_000, 2), 16_000)
+        assertEquals(10_000 / sqrt(2.0), rms(equal.samples, equal.count), 100.0)
+    }
+
+    @Test
+    fun uploadSize_perFormatAgainstOriginals() {
+        val originals = listOf(
+            "hi-fi recording (m4a)" to RecordingProfile.HIGH_FIDELITY.bytesPerMinute,
+            "imported 44.1 kHz stereo WAV" to PcmFormat(44_100, 2).bytesPerSecond * 60L,
+            "imported 48 kHz mono WAV" to PcmFormat(48_000).bytesPerSecond * 60L
+        )
+        // Every provider's first choice is a quarter of a hi-fi recording or less
+        assertTrue(UploadFormat.OGG_OPUS.bytesPerMinute * 4 < RecordingProfile.HIGH_FIDELITY.bytesPerMinute)
+        // Raw PCM, the fallback where Opus cannot be encoded, still beats a CD-quality import
+        assertTrue(UploadFormat.WAV_PCM.bytesPerMinute * 5 < originals[1].second)
+
+        // Written WAV reads back sample for sample
+        val source = PcmStreamSource.wav(ByteArrayInputStream(fixture))
+        val wav = folder.newFile("fixture.wav")
+        source.drainTo(PcmResampler(UploadFormat.SAMPLE_RATE, WavWriter(wav)))
+        assertArrayEquals(fixture, wav.readBytes())
+    }
+
+    @Test
+    fun cache_reusesByContentNotName() {
+        val cache = TranscodeCache(folder.newFolder("stt"), maxBytes = 3 * 1024)
+        val first = folder.newFile("a.m4a").apply { writeBytes(ByteArray(2_000) { it.toByte() }) }
+        val renamed = folder.newFile("renamed.m4a").apply { writeBytes(first.readBytes()) }
+        var transcodes = 0
+        val transcode = { output: File ->
+            transcodes++
+            output.writeBytes(ByteArray(1_000))
+        }
+
+        val entry = cache.getOrPut(first, "WAV_PCM", "wav", transcode)
+        assertEquals(entry, cache.getOrPut(renamed, "WAV_PCM", "wav", transcode))
+        assertEquals(1, transcodes)
+        cache.getOrPut(first, "OGG_OPUS", "ogg", transcode)
+        assertEquals(2, transcodes)
+
+        // A failed transcode leaves nothing behind
+        val other = folder.newFile("b.m4a").apply { writeBytes(ByteArray(10)) }
+        try {
+            cache.getOrPut(other, "WAV_PCM", "wav") { throw java.io.IOException("decoder failed") }
+            fail()
+        } catch (e: java.io.IOException) {
+            // Expected
+        }
+        assertEquals(2, File(folder.root, "stt").listFiles()!!.size)
+
+        // Past the limit the least recently used go first
+        File(folder.root, "stt").listFiles()!!.forEach { it.setLastModified(1_000_000) }
+        entry.setLastModified(2_000_000)
+        cache.getOrPut(other, "WAV_PCM", "wav", transcode)
+        cache.getOrPut(other, "OGG_OPUS", "ogg", transcode)
+        val left = File(folder.root, "stt").listFiles()!!.map { it.name }
+        assertEquals(3, left.size)
+        assertTrue(entry.name in left)
+
+        // Keys follow the bytes only
+        assertEquals(cache.keyFor(first), cache.keyFor(renamed))
+        assertNotEquals(cache.keyFor(first), cache.keyFor(other))
+        assertEquals(64, cache.keyFor(first).length)
+    }
+
+    private companion object {
+        const val FIXTURE = "pcm/speech_16k_mono.wav"
+    }
+}
@@ -0,0 +1,116 @@
+package com.voicenotes.app.audio
+
+import com.voicenotes.app.data.SpeechSegment
+import org.junit.Assert.*
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.util.Random
+
+/**
+ * Voice activity detection over the speech fixture and over long, mostly silent
+ * recordings built from it: every utterance is kept, and little else.
+ */
+class VoiceActivityDetectorTest {
+
+    private val fixture: ByteArray = javaClass.classLoader!!.getResourceAsStream(FIXTURE)!!.use { it.readBytes() }
+    private val format = PcmFormat(16_000)
+
+    private fun fixtureSamples(): ShortArray {
+        val source = PcmStreamSource.wav(ByteArrayInputStream(fixture))
+        val samples = ShortArray(fixture.size / 2)
+        var count = 0
+        while (true) {
+            val read = source.read(samples, count, minOf(1024, samples.size - count))
+            if (read <= 0) break
+            count += read
+        }
+        return samples.copyOf(count)
+    }
+
+    private fun detect(samples: ShortArray): List<SpeechSegment> {
+        val detector = VoiceActivityDetector()
+        detector.onStart(format)
+        var offset = 0
+        while (offset < samples.size) {
+            val length = minOf(320, samples.size - offset)
+            detector.onPcm(samples, offset, length)
+            offset += length
+        }
+        detector.onStop(0)
+        return detector.segments
+    }
+
+    /**
+     * [seconds] of room noise at [noiseLevel] with the fixture's two utterances
+     * (0.5–1.3 s and 1.8–2.6 s of it) pasted in at each of [speechAtMs]
+     */
+    private fun mostlySilent(seconds: Int, noiseLevel: Double, speechAtMs: List<Long>, seed: Long): ShortArray {
+        val random = Random(seed)
+        val samples = ShortArray(seconds * format.samplesPerSecond) {
+            (random.nextGaussian() * noiseLevel).toInt().coerceIn(-32768, 32767).toShort()
+        }
+        val speech = fixtureSamples()
+        val from = format.samplesFor(400)
+        val to = format.samplesFor(2_700)
+        for (at in speechAtMs) {
+            val start = format.samplesFor(at.toInt())
+            for (i in from until to) {
+                val mixed = samples[start + i - from] + speech[i]
+                samples[start + i - from] = mixed.coerceIn(-32768, 32767).toShort()
+            }
+        }
+        return samples
+    }
+
+    private fun covers(segments: List<SpeechSegment>, startMs: Long, endMs: Long): Boolean =
+        segments.any { it.startMs <= startMs && it.endMs >= endMs }
+
+    @Test
+    fun fixture_keepsBothUtterancesAsOne() {
+        val segments = VoiceActivityDetector.detect(PcmStreamSource.wav(ByteArrayInputStream(fixture)))
+
+        // Half a second between them is a pause, not a gap worth cutting
+        assertEquals(1, segments.size)
+        assertTrue(covers(segments, 500, 2_600))
+        // Padding only, no wandering into the silence around them
+        assertTrue(segments[0].startMs >= 200 && segments[0].endMs <= 2_900)
+    }
+
+    @Test
+    fun mostlySilentRecordings_uploadOnlySpeech() {
+        // A phone left recording, a meeting with long gaps, and the same in a noisy room
+        val corpus = listOf(
+            Triple("left recording", mostlySilent(120, 30.0, listOf(5_000L), 1), listOf(5_000L)),
+            Triple("meeting gaps", mostlySilent(60, 30.0, listOf(2_000L, 20_000L, 21_000L, 45_000L), 2), listOf(2_000L, 20_000L, 21_000L, 45_000L)),
+            Triple("noisy room", mostlySilent(60, 300.0, listOf(10_000L, 30_000L), 3), listOf(10_000L, 30_000L))
+        )
+        for ((name, samples, speechAt) in corpus) {
+            val segments = detect(samples)
+            val timeline = SpeechTimeline(segments)
+            for (at in speechAt) {
+                assertTrue("$name: speech at $at ms in $segments", covers(segments, at + 100, at + 900))
+                assertTrue("$name: speech at $at ms in $segments", covers(segments, at + 1_400, at + 2_200))
+            }
+            // Each pasted utterance pair is about 2.3 s; allow its padding and nothing more
+            assertTrue("$name: ${timeline.stitchedMs} ms kept", timeline.stitchedMs <= speechAt.size * 3_200L)
+        }
+    }
+
+    @Test
+    fun timeline_mapsStitchedTimesBack() {
+        val timeline = SpeechTimeline(listOf(SpeechSegment(1_000, 2_000), SpeechSegment(5_000, 5_500), SpeechSegment(9_000, 12_000)))
+
+        assertEquals(4_500L, timeline.stitchedMs)
+        assertEquals(1_000L, timeline.toOriginalMs(0))
+        assertEquals(1_999L, timeline.toOriginalMs(999))
+        assertEquals(5_000L, timeline.toOriginalMs(1_000))
+        assertEquals(5_250L, timeline.toOriginalMs(1_250))
+        assertEquals(9_000L, timeline.toOriginalMs(1_500))
+        assertEquals(12_000L, timeline.toOriginalMs(4_500))
+        assertEquals(0.375, timeline.keptFraction(12_000), 1e-9)
+    }
+
+    private companion object {
+        const val FIXTURE = "pcm/speech_16k_mono.wav"
+    }
+}
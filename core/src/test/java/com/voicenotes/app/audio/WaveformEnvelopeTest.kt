@@ -0,0 +1,141 @@
+package com.voicenotes.app.audio
+
+import org.junit.Assert.*
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.ByteArrayInputStream
+import java.io.File
+import java.util.Random
+
+/**
+ * Waveform sidecars: what the fixture's looks like, how big a long recording's
+ * gets, and what list rows and zoomed views drawn from them show.
+ */
+class WaveformEnvelopeTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val fixture: ByteArray = javaClass.classLoader!!.getResourceAsStream(FIXTURE)!!.use { it.readBytes() }
+
+    private fun writeEnvelope(source: PcmSource, name: String): File {
+        val file = File(folder.root, "$name.wave")
+        val writer = WaveformEnvelope.Writer(file)
+        source.drainTo(writer)
+        assertNull(writer.error)
+        return file
+    }
+
+    /** [seconds] of alternating loud and quiet seconds, generated as it is read */
+    private fun longSource(seconds: Int, seed: Long): PcmSource {
+        val format = PcmFormat(16_000)
+        val random = Random(seed)
+        return object : PcmSource {
+            private var position = 0L
+            private val total = seconds.toLong() * format.samplesPerSecond
+            override val format = format
+            override fun open() {}
+            override fun close() {}
+            override fun read(buffer: ShortArray, offset: Int, length: Int): Int {
+                if (position >= total) return CaptureEngine.END_OF_STREAM
+                val count = minOf(length.toLong(), total - position).toInt()
+                for (i in 0 until count) {
+                    val loud = (position + i) / format.samplesPerSecond % 2 == 0L
+                    buffer[offset + i] = (random.nextGaussian() * if (loud) 8_000 else 100).toInt().coerceIn(-32767, 32767).toShort()
+                }
+                position += count
+                return count
+            }
+        }
+    }
+
+    @Test
+    fun fixture_envelopeFollowsTheSpeech() {
+        val file = writeEnvelope(PcmStreamSource.wav(ByteArrayInputStream(fixture)), "fixture")
+        val envelope = WaveformEnvelope.open(file)
+
+        val columns = 30
+        val mins = FloatArray(columns)
+        val maxs = FloatArray(columns)
+        envelope.fill(0, envelope.durationMs, columns, mins, maxs)
+
+        assertEquals(3_000L, envelope.durationMs)
+        assertEquals(16_000, envelope.sampleRate)
+        // 100 ms columns: 0.0–0.4 s is room noise, speech runs 0.5–1.3 s
+        for (column in 0 until 4) assertTrue(maxs[column] - mins[column] < 0.02f)
+        for (column in 6 until 12) assertTrue(maxs[column] - mins[column] > 0.1f)
+        for (column in 0 until columns) assertTrue(mins[column] <= 0f && maxs[column] >= 0f)
+    }
+
+    @Test
+    fun longRecording_compactSidecarAtEveryZoom() {
+        val hours = 2
+        val file = writeEnvelope(longSource(hours * 3_600, 5), "long")
+        val envelope = WaveformEnvelope.open(file)
+
+        assertEquals(hours * 3_600_000L, envelope.durationMs)
+        assertTrue(file.length() / hours < 300_000)
+        assertTrue(envelope.levels.last().peakCount <= 256 * WaveformEnvelope.LEVEL_FACTOR)
+
+        // A whole-recording scrubber and zoomed views down to 2 s, anywhere in the recording
+        val mins = FloatArray(400)
+        val maxs = FloatArray(400)
+        for (spanMs in listOf(envelope.durationMs, 600_000L, 2_000L)) {
+            for (from in listOf(0L, (envelope.durationMs - spanMs) / 2, envelope.durationMs - spanMs)) {
+                envelope.fill(from, from + spanMs, 400, mins, maxs)
+                for (column in 0 until 400) assertTrue("$spanMs ms at $from", mins[column] <= 0f && maxs[column] >= 0f)
+            }
+        }
+
+        // Alternating loud and quiet seconds show in the middle of each second's columns
+        envelope.fill(0, 10_000, 100, mins, maxs)
+        for (second in 0 until 10) {
+            val column = second * 10 + 5
+            val loud = maxs[column] - mins[column] > 0.5f
+            assertEquals("second $second", second % 2 == 0, loud)
+        }
+    }
+
+    @Test
+    fun appendedAudio_continuesTheEarlierEnvelope() {
+        val earlier = WaveformEnvelope.open(writeEnvelope(longSource(10, 7), "earlier"))
+        val file = File(folder.root, "appended.wave")
+        val writer = WaveformEnvelope.Writer(file, previous = earlier)
+        PcmStreamSource.wav(ByteArrayInputStream(fixture)).drainTo(writer)
+        assertNull(writer.error)
+        val envelope = WaveformEnvelope.open(file)
+
+        assertEquals(13_000L, envelope.durationMs)
+        val mins = FloatArray(130)
+        val maxs = FloatArray(130)
+        envelope.fill(0, 13_000, 130, mins, maxs)
+        // The earlier seconds are where they were, the fixture's speech 0.5 s after them
+        for (second in 0 until 10) assertEquals("second $second", second % 2 == 0, maxs[second * 10 + 5] - mins[second * 10 + 5] > 0.5f)
+        for (column in 100 until 104) assertTrue(maxs[column] - mins[column] < 0.02f)
+        for (column in 106 until 112) assertTrue(maxs[column] - mins[column] > 0.1f)
+    }
+
+    @Test
+    fun sidecar_isNeverHalfWritten() {
+        val file = writeEnvelope(PcmStreamSource.wav(ByteArrayInputStream(fixture)), "fixture")
+        val bytes = file.readBytes()
+        assertFalse(File(file.path + ".partial").exists())
+
+        // A truncated or foreign file is refused rather than drawn from
+        val truncated = File(folder.root, "truncated.wave").apply { writeBytes(bytes.copyOf(bytes.size / 2)) }
+        val foreign = File(folder.root, "foreign.wave").apply { writeBytes(fixture.copyOf(200)) }
+        for (bad in listOf(truncated, foreign)) {
+            try {
+                WaveformEnvelope.open(bad)
+                fail("${bad.name} opened")
+            } catch (e: java.io.IOException) {
+                // Expected
+            }
+        }
+    }
+
+    private companion object {
+        const val FIXTURE = "pcm/speech_16k_mono.wav"
+    }
+}
@@ -28,3 +28,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "VoiceNotes"
 include(":app")
+include(":core")